@@ -0,0 +1,88 @@
+package com.gogame.bench;
+
+import com.gogame.BitBoard;
+import com.gogame.Board;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Te same operacje na planszy bitowej (tylko 19x19), na tych samych
+ * pozycjach co BoardBenchmark, żeby obie implementacje dało się porównać.
+ * BitBoard nie ma undo, więc checkMove gra na kopii pozycji - koszt samej
+ * kopii mierzy copyFrom.
+ *
+ * Porównanie z BoardBenchmark: java -jar target/benchmarks.jar "BitBoardBenchmark|BoardBenchmark.checkMove"
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitBoardBenchmark {
+
+    @Param({"midgame", "endgame"})
+    public String phase;
+
+    private BitBoard bits;
+    private final BitBoard work = new BitBoard();
+    private int[] moves;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Board board = Positions.of(phase, 19);
+        bits = BitBoard.fromBoard(board);
+        moves = Positions.legalMoves(board, true);
+    }
+
+    private int nextMove() {
+        next += 2;
+        if (next >= moves.length)
+            next = 0;
+        return next;
+    }
+
+    @Benchmark
+    public boolean checkMove() {
+        int i = nextMove();
+        work.copyFrom(bits);
+        return work.checkMove(moves[i], moves[i + 1], true);
+    }
+
+    @Benchmark
+    public BitBoard copyFrom() {
+        work.copyFrom(bits);
+        return work;
+    }
+
+    @Benchmark
+    public BitBoard updateBreaths() {
+        bits.updateBreaths();
+        return bits;
+    }
+
+    @Benchmark
+    public BitBoard checkBoard() {
+        bits.checkBoard();
+        return bits;
+    }
+
+    @Benchmark
+    public int calculateTerritories() {
+        bits.calculateTerritories();
+        return bits.territory(true);
+    }
+}
@@ -0,0 +1,146 @@
+package com.gogame.bench;
+
+import com.gogame.Board;
+import com.gogame.BoardHelper;
+import com.gogame.Score;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarki operacji Board na pozycjach ze środka gry i z końcówki.
+ * Operacje zmieniające planszę są cofane (undo) w tym samym wywołaniu,
+ * więc każde wywołanie mierzy tę samą pozycję.
+ *
+ * Uruchomienie z profilem alokacji: java -jar target/benchmarks.jar BoardBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({"midgame", "endgame"})
+    public String phase;
+
+    @Param({"19"})
+    public int size;
+
+    private Board board;
+    private Board copy;
+    private int[] moves;
+    private int next;
+    private int chainRow;
+    private int chainCol;
+    private int[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = Positions.of(phase, size);
+        copy = new Board(size);
+        moves = Positions.legalMoves(board, true);
+        buffer = new int[size * size];
+
+        // najwiekszy lancuch na planszy
+        int best = 0;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (board.chainSize(r, c) > best) {
+                    best = board.chainSize(r, c);
+                    chainRow = r;
+                    chainCol = c;
+                }
+            }
+        }
+    }
+
+    private int nextMove() {
+        next += 2;
+        if (next >= moves.length)
+            next = 0;
+        return next;
+    }
+
+    @Benchmark
+    public boolean checkMove() {
+        int i = nextMove();
+        boolean legal = board.checkMove(moves[i], moves[i + 1], true);
+        board.undo();
+        return legal;
+    }
+
+    @Benchmark
+    public boolean playUndo() {
+        int i = nextMove();
+        boolean legal = board.play(moves[i], moves[i + 1], true);
+        board.undo();
+        return legal;
+    }
+
+    @Benchmark
+    public boolean isLegal() {
+        int i = nextMove();
+        return board.isLegal(moves[i], moves[i + 1], true);
+    }
+
+    @Benchmark
+    public Board updateBreaths() {
+        board.updateBreaths();
+        return board;
+    }
+
+    @Benchmark
+    public Board checkBoard() {
+        board.checkBoard();
+        return board;
+    }
+
+    @Benchmark
+    public boolean isKo() {
+        return board.isKo();
+    }
+
+    @Benchmark
+    public int calculateTerritories() {
+        for (int[] row : board.territoryCache)
+            Arrays.fill(row, 0);
+        board.calculateTerritories();
+        return board.territoryCache[0][0];
+    }
+
+    @Benchmark
+    public Score score() {
+        return board.score();
+    }
+
+    @Benchmark
+    public List<int[]> getChain() {
+        return BoardHelper.getChain(board, chainRow, chainCol);
+    }
+
+    @Benchmark
+    public int collectChain() {
+        return board.collectChain(chainRow, chainCol, buffer);
+    }
+
+    @Benchmark
+    public Board copyBoardState() {
+        BoardHelper.copyBoardState(copy, board);
+        return copy;
+    }
+}
@@ -0,0 +1,475 @@
+package com.gogame.bench;
+
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.OutboundQueue;
+import com.gogame.protocol.Parser;
+import com.gogame.server.GameThreads;
+import com.gogame.server.NioServer;
+import com.gogame.server.ThreadServer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Porównanie obciążeniowe trybów serwera (nio, threads, virtual).
+ * Serwer startuje w tej samej JVM, a jeden wątek klienta NIO otwiera
+ * N gier i rozgrywa w każdej zadaną liczbę ruchów. Raport: liczba wątków
+ * JVM, RSS procesu (z /proc, tylko Linux) i opóźnienie ruchu mierzone od
+ * wysłania MOVE do odebrania MOVE_OK. Klient jest taki sam w każdym
+ * trybie, więc różnice RSS i wątków pochodzą z serwera. Z protokołem
+ * binary klienci po INIT przechodzą na ramki i czytają je bez składania
+ * linii; raport podaje też bajty na ruch w obu kierunkach. Z protokołem mux
+ * (tylko tryb nio) wszystkie gry idą przez dwa gniazda: jedno zakłada gry
+ * (CREATE), drugie do nich dołącza, a linie niosą "@id". Piąty argument
+ * dodaje w trybie mux gniazda widzów, z których każde ogląda wszystkie gry
+ * (@id WATCH) - opóźnienie ruchu pokazuje, ile widzowie kosztują graczy.
+ * Szósty argument to w trybach threads i virtual polityka pełnej kolejki
+ * wyjściowej (drop, coalesce, block); raport podaje wtedy liczniki kolejek.
+ *
+ * Uruchomienie: java -cp target/benchmarks.jar com.gogame.bench.LoadTest nio 10000 20 [text|binary|mux] [widzowie] [polityka]
+ * (tryb virtual wymaga Javy 21, 10k gier to 40k deskryptorów plików)
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "nio";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int moves = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        String protocol = args.length > 3 ? args[3] : "text";
+        boolean binary = protocol.equals("binary");
+        boolean mux = protocol.equals("mux");
+        int watchers = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        OutboundQueue.Policy policy = args.length > 5
+                ? OutboundQueue.Policy.valueOf(args[5].toUpperCase()) : OutboundQueue.Policy.DROP;
+        int size = 19;
+
+        NioServer nio = null;
+        ThreadServer blocking = null;
+        int port;
+        if (mode.equals("nio")) {
+            nio = new NioServer(0, size, Runtime.getRuntime().availableProcessors());
+            nio.start();
+            port = nio.getPort();
+        } else {
+            blocking = new ThreadServer(0, size, GameThreads.factory(mode.equals("virtual")), policy);
+            blocking.start();
+            port = blocking.getPort();
+        }
+
+        LoadClient client = new LoadClient(port, games, moves, size, binary, mux, watchers);
+        long start = System.nanoTime();
+        client.connectAll();
+        long connected = System.nanoTime();
+        client.playAll();
+        long finished = System.nanoTime();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.printf("mode=%s games=%d moves/game=%d protocol=%s watchers=%d%n", mode, games, moves, protocol, watchers);
+        System.out.printf("connect: %.1f s, play: %.1f s, moves/s: %.0f%n",
+                (connected - start) / 1e9, (finished - connected) / 1e9,
+                client.latencies.length / ((finished - connected) / 1e9));
+        System.out.printf("threads: live=%d peak=%d, client sockets: %d%n",
+                threads.getThreadCount(), threads.getPeakThreadCount(), mux ? 2 + watchers : 2 * games);
+        System.out.printf("rss: %s%n", rss());
+        long[] latency = client.latencies;
+        Arrays.sort(latency);
+        System.out.printf("move latency us: p50=%d p99=%d max=%d%n",
+                latency[latency.length / 2] / 1000, latency[latency.length * 99 / 100] / 1000,
+                latency[latency.length - 1] / 1000);
+        System.out.printf("wire bytes/move: in=%.1f out=%.1f (with handshake)%n",
+                (double) client.bytesIn / latency.length, (double) client.bytesOut / latency.length);
+        if (blocking != null) {
+            OutboundQueue.Metrics queues = OutboundQueue.metrics();
+            System.out.printf("outbound queues (%s): max depth=%d avg wait us=%.1f blocked ms=%d drops=%d coalesced=%d%n",
+                    policy.name().toLowerCase(), queues.maxDepth(), queues.averageWaitMicros(),
+                    queues.blockedMillis(), queues.drops(), queues.coalesced());
+        }
+
+        client.close();
+        if (nio != null)
+            nio.stop();
+        if (blocking != null)
+            blocking.stop();
+    }
+
+    private static String rss() {
+        try {
+            String rss = "?";
+            String peak = "?";
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:"))
+                    rss = line.substring(6).trim();
+                if (line.startsWith("VmHWM:"))
+                    peak = line.substring(6).trim();
+            }
+            return rss + " (peak " + peak + ")";
+        } catch (IOException e) {
+            return "unavailable";
+        }
+    }
+
+    /**
+     * Klient obciążeniowy: para połączeń na grę (albo dwa gniazda
+     * multipleksowane na wszystkie gry), gracze odpowiadają ruchem na każde
+     * YOUR_TURN, aż rozegrają zadaną liczbę ruchów.
+     */
+    static class LoadClient {
+        final Selector selector;
+        final int port;
+        final int games;
+        final int moves;
+        final int size;
+        final boolean binary;
+        final boolean mux;
+        final Seat[] seats;
+        Link host;    // mux: zaklada gry i gra w nich czarnymi
+        Link guest;   // mux: dolacza do gier jako bialy
+        final Link[] viewers;   // mux: kazdy oglada wszystkie gry
+        final long[] latencies;
+        int recorded = 0;
+        int remainingGames;
+        long bytesIn = 0;
+        long bytesOut = 0;
+        final Command command = new Command();   // wspolny - klient ma jeden watek
+
+        LoadClient(int port, int games, int moves, int size, boolean binary, boolean mux, int watchers) throws IOException {
+            this.selector = Selector.open();
+            this.port = port;
+            this.games = games;
+            this.moves = moves;
+            this.size = size;
+            this.binary = binary;
+            this.mux = mux;
+            this.viewers = new Link[watchers];
+            this.seats = new Seat[2 * games];
+            this.latencies = new long[games * moves];
+            this.remainingGames = games;
+        }
+
+        /**
+         * Łączy graczy po kolei. Każdy od razu wysyła JOIN, a poczekalnia
+         * serwera dobiera pary - kolor gracz poznaje z INIT.
+         */
+        void connectAll() throws IOException {
+            if (mux) {
+                connectMultiplexed();
+                return;
+            }
+            byte[] join = ("JOIN " + size + "\n").getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < 2 * games; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port));
+                bytesOut += channel.write(ByteBuffer.wrap(join));
+                channel.configureBlocking(false);
+                seats[i] = new Seat(channel);
+                channel.register(selector, SelectionKey.OP_READ, seats[i]);
+            }
+        }
+
+        /**
+         * Dwa gniazda na wszystkie gry: host wysyła CREATE dla każdej gry,
+         * gość dołącza do każdej z CREATED (Link.onLine).
+         */
+        void connectMultiplexed() throws IOException {
+            host = new Link(SocketChannel.open(new InetSocketAddress("localhost", port)), true);
+            guest = new Link(SocketChannel.open(new InetSocketAddress("localhost", port)), false);
+            for (int i = 0; i < viewers.length; i++)
+                viewers[i] = new Link(SocketChannel.open(new InetSocketAddress("localhost", port)), false);
+            byte[] create = ("CREATE " + size + "\n").getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < games; i++)
+                host.send(null, create);
+            host.flush();
+        }
+
+        void playAll() throws IOException {
+            while (remainingGames > 0) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Object attachment = key.attachment();
+                    if (attachment instanceof Link) {
+                        Link link = (Link) attachment;
+                        if (key.isReadable())
+                            link.onReadable();
+                        if (key.isValid() && key.isWritable())
+                            link.flush();
+                    } else {
+                        ((Seat) attachment).onReadable();
+                    }
+                }
+                selector.selectedKeys().clear();
+                if (mux) {
+                    // linie wszystkich gier z tej rundy jednym zapisem na gniazdo
+                    host.flush();
+                    guest.flush();
+                    for (Link viewer : viewers)
+                        viewer.flush();
+                }
+            }
+        }
+
+        void close() throws IOException {
+            if (mux) {
+                host.channel.close();
+                guest.channel.close();
+                for (Link viewer : viewers)
+                    viewer.channel.close();
+            } else {
+                for (Seat seat : seats)
+                    seat.channel.close();
+            }
+            selector.close();
+        }
+
+        /**
+         * Gniazdo multipleksowane: rozdziela linie "@id ..." między miejsca
+         * w grach i zbiera wysyłane linie w buforze - przez jedno gniazdo
+         * idzie wiele gier, więc częściowy zapis jest tu normalny.
+         */
+        class Link {
+            final SocketChannel channel;
+            final boolean creator;
+            final SelectionKey key;
+            final Map<Integer, Seat> seats = new HashMap<>();
+            final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+            ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+
+            Link(SocketChannel channel, boolean creator) throws IOException {
+                this.channel = channel;
+                this.creator = creator;
+                channel.configureBlocking(false);
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+            }
+
+            void onReadable() throws IOException {
+                int read = channel.read(in);
+                if (read < 0)
+                    throw new IOException("Server closed the connection");
+                bytesIn += read;
+                if (!creator && seats.isEmpty()) {
+                    in.clear();   // widz - tylko odbiera
+                    return;
+                }
+                in.flip();
+                int start = in.position();
+                for (int i = start; i < in.limit(); i++) {
+                    if (in.get(i) != '\n')
+                        continue;
+                    onLine(start, i);
+                    start = i + 1;
+                }
+                in.position(start);
+                in.compact();
+            }
+
+            /**
+             * Linia "@id komenda" z bufora [start, end).
+             */
+            private void onLine(int start, int end) throws IOException {
+                if (in.get(start) != '@')
+                    return;   // MESSAGE Waiting... przed pierwszym CREATE
+                int at = start + 1;
+                int id = 0;
+                while (in.get(at) != ' ')
+                    id = id * 10 + (in.get(at++) - '0');
+                at++;
+                if (!Parser.parse(in.array(), at, end - at, command)) {
+                    if (creator && in.get(at) == 'C')   // CREATED - gosc dolacza
+                        join(id);
+                    return;
+                }
+                Seat seat = seats.get(id);
+                if (seat != null)
+                    seat.onLine();
+            }
+
+            private void join(int id) {
+                seats.put(id, new Seat(this, id));
+                Seat white = new Seat(guest, id);
+                guest.seats.put(id, white);
+                guest.send(white.tag, "JOIN\n".getBytes(StandardCharsets.US_ASCII));
+                for (Link viewer : viewers)
+                    viewer.send(white.tag, "WATCH\n".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            void send(byte[] tag, byte[] bytes) {
+                int needed = (tag != null ? tag.length : 0) + bytes.length;
+                if (out.remaining() < needed) {
+                    ByteBuffer bigger = ByteBuffer.allocate(2 * out.capacity() + needed);
+                    out.flip();
+                    bigger.put(out);
+                    out = bigger;
+                }
+                if (tag != null)
+                    out.put(tag);
+                out.put(bytes);
+            }
+
+            void flush() throws IOException {
+                if (out.position() == 0)
+                    return;
+                out.flip();
+                bytesOut += channel.write(out);
+                out.compact();
+                key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Gracz jednej gry. Ruchy kolejno wypełniają planszę wierszami,
+         * na przemian czarny i biały, więc każdy jest legalny.
+         */
+        class Seat {
+            final SocketChannel channel;
+            final Link link;   // mux: gniazdo wspolne z innymi grami
+            final byte[] tag;  // mux: przedrostek linii z id gry
+            boolean black;
+            boolean offered;  // po BINARY gracz wysyla ramki
+            boolean frames;   // po BINARY_OK serwer wysyla ramki
+            final ByteBuffer in = ByteBuffer.allocate(4096);
+            long sentAt;
+            int played;
+
+            Seat(SocketChannel channel) {
+                this.channel = channel;
+                this.link = null;
+                this.tag = null;
+            }
+
+            Seat(Link link, int id) {
+                this.channel = link.channel;
+                this.link = link;
+                this.tag = ("@" + id + " ").getBytes(StandardCharsets.US_ASCII);
+            }
+
+            void onReadable() throws IOException {
+                int read = channel.read(in);
+                if (read < 0)
+                    throw new IOException("Server closed the connection");
+                bytesIn += read;
+                in.flip();
+                while (frames ? nextFrame() : nextLine())
+                    ;
+                in.compact();
+            }
+
+            /**
+             * Obsługuje ramkę z bufora prosto po kodzie komendy.
+             *
+             * @return false gdy ramka nie doszła jeszcze cała
+             */
+            private boolean nextFrame() throws IOException {
+                int start = in.position();
+                if (in.remaining() < 1)
+                    return false;
+                int length = in.get(start) & 0xFF;
+                int header = 1;
+                if (length >= 0x80) {
+                    if (in.remaining() < 2)
+                        return false;
+                    length = ((length & 0x7F) << 8) | (in.get(start + 1) & 0xFF);
+                    header = 2;
+                }
+                if (in.remaining() < header + length)
+                    return false;
+                byte op = in.get(start + header);
+                in.position(start + header + length);
+                if (op == Binary.YOUR_TURN)
+                    onTurn();
+                else if (op == Binary.MOVE_OK)
+                    onMoveOk();
+                return true;
+            }
+
+            /**
+             * Obsługuje linię tekstową z bufora, rozkładaną w miejscu.
+             *
+             * @return false gdy linia nie doszła jeszcze cała
+             */
+            private boolean nextLine() throws IOException {
+                int start = in.position();
+                for (int i = start; i < in.limit(); i++) {
+                    if (in.get(i) != '\n')
+                        continue;
+                    in.position(i + 1);
+                    if (Parser.parse(in.array(), start, i - start, command))
+                        onLine();
+                    else if (isAccepted(start, i - start))
+                        frames = true;   // BINARY_OK nie jest komenda gry
+                    return true;
+                }
+                return false;
+            }
+
+            private boolean isAccepted(int start, int length) {
+                if (length != Binary.ACCEPTED.length())
+                    return false;
+                for (int i = 0; i < length; i++) {
+                    if (in.get(start + i) != Binary.ACCEPTED.charAt(i))
+                        return false;
+                }
+                return true;
+            }
+
+            void onLine() throws IOException {
+                switch (command.op) {
+                    case Binary.INIT:
+                        black = command.flag;
+                        if (binary && command.text().endsWith(Binary.OFFER)) {
+                            send((Binary.OFFER + "\n").getBytes(StandardCharsets.US_ASCII));
+                            offered = true;
+                        }
+                        break;
+                    case Binary.YOUR_TURN:
+                        onTurn();
+                        break;
+                    case Binary.MOVE_OK:
+                        onMoveOk();
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            void onTurn() throws IOException {
+                if (played >= moves / 2 + (black ? moves % 2 : 0))
+                    return;
+                int move = 2 * played + (black ? 0 : 1);
+                sentAt = System.nanoTime();
+                String command = "MOVE " + move / size + " " + move % size;
+                // po BINARY serwer czyta juz tylko ramki
+                send(offered ? Binary.encode(command) : (command + "\n").getBytes(StandardCharsets.US_ASCII));
+            }
+
+            void onMoveOk() {
+                if (sentAt == 0)
+                    return;
+                latencies[recorded++] = System.nanoTime() - sentAt;
+                sentAt = 0;
+                played++;
+                int last = moves / 2 + (black ? moves % 2 : 0);
+                // gra skonczona, gdy bialy zrobil ostatni ruch (albo czarny przy nieparzystej liczbie)
+                if (played == last && black == (moves % 2 == 1))
+                    remainingGames--;
+            }
+
+            private void send(byte[] bytes) throws IOException {
+                if (link != null)
+                    link.send(tag, bytes);
+                else
+                    bytesOut += channel.write(ByteBuffer.wrap(bytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.gogame.bench;
+
+import com.gogame.Board;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Skalowanie silnika z liczbą rdzeni: każdy wątek ma własną planszę
+ * i rozgrywa na niej całe losowe partie. Plansze nie dzielą zmiennego
+ * stanu, więc przepustowość na wątek w singleThread i allThreads
+ * powinna być podobna (łączna rośnie liniowo).
+ * Inną liczbę wątków można wymusić opcją -t N.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBenchmark {
+
+    @Param({"19"})
+    public int size;
+
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        // kazdy watek ma wlasny generator - rozne partie, brak wspoldzielenia
+        random = new SplittableRandom(Thread.currentThread().getId());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long singleThread() {
+        return playout();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long allThreads() {
+        return playout();
+    }
+
+    /**
+     * Rozgrywa losową partię do dwóch pasów z rzędu; gracz pasuje, gdy
+     * kilka losowych prób nie trafi w legalne pole poza własnym okiem.
+     */
+    private long playout() {
+        Board board = new Board(size);
+        int points = size * size;
+        boolean black = true;
+        int passes = 0;
+        for (int move = 0; move < 3 * points && passes < 2; move++) {
+            boolean played = false;
+            for (int attempt = 0; attempt < 16 && !played; attempt++) {
+                int p = random.nextInt(points);
+                int row = p / size;
+                int col = p % size;
+                played = !isOwnEye(board, row, col, black) && board.play(row, col, black);
+            }
+            passes = played ? 0 : passes + 1;
+            black = !black;
+        }
+        return board.positionKey() + board.captures(true);
+    }
+
+    private static boolean isOwnEye(Board board, int row, int col, boolean black) {
+        int own = black ? 2 : 1;
+        return isOwnOrEdge(board.getColor(row - 1, col), own) && isOwnOrEdge(board.getColor(row + 1, col), own)
+                && isOwnOrEdge(board.getColor(row, col - 1), own) && isOwnOrEdge(board.getColor(row, col + 1), own);
+    }
+
+    private static boolean isOwnOrEdge(int color, int own) {
+        return color == own || color == -1;
+    }
+}
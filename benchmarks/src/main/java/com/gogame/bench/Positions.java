@@ -0,0 +1,108 @@
+package com.gogame.bench;
+
+import com.gogame.Board;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Pozycje testowe dla benchmarków. Partia jest rozgrywana losowymi,
+ * legalnymi ruchami ze stałego seeda, więc każde uruchomienie mierzy
+ * tę samą pozycję. Gracz nie zasypuje własnych oczu, dzięki czemu
+ * w końcówce zostają żywe grupy, terytoria i pojedyncze punkty ko.
+ */
+public final class Positions {
+
+    /** Liczba ruchów środka gry. */
+    public static final int MID_GAME = 120;
+    /** Liczba ruchów końcówki. */
+    public static final int END_GAME = 260;
+
+    private static final long SEED = 20240601L;
+
+    private Positions() {
+    }
+
+    /**
+     * Tworzy pozycję po danej liczbie ruchów.
+     *
+     * @param size rozmiar planszy
+     * @param moves liczba ruchów (pasy się nie liczą)
+     * @return plansza z rozegraną partią
+     */
+    public static Board play(int size, int moves) {
+        Board board = new Board(size);
+        Random random = new Random(SEED);
+        boolean black = true;
+        int played = 0;
+        int passes = 0;
+        while (played < moves && passes < 2) {
+            if (randomMove(board, random, black)) {
+                played++;
+                passes = 0;
+            } else {
+                passes++;
+            }
+            black = !black;
+        }
+        board.copyToLast();
+        return board;
+    }
+
+    /**
+     * Zwraca pozycję po nazwie fazy partii.
+     *
+     * @param phase "midgame" albo "endgame"
+     * @param size rozmiar planszy
+     * @return plansza z rozegraną partią
+     */
+    public static Board of(String phase, int size) {
+        int moves = "midgame".equals(phase) ? MID_GAME : END_GAME;
+        // mniejsza plansza - proporcjonalnie mniej ruchow
+        return play(size, moves * size * size / (19 * 19));
+    }
+
+    /**
+     * Zbiera legalne ruchy gracza jako pary (row, col).
+     *
+     * @param board plansza
+     * @param black true dla czarnego
+     * @return tablica [row0, col0, row1, col1, ...]
+     */
+    public static int[] legalMoves(Board board, boolean black) {
+        int size = board.getSize();
+        int[] moves = new int[2 * size * size];
+        int count = 0;
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (board.isLegal(r, c, black) && !isOwnEye(board, r, c, black)) {
+                    moves[count++] = r;
+                    moves[count++] = c;
+                }
+            }
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    private static boolean randomMove(Board board, Random random, boolean black) {
+        int[] moves = legalMoves(board, black);
+        if (moves.length == 0)
+            return false;
+        int i = 2 * random.nextInt(moves.length / 2);
+        return board.play(moves[i], moves[i + 1], black);
+    }
+
+    /**
+     * Pole otoczone wyłącznie własnymi kamieniami (lub krawędzią).
+     */
+    private static boolean isOwnEye(Board board, int row, int col, boolean black) {
+        int own = black ? 2 : 1;
+        int[][] around = {{row - 1, col}, {row + 1, col}, {row, col - 1}, {row, col + 1}};
+        for (int[] q : around) {
+            int color = board.getColor(q[0], q[1]);
+            if (color != own && color != -1)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+package com.gogame.bench;
+
+import com.gogame.protocol.Command;
+import com.gogame.protocol.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Przepustowość parsowania linii protokołu: dawny łańcuch startsWith
+ * i split z parseInt kontra Parser z tablicą kodów, z linii String i prosto
+ * z bajtów bufora. Mieszanka linii jak w typowej grze - ruchy, MOVE_OK
+ * ze zbiciem, YOUR_TURN i MESSAGE.
+ *
+ * Uruchomienie z profilem alokacji: java -jar target/benchmarks.jar ProtocolBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    private static final String[] LINES = {
+            "MOVE 10 10", "MOVE_OK 10 10 true", "YOUR_TURN", "MESSAGE Opponent's turn...",
+            "MOVE 3 16", "MOVE_OK 3 16 false 3 15", "DEAD 4 5", "PASS"
+    };
+
+    private byte[][] bytes;
+    private final Command command = new Command();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bytes = new byte[LINES.length][];
+        for (int i = 0; i < LINES.length; i++)
+            bytes[i] = LINES[i].getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private int nextLine() {
+        next = (next + 1) & 7;
+        return next;
+    }
+
+    /**
+     * Dawne parsowanie: startsWith po kolei, split(" ") i parseInt.
+     */
+    @Benchmark
+    public int legacySplit() {
+        String line = LINES[nextLine()];
+        if (line.equals("PASS") || line.equals("YOUR_TURN"))
+            return 1;
+        if (line.startsWith("MOVE_OK")) {
+            String[] parts = line.split(" ");
+            int sum = Integer.parseInt(parts[1]) + Integer.parseInt(parts[2]) + (Boolean.parseBoolean(parts[3]) ? 1 : 0);
+            for (int i = 4; i < parts.length; i++)
+                sum += Integer.parseInt(parts[i]);
+            return sum;
+        }
+        if (line.startsWith("MOVE") || line.startsWith("DEAD")) {
+            String[] parts = line.split(" ");
+            return Integer.parseInt(parts[1]) + Integer.parseInt(parts[2]);
+        }
+        if (line.startsWith("MESSAGE"))
+            return line.substring(8).length();
+        return 0;
+    }
+
+    @Benchmark
+    public int parserString() {
+        Parser.parse(LINES[nextLine()], command);
+        return command.op + command.count;
+    }
+
+    @Benchmark
+    public int parserBytes() {
+        byte[] line = bytes[nextLine()];
+        Parser.parse(line, 0, line.length, command);
+        return command.op + command.count;
+    }
+}
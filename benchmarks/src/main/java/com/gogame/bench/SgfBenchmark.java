@@ -0,0 +1,67 @@
+package com.gogame.bench;
+
+import com.gogame.controller.SgfReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Przepustowość importu SGF: kolekcja 1000 gier 19x19 po 200 ruchów
+ * z komentarzami i wariantami, czytana z bufora i rozgrywana na planszy
+ * z regułami. Wynik to kolekcje na sekundę - razy 1000 daje gry na sekundę.
+ *
+ * Uruchomienie: java -jar target/benchmarks.jar SgfBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SgfBenchmark {
+
+    private static final int GAMES = 1000;
+    private static final int MOVES = 200;
+
+    private ByteBuffer collection;
+    private final SgfReader reader = new SgfReader();
+    private long moves;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder sgf = new StringBuilder();
+        for (int g = 0; g < GAMES; g++) {
+            sgf.append("(;GM[1]FF[4]SZ[19]PB[Czarny ").append(g).append("]PW[Biały]RE[B+R]");
+            for (int m = 0; m < MOVES; m++) {
+                sgf.append(';').append(m % 2 == 0 ? 'B' : 'W').append('[')
+                        .append((char) ('a' + random.nextInt(19))).append((char) ('a' + random.nextInt(19))).append(']');
+                if (m % 50 == 0)
+                    sgf.append("C[komentarz do ruchu ").append(m).append(" \\] z nawiasem]");
+            }
+            sgf.append("(;B[aa];W[bb])(;B[cc]))\n");
+        }
+        collection = ByteBuffer.wrap(sgf.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public long readCollection() throws IOException {
+        collection.rewind();
+        reader.read(collection, game -> moves += game.moves());
+        return moves;
+    }
+}
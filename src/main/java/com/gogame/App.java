@@ -11,11 +11,7 @@ public class App
 
     // GRASP: Controller
     // App steruje przebiegiem gry (tury, pętle, zakończenie gry),
-    // ale nie zawiera logiki planszy
-    public static int pointsBlack = 0;
-    public static int pointsWhite = 0;
-    public static int finalPointsBlack;
-    public static int finalPointsWhite;
+    // ale nie zawiera logiki planszy; jeńców liczy każda plansza osobno
     // GRASP: Pure Fabrication
     /**
      * Metoda pomocnicza do walidacji wejścia użytkownika,
@@ -25,6 +21,17 @@ public class App
      * @return true jeśli poprawne, false w przeciwnym razie
      */
     public static boolean validInput(String input) {
+        return validInput(input, Board.DEFAULT_SIZE);
+    }
+
+    /**
+     * Walidacja wejścia dla planszy danego rozmiaru.
+     *
+     * @param input wejście użytkownika
+     * @param size długość boku planszy
+     * @return true jeśli poprawne, false w przeciwnym razie
+     */
+    public static boolean validInput(String input, int size) {
 
 
         if(input.equals("PASS"))
@@ -33,7 +40,7 @@ public class App
             return true;
         if (input.length() < 2 || input.length() > 3) return false;
         char col = input.charAt(0);
-        if (col < 'A' || col > 'S')
+        if (col < 'A' || col >= 'A' + size)
             return false;
 
 
@@ -45,7 +52,7 @@ public class App
             return false; // not a number
         }
 
-        if (row < 1 || row > 19) return false;
+        if (row < 1 || row > size) return false;
 
         return true;
     }
@@ -85,19 +92,39 @@ public class App
 
 
 
+
+    /**
+     * @param arg rozmiar planszy z linii poleceń
+     * @return rozmiar z 2..MAX_SIZE albo 0 dla złej wartości
+     */
+    private static int size(String arg) {
+        try {
+            int size = Integer.parseInt(arg);
+            return size >= 2 && size <= Board.MAX_SIZE ? size : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
     /**
      * Główna pętla gry.
      *
-     * @param args argumenty linii poleceń
+     * @param args argumenty linii poleceń, opcjonalnie rozmiar planszy (9, 13, 19)
      * @throws Exception w przypadku błędu I/O
      */
     public static void main( String[] args ) throws Exception {
+        int size = args.length > 0 ? size(args[0]) : Board.DEFAULT_SIZE;
+        if (size == 0) {
+            System.err.println("Invalid board size: " + args[0] + " (allowed: 2.." + Board.MAX_SIZE + ")");
+            System.err.println("Usage: App [size]");
+            return;
+        }
         // GRASP: Creator
         // App tworzy Board, bo nim zarządza i go używa
-        Board board = new Board();
-        Board board1 = new Board();
-        board.updateBreaths();
+        Board board = new Board(size);
+        Board board1 = new Board(size);
+        int finalPointsBlack = 0;
+        int finalPointsWhite = 0;
         boolean keepGoing = true;
 
         // GRASP: Controller
@@ -137,7 +164,7 @@ public class App
                 move = cin.nextLine().trim().toUpperCase();
                 // GRASP: Pure Fabrication
                 // Walidacja wejścia wydzielona poza Board
-                if(validInput(move))
+                if(validInput(move, size))
                     isInputCorrect = true;
                 else
                     System.out.println("Incorrect input, try again");
@@ -152,8 +179,8 @@ public class App
                         row = Integer.parseInt(rowStr) - 1;
                         // GRASP: Information Expert
                         // Board zna stan planszy i decyduje o poprawności ruchu
-                        // (checkMove)
-                        boolean canIMove = board.checkMove(row, column, turn);
+                        // (play wykonuje ruch razem ze zbiciami)
+                        boolean canIMove = board.play(row, column, turn);
                         if (!canIMove)
                             System.out.println("Incorrect input, try again");
                         if (canIMove)
@@ -172,13 +199,10 @@ public class App
                 row = Integer.parseInt(rowStr) - 1;
 
                 // GRASP: Information Expert
-                // Board modyfikuje swój stan po ruchu
-                // (move, updateBreaths, checkBoard)
+                // Board zmodyfikował już swój stan w play()
+                // (kamień, zbicia i ko)
 
                 //turn true - black
-                board.copyToLast();
-                board.checkBoard();
-
                 if(turn)
                     blackPass = false;
                 if(!turn)
@@ -213,10 +237,11 @@ public class App
             board.show();
             if(!keepGoing) {
                 if (!move.equals("SURRENDER")) {
-                    //kopiuje kolory board do board1
-                    for (int i = 0; i < 19; i++) {
-                        for (int j = 0; j < 19; j++) {
-                            board1.positions[i][j].color = board.positions[i][j].color;
+                    //kopiuje kolory board do board1 (nowa plansza - zdjete martwe liczy od zera)
+                    board1 = new Board(size);
+                    for (int i = 0; i < size; i++) {
+                        for (int j = 0; j < size; j++) {
+                            board1.positions[i][j].setColor(board.positions[i][j].color);
                         }
                     }
                     System.out.println("Both players passed their turns, the game is over!");
@@ -225,8 +250,6 @@ public class App
                     System.out.println("When black types in ,,DONE'', it will be white's turn to flag groups as dead until white types ,,DONE''.");
                     System.out.println("PLEASE DO NOT MARK DEAD GROUPS OUTSIDE OF TERRITORIES");
                     System.out.println("At any point both players can type ,,PLAYON'' to start the game again.");
-                    finalPointsBlack = pointsBlack;
-                    finalPointsWhite = pointsWhite;
                     String flag = "";
                     String answer = "";
                     int correctAnswer = 0;
@@ -240,12 +263,12 @@ public class App
                         board1.show();
                         System.out.print("Your input : ");
                         flag = cin.nextLine().trim().toUpperCase();
-                        if (validInput(flag)) {
+                        if (validInput(flag, size)) {
                             flagColumnChar = flag.charAt(0);
                             flagColumn = flagColumnChar - 'A';
                             flagRowStr = flag.substring(1);
                             flagRow = Integer.parseInt(flagRowStr) - 1;
-                            if (board1.positions[flagRow][flagColumn].color != 0) {
+                            if (board1.getColor(flagRow, flagColumn) != 0) {
                                 int outrow = flagRow + 1;
                                 System.out.print("The flag from black is " + flagColumnChar + outrow + ", now its white's turn to agree with Y or disagee with N, ");
                                 turn = false;
@@ -287,12 +310,12 @@ public class App
                             board1.show();
                             System.out.print("Your input : ");
                             flag = cin.nextLine().trim().toUpperCase();
-                            if (validInput(flag)) {
+                            if (validInput(flag, size)) {
                                 flagColumnChar = flag.charAt(0);
                                 flagColumn = flagColumnChar - 'A';
                                 flagRowStr = flag.substring(1);
                                 flagRow = Integer.parseInt(flagRowStr) - 1;
-                                if (board1.positions[flagRow][flagColumn].color != 0) {
+                                if (board1.getColor(flagRow, flagColumn) != 0) {
                                     int outrow = flagRow + 1;
                                     System.out.print("The flag from white is " + flagColumnChar + outrow + ", now its black's turn to agree with Y or disagee with N, ");
                                     turn = true;
@@ -354,17 +377,10 @@ public class App
         {
 
 
-            board1.calculateTerritories();
-            for(int i = 0; i < 19; i++)
-            {
-                for(int j = 0; j<19; j++)
-                {
-                    if(board1.territoryCache[i][j] == 1)
-                        finalPointsWhite++;
-                    if(board1.territoryCache[i][j] == 2)
-                        finalPointsBlack++;
-                }
-            }
+            // jency z gry, martwe zdjete na board1 i terytorium
+            Score score = board1.score();
+            finalPointsBlack = board.captures(true) + score.territoryScore(true);
+            finalPointsWhite = board.captures(false) + score.territoryScore(false);
             System.out.println("Final scoring is as such : ");
             System.out.println("White's points - " + finalPointsWhite);
             System.out.println("Black's points - " + finalPointsBlack);
@@ -0,0 +1,394 @@
+package com.gogame;
+
+/**
+ * Bitowa reprezentacja planszy Go 19x19.
+ * Każdy kolor to zbiór bitów upakowany w tablicę long[] (pole r, c ma indeks
+ * r * 19 + c). Sąsiedztwo, oddechy, zbicia i terytoria liczone są
+ * przesunięciami i maskami na kilku słowach zamiast pole po polu.
+ * Udostępnia te same operacje co Board (checkMove, updateBreaths, checkBoard,
+ * calculateTerritories), żeby obie implementacje można było porównać.
+ *
+ * Serwer używa Board: jego przyrostowe łańcuchy robią ruch z undo szybciej
+ * niż checkMove tutaj (BitBoardBenchmark / BoardBenchmark, 19x19: ok.
+ * 0.2-0.3 us wobec 0.4-0.8 us), a Board obsługuje też inne rozmiary, undo
+ * i superko. BitBoard zostaje jako niezależna implementacja do porównań.
+ */
+public class BitBoard {
+    static final int SIZE = 19;
+    static final int POINTS = SIZE * SIZE;
+    static final int WORDS = (POINTS + 63) >>> 6;
+
+    // maski krawedzi - pola na planszy, bez pierwszej i bez ostatniej kolumny
+    private static final long[] ON_BOARD = new long[WORDS];
+    private static final long[] NOT_FIRST_COLUMN = new long[WORDS];
+    private static final long[] NOT_LAST_COLUMN = new long[WORDS];
+
+    static {
+        for (int p = 0; p < POINTS; p++) {
+            ON_BOARD[p >>> 6] |= 1L << p;
+            if (p % SIZE != 0)
+                NOT_FIRST_COLUMN[p >>> 6] |= 1L << p;
+            if (p % SIZE != SIZE - 1)
+                NOT_LAST_COLUMN[p >>> 6] |= 1L << p;
+        }
+    }
+
+    private final long[] black = new long[WORDS];
+    private final long[] white = new long[WORDS];
+    private final long[] empty = new long[WORDS];
+    private final long[] blackWithBreath = new long[WORDS];
+    private final long[] whiteWithBreath = new long[WORDS];
+    private final long[] blackTerritory = new long[WORDS];
+    private final long[] whiteTerritory = new long[WORDS];
+
+    // bufory robocze, zeby operacje nie alokowaly
+    private final long[] seed = new long[WORDS];
+    private final long[] group = new long[WORDS];
+    private final long[] next = new long[WORDS];
+    private final long[] around = new long[WORDS];
+    private final long[] remaining = new long[WORDS];
+
+    private int koPoint = -1;
+    private boolean koBlack;       // kolor, ktoremu nie wolno teraz zagrac w koPoint
+    private int capturesBlack = 0; // kamienie bialego zbite przez czarnego
+    private int capturesWhite = 0; // kamienie czarnego zbite przez bialego
+
+    public BitBoard() {
+        updateBreaths();
+    }
+
+    /**
+     * Tworzy planszę bitową z kolorów planszy Board.
+     *
+     * @param board plansza źródłowa
+     * @return nowa plansza bitowa
+     */
+    public static BitBoard fromBoard(Board board) {
+        BitBoard bits = new BitBoard();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int color = board.positions[i][j].color;
+                if (color == 1)
+                    set(bits.white, i * SIZE + j);
+                if (color == 2)
+                    set(bits.black, i * SIZE + j);
+            }
+        }
+        bits.updateBreaths();
+        return bits;
+    }
+
+    /**
+     * Pobiera kolor kamienia na danej pozycji.
+     *
+     * @param row wiersz
+     * @param col kolumna
+     * @return kolor (0-puste, 1-biały, 2-czarny)
+     */
+    public int getColor(int row, int col) {
+        int p = row * SIZE + col;
+        if (get(black, p))
+            return 2;
+        if (get(white, p))
+            return 1;
+        return 0;
+    }
+
+    /**
+     * Liczy oddechy pola jako liczbę pustych sąsiadów.
+     *
+     * @param row wiersz
+     * @param col kolumna
+     * @return liczba oddechów
+     */
+    public int breaths(int row, int col) {
+        int p = row * SIZE + col;
+        int breath = 0;
+        if (row > 0 && get(empty, p - SIZE)) breath++;
+        if (row < SIZE - 1 && get(empty, p + SIZE)) breath++;
+        if (col > 0 && get(empty, p - 1)) breath++;
+        if (col < SIZE - 1 && get(empty, p + 1)) breath++;
+        return breath;
+    }
+
+    /**
+     * Aktualizuje zbiór pustych pól oraz zbiory kamieni,
+     * które mają choć jeden oddech.
+     */
+    public void updateBreaths() {
+        for (int i = 0; i < WORDS; i++)
+            empty[i] = ON_BOARD[i] & ~(black[i] | white[i]);
+        neighbours(empty, around);
+        for (int i = 0; i < WORDS; i++) {
+            blackWithBreath[i] = black[i] & around[i];
+            whiteWithBreath[i] = white[i] & around[i];
+        }
+    }
+
+    /**
+     * Sprawdza czy ruch jest legalny i jeśli tak, wykonuje go
+     * razem ze zbiciem łańcuchów przeciwnika bez oddechów.
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @param turn true dla czarnego, false dla białego
+     * @return true jeśli ruch legalny
+     */
+    public boolean checkMove(int row, int column, boolean turn) {
+        int p = row * SIZE + column;
+        if (!get(empty, p) || p == koPoint && turn == koBlack)
+            return false;
+
+        long[] own = turn ? black : white;
+        long[] enemy = turn ? white : black;
+        set(own, p);
+        clear(empty, p);
+
+        // sasiedzi p nalezacy do przeciwnika - kazdy ich lancuch bez oddechu ginie
+        clearAll(seed);
+        set(seed, p);
+        neighbours(seed, remaining);
+        and(remaining, enemy);
+        int captured = 0;
+        int capturedPoint = -1;
+        while (!isEmpty(remaining)) {
+            int q = lowestBit(remaining);
+            clearAll(seed);
+            set(seed, q);
+            fill(seed, enemy, group);
+            andNot(remaining, group);
+            if (!hasBreath(group)) {
+                captured += count(group);
+                capturedPoint = q;
+                andNot(enemy, group);
+                or(empty, group);
+            }
+        }
+
+        clearAll(seed);
+        set(seed, p);
+        fill(seed, own, group);
+        if (captured == 0 && !hasBreath(group)) {
+            clear(own, p);
+            set(empty, p);
+            return false;
+        }
+
+        if (turn)
+            capturesBlack += captured;
+        else
+            capturesWhite += captured;
+
+        koPoint = (captured == 1 && count(group) == 1 && breaths(row, column) == 1) ? capturedPoint : -1;
+        koBlack = !turn;
+        updateBreaths();
+        return true;
+    }
+
+    /**
+     * Pas gracza - zakaz odbicia ko wygasa, bo przeciwnik mógł już je zasypać.
+     */
+    public void pass() {
+        koPoint = -1;
+    }
+
+    /**
+     * Kopiuje cały stan innej planszy bitowej, bez alokacji.
+     *
+     * @param other plansza źródłowa
+     */
+    public void copyFrom(BitBoard other) {
+        System.arraycopy(other.black, 0, black, 0, WORDS);
+        System.arraycopy(other.white, 0, white, 0, WORDS);
+        System.arraycopy(other.empty, 0, empty, 0, WORDS);
+        System.arraycopy(other.blackWithBreath, 0, blackWithBreath, 0, WORDS);
+        System.arraycopy(other.whiteWithBreath, 0, whiteWithBreath, 0, WORDS);
+        koPoint = other.koPoint;
+        koBlack = other.koBlack;
+        capturesBlack = other.capturesBlack;
+        capturesWhite = other.capturesWhite;
+    }
+
+    /**
+     * Sprawdza całą planszę i usuwa martwe łańcuchy.
+     * Żywe kamienie to te połączone z kamieniem mającym oddech - zbiór
+     * rozlewa się równolegle po wszystkich łańcuchach naraz.
+     */
+    public void checkBoard() {
+        updateBreaths();
+        fill(blackWithBreath, black, group);
+        for (int i = 0; i < WORDS; i++)
+            next[i] = black[i] & ~group[i];
+        capturesWhite += count(next);
+        andNot(black, next);
+
+        fill(whiteWithBreath, white, group);
+        for (int i = 0; i < WORDS; i++)
+            next[i] = white[i] & ~group[i];
+        capturesBlack += count(next);
+        andNot(white, next);
+        updateBreaths();
+    }
+
+    /**
+     * Oblicza terytoria obu graczy - puste obszary stykające się
+     * tylko z kamieniami jednego koloru.
+     */
+    public void calculateTerritories() {
+        updateBreaths();
+        clearAll(blackTerritory);
+        clearAll(whiteTerritory);
+        System.arraycopy(empty, 0, remaining, 0, WORDS);
+        while (!isEmpty(remaining)) {
+            clearAll(seed);
+            set(seed, lowestBit(remaining));
+            fill(seed, empty, group);
+            andNot(remaining, group);
+
+            neighbours(group, around);
+            boolean touchesBlack = intersects(around, black);
+            boolean touchesWhite = intersects(around, white);
+            if (touchesWhite && !touchesBlack)
+                or(whiteTerritory, group);
+            else if (touchesBlack && !touchesWhite)
+                or(blackTerritory, group);
+        }
+    }
+
+    /**
+     * Pobiera właściciela terytorium po calculateTerritories.
+     *
+     * @param row wiersz
+     * @param col kolumna
+     * @return 1 - białego, 2 - czarnego, 3 - niczyje, 0 - pole zajęte
+     */
+    public int getTerritoryOwner(int row, int col) {
+        int p = row * SIZE + col;
+        if (get(whiteTerritory, p))
+            return 1;
+        if (get(blackTerritory, p))
+            return 2;
+        return get(empty, p) ? 3 : 0;
+    }
+
+    /**
+     * @param black true dla czarnego, false dla białego
+     * @return liczba pól terytorium gracza
+     */
+    public int territory(boolean black) {
+        return count(black ? blackTerritory : whiteTerritory);
+    }
+
+    /**
+     * @param black true dla czarnego, false dla białego
+     * @return liczba kamieni przeciwnika zbitych przez gracza
+     */
+    public int captures(boolean black) {
+        return black ? capturesBlack : capturesWhite;
+    }
+
+    private boolean hasBreath(long[] stones) {
+        neighbours(stones, around);
+        return intersects(around, empty);
+    }
+
+    /**
+     * Rozlewa seed wewnątrz maski mask, aż zbiór przestanie rosnąć.
+     */
+    private void fill(long[] seed, long[] mask, long[] out) {
+        for (int i = 0; i < WORDS; i++)
+            out[i] = seed[i] & mask[i];
+        while (true) {
+            neighbours(out, next);
+            boolean grown = false;
+            for (int i = 0; i < WORDS; i++) {
+                long word = (out[i] | next[i]) & mask[i];
+                if (word != out[i]) {
+                    out[i] = word;
+                    grown = true;
+                }
+            }
+            if (!grown)
+                return;
+        }
+    }
+
+    /**
+     * Zbiór pól sąsiadujących z in: przesunięcia o 1 (z maskami kolumn)
+     * i o 19 (wiersz wyżej i niżej).
+     */
+    private static void neighbours(long[] in, long[] out) {
+        for (int i = 0; i < WORDS; i++) {
+            long lower = i > 0 ? in[i - 1] : 0L;
+            long higher = i < WORDS - 1 ? in[i + 1] : 0L;
+            long east = ((in[i] << 1) | (lower >>> 63)) & NOT_FIRST_COLUMN[i];
+            long west = ((in[i] >>> 1) | (higher << 63)) & NOT_LAST_COLUMN[i];
+            long south = (in[i] << SIZE) | (lower >>> (64 - SIZE));
+            long north = (in[i] >>> SIZE) | (higher << (64 - SIZE));
+            out[i] = (east | west | south | north) & ON_BOARD[i];
+        }
+    }
+
+    private static boolean get(long[] set, int p) {
+        return (set[p >>> 6] & (1L << p)) != 0;
+    }
+
+    private static void set(long[] set, int p) {
+        set[p >>> 6] |= 1L << p;
+    }
+
+    private static void clear(long[] set, int p) {
+        set[p >>> 6] &= ~(1L << p);
+    }
+
+    private static void clearAll(long[] set) {
+        for (int i = 0; i < WORDS; i++)
+            set[i] = 0L;
+    }
+
+    private static void and(long[] a, long[] b) {
+        for (int i = 0; i < WORDS; i++)
+            a[i] &= b[i];
+    }
+
+    private static void andNot(long[] a, long[] b) {
+        for (int i = 0; i < WORDS; i++)
+            a[i] &= ~b[i];
+    }
+
+    private static void or(long[] a, long[] b) {
+        for (int i = 0; i < WORDS; i++)
+            a[i] |= b[i];
+    }
+
+    private static boolean intersects(long[] a, long[] b) {
+        for (int i = 0; i < WORDS; i++) {
+            if ((a[i] & b[i]) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isEmpty(long[] set) {
+        for (int i = 0; i < WORDS; i++) {
+            if (set[i] != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static int count(long[] set) {
+        int count = 0;
+        for (int i = 0; i < WORDS; i++)
+            count += Long.bitCount(set[i]);
+        return count;
+    }
+
+    private static int lowestBit(long[] set) {
+        for (int i = 0; i < WORDS; i++) {
+            if (set[i] != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(set[i]);
+        }
+        return -1;
+    }
+}
@@ -1,130 +1,218 @@
 package com.gogame;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
 /**
- * Reprezentuje planszę do gry Go 19x19.
+ * Reprezentuje planszę do gry Go (domyślnie 19x19, także 9x9 i 13x13).
  * Przechowuje stan gry i zarządza logiką ruchów.
+ *
+ * Łańcuchy kamieni są utrzymywane przyrostowo: każdy kamień zna korzeń
+ * swojego łańcucha, kamienie łańcucha tworzą listę cykliczną, a korzeń
+ * przechowuje liczbę kamieni i pseudo-oddechów. Ruch dotyka więc tylko
+ * łańcuchów sąsiadujących z postawionym kamieniem.
+ * Tablica positions jest lustrem stanu dla starszego kodu. Zmianę przez
+ * Cell.setColor plansza odnotowuje i odbudowuje stan przy następnym
+ * wywołaniu starszej metody; po zapisie prosto do pola color należy
+ * wywołać updateBreaths().
+ *
+ * Pozycja ma przyrostowo liczony 64-bitowy klucz Zobrista, a zbiór kluczy
+ * wszystkich dotychczasowych pozycji pozwala sprawdzić superko w O(1).
+ *
+ * Ruchy (play) i usunięcia łańcuchów (removeGroup, a także removeChain,
+ * finalRemoveChain i checkBoard) zapisują się w dzienniku zmian, więc
+ * undo() cofa je kosztem proporcjonalnym do zmienionych pól.
+ *
+ * Stan silnika leży w jednowymiarowych tablicach planszy otoczonej ramką
+ * (size + 2) x (size + 2). Pola ramki mają kolor BORDER i wspólny korzeń-atrapę, więc
+ * sąsiedzi pola to po prostu p + offsets[d], bez sprawdzania granic.
+ *
+ * Plansza nie dzieli zmiennego stanu z innymi planszami: jeńców liczy
+ * sama (captures), a tablice statyczne są po inicjalizacji tylko czytane.
+ * Różne plansze mogą więc pracować równolegle w osobnych wątkach; jedna
+ * plansza nie jest synchronizowana i należy do jednego wątku naraz.
  */
 
 public class Board {
     public Cell[][] positions; //0 puste 1 biale 2 czarne
-    public boolean[][] visited = new boolean[19][19];
-    public int[][] lastPositions = new int[19][19];
-    public int[][] whiteVisited = new int[19][19];
-    public int[][] blackVisited = new int[19][19];
-    public int[][] territoryCache = new int[19][19]; //0 - nie obliczone, 1 - bialego, 2 - czarnego, 3 - niczyje
+    public boolean[][] visited;
+    public int[][] lastPositions;
+    public int[][] territoryCache; //0 - nie obliczone, 1 - bialego, 2 - czarnego, 3 - niczyje
+
+    public static final int DEFAULT_SIZE = 19;
+    public static final int MAX_SIZE = 25;
+    // plansza z ramka: pole (r, c) ma indeks (r + 1) * stride + c + 1, a pola
+    // ramki maja kolor BORDER, wiec przejscie do sasiada nie sprawdza granic
+    private static final int MAX_AREA = (MAX_SIZE + 2) * (MAX_SIZE + 2);
+    private static final byte BORDER = 3;
+    // korzen-atrapa dla pol ramki - zmiany jego oddechow nic nie znacza
+    private static final int FRAME = 0;
+    // klucze Zobrista: ZOBRIST[color * MAX_AREA + p], dla pustego pola 0
+    private static final long[] ZOBRIST = new long[3 * MAX_AREA];
+    // dla kazdego rozmiaru: przesuniecia do sasiadow (gora, dol, lewo, prawo)
+    // i indeksy pol planszy bez ramki, wspolne dla wszystkich plansz
+    private static final int[][] OFFSETS = new int[MAX_SIZE + 1][];
+    private static final int[][] POINTS = new int[MAX_SIZE + 1][];
+
+    static {
+        // staly seed - klucze pozycji sa takie same w kazdej JVM
+        SplittableRandom random = new SplittableRandom(0x601D5EEDL);
+        for (int i = MAX_AREA; i < 3 * MAX_AREA; i++) {
+            ZOBRIST[i] = random.nextLong();
+        }
+        for (int size = 1; size <= MAX_SIZE; size++) {
+            int stride = size + 2;
+            OFFSETS[size] = new int[]{-stride, stride, -1, 1};
+            POINTS[size] = new int[size * size];
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    POINTS[size][r * size + c] = (r + 1) * stride + c + 1;
+                }
+            }
+        }
+    }
+
+    private final int size;
+    private final int stride;
+    private final int[] offsets;
+    private final int[] points;
+    private final Cell[] cells;         // te same obiekty co w positions, na ramce atrapa
+    private final byte[] color;
+    private final int[] chain;          // korzen lancucha kamienia
+    private final int[] nextStone;      // nastepny kamien lancucha (lista cykliczna)
+    private final int[] stones;         // liczba kamieni, wazne dla korzenia
+    private final int[] liberties;      // pseudo-oddechy, wazne dla korzenia
+    private final int[] stack;
+    // jadro przechodzenia regionow: znaczniki pokolen i bufor pol
+    private final int[] mark;
+    private final int[] region;
+    private int generation = 0;
+    private int regionBorder = 0;
+    private boolean dirty = false;   // positions zmienione przez Cell.setColor
+    private final PositionHistory history = new PositionHistory();
+    private long hash = 0L;
+    long lastHash = 0L; // klucz pozycji z lastPositions
+    private int capturesBlack = 0; // kamienie bialego zbite lub zdjete jako martwe przez czarnego
+    private int capturesWhite = 0;
+
+    // dziennik zmian dla undo, wpis: [zdjete pola..., liczba zdjetych, pole ruchu, rodzaj + kolor]
+    private static final int MOVE = 0;
+    private static final int REMOVAL = 4;
+    private int[] log = new int[64];
+    private int logTop = 0;
 
     public Board() {
-        this.positions = new Cell[19][19];
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Tworzy pustą planszę danego rozmiaru. Wszystkie tablice silnika mają
+     * rozmiar planszy, więc mała plansza jest proporcjonalnie tańsza.
+     *
+     * @param size długość boku planszy (np. 9, 13, 19)
+     * @throws IllegalArgumentException dla rozmiaru spoza 1..MAX_SIZE
+     */
+    public Board(int size) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Board size must be between 1 and " + MAX_SIZE + ": " + size);
+        this.size = size;
+        this.stride = size + 2;
+        this.offsets = OFFSETS[size];
+        this.points = POINTS[size];
+        int area = stride * stride;
+        this.cells = new Cell[area];
+        this.color = new byte[area];
+        this.chain = new int[area];
+        this.nextStone = new int[area];
+        this.stones = new int[area];
+        this.liberties = new int[area];
+        this.stack = new int[area];
+        this.mark = new int[area];
+        this.region = new int[area];
+        this.visited = new boolean[size][size];
+        this.lastPositions = new int[size][size];
+        this.territoryCache = new int[size][size];
+
+        this.positions = new Cell[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 // GRASP: Creator
                 // Board tworzy obiekty Cell, bo je przechowuje i nimi zarządza
                 positions[i][j] = new Cell();
+                positions[i][j].board = this;
+                cells[index(i, j)] = positions[i][j];
+            }
+        }
+        Cell frame = new Cell();
+        for (int p = 0; p < area; p++) {
+            if (cells[p] == null) {
+                cells[p] = frame;
+                color[p] = BORDER;
+                chain[p] = FRAME;
             }
         }
+        rebuild();
+    }
+
+    /**
+     * @return długość boku planszy
+     */
+    public int getSize() {
+        return size;
+    }
+
+    private int index(int row, int column) {
+        return (row + 1) * stride + column + 1;
+    }
+
+    /**
+     * Pobiera kolor pola.
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @return kolor (0-puste, 1-biały, 2-czarny, -1-poza planszą)
+     */
+    public int getColor(int row, int column) {
+        if (row < 0 || row >= size || column < 0 || column >= size)
+            return -1;
+        return cells[index(row, column)].color;
     }
 
     /**
      * Kopiuje aktualny stan planszy do lastPositions.
      */
     public void copyToLast() {
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
+        sync();
+        lastHash = hash;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 lastPositions[i][j] = positions[i][j].color;
             }
         }
     }
 
     /**
-     * Usuwa łańcuch kamieni i dodaje punkty podczas liczenia końcowego.
+     * Usuwa łańcuch kamieni podczas liczenia końcowego i dolicza jeńców
+     * przeciwnikowi. Usunięcie można cofnąć przez undo(), jak removeGroup.
      *
      * @param row wiersz początkowy
      * @param column kolumna początkowa
      */
     public void finalRemoveChain(int row, int column) {
-        int color = positions[row][column].color;
-        if (color == 0 || visited[row][column])
-            return;
-
-        visited[row][column] = true;
-
-        if (color == 1)
-            App.finalPointsBlack++;
-        if (color == 2)
-            App.finalPointsWhite++;
-
-        positions[row][column].color = 0;
-
-        int nextRow;
-        int nextColumn;
-
-        nextRow = row + 1;
-        if (nextRow < 19) {
-            if (!visited[nextRow][column] && positions[nextRow][column].color == color)
-                removeChain(nextRow, column);
-        }
-
-        nextRow = row - 1;
-        if (nextRow >= 0) {
-            if (!visited[nextRow][column] && positions[nextRow][column].color == color)
-                removeChain(nextRow, column);
-        }
-
-        nextColumn = column + 1;
-        if (nextColumn < 19) {
-            if (!visited[row][nextColumn] && positions[row][nextColumn].color == color)
-                removeChain(row, nextColumn);
-        }
-
-        nextColumn = column - 1;
-        if (nextColumn >= 0) {
-            if (!visited[row][nextColumn] && positions[row][nextColumn].color == color)
-                removeChain(row, nextColumn);
-        }
+        sync();
+        removeLogged(index(row, column));
     }
 
     /**
      * Aktualizuje liczbę oddechów dla wszystkich pól na planszy.
+     * Odbudowuje też łańcuchy na podstawie positions, więc należy ją
+     * wywołać po ręcznej zmianie positions.
      */
     public void updateBreaths() {
         // GRASP: Information Expert
         // Board zna układ planszy i sąsiedztwa pól,
         // więc to on liczy oddechy
-
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
-                int breath = 0;
-
-                if (j > 0) {
-                    if (positions[i][j - 1].color == 0)  //lewo
-                    {
-                        breath++;
-                    }
-                }
-                if (j < 18) {
-                    if (positions[i][j + 1].color == 0)  //prawo
-                    {
-                        breath++;
-                    }
-                }
-                if (i > 0) {
-                    if (positions[i - 1][j].color == 0)  //gora
-                    {
-                        breath++;
-                    }
-                }
-                if (i < 18) {
-                    if (positions[i + 1][j].color == 0)  // dol
-                    {
-                        breath++;
-                    }
-                }
-                // GRASP: Information Expert
-                // Board aktualizuje stan Cell, bo jest właścicielem danych
-                positions[i][j].breaths = breath;
-
-            }
-        }
+        rebuild();
     }
 
     /**
@@ -135,59 +223,22 @@ public class Board {
      */
     public void checkChains(int row, int column)  //color true - black, false = white. jak chainalive to git, jak 0 to clearuje
     {
-        int color = positions[row][column].color;
-        if (isChainAlive(row, column, color) == 0) {
-            visited = new boolean[19][19];
+        sync();
+        int p = index(row, column);
+        if (color[p] != 0 && liberties[chain[p]] == 0)
             removeChain(row, column);
-        }
     }
 
     /**
-     * Usuwa łańcuch kamieni i dodaje punkty.
+     * Usuwa łańcuch kamieni i dolicza jeńców przeciwnikowi. Usunięcie można
+     * cofnąć przez undo(), jak removeGroup.
      *
      * @param row wiersz
      * @param column kolumna
      */
     public void removeChain(int row, int column) {
-        int color = positions[row][column].color;
-        if (color == 0 || visited[row][column])
-            return;
-
-        visited[row][column] = true;
-
-        if (color == 1)
-            App.pointsBlack++;
-        if (color == 2)
-            App.pointsWhite++;
-
-        positions[row][column].color = 0;
-
-        int nextRow;
-        int nextColumn;
-
-        nextRow = row + 1;
-        if (nextRow < 19) {
-            if (!visited[nextRow][column] && positions[nextRow][column].color == color)
-                removeChain(nextRow, column);
-        }
-
-        nextRow = row - 1;
-        if (nextRow >= 0) {
-            if (!visited[nextRow][column] && positions[nextRow][column].color == color)
-                removeChain(nextRow, column);
-        }
-
-        nextColumn = column + 1;
-        if (nextColumn < 19) {
-            if (!visited[row][nextColumn] && positions[row][nextColumn].color == color)
-                removeChain(row, nextColumn);
-        }
-
-        nextColumn = column - 1;
-        if (nextColumn >= 0) {
-            if (!visited[row][nextColumn] && positions[row][nextColumn].color == color)
-                removeChain(row, nextColumn);
-        }
+        sync();
+        removeLogged(index(row, column));
     }
 
     /**
@@ -199,60 +250,35 @@ public class Board {
      * @return 1 jeśli żywy, 0 jeśli martwy
      */
     public int isChainAlive(int row, int column, int color) {
-        visited[row][column] = true;
-        if (positions[row][column].breaths > 0) //najwazniejszy fragment! jesli jakikolwiek w lancuchu zywy to caly lancuch zywy
+        sync();
+        int p = index(row, column);
+        if (this.color[p] == color && color != 0)
+            return liberties[chain[p]] > 0 ? 1 : 0;
+
+        //pole startowe innego koloru - tak jak wczesniej liczy sie jego oddech i sasiednie lancuchy koloru color
+        if (cells[p].breaths > 0)
             return 1;
-        int nextRow;
-        int nextColumn;
-        nextRow = row + 1;
-        if (nextRow < 19) {
-            if (!visited[nextRow][column] && positions[nextRow][column].color == color) {
-                if (isChainAlive(nextRow, column, color) == 1)
-                    return 1;
-            }
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] == color && color != 0 && liberties[chain[q]] > 0)
+                return 1;
         }
-        nextRow = row - 1;
-        if (nextRow >= 0) {
-            if (!visited[nextRow][column] && positions[nextRow][column].color == color) {
-                if (isChainAlive(nextRow, column, color) == 1)
-                    return 1;
-            }
-        }
-        nextColumn = column + 1;
-        if (nextColumn < 19) {
-            if (!visited[row][nextColumn] && positions[row][nextColumn].color == color) {
-                if (isChainAlive(row, nextColumn, color) == 1)
-                    return 1;
-            }
-        }
-        nextColumn = column - 1;
-        if (nextColumn >= 0) {
-            if (!visited[row][nextColumn] && positions[row][nextColumn].color == color) {
-                if (isChainAlive(row, nextColumn, color) == 1)
-                    return 1;
-            }
-        }
-
         return 0;
     }
 
     /**
-     * Sprawdza całą planszę i usuwa martwe łańcuchy.
+     * Sprawdza całą planszę i usuwa martwe łańcuchy. Każdy usunięty
+     * łańcuch to osobny wpis dla undo().
      */
     public void checkBoard() {
         // GRASP: Information Expert
         // Board sprawdza stan całej planszy i decyduje,
-        // które pionki są martwe (breaths == 0)czytl
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
-                if (positions[i][j].breaths == 0) {
-                    checkChains(i, j);
-                }
-
-            }
+        // które pionki są martwe (brak oddechów łańcucha)
+        sync();
+        for (int p : points) {
+            if (color[p] != 0 && chain[p] == p && liberties[p] == 0)
+                removeLogged(p);
         }
-
-
     }
 
     /**
@@ -261,18 +287,23 @@ public class Board {
      * @return true jeśli Ko, false w przeciwnym razie
      */
     public boolean isKo() {
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
-                if (positions[i][j].color != lastPositions[i][j])
-                    return false;
-            }
+        sync();
+        return hash == lastHash;
+    }
 
-        }
-        return true;
+    /**
+     * Zwraca klucz Zobrista aktualnej pozycji. Klucz nie zależy od kolejności
+     * ruchów ani od JVM, więc nadaje się na klucz cache'y i indeksów.
+     *
+     * @return 64-bitowy klucz pozycji
+     */
+    public long positionKey() {
+        return hash;
     }
 
     /**
-     * Sprawdza czy ruch jest legalny.
+     * Sprawdza czy ruch jest legalny i jeśli tak, wykonuje go
+     * (razem ze zbiciem kamieni przeciwnika).
      *
      * @param row wiersz
      * @param column kolumna
@@ -281,74 +312,461 @@ public class Board {
      */
     public boolean checkMove(int row, int column, boolean turn) //true = black
     {
-        //w tej funkcji zrobie troche dirty ruch, jak wiem ze miejsce jest jak do samobojstwa ale wiem ze zabije inny lancuch to dam sobie oddechy :)
-        if (positions[row][column].color != 0)
-            return false;
+        sync();
+        return play(row, column, turn);
+    }
 
+    /**
+     * Wykonuje ruch, jeśli jest legalny. Zbija łańcuchy przeciwnika,
+     * które straciły ostatni oddech, odrzuca samobójstwo i powtórzenie
+     * wcześniejszej pozycji (superko).
+     * Dotyka wyłącznie łańcuchów sąsiadujących z postawionym kamieniem.
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @param black true dla czarnego, false dla białego
+     * @return true jeśli ruch został wykonany
+     */
+    public boolean play(int row, int column, boolean black) {
+        int p = index(row, column);
+        if (!isLegal(p, black ? 2 : 1))
+            return false;
 
-        //sprawdze czy jak postawie to najpierw czy zabijam siebie, potem czy pionek obok,, ismovecorrect moze robic move od teraz
-        int color;
-        if (turn) {
-            positions[row][column].color = 2;
-            color = 2;
-        } else {
-            positions[row][column].color = 1;
-            color = 1;
-        }
+        int color = black ? 2 : 1;
         int enemyColor = 3 - color;
-        updateBreaths();
+        int start = logTop;
+        placeStone(p, color);
+
+        int captured = 0;
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] == enemyColor && liberties[chain[q]] == 0) {
+                captured += captureChain(chain[q]);
+            }
+        }
+        addCaptures(enemyColor, captured);
 
-        //sprawdzam ko bo latwo
+        push(logTop - start);
+        push(p);
+        push(MOVE + color);
+        history.add(hash);
+        return true;
+    }
+
+    /**
+     * Sprawdza czy ruch byłby legalny, nie zmieniając planszy.
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @param black true dla czarnego, false dla białego
+     * @return true jeśli ruch legalny
+     */
+    public boolean isLegal(int row, int column, boolean black) {
+        return isLegal(index(row, column), black ? 2 : 1);
+    }
 
-        if (isKo())
+    /**
+     * Cofa ostatni ruch lub usunięcie łańcucha: przywraca zbite kamienie,
+     * punkty za zbicia i historię pozycji.
+     *
+     * @return false jeśli nie ma czego cofać
+     */
+    public boolean undo() {
+        if (logTop == 0)
             return false;
 
+        int tag = log[--logTop];
+        int p = log[--logTop];
+        int count = log[--logTop];
+        logTop -= count;
+        int color = tag & 3;
 
-        visited = new boolean[19][19];
-        if (isChainAlive(row, column, positions[row][column].color) == 1) {
-            updateBreaths();
+        if (tag >= REMOVAL) {
+            restoreStones(logTop, count, color);
+            addCaptures(color, -count);
             return true;
-        }//sprawdzilem czy zabijam siebie, jak nie to git i robie ruch. teraz sprawdze czy zabilem jakis obok
-        else {
-            if (row > 0) {
-                visited = new boolean[19][19];
-                if (positions[row - 1][column].color != color && isChainAlive(row - 1, column, enemyColor) == 0) {
-                    updateBreaths();
-                    positions[row][column].breaths = 4;
-                    return true;
-                }
-            }
-            if (row < 18) {
-                visited = new boolean[19][19];
-                if (positions[row + 1][column].color != color && isChainAlive(row + 1, column, enemyColor) == 0) {
-                    updateBreaths();
-                    positions[row][column].breaths = 4;
-                    return true;
-                }
+        }
+
+        history.remove(hash);
+        unlabelChain(chain[p]);
+        setColor(p, 0);
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] != 0 && chain[q] >= 0)
+                liberties[chain[q]]++;
+        }
+        restoreStones(logTop, count, 3 - color);
+        addCaptures(3 - color, -count);
+
+        //lancuch ruchu mogl sie rozpasc na kilka czesci
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] == color && chain[q] < 0)
+                labelChain(q);
+        }
+        return true;
+    }
+
+    /**
+     * @return true jeśli dziennik zawiera zmianę do cofnięcia
+     */
+    public boolean canUndo() {
+        return logTop > 0;
+    }
+
+    /**
+     * Usuwa z planszy cały łańcuch uznany za martwy. Zdjęte kamienie
+     * liczą się przeciwnikowi jako jeńcy w captures() i score().
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @return liczba usuniętych kamieni
+     */
+    public int removeGroup(int row, int column) {
+        return removeLogged(index(row, column));
+    }
+
+    /**
+     * Usuwa łańcuch z kamieniem p, dolicza jeńców i zapisuje usunięcie
+     * w dzienniku zmian.
+     *
+     * @return liczba usuniętych kamieni, 0 dla pustego pola
+     */
+    private int removeLogged(int p) {
+        int color = this.color[p];
+        if (color == 0)
+            return 0;
+        int removed = captureChain(chain[p]);
+        addCaptures(color, removed);
+        push(removed);
+        push(p);
+        push(REMOVAL + color);
+        return removed;
+    }
+
+    /**
+     * @param black true dla czarnego, false dla białego
+     * @return liczba kamieni przeciwnika zbitych przez gracza
+     *         (razem z martwymi zdjętymi przez removeGroup)
+     */
+    public int captures(boolean black) {
+        return black ? capturesBlack : capturesWhite;
+    }
+
+    /**
+     * Dolicza jeńców za zdjęte kamienie koloru removedColor.
+     */
+    private void addCaptures(int removedColor, int count) {
+        if (removedColor == 1)
+            capturesBlack += count;
+        else
+            capturesWhite += count;
+    }
+
+    /**
+     * Zwraca liczbę pseudo-oddechów łańcucha (każdy styk kamienia z pustym
+     * polem liczony osobno). Zero oznacza łańcuch bez oddechów.
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @return liczba pseudo-oddechów lub 0 dla pustego pola
+     */
+    public int chainLiberties(int row, int column) {
+        int p = index(row, column);
+        return color[p] == 0 ? 0 : liberties[chain[p]];
+    }
+
+    /**
+     * Zwraca liczbę kamieni w łańcuchu.
+     *
+     * @param row wiersz
+     * @param column kolumna
+     * @return liczba kamieni lub 0 dla pustego pola
+     */
+    public int chainSize(int row, int column) {
+        int p = index(row, column);
+        return color[p] == 0 ? 0 : stones[chain[p]];
+    }
+
+    /**
+     * Sprawdza, czy kamień postawiony na p będzie miał oddech:
+     * wolne pole obok, przyjazny łańcuch z innym oddechem
+     * albo łańcuch przeciwnika, którego ostatnim oddechem jest p.
+     */
+    private boolean hasLibertyAfter(int p, int color) {
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] == BORDER)
+                continue;
+            if (this.color[q] == 0)
+                return true;
+            int root = chain[q];
+            int contacts = contacts(p, root);
+            if (this.color[q] == color ? liberties[root] > contacts : liberties[root] == contacts)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isLegal(int p, int color) {
+        return this.color[p] == 0 && hasLibertyAfter(p, color) && !history.contains(hashAfter(p, color));
+    }
+
+    /**
+     * Liczy klucz pozycji po postawieniu kamienia na p, razem ze zbiciami,
+     * bez zmieniania planszy.
+     */
+    private long hashAfter(int p, int color) {
+        long next = hash ^ ZOBRIST[color * MAX_AREA + p];
+        int enemyColor = 3 - color;
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] != enemyColor)
+                continue;
+            int root = chain[q];
+            if (liberties[root] != contacts(p, root) || seenRoot(p, d, root))
+                continue;
+            int s = root;
+            do {
+                next ^= ZOBRIST[enemyColor * MAX_AREA + s];
+                s = nextStone[s];
+            } while (s != root);
+        }
+        return next;
+    }
+
+    /**
+     * Sprawdza czy łańcuch root był już sąsiadem p w kierunku mniejszym niż d.
+     */
+    private boolean seenRoot(int p, int d, int root) {
+        for (int e = 0; e < d; e++) {
+            int q = p + offsets[e];
+            if (color[q] != 0 && chain[q] == root)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Liczy styki pola p z łańcuchem o korzeniu root.
+     */
+    private int contacts(int p, int root) {
+        int count = 0;
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (color[q] != 0 && chain[q] == root)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Stawia kamień i łączy go z sąsiednimi łańcuchami tego samego koloru.
+     */
+    private void placeStone(int p, int color) {
+        setColor(p, color);
+        chain[p] = p;
+        nextStone[p] = p;
+        stones[p] = 1;
+
+        int libs = 0;
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] == 0)
+                libs++;
+            else
+                liberties[chain[q]]--;
+        }
+        liberties[p] = libs;
+
+        for (int d = 0; d < 4; d++) {
+            int q = p + offsets[d];
+            if (this.color[q] == color && chain[q] != chain[p])
+                merge(chain[p], chain[q]);
+        }
+    }
+
+    /**
+     * Łączy dwa łańcuchy - kamienie mniejszego dostają korzeń większego.
+     */
+    private void merge(int a, int b) {
+        if (stones[a] < stones[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int s = b;
+        do {
+            chain[s] = a;
+            s = nextStone[s];
+        } while (s != b);
+
+        int t = nextStone[a];
+        nextStone[a] = nextStone[b];
+        nextStone[b] = t;
+        stones[a] += stones[b];
+        liberties[a] += liberties[b];
+    }
+
+    /**
+     * Zdejmuje cały łańcuch i oddaje oddechy sąsiednim łańcuchom.
+     *
+     * @return liczba zdjętych kamieni
+     */
+    private int captureChain(int root) {
+        int count = stones[root];
+        int s = root;
+        do {
+            setColor(s, 0);
+            push(s);
+            s = nextStone[s];
+        } while (s != root);
+
+        s = root;
+        do {
+            for (int d = 0; d < 4; d++) {
+                int q = s + offsets[d];
+                if (color[q] != 0)
+                    liberties[chain[q]]++;
             }
-            if (column > 0) {
-                visited = new boolean[19][19];
-                if (positions[row][column - 1].color != color && isChainAlive(row, column - 1, enemyColor) == 0) {
-                    updateBreaths();
-                    positions[row][column].breaths = 4;
-                    return true;
-                }
+            s = nextStone[s];
+        } while (s != root);
+        return count;
+    }
+
+    /**
+     * Zmienia kolor pola i aktualizuje oddechy sąsiednich komórek w positions.
+     */
+    private void setColor(int p, int color) {
+        int delta = (this.color[p] == 0 ? 0 : 1) - (color == 0 ? 0 : 1);
+        hash ^= ZOBRIST[this.color[p] * MAX_AREA + p] ^ ZOBRIST[color * MAX_AREA + p];
+        this.color[p] = (byte) color;
+        cells[p].color = color;
+        if (delta != 0) {
+            for (int d = 0; d < 4; d++)
+                cells[p + offsets[d]].breaths += delta;
+        }
+    }
+
+    /**
+     * Odbudowuje stan silnika (łańcuchy i oddechy) z tablicy positions, jeśli
+     * od ostatniej odbudowy zmieniono ją przez Cell.setColor.
+     */
+    private void sync() {
+        if (dirty)
+            rebuild();
+    }
+
+    /**
+     * Odnotowuje zmianę positions poza silnikiem - wywoływane przez Cell.
+     */
+    void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Odbudowuje łańcuchy, pseudo-oddechy i oddechy komórek z positions.
+     */
+    private void rebuild() {
+        dirty = false;
+        hash = 0L;
+        for (int p : points) {
+            color[p] = (byte) cells[p].color;
+            chain[p] = -1;
+            hash ^= ZOBRIST[color[p] * MAX_AREA + p];
+        }
+        //reczna zmiana pozycji zaczyna nowa historie
+        history.clear();
+        history.add(hash);
+        logTop = 0;
+
+        for (int p : points) {
+            int breath = 0;
+            for (int d = 0; d < 4; d++) {
+                int q = p + offsets[d];
+                if (color[q] == 0)
+                    breath++;
             }
-            if (column < 18) {
-                visited = new boolean[19][19];
-                if (positions[row][column + 1].color != color && isChainAlive(row, column + 1, enemyColor) == 0) {
-                    updateBreaths();
-                    positions[row][column].breaths = 4;
-                    return true;
+            cells[p].breaths = breath;
+        }
+
+        for (int p : points) {
+            if (color[p] != 0 && chain[p] < 0)
+                labelChain(p);
+        }
+    }
+
+    /**
+     * Tworzy łańcuch o korzeniu p ze wszystkich połączonych kamieni
+     * bez etykiety (chain == -1) i liczy jego pseudo-oddechy.
+     */
+    private void labelChain(int p) {
+        int c = color[p];
+        int count = 0;
+        int libs = 0;
+        int top = 0;
+        int last = p;
+        chain[p] = p;
+        nextStone[p] = p;
+        stack[top++] = p;
+        while (top > 0) {
+            int s = stack[--top];
+            count++;
+            libs += cells[s].breaths;
+            for (int d = 0; d < 4; d++) {
+                int q = s + offsets[d];
+                if (color[q] == c && chain[q] < 0) {
+                    chain[q] = p;
+                    nextStone[q] = nextStone[last];
+                    nextStone[last] = q;
+                    last = q;
+                    stack[top++] = q;
                 }
             }
-        }//sprawdzilem wszsytkich sasiadow pola, jak jakiegos z nich zabijam to zrobilem sobie miejsce i jest okej, a jak nie to false
+        }
+        stones[p] = count;
+        liberties[p] = libs;
+    }
 
-        {
-            positions[row][column].color = 0;
-            updateBreaths();
-            return false;
+    /**
+     * Zdejmuje etykiety ze wszystkich kamieni łańcucha.
+     */
+    private void unlabelChain(int root) {
+        int s = root;
+        do {
+            int next = nextStone[s];
+            chain[s] = -1;
+            s = next;
+        } while (s != root);
+    }
+
+    /**
+     * Przywraca kamienie zapisane w dzienniku od pozycji from
+     * i odbiera oddechy sąsiednim łańcuchom.
+     */
+    private void restoreStones(int from, int count, int color) {
+        for (int i = from; i < from + count; i++) {
+            setColor(log[i], color);
+            chain[log[i]] = -1;
         }
+        for (int i = from; i < from + count; i++) {
+            int s = log[i];
+            for (int d = 0; d < 4; d++) {
+                int q = s + offsets[d];
+                if (this.color[q] != 0 && chain[q] >= 0)
+                    liberties[chain[q]]--;
+            }
+        }
+        for (int i = from; i < from + count; i++) {
+            if (chain[log[i]] < 0)
+                labelChain(log[i]);
+        }
+    }
+
+    private void push(int value) {
+        if (logTop == log.length)
+            log = Arrays.copyOf(log, 2 * log.length);
+        log[logTop++] = value;
     }
 
     /**
@@ -360,15 +778,18 @@ public class Board {
         // nie jest częścią logiki domenowej GO
 
         int row = 1;
-        System.out.println("   A B C D E F G H I J K L M N O P Q R S");
-        for (int i = 0; i < 19; i++) {
+        System.out.print("  ");
+        for (int j = 0; j < size; j++)
+            System.out.print(" " + (char) ('A' + j));
+        System.out.println();
+        for (int i = 0; i < size; i++) {
             System.out.print(row);
             if (row < 10) {
                 System.out.print(" ");
             }
             System.out.print(" ");
             row++;
-            for (int j = 0; j < 19; j++) {
+            for (int j = 0; j < size; j++) {
                 if (positions[i][j].color == 0)
                     System.out.print("+");
                 if (positions[i][j].color == 1)
@@ -382,129 +803,176 @@ public class Board {
     }
 
     /**
-     * Sprawdza rekurencyjnie czy pole należy do terytorium białego.
-     *
-     * @param row wiersz
-     * @param col kolumna
-     * @return true jeśli białego terytorium
+     * Oblicza terytoria obu graczy na planszy.
+     * Każdy pusty obszar jest przechodzony raz, razem z kolorami,
+     * z którymi się styka. Pola już obliczone w territoryCache są pomijane.
      */
-    private boolean checkWhiteTerritoryRecursive(int row, int col) {
-        // Jeśli pole jest poza planszą git
-        if (row < 0 || row >= 19 || col < 0 || col >= 19) {
-            return true;
-        }
-
-        // Jeśli już odwiedziliśmy to pole, zwracamy true
-        if (whiteVisited[row][col] == 1) {
-            return true;
+    public void calculateTerritories() {
+        sync();
+        nextGeneration();
+        for (int p : points) {
+            if (color[p] != 0 || territoryCache[p / stride - 1][p % stride - 1] != 0)
+                continue;
+
+            int count = collectRegion(p);
+            int result = regionOwner();
+            for (int i = 0; i < count; i++) {
+                int q = region[i];
+                territoryCache[q / stride - 1][q % stride - 1] = result;
+            }
         }
+    }
 
-
-        int color = positions[row][col].color;
-
-        if (color == 1) {
-            return true;
-        }
-        if (color == 2) {
-            return false;
+    /**
+     * Liczy wynik w jednym liniowym przejściu: każdy pusty obszar jest
+     * etykietowany raz razem z kolorami, z którymi się styka, kamienie są
+     * liczone po drodze. Całe territoryCache jest przy tym nadpisywane
+     * (0 dla kamieni), więc po zdjęciu martwych kamieni wystarczy wywołać
+     * score() ponownie.
+     *
+     * @return terytoria, jeńcy i kamienie obu graczy
+     */
+    public Score score() {
+        sync();
+        nextGeneration();
+        int territoryBlack = 0;
+        int territoryWhite = 0;
+        int stonesBlack = 0;
+        int stonesWhite = 0;
+        for (int p : points) {
+            int c = color[p];
+            if (c != 0) {
+                if (c == 2)
+                    stonesBlack++;
+                else
+                    stonesWhite++;
+                territoryCache[p / stride - 1][p % stride - 1] = 0;
+                continue;
+            }
+            if (mark[p] == generation)
+                continue;
+
+            int count = collectRegion(p);
+            int result = regionOwner();
+            if (result == 2)
+                territoryBlack += count;
+            else if (result == 1)
+                territoryWhite += count;
+            for (int i = 0; i < count; i++) {
+                int q = region[i];
+                territoryCache[q / stride - 1][q % stride - 1] = result;
+            }
         }
-        whiteVisited[row][col] = 1;
-
-        boolean up = checkWhiteTerritoryRecursive(row - 1, col);
-        boolean down = checkWhiteTerritoryRecursive(row + 1, col);
-        boolean left = checkWhiteTerritoryRecursive(row, col - 1);
-        boolean right = checkWhiteTerritoryRecursive(row, col + 1);
+        return new Score(territoryBlack, territoryWhite, capturesBlack, capturesWhite, stonesBlack, stonesWhite);
+    }
 
-        return up && down && left && right;
+    /**
+     * Właściciel ostatnio zebranego pustego obszaru.
+     *
+     * @return 1 - białego, 2 - czarnego, 3 - niczyje
+     */
+    private int regionOwner() {
+        boolean isWhite = (regionBorder & (1 << 2)) == 0; //nie styka sie z czarnym
+        boolean isBlack = (regionBorder & (1 << 1)) == 0; //nie styka sie z bialym
+        if (isWhite && !isBlack)
+            return 1;
+        if (!isWhite && isBlack)
+            return 2;
+        return 3;
     }
 
     /**
-     * Sprawdza rekurencyjnie czy pole należy do terytorium czarnego.
+     * Wpisuje do out pola łańcucha zawierającego dane pole
+     * (jako row * getSize() + column). Dla out == null tylko liczy kamienie.
      *
      * @param row wiersz
-     * @param col kolumna
-     * @return true jeśli czarnego terytorium
+     * @param column kolumna
+     * @param out bufor na pola łańcucha albo null
+     * @return liczba kamieni, 0 dla pustego pola
      */
-    private boolean checkBlackTerritoryRecursive(int row, int col) {
-        // Jeśli pole jest poza planszą git
-        if (row < 0 || row >= 19 || col < 0 || col >= 19) {
-            return true;
-        }
-
-        // Jeśli już odwiedziliśmy to pole, zwracamy true
-        if (blackVisited[row][col] == 1) {
-            return true;
-        }
-
-
-        int color = positions[row][col].color;
-
-
-        if (color == 2) {
-            return true;
-        }
+    public int collectChain(int row, int column, int[] out) {
+        sync();
+        int p = index(row, column);
+        if (color[p] == 0)
+            return 0;
+        if (out == null)
+            return stones[chain[p]];
+
+        int root = chain[p];
+        int count = 0;
+        int s = root;
+        do {
+            out[count++] = publicIndex(s);
+            s = nextStone[s];
+        } while (s != root);
+        return count;
+    }
 
-        if (color == 1) {
-            return false;
+    /**
+     * Zbiera pola zdjęte ostatnią zmianą planszy - kamienie zbite ostatnim
+     * ruchem play albo łańcuch usunięty przez removeGroup. Odczytuje
+     * dziennik cofania, więc nic nie przelicza.
+     *
+     * @param out bufor na pola (row * size + col) albo null
+     * @return liczba zdjętych kamieni, 0 gdy nic nie zdjęto
+     */
+    public int collectRemoved(int[] out) {
+        if (logTop == 0)
+            return 0;
+        int count = log[logTop - 3];
+        if (out != null) {
+            int from = logTop - 3 - count;
+            for (int i = 0; i < count; i++)
+                out[i] = publicIndex(log[from + i]);
         }
-        blackVisited[row][col] = 1;
-        boolean up = checkBlackTerritoryRecursive(row - 1, col);
-        boolean down = checkBlackTerritoryRecursive(row + 1, col);
-        boolean left = checkBlackTerritoryRecursive(row, col - 1);
-        boolean right = checkBlackTerritoryRecursive(row, col + 1);
-
+        return count;
+    }
 
-        return up && down && left && right;
+    /**
+     * Zamienia indeks tablicy z ramką na row * size + col.
+     */
+    private int publicIndex(int p) {
+        return (p / stride - 1) * size + p % stride - 1;
     }
 
     /**
-     * Oblicza terytoria obu graczy na planszy.
+     * Zbiera do bufora region pól połączonych z polem start i mających ten
+     * sam kolor (łańcuch albo pusty obszar). Bufor służy zarazem za kolejkę,
+     * a odwiedzone pola są znaczone numerem pokolenia, więc przejście nic
+     * nie alokuje i nie wymaga czyszczenia tablicy. Wszystkie regiony
+     * jednego przejścia po planszy dzielą pokolenie (nextGeneration),
+     * więc każde pole jest odwiedzane raz.
+     * Kolory stykające się z regionem trafiają do regionBorder (bit 1 << kolor).
+     *
+     * @return liczba pól w region[0..count)
      */
-    public void calculateTerritories() {
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
-                if (positions[i][j].color == 0 && territoryCache[i][j] == 0) {
-                    for (int x = 0; x < 19; x++) {
-                        for (int y = 0; y < 19; y++) {
-                            whiteVisited[x][y] = 0;
-                        }
-                    }
-
-
-                    boolean isWhite = checkWhiteTerritoryRecursive(i, j);
-
-
-                    for (int x = 0; x < 19; x++) {
-                        for (int y = 0; y < 19; y++) {
-                            blackVisited[x][y] = 0;
-                        }
-                    }
-
-
-                    boolean isBlack = checkBlackTerritoryRecursive(i, j);
-
-                    // Ustal wynik
-                    int result;
-                    if (isWhite && !isBlack) {
-                        result = 1;
-                    } else if (!isWhite && isBlack) {
-                        result = 2;
-                    } else {
-                        result = 3;
-                    }
-
-
-                    for (int x = 0; x < 19; x++) {
-                        for (int y = 0; y < 19; y++) {
-                            if ((whiteVisited[x][y] == 1 || blackVisited[x][y] == 1) &&
-                                    positions[x][y].color == 0) {
-                                territoryCache[x][y] = result;
-                            }
-                        }
-                    }
+    private int collectRegion(int start) {
+        int c = color[start];
+        int border = 0;
+        int count = 0;
+        mark[start] = generation;
+        region[count++] = start;
+        for (int i = 0; i < count; i++) {
+            int s = region[i];
+            for (int d = 0; d < 4; d++) {
+                int q = s + offsets[d];
+                if (color[q] != c) {
+                    border |= 1 << color[q];
+                } else if (mark[q] != generation) {
+                    mark[q] = generation;
+                    region[count++] = q;
                 }
             }
         }
+        regionBorder = border;
+        return count;
+    }
+
+    private void nextGeneration() {
+        if (++generation == 0) {
+            Arrays.fill(mark, 0);
+            generation = 1;
+        }
     }
 
 
@@ -18,7 +18,7 @@ public class BoardHelper {
      */
     public static void makeMove(Board board, int row, int col, boolean isBlack) {
         int color = isBlack ? 2 : 1;
-        board.positions[row][col].color = color;
+        board.positions[row][col].setColor(color);
         board.updateBreaths();
     }
 
@@ -27,19 +27,20 @@ public class BoardHelper {
      *
      * @param destination plansza docelowa
      * @param source plansza źródłowa
+     * @throws IllegalArgumentException gdy plansze mają różne rozmiary
      */
     public static void copyBoardState(Board destination, Board source) {
-        int stonesCount = 0; // Debug
-        for (int i = 0; i < 19; i++) {
-            for (int j = 0; j < 19; j++) {
-                destination.positions[i][j].color = source.positions[i][j].color;
+        if (destination.getSize() != source.getSize())
+            throw new IllegalArgumentException("Boards differ in size");
+        int size = source.getSize();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                destination.positions[i][j].setColor(source.positions[i][j].color);
                 destination.positions[i][j].breaths = source.positions[i][j].breaths;
                 destination.lastPositions[i][j] = source.lastPositions[i][j];
-
-                if (source.positions[i][j].color != 0) stonesCount++;
             }
         }
-        System.out.println("DEBUG: Board copied. Stones number: " + stonesCount);
+        destination.lastHash = source.lastHash;
     }
 
     /**
@@ -51,10 +52,7 @@ public class BoardHelper {
      * @return kolor (0-puste, 1-biały, 2-czarny, -1-poza planszą)
      */
     public static int getColor(Board board, int row, int col) {
-        if (row < 0 || row >= 19 || col < 0 || col >= 19) {
-            return -1;
-        }
-        return board.positions[row][col].color;
+        return board.getColor(row, col);
     }
 
     /**
@@ -79,35 +77,15 @@ public class BoardHelper {
      */
     public static List<int[]> getChain(Board board, int row, int col) {
         List<int[]> chain = new ArrayList<>();
-        int targetColor = board.positions[row][col].color;
-        if (targetColor == 0) return chain;
+        int count = board.collectChain(row, col, null);
+        if (count == 0) return chain;
 
-        boolean[][] visited = new boolean[19][19];
-        findChainRecursive(board, row, col, targetColor, visited, chain);
+        int size = board.getSize();
+        int[] points = new int[count];
+        board.collectChain(row, col, points);
+        for (int point : points) {
+            chain.add(new int[]{point / size, point % size});
+        }
         return chain;
     }
-
-    /**
-     * Rekurencyjnie znajduje wszystkie pola łańcucha.
-     *
-     * @param board plansza
-     * @param r wiersz
-     * @param c kolumna
-     * @param targetColor docelowy kolor
-     * @param visited tablica odwiedzonych pól
-     * @param chain lista pól łańcucha
-     */
-    private static void findChainRecursive(Board board, int r, int c, int targetColor, boolean[][] visited, List<int[]> chain) {
-        if (r < 0 || r >= 19 || c < 0 || c >= 19) return;
-        if (visited[r][c]) return;
-        if (board.positions[r][c].color != targetColor) return;
-
-        visited[r][c] = true;
-        chain.add(new int[]{r, c});
-
-        findChainRecursive(board, r + 1, c, targetColor, visited, chain);
-        findChainRecursive(board, r - 1, c, targetColor, visited, chain);
-        findChainRecursive(board, r, c + 1, targetColor, visited, chain);
-        findChainRecursive(board, r, c - 1, targetColor, visited, chain);
-    }
-}
\ No newline at end of file
+}
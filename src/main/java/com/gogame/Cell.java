@@ -6,9 +6,22 @@ package com.gogame;
 public class Cell {
     public int color;      // 0 = puste, 1 = bialy, 2 = czarny
     public int breaths;
+    Board board;   // plansza, ktora po zmianie koloru odbuduje stan silnika
 
     public Cell() {
         this.breaths = 0;
         this.color = 0;
     }
+
+    /**
+     * Ustawia kolor pola. Plansza, do której należy pole, odbuduje swój
+     * stan przy następnym wywołaniu metody czytającej positions.
+     *
+     * @param color 0 - puste, 1 - biały, 2 - czarny
+     */
+    public void setColor(int color) {
+        this.color = color;
+        if (board != null)
+            board.markDirty();
+    }
 }
\ No newline at end of file
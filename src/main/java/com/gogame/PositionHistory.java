@@ -0,0 +1,104 @@
+package com.gogame;
+
+import java.util.Arrays;
+
+/**
+ * Zbiór kluczy Zobrista pozycji, które wystąpiły w partii.
+ * Adresowanie otwarte na tablicy long[] - sprawdzenie superko to O(1)
+ * bez pakowania kluczy w obiekty Long.
+ */
+class PositionHistory {
+    private long[] keys = new long[256];
+    private boolean[] used = new boolean[256];
+    private int size = 0;
+
+    /**
+     * Dodaje klucz pozycji.
+     *
+     * @param key klucz Zobrista
+     */
+    void add(long key) {
+        if (2 * (size + 1) > keys.length)
+            grow();
+        int i = slot(key, keys, used);
+        if (!used[i]) {
+            used[i] = true;
+            keys[i] = key;
+            size++;
+        }
+    }
+
+    /**
+     * Sprawdza czy pozycja już wystąpiła.
+     *
+     * @param key klucz Zobrista
+     * @return true jeśli klucz jest w zbiorze
+     */
+    boolean contains(long key) {
+        return used[slot(key, keys, used)];
+    }
+
+    /**
+     * Usuwa klucz (np. przy cofaniu ruchu). Kolejne klucze z tego samego
+     * ciągu są przesuwane wstecz, więc nie są potrzebne znaczniki usunięcia.
+     *
+     * @param key klucz Zobrista
+     */
+    void remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, keys, used);
+        if (!used[i])
+            return;
+        used[i] = false;
+        size--;
+
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!used[j])
+                return;
+            int home = home(keys[j], mask);
+            boolean stays = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                keys[i] = keys[j];
+                used[i] = true;
+                used[j] = false;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * Czyści historię.
+     */
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private static int slot(long key, long[] keys, boolean[] used) {
+        int mask = keys.length - 1;
+        int i = home(key, mask);
+        while (used[i] && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int home(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldUsed[j]) {
+                int i = slot(oldKeys[j], keys, used);
+                used[i] = true;
+                keys[i] = oldKeys[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.gogame;
+
+/**
+ * Wynik pozycji policzony przez Board.score(): terytoria, zbite kamienie
+ * i kamienie na planszy obu graczy.
+ */
+public class Score {
+    public final int territoryBlack;
+    public final int territoryWhite;
+    public final int capturesBlack;   // kamienie bialego zbite przez czarnego
+    public final int capturesWhite;   // kamienie czarnego zbite przez bialego
+    public final int stonesBlack;
+    public final int stonesWhite;
+
+    public Score(int territoryBlack, int territoryWhite, int capturesBlack, int capturesWhite,
+                 int stonesBlack, int stonesWhite) {
+        this.territoryBlack = territoryBlack;
+        this.territoryWhite = territoryWhite;
+        this.capturesBlack = capturesBlack;
+        this.capturesWhite = capturesWhite;
+        this.stonesBlack = stonesBlack;
+        this.stonesWhite = stonesWhite;
+    }
+
+    /**
+     * Punktacja japońska: terytorium i zbite kamienie.
+     *
+     * @param black true dla czarnego, false dla białego
+     * @return liczba punktów
+     */
+    public int territoryScore(boolean black) {
+        return black ? territoryBlack + capturesBlack : territoryWhite + capturesWhite;
+    }
+
+    /**
+     * Punktacja chińska: terytorium i kamienie na planszy.
+     *
+     * @param black true dla czarnego, false dla białego
+     * @return liczba punktów
+     */
+    public int areaScore(boolean black) {
+        return black ? territoryBlack + stonesBlack : territoryWhite + stonesWhite;
+    }
+}
@@ -21,6 +21,23 @@ public interface GameView {
      */
     void updateBoard(int row, int col, int playerId);
 
+    /**
+     * Nanosi ruch razem z kamieniami, które zbił.
+     *
+     * @param row wiersz
+     * @param col kolumna
+     * @param playerId kolor kamienia w widoku (1-czarny, 2-biały)
+     * @param captured pary wiersz, kolumna zbitych kamieni
+     */
+    void applyMove(int row, int col, int playerId, int[] captured);
+
+    /**
+     * Zastępuje całą planszę obrazem od serwera i czyści zaznaczenia.
+     *
+     * @param stones pola wierszami: 0-puste, 1-czarny, 2-biały
+     */
+    void loadBoard(int[] stones);
+
     /**
      * Usuwa kamień z planszy.
      *
@@ -38,6 +55,21 @@ public interface GameView {
      */
     void highlightStone(int row, int col, boolean active);
 
+    /**
+     * Podświetla lub usuwa podświetlenie całej grupy kamieni.
+     *
+     * @param points pary wiersz, kolumna
+     * @param active true aby podświetlić, false aby usunąć
+     */
+    void highlightStones(int[] points, boolean active);
+
+    /**
+     * Usuwa z planszy grupę kamieni (razem z podświetleniem).
+     *
+     * @param points pary wiersz, kolumna
+     */
+    void removeStones(int[] points);
+
     /**
      * Usuwa wszystkie podświetlenia z planszy.
      */
@@ -57,6 +89,13 @@ public interface GameView {
      */
     void setPlayerColor(boolean isBlack);
 
+    /**
+     * Ustawia rozmiar planszy ogłoszony przez serwer i czyści planszę.
+     *
+     * @param size długość boku planszy
+     */
+    void setBoardSize(int size);
+
     /**
      * Kończy grę i wyświetla wynik.
      *
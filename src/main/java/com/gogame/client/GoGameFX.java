@@ -19,10 +19,14 @@ import java.util.Optional;
  */
 public class GoGameFX extends Application implements GameView {
 
-    private static final int BOARD_SIZE = 19;
     private static final int TILE_SIZE = 30;
     private static final int PADDING = 20;
-    private static final int CANVAS_SIZE = TILE_SIZE * (BOARD_SIZE - 1) + PADDING * 2;
+    private static final int CANVAS_SIZE = TILE_SIZE * (19 - 1) + PADDING * 2;
+
+    // rozmiar planszy przychodzi z serwera w INIT, plansza 9x9 jest rysowana
+    // wiekszymi polami na tym samym plotnie
+    private int boardSize = 19;
+    private double tileSize = TILE_SIZE;
 
     private Client connection;
     private GraphicsContext gc;
@@ -33,11 +37,11 @@ public class GoGameFX extends Application implements GameView {
     private Button doneButton;
     private Button playOnButton;
 
-    private int[][] boardState = new int[BOARD_SIZE][BOARD_SIZE];
+    private int[][] boardState = new int[boardSize][boardSize];
     private boolean myTurn = false;
     private boolean negotiationPhase = false;
 
-    private boolean[][] markedStones = new boolean[BOARD_SIZE][BOARD_SIZE];
+    private boolean[][] markedStones = new boolean[boardSize][boardSize];
 
     public static void main(String[] args) {
         launch(args);
@@ -60,10 +64,10 @@ public class GoGameFX extends Application implements GameView {
         canvas.setOnMouseClicked(event -> {
             if (!myTurn) return;
 
-            int col = (int) Math.round((event.getX() - PADDING) / TILE_SIZE);
-            int row = (int) Math.round((event.getY() - PADDING) / TILE_SIZE);
+            int col = (int) Math.round((event.getX() - PADDING) / tileSize);
+            int row = (int) Math.round((event.getY() - PADDING) / tileSize);
 
-            if (row >= 0 && row < BOARD_SIZE && col >= 0 && col < BOARD_SIZE) {
+            if (row >= 0 && row < boardSize && col >= 0 && col < boardSize) {
                 if (negotiationPhase) {
                     if (boardState[row][col] != 0) {
                         System.out.println("Sending DEAD: " + row + ", " + col); // DEBUG
@@ -137,6 +141,23 @@ public class GoGameFX extends Application implements GameView {
         drawBoard();
     }
 
+    @Override
+    public void applyMove(int row, int col, int playerId, int[] captured) {
+        boardState[row][col] = playerId;
+        for (int i = 0; i + 1 < captured.length; i += 2)
+            boardState[captured[i]][captured[i + 1]] = 0;
+        drawBoard();
+    }
+
+    @Override
+    public void loadBoard(int[] stones) {
+        for (int i = 0; i < stones.length; i++) {
+            boardState[i / boardSize][i % boardSize] = stones[i];
+            markedStones[i / boardSize][i % boardSize] = false;
+        }
+        drawBoard();
+    }
+
     @Override
     public void removeStone(int row, int col) {
         boardState[row][col] = 0;
@@ -145,17 +166,33 @@ public class GoGameFX extends Application implements GameView {
 
     @Override
     public void highlightStone(int row, int col, boolean active) {
-        if (row >= 0 && row < BOARD_SIZE && col >= 0 && col < BOARD_SIZE) {
+        if (row >= 0 && row < boardSize && col >= 0 && col < boardSize) {
             System.out.println("Highlighting stone at " + row + "," + col + " = " + active); // DEBUG
             markedStones[row][col] = active;
             drawBoard();
         }
     }
 
+    @Override
+    public void highlightStones(int[] points, boolean active) {
+        for (int i = 0; i + 1 < points.length; i += 2)
+            markedStones[points[i]][points[i + 1]] = active;
+        drawBoard();
+    }
+
+    @Override
+    public void removeStones(int[] points) {
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            boardState[points[i]][points[i + 1]] = 0;
+            markedStones[points[i]][points[i + 1]] = false;
+        }
+        drawBoard();
+    }
+
     @Override
     public void clearAllHighlights() {
-        for(int i=0; i<BOARD_SIZE; i++) {
-            for(int j=0; j<BOARD_SIZE; j++) {
+        for(int i=0; i<boardSize; i++) {
+            for(int j=0; j<boardSize; j++) {
                 markedStones[i][j] = false;
             }
         }
@@ -176,6 +213,15 @@ public class GoGameFX extends Application implements GameView {
     public void setPlayerColor(boolean isBlack) {
     }
 
+    @Override
+    public void setBoardSize(int size) {
+        this.boardSize = size;
+        this.tileSize = (double) TILE_SIZE * (19 - 1) / Math.max(1, size - 1);
+        this.boardState = new int[size][size];
+        this.markedStones = new boolean[size][size];
+        drawBoard();
+    }
+
     @Override
     public void setNegotiationPhase(boolean active) {
         System.out.println("Setting negotiation phase: " + active); // DEBUG
@@ -233,14 +279,14 @@ public class GoGameFX extends Application implements GameView {
         gc.setStroke(Color.BLACK);
         gc.setLineWidth(1.0);
 
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            double pos = PADDING + i * TILE_SIZE;
-            gc.strokeLine(pos, PADDING, pos, PADDING + (BOARD_SIZE - 1) * TILE_SIZE);
-            gc.strokeLine(PADDING, pos, PADDING + (BOARD_SIZE - 1) * TILE_SIZE, pos);
+        for (int i = 0; i < boardSize; i++) {
+            double pos = PADDING + i * tileSize;
+            gc.strokeLine(pos, PADDING, pos, PADDING + (boardSize - 1) * tileSize);
+            gc.strokeLine(PADDING, pos, PADDING + (boardSize - 1) * tileSize, pos);
         }
 
-        for (int r = 0; r < BOARD_SIZE; r++) {
-            for (int c = 0; c < BOARD_SIZE; c++) {
+        for (int r = 0; r < boardSize; r++) {
+            for (int c = 0; c < boardSize; c++) {
                 if (boardState[r][c] != 0) {
                     drawStone(r, c, boardState[r][c] == 1 ? Color.BLACK : Color.WHITE);
                 }
@@ -260,9 +306,9 @@ public class GoGameFX extends Application implements GameView {
      * @param color kolor kamienia
      */
     private void drawStone(int row, int col, Color color) {
-        double x = PADDING + col * TILE_SIZE;
-        double y = PADDING + row * TILE_SIZE;
-        double r = TILE_SIZE * 0.45;
+        double x = PADDING + col * tileSize;
+        double y = PADDING + row * tileSize;
+        double r = tileSize * 0.45;
         gc.setFill(color);
         gc.fillOval(x - r, y - r, 2 * r, 2 * r);
         if (color == Color.WHITE) {
@@ -278,9 +324,9 @@ public class GoGameFX extends Application implements GameView {
      * @param col kolumna
      */
     private void drawMark(int row, int col) {
-        double x = PADDING + col * TILE_SIZE;
-        double y = PADDING + row * TILE_SIZE;
-        double r = TILE_SIZE * 0.3;
+        double x = PADDING + col * tileSize;
+        double y = PADDING + row * tileSize;
+        double r = tileSize * 0.3;
 
         gc.setStroke(Color.RED);
         gc.setLineWidth(3.0);
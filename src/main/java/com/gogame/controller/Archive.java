@@ -0,0 +1,495 @@
+package com.gogame.controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Archiwum zakończonych gier w zwartym formacie binarnym. Archiwum
+ * obserwuje gry (Game.observe) i po końcu gry oddaje jej rekord wątkowi
+ * zapisu, więc pętla zdarzeń nie czeka na dysk ani na inne kończące się
+ * gry; zapis to jeden
+ * write do pliku segmentu i jeden do indeksu, bez fsync - archiwum służy
+ * do przeglądania, a nie do odtwarzania gier (to robi Journal).
+ *
+ * Rekord gry (big-endian):
+ * <pre>
+ * 0  u8   rozmiar planszy
+ * 1  u8   wynik: zwycięzca (bity 0-1: NONE, BLACK, WHITE) | powód &lt;&lt; 2 (SCORE, SURRENDER, LEFT)
+ * 2  i16  punkty czarnego (tylko SCORE)
+ * 4  i16  punkty białego
+ * 6  i64  hash końcowej pozycji (Board.positionKey)
+ * 14 u16  liczba ruchów
+ * 16 u8   długość nazwy czarnego, 17 u8 długość nazwy białego, dalej nazwy w UTF-8
+ * ..  u16 na ruch: wiersz * rozmiar + kolumna, PASS albo REMOVED | pole zdjętej grupy
+ * </pre>
+ * czyli 18 bajtów nagłówka z nazwami i 2 bajty na ruch; gra ma najwyżej
+ * MAX_MOVES ruchów (Game kończy ją na tym limicie). Rekordy leżą
+ * w plikach segment-n.dat po najwyżej segmentBytes, a index.dat trzyma
+ * dla gry n pod pozycją 8 * n numer segmentu i przesunięcie w nim - gra
+ * n to jeden odczyt indeksu i jeden segmentu.
+ *
+ * Oba rodzaje plików są czytane przez MappedByteBuffer: rekordy zostają
+ * w pamięci podręcznej systemu, a nie na stercie, więc przeglądanie
+ * dziesiątek milionów gier (scan) kosztuje jeden obiekt Record.
+ */
+public class Archive implements Closeable, GameObserver {
+    public static final long DEFAULT_SEGMENT_BYTES = 256L * 1024 * 1024;
+    // zwyciezca
+    public static final int NONE = 0;
+    public static final int BLACK = 1;
+    public static final int WHITE = 2;
+    // powod konca gry
+    public static final int SCORE = 0;
+    public static final int SURRENDER = 1;
+    public static final int LEFT = 2;
+    // kody ruchow poza polem planszy
+    public static final int PASS = 0xFFFF;
+    public static final int REMOVED = 0x8000;
+    // najwiecej ruchow w rekordzie - liczba ruchow ma 16 bitow
+    public static final int MAX_MOVES = 0xFFFF;
+
+    static final int HEADER = 18;
+    private static final int ENTRY = 8;
+    // okno indeksu mapowane w calosci - 8M gier
+    private static final long INDEX_WINDOW = 64L * 1024 * 1024;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final FileChannel index;
+    private volatile Region[] indexWindows = new Region[0];
+    private volatile Region[] segments = new Region[0];
+    private volatile long count;
+    private final ExecutorService appender = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "archive-append");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder failures = new LongAdder();
+    // stan piszacego, pod monitorem archiwum
+    private FileChannel segment;
+    private long segmentSize;
+
+    /**
+     * Fragment pliku czytany przez mapowanie. Mapowanie ostatniego,
+     * rosnącego fragmentu jest odnawiane, gdy odczyt sięga za nie.
+     */
+    private static final class Region {
+        final FileChannel channel;
+        final long base;
+        final long capacity;
+        private volatile MappedByteBuffer map;
+
+        Region(FileChannel channel, long base, long capacity) {
+            this.channel = channel;
+            this.base = base;
+            this.capacity = capacity;
+        }
+
+        ByteBuffer covering(long end) throws IOException {
+            MappedByteBuffer current = map;
+            if (current != null && current.limit() >= end)
+                return current;
+            synchronized (this) {
+                current = map;
+                if (current == null || current.limit() < end) {
+                    current = channel.map(FileChannel.MapMode.READ_ONLY, base,
+                            Math.min(capacity, channel.size() - base));
+                    map = current;
+                }
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Otwiera archiwum z domyślnym rozmiarem segmentu.
+     *
+     * @param dir katalog archiwum (tworzony, gdy go nie ma)
+     * @throws IOException gdy nie można otworzyć plików
+     */
+    public Archive(Path dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Otwiera archiwum. Wpisy indeksu po awarii (urwane albo wskazujące
+     * za koniec segmentu) są obcinane.
+     *
+     * @param dir katalog archiwum (tworzony, gdy go nie ma)
+     * @param segmentBytes największy rozmiar pliku segmentu (do 2 GB)
+     * @throws IOException gdy nie można otworzyć plików
+     */
+    public Archive(Path dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        Files.createDirectories(dir);
+        index = FileChannel.open(dir.resolve("index.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int segmentCount = 0;
+        while (Files.exists(segmentPath(segmentCount)))
+            segmentCount++;
+        for (int i = 0; i < Math.max(segmentCount, 1); i++)
+            openSegment(i);
+
+        long entries = index.size() / ENTRY;
+        count = entries;
+        while (count > 0 && !complete(count - 1))
+            count--;
+        index.truncate(count * ENTRY);
+        // rekordy zapisane bez wpisu w indeksie przepadaja - skan nie moze ich zobaczyc
+        int last = 0;
+        long end = 0;
+        if (count > 0) {
+            long entry = entry(count - 1);
+            last = (int) (entry >>> 32);
+            end = (entry & 0xFFFFFFFFL) + length(read(count - 1));
+        }
+        Region[] fresh = segments.clone();
+        for (int i = last; i < fresh.length; i++) {
+            fresh[i].channel.truncate(i == last ? end : 0);
+            fresh[i] = new Region(fresh[i].channel, 0, this.segmentBytes);
+        }
+        segments = fresh;
+        segmentSize = segment.size();
+    }
+
+    private Path segmentPath(int n) {
+        return dir.resolve("segment-" + n + ".dat");
+    }
+
+    private void openSegment(int n) throws IOException {
+        segment = FileChannel.open(segmentPath(n),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Region[] grown = Arrays.copyOf(segments, n + 1);
+        grown[n] = new Region(segment, 0, segmentBytes);
+        segments = grown;
+        segmentSize = 0;
+    }
+
+    /**
+     * @return true, gdy wpis indeksu wskazuje na cały rekord
+     */
+    private boolean complete(long n) throws IOException {
+        long entry = entry(n);
+        int s = (int) (entry >>> 32);
+        long offset = entry & 0xFFFFFFFFL;
+        if (s >= segments.length)
+            return false;
+        long size = segments[s].channel.size();
+        if (offset + HEADER > size)
+            return false;
+        return offset + length(read(n)) <= size;
+    }
+
+    /**
+     * Przekazuje zakończoną grę do archiwum, w tle.
+     *
+     * @param game zakończona gra
+     */
+    @Override
+    public void finished(Game game) {
+        appendInBackground(game.size(), game.winner(), game.reason(), game.scoreBlack(), game.scoreWhite(),
+                game.positionKey(), game.player(true), game.player(false), game.moves(), game.moveCount());
+    }
+
+    /**
+     * Przekazuje zakończoną grę do dopisania w wątku archiwum i wraca od
+     * razu. Ruchy są kopiowane, więc gra może dalej używać swojej tablicy.
+     * Nieudany zapis jest liczony w failures() i wypisywany.
+     */
+    private void appendInBackground(int size, int winner, int reason, int scoreBlack, int scoreWhite, long hash,
+                                    String black, String white, short[] moves, int moveCount) {
+        short[] copy = Arrays.copyOf(moves, moveCount);
+        appender.execute(() -> {
+            try {
+                append(size, winner, reason, scoreBlack, scoreWhite, hash, black, white, copy, moveCount);
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                System.out.println("Archive write failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Dopisuje zakończoną grę w wątku wywołującym.
+     *
+     * @return numer gry w archiwum
+     * @throws IllegalArgumentException gdy gra ma więcej niż MAX_MOVES ruchów
+     */
+    synchronized long append(int size, int winner, int reason, int scoreBlack, int scoreWhite, long hash,
+                             String black, String white, short[] moves, int moveCount) throws IOException {
+        if (moveCount > MAX_MOVES)
+            throw new IllegalArgumentException("Too many moves: " + moveCount);
+        byte[] blackName = name(black);
+        byte[] whiteName = name(white);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + blackName.length + whiteName.length + 2 * moveCount);
+        record.put((byte) size)
+                .put((byte) (winner | reason << 2))
+                .putShort((short) scoreBlack)
+                .putShort((short) scoreWhite)
+                .putLong(hash)
+                .putShort((short) moveCount)
+                .put((byte) blackName.length)
+                .put((byte) whiteName.length)
+                .put(blackName)
+                .put(whiteName);
+        for (int i = 0; i < moveCount; i++)
+            record.putShort(moves[i]);
+        record.flip();
+
+        if (segmentSize > 0 && segmentSize + record.remaining() > segmentBytes)
+            openSegment(segments.length);
+        long offset = segmentSize;
+        while (record.hasRemaining())
+            segmentSize += segment.write(record, segmentSize);
+
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY).putLong((long) (segments.length - 1) << 32 | offset).flip();
+        long n = count;
+        while (entry.hasRemaining())
+            index.write(entry, n * ENTRY + entry.position());
+        count = n + 1;
+        return n;
+    }
+
+    private static byte[] name(String player) {
+        byte[] bytes = (player == null ? "" : player).getBytes(StandardCharsets.UTF_8);
+        return bytes.length > 255 ? Arrays.copyOf(bytes, 255) : bytes;
+    }
+
+    /**
+     * @return liczba gier w archiwum; bez gier czekających na zapis
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return liczba gier, których nie udało się zapisać
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    /**
+     * Czeka, aż gry przekazane wcześniej do zapisu trafią do plików.
+     *
+     * @throws IOException gdy oczekiwanie zostanie przerwane
+     */
+    public void flush() throws IOException {
+        try {
+            appender.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing archive", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private long entry(long n) throws IOException {
+        long position = n * ENTRY;
+        int w = (int) (position / INDEX_WINDOW);
+        Region[] windows = indexWindows;
+        if (w >= windows.length) {
+            synchronized (this) {
+                windows = indexWindows;
+                if (w >= windows.length) {
+                    windows = Arrays.copyOf(windows, w + 1);
+                    for (int i = indexWindows.length; i <= w; i++)
+                        windows[i] = new Region(index, i * INDEX_WINDOW, INDEX_WINDOW);
+                    indexWindows = windows;
+                }
+            }
+        }
+        int at = (int) (position % INDEX_WINDOW);
+        return windows[w].covering(at + ENTRY).getLong(at);
+    }
+
+    private Record read(long n) throws IOException {
+        long entry = entry(n);
+        Record record = new Record();
+        record.moveTo(segments[(int) (entry >>> 32)], (int) entry);
+        return record;
+    }
+
+    private static int length(Record record) {
+        return record.movesAt() - record.at + 2 * record.moveCount();
+    }
+
+    /**
+     * Gra n: jeden odczyt indeksu i widok na rekord w segmencie.
+     *
+     * @param n numer gry, mniejszy od count()
+     * @return rekord gry
+     * @throws IOException gdy nie można zmapować pliku
+     */
+    public Record get(long n) throws IOException {
+        if (n < 0 || n >= count)
+            throw new IndexOutOfBoundsException("No game " + n);
+        return read(n);
+    }
+
+    /**
+     * Przegląda gry od numeru from po kolei, segment za segmentem, bez
+     * indeksu. Odwiedzający dostaje za każdym razem ten sam obiekt Record,
+     * przesunięty na następną grę - nie może go zachować.
+     *
+     * @param from numer pierwszej gry
+     * @param visitor odwiedzający
+     * @throws IOException gdy nie można zmapować pliku
+     */
+    public void scan(long from, Consumer<Record> visitor) throws IOException {
+        long end = count;
+        if (from >= end)
+            return;
+        Record record = read(from);
+        int s = (int) (entry(from) >>> 32);
+        for (long n = from; n < end; n++) {
+            while (record.at >= record.limit()) {
+                // koniec segmentu - nastepny zaczyna sie od zera
+                s++;
+                record.moveTo(segments[s], 0);
+            }
+            record.ensure();
+            visitor.accept(record);
+            record.moveTo(segments[s], record.at + length(record));
+        }
+    }
+
+    /**
+     * Widok na rekord gry w zmapowanym segmencie. Pola są czytane prosto
+     * z mapowania przy każdym wywołaniu.
+     */
+    public static final class Record {
+        private Region region;
+        private ByteBuffer bytes;
+        private int at;
+
+        private void moveTo(Region region, int at) throws IOException {
+            this.region = region;
+            this.at = at;
+            this.bytes = region.covering(at + HEADER);
+            if (at + HEADER <= bytes.limit())
+                ensure();
+        }
+
+        /**
+         * Mapuje segment tak, żeby obejmował cały rekord.
+         */
+        private void ensure() throws IOException {
+            bytes = region.covering(at + HEADER);
+            bytes = region.covering(movesAt() + 2L * moveCount());
+        }
+
+        private long limit() throws IOException {
+            return region.channel.size();
+        }
+
+        private int movesAt() {
+            return at + HEADER + (bytes.get(at + 16) & 0xFF) + (bytes.get(at + 17) & 0xFF);
+        }
+
+        /**
+         * @return długość boku planszy
+         */
+        public int size() {
+            return bytes.get(at) & 0xFF;
+        }
+
+        /**
+         * @return NONE (remis), BLACK albo WHITE
+         */
+        public int winner() {
+            return bytes.get(at + 1) & 3;
+        }
+
+        /**
+         * @return SCORE, SURRENDER albo LEFT
+         */
+        public int reason() {
+            return (bytes.get(at + 1) >> 2) & 3;
+        }
+
+        public int scoreBlack() {
+            return bytes.getShort(at + 2);
+        }
+
+        public int scoreWhite() {
+            return bytes.getShort(at + 4);
+        }
+
+        /**
+         * @return hash końcowej pozycji (Board.positionKey)
+         */
+        public long hash() {
+            return bytes.getLong(at + 6);
+        }
+
+        public int moveCount() {
+            return bytes.getShort(at + 14) & 0xFFFF;
+        }
+
+        /**
+         * @param i numer ruchu od 0
+         * @return pole (wiersz * rozmiar + kolumna), PASS albo REMOVED | pole
+         */
+        public int move(int i) {
+            return bytes.getShort(movesAt() + 2 * i) & 0xFFFF;
+        }
+
+        public String black() {
+            return name(at + HEADER, bytes.get(at + 16) & 0xFF);
+        }
+
+        public String white() {
+            return name(at + HEADER + (bytes.get(at + 16) & 0xFF), bytes.get(at + 17) & 0xFF);
+        }
+
+        private String name(int from, int length) {
+            byte[] name = new byte[length];
+            bytes.get(from, name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Dopisuje gry czekające na zapis, zapisuje pliki na dysk i je zamyka.
+     *
+     * @throws IOException gdy zapis się nie uda
+     */
+    @Override
+    public void close() throws IOException {
+        appender.shutdown();
+        try {
+            appender.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            List<FileChannel> channels = new ArrayList<>();
+            for (Region region : segments)
+                channels.add(region.channel);
+            channels.add(index);
+            for (FileChannel channel : channels) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.gogame.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Dziennik zdarzeń gry dla widzów: ograniczony pierścień linii (MOVE_OK,
+ * MARK, DEAD_REMOVED, GAME_OVER...) zapisywanych przez grę raz, bez względu
+ * na liczbę widzów, oraz co kilka zdarzeń zwarty obraz planszy. Widz czyta
+ * pierścień we własnym tempie od swojego numeru zdarzenia; kto spóźni się
+ * o cały pierścień albo dopiero dołącza, zaczyna od ostatniego obrazu
+ * i ogona zdarzeń po nim.
+ *
+ * Pisze jeden wątek (wątek gry), czytać może dowolnie wiele innych.
+ * Linie są od razu zakodowane w UTF-8 z przedrostkiem i znakiem końca
+ * linii, więc widz tylko kopiuje bajty.
+ *
+ * Z tego samego dziennika gracz wznawiający grę (Game.resume) dostaje
+ * ostatni obraz i zdarzenia po nim zamiast całej partii od pierwszego ruchu.
+ */
+public class EventLog {
+    public static final int CAPACITY = 128;
+    // obraz co tyle zdarzen - ogon po obrazie zawsze miesci sie w pierscieniu
+    public static final int SNAPSHOT_EVERY = 32;
+
+    /**
+     * Obraz stanu gry i numer pierwszego zdarzenia po nim.
+     */
+    public static final class Snapshot {
+        public final byte[] bytes;
+        public final long next;
+
+        Snapshot(byte[] bytes, long next) {
+            this.bytes = bytes;
+            this.next = next;
+        }
+    }
+
+    private final String prefix;
+    private final AtomicReferenceArray<byte[]> ring = new AtomicReferenceArray<>(CAPACITY);
+    private volatile long head = 0;             // liczba zapisanych zdarzen
+    private volatile Snapshot latest;
+    private volatile boolean closed = false;
+    private long flushed = 0;                   // head przy ostatnim flush (watek gry)
+    private Runnable listener = () -> { };
+
+    /**
+     * @param prefix przedrostek każdej linii, np. "@7 "
+     */
+    public EventLog(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Ustawia powiadomienie o nowych zdarzeniach, wywoływane w wątku gry
+     * raz na przejście stanu (flush), a nie raz na zdarzenie.
+     *
+     * @param listener powiadomienie
+     */
+    public void onFlush(Runnable listener) {
+        this.listener = listener;
+    }
+
+    void append(String line) {
+        ring.setRelease((int) (head % CAPACITY), encode(line));
+        head = head + 1;
+    }
+
+    /**
+     * @return true, gdy od ostatniego obrazu minęło SNAPSHOT_EVERY zdarzeń
+     */
+    boolean needsSnapshot() {
+        Snapshot last = latest;
+        return last == null || head - last.next >= SNAPSHOT_EVERY;
+    }
+
+    void snapshot(String lines) {
+        latest = new Snapshot(encode(lines), head);
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    void flush() {
+        if (head == flushed)
+            return;
+        flushed = head;
+        listener.run();
+    }
+
+    /**
+     * Podaje ostatni obraz i zdarzenia po nim jako linie bez przedrostka.
+     * Wywoływane w wątku gry.
+     *
+     * @param to odbiorca linii
+     */
+    void replay(Consumer<String> to) {
+        lines(latest.bytes, to);
+        for (long seq = latest.next; seq < head; seq++)
+            lines(get(seq), to);
+    }
+
+    private void lines(byte[] bytes, Consumer<String> to) {
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        int from = 0;
+        int end;
+        while ((end = text.indexOf('\n', from)) >= 0) {
+            to.accept(text.substring(from + prefix.length(), end));
+            from = end + 1;
+        }
+    }
+
+    private byte[] encode(String lines) {
+        StringBuilder text = new StringBuilder(lines.length() + 2 * prefix.length() + 2);
+        int from = 0;
+        while (from <= lines.length()) {
+            int end = lines.indexOf('\n', from);
+            if (end < 0)
+                end = lines.length();
+            text.append(prefix).append(lines, from, end).append('\n');
+            from = end + 1;
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return numer następnego zdarzenia (liczba zapisanych)
+     */
+    public long head() {
+        return head;
+    }
+
+    /**
+     * @return ostatni obraz planszy albo null przed startem gry
+     */
+    public Snapshot latest() {
+        return latest;
+    }
+
+    /**
+     * @return true po GAME_OVER - nowych zdarzeń już nie będzie
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Czyta zdarzenie z pierścienia.
+     *
+     * @param seq numer zdarzenia mniejszy od head()
+     * @return bajty linii albo null, gdy pierścień już je nadpisał
+     */
+    public byte[] get(long seq) {
+        byte[] event = ring.getAcquire((int) (seq % CAPACITY));
+        // slot seq+CAPACITY jest nadpisywany, zanim head przekroczy seq+CAPACITY
+        return head - seq < CAPACITY ? event : null;
+    }
+}
@@ -2,16 +2,54 @@ package com.gogame.controller;
 
 import com.gogame.Board;
 import com.gogame.BoardHelper;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import com.gogame.Score;
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.MessageWriter;
+import com.gogame.protocol.OutboundQueue;
+import com.gogame.protocol.Parser;
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Reprezentuje sesję gry między dwoma graczami.
  * Zarządza stanem gry i komunikacją z klientami.
+ *
+ * Maszyna stanów nie zależy od transportu: w run() komendy obu graczy
+ * z socketów podaje jej SocketTransport, a serwer NIO przez submit()
+ * z wątku pętli zdarzeń, po wcześniejszym open().
+ * W obu trybach komendy gracza, który nie ma ruchu, czekają na jego kolej -
+ * poza QUIT, SURRENDER i rozłączeniem, które kończą grę od razu.
+ * Gra przyjmuje i wysyła komendy (Command): transport dekoduje do nich
+ * linie albo ramki, a writery MessageWriter kodują komunikaty gry prosto
+ * w formacie gracza - ramki binarne nie przechodzą przez tekst.
+ * Writery graczy nie opróżniają się same: komunikaty jednego przejścia
+ * stanu trafiają do gracza jednym zapisem (flush na końcu open i submit).
+ * INIT proponuje protokół binarny (Binary); przełączenie i kolejki
+ * wyjściowe (OutboundQueue) obsługuje transport.
+ *
+ * Gra wznawialna (resumable) daje każdemu graczowi po INIT token sesji
+ * (SESSION). Rozłączenie nie kończy jej wtedy od razu: gracz ma graceMs
+ * na powrót z tokenem (RESUME), po którym dostaje obraz planszy i ogon
+ * zdarzeń z dziennika zamiast całej partii. Dopiero expire() po upływie
+ * tego czasu kończy grę jak wyjście gracza.
+ *
+ * Zapis gry poza jej regułami należy do obserwatorów (GameObserver): gra
+ * zgłasza im przyjęte komendy i swój koniec. Trwały dziennik (Journal)
+ * zapisuje z nich komendy, z których po awarii serwera recover() odtwarza
+ * grę z obydwoma graczami nieobecnymi; archiwum (Archive) dostaje po końcu
+ * gry wynik i ruchy, które gra pamięta po 2 bajty na ruch.
  */
 public class Game extends Thread {
 
@@ -27,15 +65,81 @@ public class Game extends Thread {
         FINISHED
     }
 
-    private Socket socketBlack;
-    private Socket socketWhite;
+    private final SocketTransport transport;   // null - transport podaje komendy przez submit()
     private Board board;
-    private Board scoringBoard;
     private State currentState = State.PLAYING;
     private boolean blackTurn = true;
     private int passCount = 0;
     private int pendingDeadRow = -1;
     private int pendingDeadCol = -1;
+    private PrintWriter outBlack;
+    private PrintWriter outWhite;
+    private final int[] points;   // bufor na pola lancucha albo zbitych kamieni
+    private final Command command = new Command();   // linia z submit(String) albo z dziennika
+    private final Command message = new Command();   // skladany komunikat gry (MOVE_OK, MARK...)
+    private EventLog events;   // null - gra bez widzow
+
+    // kopie komend odlozone do kolejki gracza, ktory nie ma ruchu (tryb submit)
+    private static final int MAX_PARKED = 64;
+    private static final Command DISCONNECTED = new Command();
+    private final Deque<Command> parkedBlack = new ArrayDeque<>();
+    private final Deque<Command> parkedWhite = new ArrayDeque<>();
+    private final Deque<Command> spare = new ArrayDeque<>();   // obsluzone kopie do ponownego uzycia
+
+    // stale komunikaty gry - kazdy zlozony raz, wspolny dla wszystkich gier
+    private static final Command YOUR_TURN = Command.of("YOUR_TURN");
+    private static final Command PHASE_NEGOTIATION = Command.of("PHASE_NEGOTIATION");
+    private static final Command MARK_CLEAR = Command.of("MARK_CLEAR");
+    private static final Command YOUR_MOVE_BLACK = Command.of("MESSAGE Your move");
+    private static final Command YOUR_MOVE_WHITE = Command.of("MESSAGE Your move!");
+    private static final Command WAIT_FOR_BLACK = Command.of("MESSAGE Opponents move (Black)...");
+    private static final Command WAIT_FOR_WHITE = Command.of("MESSAGE Opponents move (White)...");
+    private static final Command YOU_PASSED = Command.of("MESSAGE You passed.");
+    private static final Command OPPONENT_PASSED = Command.of("MESSAGE Opponent passed");
+    private static final Command BLACK_PASSED = Command.of("MESSAGE Black passed");
+    private static final Command WHITE_PASSED = Command.of("MESSAGE White passed");
+    private static final Command MARK_DEAD = Command.of("MESSAGE NEGOTIATION PHASE. Mark dead stones.");
+    private static final Command WAIT_MARK = Command.of("MESSAGE NEGOTIATION PHASE. Wait for Black...");
+    private static final Command PLAY_ON = Command.of("MESSAGE Game resumed (PLAYON)!");
+    private static final Command WHITE_MARKS = Command.of("MESSAGE Your turn to mark.");
+    private static final Command BLACK_DONE = Command.of("MESSAGE Black finished. Wait for White.");
+    private static final Command WAIT_APPROVAL = Command.of("MESSAGE Waiting for enemy's approval...");
+    private static final Command AGREED_REMOVED = Command.of("MESSAGE Agreement. Stones are removed.");
+    private static final Command AGREED = Command.of("MESSAGE Agreement.");
+    private static final Command NOT_AGREED = Command.of("MESSAGE No agreement.");
+    private static final Command OPPONENT_NOT_AGREED = Command.of("MESSAGE Opponent did not agree.");
+    private static final Command MOVE_LIMIT = Command.of("MESSAGE Move limit reached, counting score.");
+    private static final Command RECONNECTED = Command.of("MESSAGE Opponent reconnected.");
+    private static final Command INVALID_MOVE = Command.of("ERROR Invalid move.");
+    private static final Command INVALID_POSITION = Command.of("ERROR Choose valid position!");
+    private static final Command UNKNOWN_COMMAND = Command.of("ERROR " + Parser.UNKNOWN_COMMAND);
+    private static final Command INVALID_ARGUMENTS = Command.of("ERROR " + Parser.INVALID_ARGUMENTS);
+    private static final Command TOO_MANY = Command.of("ERROR Too many commands.");
+    private static final Command AGREE = Command.of("Y");
+    private static final Command DISAGREE = Command.of("N");
+    private static final String CONFIRM_TEXT = "Oppenent marked stones. Do you agree with him?";
+
+    // wznowienie po zerwaniu polaczenia
+    public static final long DEFAULT_GRACE_MS = 30_000;
+    private static final SecureRandom TOKENS = new SecureRandom();
+    private long graceMs = 0;   // 0 - rozlaczenie konczy gre
+    private String tokenBlack;
+    private String tokenWhite;
+    private boolean awayBlack = false;
+    private boolean awayWhite = false;
+
+    private String result;   // tresc GAME_OVER dla obrazu gry
+    private final List<GameObserver> observers = new ArrayList<>(2);   // dziennik, archiwum
+    private String playerBlack;
+    private String playerWhite;
+    // ruchy w kodach archiwum - takze bez obserwatorow, eksport SGF czyta je z gry
+    private short[] moves = new short[64];
+    private int moveCount = 0;
+    // wynik zakonczonej gry w kodach archiwum - dla eksportu SGF
+    private int winner = Archive.NONE;
+    private int reason = -1;
+    private int scoreBlack = 0;
+    private int scoreWhite = 0;
 
     /**
      * Tworzy nową sesję gry.
@@ -44,138 +148,708 @@ public class Game extends Thread {
      * @param white socket gracza białego
      */
     public Game(Socket black, Socket white) {
-        this.socketBlack = black;
-        this.socketWhite = white;
-        this.board = new Board();
-        this.board.updateBreaths();
+        this(black, white, Board.DEFAULT_SIZE);
+    }
+
+    /**
+     * Tworzy nową sesję gry na planszy danego rozmiaru.
+     *
+     * @param black socket gracza czarnego
+     * @param white socket gracza białego
+     * @param size długość boku planszy
+     */
+    public Game(Socket black, Socket white, int size) {
+        this(black, white, size, Thread::new);
+    }
+
+    /**
+     * Tworzy nową sesję gry z własną fabryką wątków czytających.
+     *
+     * @param black socket gracza czarnego
+     * @param white socket gracza białego
+     * @param size długość boku planszy
+     * @param readers fabryka wątków czytających linie graczy
+     */
+    public Game(Socket black, Socket white, int size, ThreadFactory readers) {
+        this(black, white, size, readers, OutboundQueue.Policy.DROP);
     }
 
     /**
-     * Główna pętla gry obsługująca komunikację z klientami.
+     * Tworzy nową sesję gry z polityką pełnej kolejki wyjściowej.
+     *
+     * @param black socket gracza czarnego
+     * @param white socket gracza białego
+     * @param size długość boku planszy
+     * @param readers fabryka wątków czytających i wypychających
+     * @param policy co zrobić z graczem, który nie odbiera komunikatów
+     */
+    public Game(Socket black, Socket white, int size, ThreadFactory readers, OutboundQueue.Policy policy) {
+        this.board = new Board(size);
+        this.points = new int[size * size];
+        this.transport = black == null ? null : new SocketTransport(this, black, white, readers, policy);
+    }
+
+    /**
+     * Tworzy sesję bez socketów - transport podaje linie przez submit().
+     *
+     * @param size długość boku planszy
+     */
+    public Game(int size) {
+        this(null, null, size);
+    }
+
+    /**
+     * Główna pętla gry obsługująca komunikację z klientami przez sockety
+     * podane w konstruktorze (SocketTransport). Wyjście albo rozłączenie
+     * gracza, który czeka na swoją kolej, kończy grę od razu - a w grze
+     * wznawialnej po graceMs bez powrotu gracza.
      */
     @Override
     public void run() {
-        try {
-            Thread.sleep(100);
-            BufferedReader inBlack = new BufferedReader(new InputStreamReader(socketBlack.getInputStream()));
-            PrintWriter outBlack = new PrintWriter(socketBlack.getOutputStream(), true);
-            BufferedReader inWhite = new BufferedReader(new InputStreamReader(socketWhite.getInputStream()));
-            PrintWriter outWhite = new PrintWriter(socketWhite.getOutputStream(), true);
-
-            outBlack.println("INIT BLACK");
-            outWhite.println("INIT WHITE");
-            sendTurnUpdate(outBlack, outWhite);
+        transport.run();
+    }
 
-            boolean connectionActive = true;
-            while (connectionActive && currentState != State.FINISHED) {
-                Socket activeSocket = getActiveSocket();
-                BufferedReader activeIn = (activeSocket == socketBlack) ? inBlack : inWhite;
+    /**
+     * Przyjmuje gracza wracającego z tokenem sesji (tryb run()). Gra
+     * przełączy się na nowy socket w swoim wątku.
+     *
+     * @param token token z linii RESUME
+     * @param socket nowy socket gracza
+     * @return false, gdy token nie pasuje albo gra już się skończyła -
+     *         wtedy socket zamyka wywołujący
+     */
+    public boolean resume(String token, Socket socket) {
+        boolean black = token.equals(tokenBlack);
+        if (!black && !token.equals(tokenWhite))
+            return false;
+        return transport.resume(black, socket);
+    }
 
-                String input = activeIn.readLine();
-                if (input == null) break;
+    /**
+     * @param black true dla gracza czarnego
+     * @return bieżący writer gracza - dla transportu
+     */
+    PrintWriter writer(boolean black) {
+        return black ? outBlack : outWhite;
+    }
 
-                System.out.println("SERVER: " + input + " [State: " + currentState + "]");
+    /**
+     * Zastępuje writer gracza, np. writerem ramek po przejściu na protokół
+     * binarny. Wywoływane w wątku gry.
+     *
+     * @param black true dla gracza czarnego
+     * @param out nowy writer
+     */
+    void writer(boolean black, PrintWriter out) {
+        if (black)
+            outBlack = out;
+        else
+            outWhite = out;
+    }
+
+    /**
+     * Zapisuje zdarzenia widoczne dla widzów do dziennika. Wywoływane
+     * przed open(); dziennik dostaje od razu obraz pustej planszy.
+     *
+     * @param events dziennik gry
+     */
+    public void observe(EventLog events) {
+        this.events = events;
+        events.snapshot(snapshot());
+    }
+
+    /**
+     * Rozpoczyna grę: przydziela kolory i wysyła informację o turze.
+     *
+     * @param outBlack writer gracza czarnego
+     * @param outWhite writer gracza białego
+     */
+    public void open(PrintWriter outBlack, PrintWriter outWhite) {
+        this.outBlack = outBlack;
+        this.outWhite = outWhite;
+        greet(outBlack, true);
+        greet(outWhite, false);
+        sendTurnUpdate(outBlack, outWhite);
+        flush();
+    }
+
+    private void greet(PrintWriter out, boolean black) {
+        out.println("INIT " + (black ? "BLACK " : "WHITE ") + board.getSize() + " " + Binary.OFFER);
+        if (graceMs > 0)
+            out.println("SESSION " + token(black));
+    }
+
+    /**
+     * Włącza wznawianie gry: gracze dostaną tokeny sesji, a rozłączenie
+     * zostawi grę czekającą graceMs na ich powrót. Wywoływane przed open()
+     * albo run(); gra bez dziennika dostaje własny, bez przedrostka.
+     *
+     * @param graceMs czas na powrót gracza w milisekundach
+     */
+    public void resumable(long graceMs) {
+        this.graceMs = graceMs;
+        tokenBlack = newToken();
+        tokenWhite = newToken();
+        if (events == null)
+            observe(new EventLog(""));
+    }
+
+    /**
+     * Dodaje obserwatora przebiegu gry, np. Journal.open(game) albo
+     * archiwum. Może być wywołane w każdej chwili przed końcem gry - ruchy
+     * gra pamięta od początku, a przyjęte komendy zgłasza od tej chwili.
+     *
+     * @param observer obserwator
+     */
+    public void observe(GameObserver observer) {
+        observers.add(observer);
+    }
 
-                processCommand(input, outBlack, outWhite);
+    /**
+     * Nadaje graczom nazwy dla dziennika, archiwum i eksportu SGF.
+     *
+     * @param black nazwa gracza czarnego (w serwerze adres)
+     * @param white nazwa gracza białego
+     */
+    public void players(String black, String white) {
+        this.playerBlack = black;
+        this.playerWhite = white;
+    }
+
+    /**
+     * Odtwarza grę z dziennika: przepuszcza komendy przez reguły z pustymi
+     * writerami, jeszcze bez obserwatorów, więc nic nie trafia do dziennika
+     * ponownie. Obaj gracze są nieobecni, a writery zostają puste do ich
+     * powrotu (resume).
+     *
+     * @param size długość boku planszy
+     * @param tokenBlack token sesji czarnego
+     * @param tokenWhite token sesji białego
+     * @param black nazwa gracza czarnego albo null
+     * @param white nazwa gracza białego albo null
+     * @param commands komendy w kolejności przyjęcia
+     * @param graceMs czas na powrót graczy
+     * @return gra w stanie po ostatniej komendzie
+     */
+    static Game recover(int size, String tokenBlack, String tokenWhite,
+                        String black, String white, List<String> commands, long graceMs) {
+        Game game = new Game(size);
+        PrintWriter nowhere = new PrintWriter(Writer.nullWriter());
+        game.outBlack = nowhere;
+        game.outWhite = nowhere;
+        for (String line : commands) {
+            Parser.parse(line, game.command);
+            game.processCommand(game.command, nowhere, nowhere);
+        }
+        game.graceMs = graceMs;
+        game.tokenBlack = tokenBlack;
+        game.tokenWhite = tokenWhite;
+        game.playerBlack = black;
+        game.playerWhite = white;
+        game.awayBlack = true;
+        game.awayWhite = true;
+        game.observe(new EventLog(""));
+        return game;
+    }
+
+    /**
+     * @param black true dla gracza czarnego
+     * @return nazwa gracza podana w players() albo null
+     */
+    public String player(boolean black) {
+        return black ? playerBlack : playerWhite;
+    }
+
+    /**
+     * @return długość boku planszy
+     */
+    public int size() {
+        return board.getSize();
+    }
+
+    /**
+     * @return liczba zapamiętanych ruchów, pasów i zdjęć martwych kamieni
+     */
+    int moveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @param i numer ruchu od 0
+     * @return kod ruchu jak w Archive.Record.move()
+     */
+    int move(int i) {
+        return moves[i] & 0xFFFF;
+    }
+
+    /**
+     * @return ruchy w kodach archiwum; ważne pierwsze moveCount(), tablica
+     *         jest dalej używana przez grę
+     */
+    short[] moves() {
+        return moves;
+    }
+
+    /**
+     * @return klucz Zobrista pozycji na planszy
+     */
+    long positionKey() {
+        return board.positionKey();
+    }
+
+    /**
+     * @return Archive.SCORE, SURRENDER albo LEFT; -1 dla trwającej gry
+     */
+    int reason() {
+        return reason;
+    }
+
+    int winner() {
+        return winner;
+    }
+
+    int scoreBlack() {
+        return scoreBlack;
+    }
+
+    int scoreWhite() {
+        return scoreWhite;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        TOKENS.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @param black true dla gracza czarnego
+     * @return token sesji gracza albo null w grze niewznawialnej
+     */
+    public String token(boolean black) {
+        return black ? tokenBlack : tokenWhite;
+    }
+
+    /**
+     * @return czas na powrót rozłączonego gracza, 0 w grze niewznawialnej
+     */
+    public long graceMs() {
+        return graceMs;
+    }
+
+    /**
+     * @param black true dla gracza czarnego
+     * @return true, gdy gracz się rozłączył i jeszcze nie wrócił
+     */
+    public boolean isAway(boolean black) {
+        return black ? awayBlack : awayWhite;
+    }
+
+    /**
+     * Wznawia grę gracza na nowym writerze: INIT i SESSION jak na
+     * początku, ostatni obraz planszy i zdarzenia po nim z dziennika,
+     * a na końcu to, na co gra od niego czeka (YOUR_TURN, CONFIRM_REQ).
+     * Stary writer przestaje być używany.
+     *
+     * @param black true dla gracza czarnego
+     * @param out writer nowego połączenia
+     * @return false, gdy gra już się skończyła
+     */
+    public boolean resume(boolean black, PrintWriter out) {
+        if (currentState == State.FINISHED || graceMs == 0)
+            return false;
+        if (black) {
+            outBlack = out;
+            awayBlack = false;
+        } else {
+            outWhite = out;
+            awayWhite = false;
+        }
+        greet(out, black);
+        events.replay(out::println);
+        for (String line : pending(black).split("\n")) {
+            if (!line.isEmpty())
+                out.println(line);
+        }
+        send(black ? outWhite : outBlack, RECONNECTED);
+        flush();
+        return true;
+    }
+
+    /**
+     * Kończy grę jak wyjście gracza, jeśli po graceMs wciąż nie wrócił.
+     * Transport woła to po upływie czasu od rozłączenia.
+     *
+     * @param black true dla gracza czarnego
+     */
+    public void expire(boolean black) {
+        if (currentState == State.FINISHED || !isAway(black))
+            return;
+        leave(black, DISCONNECTED);
+        flush();
+    }
+
+    /**
+     * Przyjmuje linię od gracza - dla testów i narzędzi; transport rozkłada
+     * linie i ramki sam i podaje komendy do submit(boolean, Command).
+     *
+     * @param black true dla gracza czarnego
+     * @param line linia protokołu bez znaku końca linii
+     */
+    public void submit(boolean black, String line) {
+        Parser.parse(line, command);
+        submit(black, command);
+    }
+
+    /**
+     * Przyjmuje komendę od gracza. Komenda gracza, który nie ma teraz
+     * ruchu, czeka w jego kolejce, tak jak linia czekałaby w nieczytanym
+     * sockecie. QUIT i SURRENDER kończą grę, gdy tylko wcześniejsze komendy
+     * tego gracza zostaną obsłużone - także poza jego turą.
+     *
+     * Komenda gracza, który ma ruch i nic nie czeka w jego kolejce, jest
+     * obsługiwana od razu; do kolejki trafia kopia. Komenda może więc
+     * wskazywać na bufor transportu, który po powrocie z submit zostanie
+     * nadpisany.
+     *
+     * @param black true dla gracza czarnego
+     * @param command komenda z Parser albo Binary.decode; błędna (z error)
+     *                dostaje odpowiedź ERROR
+     */
+    public void submit(boolean black, Command command) {
+        if (currentState == State.FINISHED)
+            return;
+        if (command == DISCONNECTED && graceMs > 0) {
+            // gra wznawialna czeka na powrot gracza - komendy odlozone zostaja
+            if (!isAway(black)) {
+                if (black)
+                    awayBlack = true;
+                else
+                    awayWhite = true;
+                send(black ? outWhite : outBlack, message.message(Binary.MESSAGE)
+                        .withText("Opponent disconnected. Waiting " + graceMs / 1000 + " s for reconnect."));
+                flush();
+            }
+            return;
+        }
+        Deque<Command> parked = black ? parkedBlack : parkedWhite;
+        if (parked.isEmpty() && isBlackActive() == black && !isLeaving(command)) {
+            processCommand(command, outBlack, outWhite);
+        } else if (parked.size() >= MAX_PARKED) {
+            // klient zasypuje serwer komendami poza swoja tura - przegrywa jak przy wyjsciu
+            send(black ? outBlack : outWhite, TOO_MANY);
+            leave(black, DISCONNECTED);
+            flush();
+            return;
+        } else {
+            parked.add(command == DISCONNECTED ? command : copy(command));
+        }
+        drain();
+        flush();
+    }
+
+    private Command copy(Command command) {
+        Command copy = spare.isEmpty() ? new Command() : spare.pop();
+        copy.copyFrom(command);
+        return copy;
+    }
+
+    private void flush() {
+        outBlack.flush();
+        outWhite.flush();
+        if (events != null)
+            events.flush();
+    }
+
+    /**
+     * Wysyła komunikat: przez MessageWriter w formacie gracza, do innego
+     * writera (testy, odtwarzanie) jako linię.
+     */
+    private static void send(PrintWriter out, Command message) {
+        if (out instanceof MessageWriter)
+            ((MessageWriter) out).send(message);
+        else
+            out.println(message.toString());
+    }
+
+    /**
+     * Dopisuje zdarzenie do dziennika widzów, co SNAPSHOT_EVERY zdarzeń
+     * razem z obrazem planszy.
+     *
+     * @param message komunikat wysłany graczom
+     */
+    private void record(Command message) {
+        if (events == null)
+            return;
+        events.append(message.toString());
+        if (events.needsSnapshot())
+            events.snapshot(snapshot());
+    }
+
+    /**
+     * Zwarty obraz gry dla widza: BOARD rozmiar B|W pola, gdzie pola to
+     * wiersze planszy jako '.', 'X' (czarny) i 'O' (biały); w fazie
+     * negocjacji dochodzi linia PHASE_NEGOTIATION.
+     *
+     * @return linie obrazu
+     */
+    private String snapshot() {
+        int size = board.getSize();
+        StringBuilder text = new StringBuilder(12 + size * size);
+        text.append("BOARD ").append(size).append(isBlackActive() ? " B " : " W ");
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int color = board.getColor(row, col);
+                text.append(color == 2 ? 'X' : color == 1 ? 'O' : '.');
+            }
+        }
+        if (currentState != State.PLAYING && currentState != State.FINISHED)
+            text.append("\nPHASE_NEGOTIATION");
+        return text.toString();
+    }
+
+    /**
+     * Obraz gry dla gracza, którego kolejka się zapchała (COALESCE):
+     * obraz planszy i to, czego gracz potrzebuje, żeby grać dalej -
+     * zaznaczoną grupę z prośbą o zgodę, wynik albo YOUR_TURN. Woła go
+     * wątek gry, więc stan jest spójny z ostatnim przejściem.
+     *
+     * @param black true dla gracza czarnego
+     * @param binary true, gdy gracz czyta ramki binarne
+     * @return linie zakodowane tak, jak gracz je teraz czyta
+     */
+    byte[] snapshotFor(boolean black, boolean binary) {
+        StringBuilder lines = new StringBuilder(snapshot()).append(pending(black));
+        if (!binary) {
+            lines.append('\n');
+            return lines.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (String line : lines.toString().split("\n"))
+            frames.writeBytes(Binary.encode(line));
+        return frames.toByteArray();
+    }
+
+    /**
+     * Linie, na które gra czeka od gracza albo które kończą jego obraz:
+     * zaznaczona grupa z prośbą o zgodę, wynik albo YOUR_TURN.
+     *
+     * @param black true dla gracza czarnego
+     * @return linie, każda poprzedzona znakiem końca linii
+     */
+    private String pending(boolean black) {
+        StringBuilder lines = new StringBuilder();
+        boolean active = isBlackActive() == black;
+        if (currentState == State.CONFIRM_WHITE || currentState == State.CONFIRM_BLACK) {
+            lines.append('\n').append(withPoints("MARK", board.collectChain(pendingDeadRow, pendingDeadCol, points)));
+            if (active)
+                lines.append('\n').append(confirmRequest());
+        } else if (currentState == State.FINISHED) {
+            if (result != null)
+                lines.append("\nGAME_OVER ").append(result);
+        } else if (active) {
+            lines.append("\nYOUR_TURN");
+        }
+        return lines.toString();
+    }
+
+    private String confirmRequest() {
+        return "CONFIRM_REQ " + pendingDeadRow + " " + pendingDeadCol + " " + CONFIRM_TEXT;
+    }
+
+    /**
+     * Zgłasza rozłączenie gracza. Jak koniec strumienia w run(), kończy grę
+     * zaraz po obsłużeniu wcześniejszych linii tego gracza. W grze
+     * wznawialnej gracz tylko znika (isAway) do resume() albo expire().
+     *
+     * @param black true dla gracza czarnego
+     */
+    public void disconnect(boolean black) {
+        submit(black, DISCONNECTED);
+    }
+
+    /**
+     * @return true jeśli gra się zakończyła
+     */
+    public boolean isFinished() {
+        return currentState == State.FINISHED;
+    }
+
+    private void drain() {
+        while (currentState != State.FINISHED) {
+            boolean black = isBlackActive();
+            // gracz czekajacy na ture moze wyjsc od razu
+            Deque<Command> waiting = black ? parkedWhite : parkedBlack;
+            if (isLeaving(waiting.peek())) {
+                leave(!black, waiting.poll());
+                return;
             }
-        } catch (IOException e) {
-            System.out.println("Error, disconnect: " + e.getMessage());
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            try { socketBlack.close(); socketWhite.close(); } catch (IOException e) {}
+            Command next = (black ? parkedBlack : parkedWhite).poll();
+            if (next == null)
+                return;
+            if (isLeaving(next)) {
+                leave(black, next);
+                return;
+            }
+            processCommand(next, outBlack, outWhite);
+            if (spare.size() < MAX_PARKED)
+                spare.push(next);
         }
     }
 
+    private static boolean isLeaving(Command command) {
+        return command == DISCONNECTED
+                || command != null && command.error == null && (command.op == Binary.QUIT || command.op == Binary.SURRENDER);
+    }
+
     /**
-     * Zwraca socket aktywnego gracza w zależności od stanu gry.
+     * Kończy grę, gdy gracz się poddaje, wychodzi albo rozłącza.
      *
-     * @return socket aktywnego gracza
+     * @param black true dla gracza czarnego
+     * @param command SURRENDER, QUIT albo znacznik rozłączenia
      */
-    private Socket getActiveSocket() {
+    private void leave(boolean black, Command command) {
+        String winner = black ? "White" : "Black";
+        int won = black ? Archive.WHITE : Archive.BLACK;
+        if (command.op == Binary.SURRENDER)
+            finishGame(outBlack, outWhite, "Surrender, " + winner + " won!", Archive.SURRENDER, won, 0, 0);
+        else
+            finishGame(outBlack, outWhite, (black ? "Black" : "White") + " left, " + winner + " won!", Archive.LEFT, won, 0, 0);
+    }
+
+    /**
+     * Sprawdza, czy ruch należy do gracza czarnego w zależności od stanu gry.
+     *
+     * @return true jeśli aktywny jest gracz czarny
+     */
+    private boolean isBlackActive() {
         switch (currentState) {
-            case PLAYING: return blackTurn ? socketBlack : socketWhite;
-            case NEGOTIATION_BLACK: return socketBlack;
-            case CONFIRM_WHITE: return socketWhite;
-            case NEGOTIATION_WHITE: return socketWhite;
-            case CONFIRM_BLACK: return socketBlack;
-            default: return socketBlack;
+            case PLAYING: return blackTurn;
+            case NEGOTIATION_BLACK: return true;
+            case CONFIRM_WHITE: return false;
+            case NEGOTIATION_WHITE: return false;
+            case CONFIRM_BLACK: return true;
+            default: return true;
         }
     }
 
     /**
-     * Przetwarza komendę od gracza.
+     * Przetwarza komendę od gracza. Błędna składnia (command.error z Parser
+     * albo Binary.decode) kończy się odpowiedzią ERROR zamiast wyjątku -
+     * gracz dalej ma ruch.
      *
-     * @param input komenda
+     * @param command komenda
      * @param outBlack writer gracza czarnego
      * @param outWhite writer gracza białego
      */
-    private void processCommand(String input, PrintWriter outBlack, PrintWriter outWhite) {
-        PrintWriter currentOut = (getActiveSocket() == socketBlack) ? outBlack : outWhite;
-        PrintWriter opponentOut = (getActiveSocket() == socketBlack) ? outWhite : outBlack;
-
-        if (input.equals("SURRENDER")) {
-            finishGame(outBlack, outWhite, (getActiveSocket() == socketBlack) ? "Surrender, White won!" : "Surrender, Black won!", "Surrender");
-            return;
-        }
+    private void processCommand(Command command, PrintWriter outBlack, PrintWriter outWhite) {
+        PrintWriter currentOut = isBlackActive() ? outBlack : outWhite;
+        PrintWriter opponentOut = isBlackActive() ? outWhite : outBlack;
+        boolean valid = command.error == null;
 
         switch (currentState) {
             case PLAYING:
-                handlePlaying(input, outBlack, outWhite, currentOut, opponentOut);
+                if (valid)
+                    handlePlaying(command, outBlack, outWhite, currentOut, opponentOut);
+                else
+                    send(currentOut, error(command.error));
                 break;
             case NEGOTIATION_BLACK:
             case NEGOTIATION_WHITE:
-                handleNegotiationState(input, outBlack, outWhite, currentOut, opponentOut);
+                if (valid)
+                    handleNegotiationState(command, outBlack, outWhite, currentOut, opponentOut);
+                else
+                    rejectNegotiation(command.error, currentOut);
                 break;
             case CONFIRM_WHITE:
             case CONFIRM_BLACK:
-                handleConfirmation(input, outBlack, outWhite, currentOut, opponentOut);
+                // wszystko poza Y (takze y) to odmowa
+                handleConfirmation(command.isYes(), outBlack, outWhite, currentOut, opponentOut);
                 break;
         }
     }
 
+    /**
+     * Zgłasza obserwatorom komendę przyjętą przez handler - odrzucone nie
+     * zmieniają stanu gry, więc odtwarzanie ich nie potrzebuje. Wywoływane
+     * przed skutkami komendy, bo koniec gry zgłaszany jest po niej.
+     */
+    private void accepted(Command command) {
+        for (GameObserver observer : observers)
+            observer.accepted(command);
+    }
+
+    /**
+     * @return odpowiedź ERROR z treścią błędu Parser
+     */
+    private Command error(String error) {
+        if (error == Parser.UNKNOWN_COMMAND)
+            return UNKNOWN_COMMAND;
+        if (error == Parser.INVALID_ARGUMENTS)
+            return INVALID_ARGUMENTS;
+        return message.message(Binary.ERROR).withText(error);
+    }
+
+    /**
+     * @return true, jeśli pole komendy leży na planszy
+     */
+    private boolean onBoard(Command command) {
+        return command.row() < board.getSize() && command.col() < board.getSize();
+    }
+
     /**
      * Obsługuje komendy podczas rozgrywki.
      *
-     * @param input komenda
+     * @param command komenda
      * @param outBlack writer gracza czarnego
      * @param outWhite writer gracza białego
      * @param currentOut writer aktywnego gracza
      * @param opponentOut writer przeciwnika
      */
-    private void handlePlaying(String input, PrintWriter outBlack, PrintWriter outWhite, PrintWriter currentOut, PrintWriter opponentOut) {
-        if (input.equals("PASS")) {
+    private void handlePlaying(Command command, PrintWriter outBlack, PrintWriter outWhite, PrintWriter currentOut, PrintWriter opponentOut) {
+        if (command.op == Binary.PASS) {
+            accepted(command);
             passCount++;
-            currentOut.println("MESSAGE You passed.");
-            opponentOut.println("MESSAGE Opponent passed");
+            remember(Archive.PASS);
+            send(currentOut, YOU_PASSED);
+            send(opponentOut, OPPONENT_PASSED);
+            record(blackTurn ? BLACK_PASSED : WHITE_PASSED);
             blackTurn = !blackTurn;
 
+            if (limitReached(outBlack, outWhite))
+                return;
             if (passCount >= 2) {
                 initiateNegotiation(outBlack, outWhite);
             } else {
                 sendTurnUpdate(outBlack, outWhite);
             }
         }
-        else if (input.startsWith("MOVE")) {
-            String[] parts = input.split(" ");
-            int row = Integer.parseInt(parts[1]);
-            int col = Integer.parseInt(parts[2]);
+        else if (command.op == Binary.MOVE) {
+            int row = command.row();
+            int col = command.col();
 
-            if (board.checkMove(row, col, blackTurn)) {
+            if (onBoard(command) && board.play(row, col, blackTurn)) {
+                accepted(command);
                 passCount = 0;
-                board.copyToLast();
-                BoardHelper.makeMove(board, row, col, blackTurn);
+                remember(row * board.getSize() + col);
 
-                String moveMsg = "MOVE_OK " + row + " " + col + " " + (blackTurn ? "true" : "false");
-                outBlack.println(moveMsg);
-                outWhite.println(moveMsg);
+                // ruch i zbite kamienie jednym komunikatem: MOVE_OK r c kolor [r c]...
+                Command moveMsg = withPoints(message.message(Binary.MOVE_OK).with(row).with(col).withFlag(blackTurn),
+                        board.collectRemoved(points));
+                send(outBlack, moveMsg);
+                send(outWhite, moveMsg);
+                record(moveMsg);
 
                 blackTurn = !blackTurn;
-                sendTurnUpdate(outBlack, outWhite);
+                if (!limitReached(outBlack, outWhite))
+                    sendTurnUpdate(outBlack, outWhite);
             } else {
-                currentOut.println("ERROR Invalid move.");
+                send(currentOut, INVALID_MOVE);
             }
         }
+        else {
+            send(currentOut, UNKNOWN_COMMAND);
+        }
     }
 
     /**
@@ -185,130 +859,171 @@ public class Game extends Thread {
      * @param outWhite writer gracza białego
      */
     private void initiateNegotiation(PrintWriter outBlack, PrintWriter outWhite) {
-        this.scoringBoard = new Board();
-        BoardHelper.copyBoardState(this.scoringBoard, this.board);
-
         currentState = State.NEGOTIATION_BLACK;
 
-        outBlack.println("PHASE_NEGOTIATION");
-        outWhite.println("PHASE_NEGOTIATION");
+        send(outBlack, PHASE_NEGOTIATION);
+        send(outWhite, PHASE_NEGOTIATION);
+        record(PHASE_NEGOTIATION);
 
-        outBlack.println("MESSAGE NEGOTIATION PHASE. Mark dead stones.");
-        outWhite.println("MESSAGE NEGOTIATION PHASE. Wait for Black...");
+        send(outBlack, MARK_DEAD);
+        send(outWhite, WAIT_MARK);
 
-        outBlack.println("YOUR_TURN");
+        send(outBlack, YOUR_TURN);
     }
 
     /**
      * Obsługuje fazę negocjacji martwych kamieni.
      *
-     * @param input komenda
+     * @param command komenda
      * @param outBlack writer gracza czarnego
      * @param outWhite writer gracza białego
      * @param currentOut writer aktywnego gracza
      * @param opponentOut writer przeciwnika
      */
-    private void handleNegotiationState(String input, PrintWriter outBlack, PrintWriter outWhite, PrintWriter currentOut, PrintWriter opponentOut) {
-        if (input.equals("PLAYON")) {
+    private void handleNegotiationState(Command command, PrintWriter outBlack, PrintWriter outWhite, PrintWriter currentOut, PrintWriter opponentOut) {
+        if (command.op == Binary.PLAYON) {
+            accepted(command);
             currentState = State.PLAYING;
             passCount = 0;
-            String msg = "MESSAGE Game resumed (PLAYON)!";
-            outBlack.println(msg);
-            outWhite.println(msg);
+            send(outBlack, PLAY_ON);
+            send(outWhite, PLAY_ON);
 
-            outBlack.println("MARK_CLEAR");
-            outWhite.println("MARK_CLEAR");
+            send(outBlack, MARK_CLEAR);
+            send(outWhite, MARK_CLEAR);
+            record(PLAY_ON);
+            record(MARK_CLEAR);
 
             sendTurnUpdate(outBlack, outWhite);
             return;
         }
 
-        if (input.equals("DONE")) {
+        if (command.op == Binary.DONE) {
+            accepted(command);
             if (currentState == State.NEGOTIATION_BLACK) {
                 currentState = State.NEGOTIATION_WHITE;
-                outWhite.println("PHASE_NEGOTIATION");
-                outWhite.println("MESSAGE Your turn to mark.");
-                outBlack.println("MESSAGE Black finished. Wait for White.");
-                outWhite.println("YOUR_TURN");
+                send(outWhite, PHASE_NEGOTIATION);
+                send(outWhite, WHITE_MARKS);
+                send(outBlack, BLACK_DONE);
+                send(outWhite, YOUR_TURN);
             } else {
                 calculateScore(outBlack, outWhite);
             }
             return;
         }
 
-        if (input.startsWith("DEAD")) {
-            String[] parts = input.split(" ");
-            int row = Integer.parseInt(parts[1]);
-            int col = Integer.parseInt(parts[2]);
+        if (command.op == Binary.DEAD) {
+            int row = command.row();
+            int col = command.col();
 
-            if (BoardHelper.getColor(scoringBoard, row, col) != 0) {
+            if (onBoard(command) && BoardHelper.getColor(board, row, col) != 0) {
+                accepted(command);
                 pendingDeadRow = row;
                 pendingDeadCol = col;
 
-                List<int[]> group = BoardHelper.getChain(scoringBoard, row, col);
-                for(int[] stone : group) {
-                    String markMsg = "MARK " + stone[0] + " " + stone[1];
-                    outBlack.println(markMsg);
-                    outWhite.println(markMsg);
-                }
+                Command markMsg = withPoints(message.message(Binary.MARK), board.collectChain(row, col, points));
+                send(outBlack, markMsg);
+                send(outWhite, markMsg);
+                record(markMsg);
 
                 currentState = (currentState == State.NEGOTIATION_BLACK) ? State.CONFIRM_WHITE : State.CONFIRM_BLACK;
-                currentOut.println("MESSAGE Waiting for enemy's approval...");
-                opponentOut.println("CONFIRM_REQ " + row + " " + col + " Oppenent marked stones. Do you agree with him?");
+                send(currentOut, WAIT_APPROVAL);
+                send(opponentOut, message.message(Binary.CONFIRM_REQ).with(row).with(col).withText(CONFIRM_TEXT));
             } else {
-                currentOut.println("ERROR Choose valid position!");
+                send(currentOut, INVALID_POSITION);
             }
         }
         else {
-            currentOut.println("ERROR Invalid command.");
-            currentOut.println("PHASE_NEGOTIATION");
-            currentOut.println("YOUR_TURN");
+            rejectNegotiation(Parser.UNKNOWN_COMMAND, currentOut);
         }
     }
 
+    /**
+     * Odrzuca komendę w fazie negocjacji - gracz dalej zaznacza.
+     *
+     * @param error treść błędu
+     * @param currentOut writer aktywnego gracza
+     */
+    private void rejectNegotiation(String error, PrintWriter currentOut) {
+        send(currentOut, error(error));
+        send(currentOut, PHASE_NEGOTIATION);
+        send(currentOut, YOUR_TURN);
+    }
+
     /**
      * Obsługuje potwierdzanie martwych kamieni przez przeciwnika.
      *
-     * @param input komenda (Y/N)
+     * @param agree true, jeśli przeciwnik odpowiedział Y
      * @param outBlack writer gracza czarnego
      * @param outWhite writer gracza białego
      * @param currentOut writer aktywnego gracza
      * @param opponentOut writer przeciwnika
      */
-    private void handleConfirmation(String input, PrintWriter outBlack, PrintWriter outWhite, PrintWriter currentOut, PrintWriter opponentOut) {
-        List<int[]> deadGroup = BoardHelper.getChain(scoringBoard, pendingDeadRow, pendingDeadCol);
+    private void handleConfirmation(boolean agree, PrintWriter outBlack, PrintWriter outWhite, PrintWriter currentOut, PrintWriter opponentOut) {
+        // kazda odpowiedz poza Y to odmowa - dziennik dostaje jej znaczenie
+        accepted(agree ? AGREE : DISAGREE);
+        if (agree) {
+            board.removeGroup(pendingDeadRow, pendingDeadCol);
+            remember(Archive.REMOVED | pendingDeadRow * board.getSize() + pendingDeadCol);
 
-        if (input.equalsIgnoreCase("Y")) {
-            scoringBoard.finalRemoveChain(pendingDeadRow, pendingDeadCol);
+            Command rmMsg = withPoints(message.message(Binary.DEAD_REMOVED), board.collectRemoved(points));
+            send(outBlack, rmMsg);
+            send(outWhite, rmMsg);
+            record(rmMsg);
 
-            for (int[] stone : deadGroup) {
-                int r = stone[0];
-                int c = stone[1];
-                board.positions[r][c].color = 0;
-                board.positions[r][c].breaths = 0;
-            }
+            send(currentOut, AGREED_REMOVED);
+            send(opponentOut, AGREED);
 
-            for (int[] stone : deadGroup) {
-                String rmMsg = "DEAD_REMOVED " + stone[0] + " " + stone[1];
-                outBlack.println(rmMsg);
-                outWhite.println(rmMsg);
-            }
-
-            currentOut.println("MESSAGE Agreement. Stones are removed.");
-            opponentOut.println("MESSAGE Agreement.");
+            Score score = board.score();
+            Command scoreMsg = message.message(Binary.MESSAGE).withText("Current score: Black="
+                    + score.territoryScore(true) + ", White=" + score.territoryScore(false));
+            send(outBlack, scoreMsg);
+            send(outWhite, scoreMsg);
+            record(scoreMsg);
         } else {
-            for (int[] stone : deadGroup) {
-                String clearMsg = "UNMARK " + stone[0] + " " + stone[1];
-                outBlack.println(clearMsg);
-                outWhite.println(clearMsg);
-            }
+            Command clearMsg = withPoints(message.message(Binary.UNMARK),
+                    board.collectChain(pendingDeadRow, pendingDeadCol, points));
+            send(outBlack, clearMsg);
+            send(outWhite, clearMsg);
+            record(clearMsg);
 
-            currentOut.println("MESSAGE No agreement.");
-            opponentOut.println("MESSAGE Opponent did not agree.");
+            send(currentOut, NOT_AGREED);
+            send(opponentOut, OPPONENT_NOT_AGREED);
         }
 
+        if (limitReached(outBlack, outWhite))
+            return;
         currentState = (currentState == State.CONFIRM_WHITE) ? State.NEGOTIATION_BLACK : State.NEGOTIATION_WHITE;
-        opponentOut.println("YOUR_TURN");
+        send(opponentOut, YOUR_TURN);
+    }
+
+    /**
+     * Dopisuje do komendy pola z bufora points jako pary "wiersz kolumna",
+     * żeby cała grupa szła jednym komunikatem.
+     *
+     * @param command początek komunikatu
+     * @param count liczba pól w points
+     * @return komunikat
+     */
+    private String withPoints(String command, int count) {
+        StringBuilder msg = new StringBuilder(command.length() + 6 * count).append(command);
+        int size = board.getSize();
+        for (int i = 0; i < count; i++)
+            msg.append(' ').append(points[i] / size).append(' ').append(points[i] % size);
+        return msg.toString();
+    }
+
+    /**
+     * Dopisuje do komunikatu pola z bufora points jako pary liczb.
+     *
+     * @param message początek komunikatu
+     * @param count liczba pól w points
+     * @return komunikat
+     */
+    private Command withPoints(Command message, int count) {
+        int size = board.getSize();
+        for (int i = 0; i < count; i++)
+            message.with(points[i] / size).with(points[i] % size);
+        return message;
     }
 
     /**
@@ -318,25 +1033,18 @@ public class Game extends Thread {
      * @param outWhite writer gracza białego
      */
     private void calculateScore(PrintWriter outBlack, PrintWriter outWhite) {
-        scoringBoard.calculateTerritories();
-
-        int pointsBlack = 0;
-        int pointsWhite = 0;
-
-        for(int i = 0; i < 19; i++) {
-            for(int j = 0; j < 19; j++) {
-                int territory = scoringBoard.territoryCache[i][j];
-                if(territory == 1) pointsWhite++;
-                if(territory == 2) pointsBlack++;
-            }
-        }
+        // punktacja japonska: terytorium i jency (razem ze zdjetymi martwymi)
+        Score score = board.score();
+        int pointsBlack = score.territoryScore(true);
+        int pointsWhite = score.territoryScore(false);
 
         String result = "Score: Black=" + pointsBlack + ", White=" + pointsWhite;
-        if (pointsWhite > pointsBlack) result += " -> WHITE WON!";
-        else if (pointsBlack > pointsWhite) result += " -> BLACK WON!";
+        int winner = Archive.NONE;
+        if (pointsWhite > pointsBlack) { result += " -> WHITE WON!"; winner = Archive.WHITE; }
+        else if (pointsBlack > pointsWhite) { result += " -> BLACK WON!"; winner = Archive.BLACK; }
         else result += " -> DRAW!";
 
-        finishGame(outBlack, outWhite, result, "Game over");
+        finishGame(outBlack, outWhite, result, Archive.SCORE, winner, pointsBlack, pointsWhite);
     }
 
     /**
@@ -345,12 +1053,55 @@ public class Game extends Thread {
      * @param outBlack writer gracza czarnego
      * @param outWhite writer gracza białego
      * @param result wynik gry
-     * @param reason powód zakończenia
+     * @param reason powód zakończenia: Archive.SCORE, SURRENDER albo LEFT
+     * @param winner Archive.BLACK, WHITE albo NONE (remis)
+     * @param scoreBlack punkty czarnego (tylko przy SCORE)
+     * @param scoreWhite punkty białego
      */
-    private void finishGame(PrintWriter outBlack, PrintWriter outWhite, String result, String reason) {
-        outBlack.println("GAME_OVER " + result);
-        outWhite.println("GAME_OVER " + result);
+    private void finishGame(PrintWriter outBlack, PrintWriter outWhite, String result, int reason, int winner,
+                            int scoreBlack, int scoreWhite) {
+        Command gameOver = message.message(Binary.GAME_OVER).withText(result);
+        send(outBlack, gameOver);
+        send(outWhite, gameOver);
+        this.result = result;
+        this.reason = reason;
+        this.winner = winner;
+        this.scoreBlack = scoreBlack;
+        this.scoreWhite = scoreWhite;
         currentState = State.FINISHED;
+        record(gameOver);
+        if (events != null)
+            events.close();
+        for (GameObserver observer : observers)
+            observer.finished(this);
+    }
+
+    /**
+     * Zapamiętuje ruch w kodzie archiwum: pole, PASS albo REMOVED | pole.
+     */
+    private void remember(int code) {
+        if (moveCount == moves.length)
+            moves = Arrays.copyOf(moves, Math.min(2 * moveCount, Archive.MAX_MOVES));
+        moves[moveCount++] = (short) code;
+    }
+
+    /**
+     * Kończy grę liczeniem punktów, gdy zapamiętanych ruchów jest
+     * Archive.MAX_MOVES - dłuższa gra nie zmieści się w rekordzie archiwum,
+     * a pasy z PLAYON mogą ją wydłużać bez końca.
+     *
+     * @param outBlack writer gracza czarnego
+     * @param outWhite writer gracza białego
+     * @return true, gdy gra została zakończona
+     */
+    private boolean limitReached(PrintWriter outBlack, PrintWriter outWhite) {
+        if (moveCount < Archive.MAX_MOVES)
+            return false;
+        send(outBlack, MOVE_LIMIT);
+        send(outWhite, MOVE_LIMIT);
+        record(MOVE_LIMIT);
+        calculateScore(outBlack, outWhite);
+        return true;
     }
 
     /**
@@ -361,13 +1112,13 @@ public class Game extends Thread {
      */
     private void sendTurnUpdate(PrintWriter outBlack, PrintWriter outWhite) {
         if (blackTurn) {
-            outBlack.println("MESSAGE Your move");
-            outBlack.println("YOUR_TURN");
-            outWhite.println("MESSAGE Opponents move (Black)...");
+            send(outBlack, YOUR_MOVE_BLACK);
+            send(outBlack, YOUR_TURN);
+            send(outWhite, WAIT_FOR_BLACK);
         } else {
-            outWhite.println("MESSAGE Your move!");
-            outWhite.println("YOUR_TURN");
-            outBlack.println("MESSAGE Opponents move (White)...");
+            send(outWhite, YOUR_MOVE_WHITE);
+            send(outWhite, YOUR_TURN);
+            send(outBlack, WAIT_FOR_WHITE);
         }
     }
 }
\ No newline at end of file
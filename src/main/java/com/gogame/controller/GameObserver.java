@@ -0,0 +1,28 @@
+package com.gogame.controller;
+
+import com.gogame.protocol.Command;
+
+/**
+ * Obserwator przebiegu gry: zapis poza jej regułami, np. trwały dziennik
+ * (Journal) albo archiwum (Archive). Gra zgłasza mu przyjęte komendy
+ * i swój koniec, nie wiedząc, dokąd trafiają - tak jak widzom zdarzenia
+ * przez EventLog. Wywoływany w wątku gry.
+ */
+public interface GameObserver {
+    /**
+     * Komenda przyjęta przez reguły, zgłaszana przed jej skutkami -
+     * odrzucone nie zmieniają stanu gry i tu nie trafiają.
+     *
+     * @param command komenda; obserwator nie może jej zachować
+     */
+    default void accepted(Command command) {
+    }
+
+    /**
+     * Gra się skończyła. Wynik, gracze i ruchy są do odczytania z gry.
+     *
+     * @param game zakończona gra
+     */
+    default void finished(Game game) {
+    }
+}
@@ -0,0 +1,521 @@
+package com.gogame.controller;
+
+import com.gogame.Board;
+import com.gogame.protocol.Command;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trwały dziennik gier: każda komenda przyjęta przez grę (po sprawdzeniu
+ * przez jej handler) jest dopisywana na koniec pliku, więc po awarii serwera gry można
+ * odtworzyć, przepuszczając ich komendy przez te same reguły jeszcze raz.
+ *
+ * Gry są rozdzielone między kilka plików (shardów) według identyfikatora.
+ * Dopisanie tylko kopiuje linię do bufora shardu - wątek gry nie czeka na
+ * dysk. Osobny wątek co commitMs zapisuje bufor każdego shardu jednym
+ * write i jednym fsync (group commit), więc koszt trwałości to najwyżej
+ * shards * 1000 / commitMs fsync na sekundę, bez względu na liczbę gier
+ * i ruchów. Awaria gubi najwyżej komendy z ostatniego okresu commitMs.
+ *
+ * Plik shardu to linie tekstu:
+ * <pre>
+ * id OPEN rozmiar tokenCzarnego tokenBiałego [nazwaCzarnego nazwaBiałego]
+ * id + linia
+ * id END
+ * </pre>
+ * Niedokończona ostatnia linia (awaria w trakcie zapisu) jest przy
+ * odtwarzaniu pomijana i obcinana. Pełna, ale uszkodzona linia w środku
+ * pliku jest pomijana z wpisem w logu - rekordy za nią odtwarzają się
+ * normalnie, a kompakcja ją usuwa. Zakończone gry zostają w pliku do
+ * kompakcji: ta w tle przepisuje shard, zostawiając tylko trwające gry.
+ */
+public class Journal implements Closeable {
+    public static final int DEFAULT_SHARDS = 4;
+    public static final long DEFAULT_COMMIT_MS = 10;
+    // shard jest przepisywany, gdy urosl ponad tyle i dwa razy od ostatniej kompakcji
+    static final long COMPACT_BYTES = 4 * 1024 * 1024;
+
+    private final Shard[] shards;
+    private final long commitMs;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final ScheduledExecutorService committer;
+    private final ExecutorService compactor;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    /**
+     * Plik jednego shardu. Dopisujący biorą tylko monitor shardu (bufor
+     * pending); zapis, fsync i podmiana pliku przy kompakcji trzymają io,
+     * a bufor zabierają pod monitorem shardu - kolejność: io, potem shard.
+     */
+    private static final class Shard {
+        final Path path;
+        final Object io = new Object();
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();   // monitor shardu
+        FileChannel channel;     // io
+        long size;               // io - bajty w pliku
+        long compactedSize;      // io - rozmiar po ostatniej kompakcji
+        boolean compacting;      // io
+
+        Shard(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Otwiera dziennik z domyślną liczbą shardów i okresem zapisu.
+     *
+     * @param dir katalog dziennika (tworzony, gdy go nie ma)
+     * @throws IOException gdy nie można otworzyć plików
+     */
+    public Journal(Path dir) throws IOException {
+        this(dir, DEFAULT_SHARDS, DEFAULT_COMMIT_MS);
+    }
+
+    /**
+     * Otwiera dziennik. Liczba shardów musi być ta sama przy każdym
+     * otwarciu tego samego katalogu.
+     *
+     * @param dir katalog dziennika (tworzony, gdy go nie ma)
+     * @param shards liczba plików
+     * @param commitMs okres zapisu z fsync w milisekundach
+     * @throws IOException gdy nie można otworzyć plików
+     */
+    public Journal(Path dir, int shards, long commitMs) throws IOException {
+        Files.createDirectories(dir);
+        this.commitMs = commitMs;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            Shard shard = new Shard(dir.resolve("shard-" + i + ".log"));
+            shard.channel = FileChannel.open(shard.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            shard.size = shard.channel.size();
+            shard.compactedSize = shard.size;
+            this.shards[i] = shard;
+        }
+        this.committer = Executors.newSingleThreadScheduledExecutor(daemon("journal-commit"));
+        this.compactor = Executors.newSingleThreadExecutor(daemon("journal-compactor"));
+        committer.scheduleWithFixedDelay(this::commit, commitMs, commitMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private Shard shard(long id) {
+        return shards[(int) (id % shards.length)];
+    }
+
+    /**
+     * Zakłada grę w dzienniku. Zwrócony obserwator, przekazany do
+     * Game.observe(), dopisuje przyjęte komendy i koniec gry. Wywoływane po
+     * Game.resumable() i Game.players(), przed Game.open() - odtworzona gra
+     * czeka na graczy z tymi samymi tokenami i nazwami.
+     *
+     * @param game nowa gra
+     * @return obserwator zapisujący grę do dziennika
+     */
+    public GameObserver open(Game game) {
+        long id = nextId.getAndIncrement();
+        String black = game.player(true);
+        String players = black == null ? "" : " " + black + " " + game.player(false);
+        append(id, "OPEN " + game.size() + " " + game.token(true) + " " + game.token(false) + players);
+        return new Entry(id);
+    }
+
+    /**
+     * Gra w dzienniku: przyjęte komendy jako rekordy "+", koniec jako END.
+     */
+    private final class Entry implements GameObserver {
+        private final long id;
+
+        Entry(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public void accepted(Command command) {
+            command(id, command.toString());
+        }
+
+        @Override
+        public void finished(Game game) {
+            end(id);
+        }
+    }
+
+    /**
+     * Dopisuje komendę przyjętą przez grę.
+     */
+    void command(long id, String line) {
+        append(id, "+ " + line);
+    }
+
+    /**
+     * Dopisuje koniec gry - przy odtwarzaniu i kompakcji gra jest pomijana.
+     */
+    void end(long id) {
+        append(id, "END");
+    }
+
+    private void append(long id, String record) {
+        byte[] bytes = (id + " " + record + "\n").getBytes(StandardCharsets.UTF_8);
+        Shard shard = shard(id);
+        synchronized (shard) {
+            shard.pending.writeBytes(bytes);
+        }
+        records.increment();
+    }
+
+    /**
+     * Okresowy zapis wątku commit: jeden write i fsync na shard z nowymi
+     * danymi, a gdy shard urósł, kompakcja w tle.
+     */
+    private void commit() {
+        for (Shard shard : shards) {
+            try {
+                boolean compact;
+                synchronized (shard.io) {
+                    write(shard);
+                    compact = !shard.compacting && shard.size > COMPACT_BYTES
+                            && shard.size > 2 * shard.compactedSize;
+                    if (compact)
+                        shard.compacting = true;
+                }
+                if (compact)
+                    compactor.execute(() -> compactInBackground(shard));
+            } catch (IOException e) {
+                System.out.println("Journal commit failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Zapisuje bufor shardu do pliku i robi fsync. Wywoływane z io.
+     */
+    private void write(Shard shard) throws IOException {
+        ByteArrayOutputStream batch;
+        synchronized (shard) {
+            if (shard.pending.size() == 0)
+                return;
+            batch = shard.pending;
+            shard.pending = new ByteArrayOutputStream(batch.size());
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+        while (bytes.hasRemaining())
+            shard.size += shard.channel.write(bytes, shard.size);
+        shard.channel.force(false);
+        fsyncs.increment();
+    }
+
+    /**
+     * Zapisuje od razu wszystko, co czeka w buforach, z fsync.
+     *
+     * @throws IOException gdy zapis się nie uda
+     */
+    public void flush() throws IOException {
+        for (Shard shard : shards) {
+            synchronized (shard.io) {
+                write(shard);
+            }
+        }
+    }
+
+    /**
+     * Odtwarza trwające gry: każdy shard jest czytany i przepuszczany przez
+     * reguły gry w osobnym zadaniu, równolegle. Odtworzona gra jest
+     * wznawialna, a obaj gracze są nieobecni - wracają przez RESUME ze
+     * swoimi tokenami. Po odtworzeniu shardy są kompaktowane w tle.
+     * Wywoływane raz, przed pierwszą nową grą.
+     *
+     * @param graceMs czas na powrót graczy odtworzonych gier
+     * @return trwające gry
+     * @throws IOException gdy nie można przeczytać dziennika
+     */
+    public List<Game> recover(long graceMs) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(shards.length, Runtime.getRuntime().availableProcessors()), daemon("journal-recovery"));
+        try {
+            List<Future<List<Game>>> tasks = new ArrayList<>();
+            for (Shard shard : shards)
+                tasks.add(pool.submit(() -> recover(shard, graceMs)));
+            List<Game> games = new ArrayList<>();
+            for (Future<List<Game>> task : tasks)
+                games.addAll(task.get());
+            for (Shard shard : shards) {
+                synchronized (shard.io) {
+                    shard.compacting = true;
+                }
+                compactor.execute(() -> compactInBackground(shard));
+            }
+            return games;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<Game> recover(Shard shard, long graceMs) throws IOException {
+        Map<Long, List<String>> live;
+        synchronized (shard.io) {
+            live = new LinkedHashMap<>();
+            long complete = scan(shard.path, shard.size, live);
+            if (complete < shard.size) {
+                // urwana ostatnia linia - nowe rekordy nie moga sie do niej dokleic
+                shard.channel.truncate(complete);
+                shard.size = complete;
+            }
+        }
+        List<Game> games = new ArrayList<>();
+        for (Map.Entry<Long, List<String>> game : live.entrySet()) {
+            long id = game.getKey();
+            List<String> records = game.getValue();
+            String[] open = records.get(0).split(" ");
+            Game recovered = Game.recover(Integer.parseInt(open[1]), open[2], open[3],
+                    open.length > 5 ? open[4] : null, open.length > 5 ? open[5] : null,
+                    records.subList(1, records.size()), graceMs);
+            if (recovered.isFinished()) {
+                end(id);   // koniec gry nie zdazyl trafic na dysk
+            } else {
+                recovered.observe(new Entry(id));
+                games.add(recovered);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Czyta rekordy shardu do pierwszego bajtu limit. Zostają gry bez END:
+     * identyfikator i rekordy bez przedrostka id, od OPEN. Przesuwa też
+     * nextId za największy widziany identyfikator.
+     *
+     * @return pozycja za ostatnią pełną linią
+     */
+    private long scan(Path path, long limit, Map<Long, List<String>> live) throws IOException {
+        long complete = 0;
+        long position = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            int b;
+            while (position < limit && (b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String text = line.toString(StandardCharsets.UTF_8);
+                line.reset();
+                if (!apply(text, live)) {
+                    // pelna, ale uszkodzona linia - reszta dziennika jest dalej dobra
+                    System.out.println("Journal: skipping corrupt record at byte " + complete + " of " + path.getFileName());
+                }
+                complete = position;
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Stosuje jeden rekord do map gier bez END.
+     *
+     * @return false dla uszkodzonego rekordu, który został pominięty
+     */
+    private boolean apply(String text, Map<Long, List<String>> live) {
+        int space = text.indexOf(' ');
+        long id;
+        try {
+            id = space > 0 ? Long.parseLong(text.substring(0, space)) : -1;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (id < 0)
+            return false;
+        String record = text.substring(space + 1);
+        if (record.startsWith("OPEN ")) {
+            if (!isOpen(record))
+                return false;
+            List<String> records = new ArrayList<>();
+            records.add(record);
+            live.put(id, records);
+        } else if (record.equals("END")) {
+            live.remove(id);
+        } else if (record.startsWith("+ ")) {
+            List<String> records = live.get(id);
+            if (records != null)
+                records.add(record.substring(2));
+        } else {
+            return false;
+        }
+        nextId.accumulateAndGet(id + 1, Math::max);
+        return true;
+    }
+
+    /**
+     * @return true dla "OPEN rozmiar tokenCzarnego tokenBialego [czarny bialy]"
+     *         z rozmiarem planszy, którą da się odtworzyć
+     */
+    private static boolean isOpen(String record) {
+        String[] open = record.split(" ");
+        if (open.length != 4 && open.length != 6)
+            return false;
+        try {
+            int size = Integer.parseInt(open[1]);
+            return size >= 2 && size <= Board.MAX_SIZE;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Kompaktuje wszystkie shardy od razu, w wątku wywołującym.
+     *
+     * @throws IOException gdy przepisanie się nie uda
+     */
+    public void compact() throws IOException {
+        for (Shard shard : shards) {
+            synchronized (shard.io) {
+                if (shard.compacting)
+                    continue;   // i tak trwa w tle
+                shard.compacting = true;
+            }
+            compact(shard);
+        }
+    }
+
+    private void compactInBackground(Shard shard) {
+        try {
+            compact(shard);
+        } catch (IOException e) {
+            System.out.println("Journal compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Przepisuje shard bez zakończonych gier. Większość pracy idzie bez
+     * blokady: gry dopisują dalej do starego pliku, a pod io dochodzi tylko
+     * przepisanie tego, co przybyło w trakcie, i podmiana pliku.
+     */
+    private void compact(Shard shard) throws IOException {
+        try {
+            long end;
+            synchronized (shard.io) {
+                write(shard);
+                end = shard.size;
+            }
+            Map<Long, List<String>> live = new LinkedHashMap<>();
+            scan(shard.path, end, live);
+            Path tmp = shard.path.resolveSibling(shard.path.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                StringBuilder text = new StringBuilder();
+                for (Map.Entry<Long, List<String>> game : live.entrySet()) {
+                    List<String> records = game.getValue();
+                    text.append(game.getKey()).append(' ').append(records.get(0)).append('\n');
+                    for (int i = 1; i < records.size(); i++)
+                        text.append(game.getKey()).append(" + ").append(records.get(i)).append('\n');
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining())
+                    out.write(bytes);
+
+                synchronized (shard.io) {
+                    write(shard);
+                    // rekordy dopisane w trakcie przechodza bez zmian
+                    long copied = end;
+                    while (copied < shard.size)
+                        copied += shard.channel.transferTo(copied, shard.size - copied, out);
+                    out.force(false);
+                    shard.channel.close();
+                    Files.move(tmp, shard.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    shard.channel = FileChannel.open(shard.path, StandardOpenOption.WRITE);
+                    shard.size = shard.channel.size();
+                    shard.compactedSize = shard.size;
+                }
+            }
+            compactions.increment();
+        } finally {
+            synchronized (shard.io) {
+                shard.compacting = false;
+            }
+        }
+    }
+
+    /**
+     * @return liczba dopisanych rekordów
+     */
+    public long records() {
+        return records.sum();
+    }
+
+    /**
+     * @return liczba wykonanych fsync
+     */
+    public long fsyncs() {
+        return fsyncs.sum();
+    }
+
+    /**
+     * @return liczba przepisanych shardów
+     */
+    public long compactions() {
+        return compactions.sum();
+    }
+
+    /**
+     * Kończy zapis okresowy i kompakcje, zapisuje resztę buforów z fsync
+     * i zamyka pliki.
+     *
+     * @throws IOException gdy ostatni zapis się nie uda
+     */
+    @Override
+    public void close() throws IOException {
+        committer.shutdown();
+        compactor.shutdown();
+        try {
+            committer.awaitTermination(commitMs + 1000, TimeUnit.MILLISECONDS);
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        for (Shard shard : shards) {
+            synchronized (shard.io) {
+                shard.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.gogame.controller;
+
+import com.gogame.Board;
+import com.gogame.BoardHelper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * Strumieniowy czytnik SGF: przechodzi kolekcję gier znak po znaku i od
+ * razu rozgrywa ruchy głównej linii na planszy (Board.play, kamienie
+ * ustawione AB/AW przez BoardHelper.makeMove), bez budowania drzewa
+ * węzłów i właściwości. Pamięć nie zależy od wielkości pliku: bufor
+ * wejścia, jedna wartość właściwości i plansza bieżącej gry.
+ *
+ * Zapamiętywane są tylko wartości potrzebne do gry: SZ, B, W, AB, AW, PB,
+ * PW i RE; reszta (komentarze, oznaczenia) jest przeskakiwana bez
+ * kopiowania. Warianty poza pierwszym są pomijane. Plansza powstaje przy
+ * pierwszym kamieniu, więc SZ musi go poprzedzać, jak w każdym pliku
+ * zapisanym zgodnie z FF[4].
+ *
+ * Po każdej grze odbiorca dostaje ten sam obiekt Record z planszą po
+ * ostatnim ruchu - nie może go zachować.
+ */
+public class SgfReader {
+    static final int BUFFER = 64 * 1024;
+
+    /**
+     * Gra wczytana do końca głównej linii.
+     */
+    public static final class Record {
+        private Board board;
+        private int size;
+        private String black;
+        private String white;
+        private String result;
+        private int moves;
+        private int illegal;
+
+        private void reset() {
+            board = null;
+            size = Board.DEFAULT_SIZE;
+            black = null;
+            white = null;
+            result = null;
+            moves = 0;
+            illegal = 0;
+        }
+
+        /**
+         * @return plansza po ostatnim ruchu głównej linii
+         */
+        public Board board() {
+            if (board == null)
+                board = new Board(size);
+            return board;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return PB albo null
+         */
+        public String black() {
+            return black;
+        }
+
+        /**
+         * @return PW albo null
+         */
+        public String white() {
+            return white;
+        }
+
+        /**
+         * @return RE albo null
+         */
+        public String result() {
+            return result;
+        }
+
+        /**
+         * @return liczba ruchów i pasów rozegranych na planszy
+         */
+        public int moves() {
+            return moves;
+        }
+
+        /**
+         * @return liczba ruchów odrzuconych przez reguły (zajęte pole,
+         *         samobójstwo, superko)
+         */
+        public int illegal() {
+            return illegal;
+        }
+    }
+
+    // zrodlo: bajty (bufor albo kanal) albo znaki (Reader)
+    private ByteBuffer bytes;
+    private ReadableByteChannel channel;
+    private Reader reader;
+    private final char[] chars = new char[BUFFER];
+    private int position;
+    private int limit;
+
+    private final Record record = new Record();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder property = new StringBuilder(4);
+    private long games = 0;
+    private long skipped = 0;
+    private long nanos = 0;
+
+    /**
+     * Czyta kolekcję z bufora, np. zmapowanego pliku.
+     *
+     * @param in bajty SGF; pozycja przesuwa się do końca
+     * @param games odbiorca gier
+     * @return liczba wczytanych gier
+     * @throws IOException dla błędu składni
+     */
+    public long read(ByteBuffer in, Consumer<Record> games) throws IOException {
+        bytes = in;
+        channel = null;
+        reader = null;
+        return collection(games);
+    }
+
+    /**
+     * Czyta kolekcję z kanału kawałkami po BUFFER bajtów - plik dowolnej
+     * wielkości przy stałej pamięci.
+     *
+     * @param in kanał z bajtami SGF
+     * @param games odbiorca gier
+     * @return liczba wczytanych gier
+     * @throws IOException gdy odczyt się nie uda albo dla błędu składni
+     */
+    public long read(ReadableByteChannel in, Consumer<Record> games) throws IOException {
+        bytes = ByteBuffer.allocateDirect(BUFFER).flip();
+        channel = in;
+        reader = null;
+        return collection(games);
+    }
+
+    /**
+     * Czyta kolekcję ze strumienia znaków.
+     *
+     * @param in znaki SGF
+     * @param games odbiorca gier
+     * @return liczba wczytanych gier
+     * @throws IOException gdy odczyt się nie uda albo dla błędu składni
+     */
+    public long read(Reader in, Consumer<Record> games) throws IOException {
+        bytes = null;
+        channel = null;
+        reader = in;
+        position = 0;
+        limit = 0;
+        return collection(games);
+    }
+
+    /**
+     * @return wszystkie gry wczytane przez ten czytnik
+     */
+    public long games() {
+        return games;
+    }
+
+    /**
+     * @return gry pominięte (rozmiar planszy poza 1..Board.MAX_SIZE)
+     */
+    public long skipped() {
+        return skipped;
+    }
+
+    /**
+     * @return gry na sekundę od pierwszego read()
+     */
+    public double gamesPerSecond() {
+        return nanos == 0 ? 0 : games * 1e9 / nanos;
+    }
+
+    private int next() throws IOException {
+        if (bytes != null) {
+            if (!bytes.hasRemaining() && !refill())
+                return -1;
+            return bytes.get() & 0xFF;
+        }
+        if (position == limit) {
+            limit = reader.read(chars, 0, chars.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return chars[position++];
+    }
+
+    private boolean refill() throws IOException {
+        if (channel == null)
+            return false;
+        bytes.clear();
+        int read;
+        do {
+            read = channel.read(bytes);
+        } while (read == 0);
+        bytes.flip();
+        return read > 0;
+    }
+
+    private int skipSpace(int c) throws IOException {
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+            c = next();
+        return c;
+    }
+
+    private long collection(Consumer<Record> out) throws IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        int c;
+        while ((c = skipSpace(next())) != -1) {
+            if (c != '(')
+                throw new IOException("SGF: expected '(' but got '" + (char) c + "'");
+            if (game()) {
+                out.accept(record);
+                count++;
+            } else {
+                skipped++;
+            }
+        }
+        games += count;
+        nanos += System.nanoTime() - start;
+        return count;
+    }
+
+    /**
+     * Jedna gra od '(' do pasującego ')'. Główna linia to pierwszy wariant
+     * na każdym rozgałęzieniu: kiedy zamyka się pierwszy wariant, reszta
+     * gry jest już tylko przeskakiwana.
+     *
+     * @return false, gdy gra ma nieobsługiwany rozmiar planszy
+     */
+    private boolean game() throws IOException {
+        record.reset();
+        boolean supported = true;
+        int depth = 1;
+        int mainDepth = 1;
+        boolean mainDone = false;
+        int c = next();
+        while (depth > 0) {
+            c = skipSpace(c);
+            if (c == -1)
+                throw new IOException("SGF: unexpected end of file");
+            if (c == '(') {
+                depth++;
+                if (!mainDone && depth == mainDepth + 1)
+                    mainDepth = depth;
+                c = next();
+            } else if (c == ')') {
+                if (depth == mainDepth && depth > 1)
+                    mainDone = true;
+                depth--;
+                c = depth > 0 ? next() : c;
+            } else if (c == ';') {
+                c = next();
+            } else if (c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z') {
+                boolean main = !mainDone && depth == mainDepth;
+                c = property(c, main && supported);
+                if (main && record.size > Board.MAX_SIZE)
+                    supported = false;
+            } else {
+                throw new IOException("SGF: unexpected '" + (char) c + "'");
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Czyta właściwość z jej wartościami i od razu ją stosuje.
+     *
+     * @param c pierwsza litera identyfikatora
+     * @param apply false dla wariantu spoza głównej linii
+     * @return pierwszy znak po właściwości
+     */
+    private int property(int c, boolean apply) throws IOException {
+        property.setLength(0);
+        while (c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z') {
+            // FF[3] dopuszczal male litery w identyfikatorach - nie nios znaczenia
+            if (c <= 'Z')
+                property.append((char) c);
+            c = next();
+        }
+        int kind = apply ? kind(property) : OTHER;
+        c = skipSpace(c);
+        if (c != '[')
+            throw new IOException("SGF: property " + property + " without value");
+        while (c == '[') {
+            value(kind != OTHER);
+            if (kind != OTHER)
+                apply(kind);
+            c = skipSpace(next());
+        }
+        return c;
+    }
+
+    private static final int OTHER = 0;
+    private static final int SZ = 1;
+    private static final int B = 2;
+    private static final int W = 3;
+    private static final int AB = 4;
+    private static final int AW = 5;
+    private static final int PB = 6;
+    private static final int PW = 7;
+    private static final int RE = 8;
+
+    private static int kind(CharSequence id) {
+        if (id.length() == 1)
+            return id.charAt(0) == 'B' ? B : id.charAt(0) == 'W' ? W : OTHER;
+        if (id.length() != 2)
+            return OTHER;
+        switch (id.toString()) {
+            case "SZ": return SZ;
+            case "AB": return AB;
+            case "AW": return AW;
+            case "PB": return PB;
+            case "PW": return PW;
+            case "RE": return RE;
+            default: return OTHER;
+        }
+    }
+
+    /**
+     * Czyta wartość do ']' z uwzględnieniem '\'. Wartości, których gra nie
+     * potrzebuje, są tylko przeskakiwane.
+     */
+    private void value(boolean keep) throws IOException {
+        value.setLength(0);
+        int c;
+        while ((c = next()) != ']') {
+            if (c == -1)
+                throw new IOException("SGF: unterminated value");
+            if (c == '\\') {
+                c = next();
+                // lamanie linii po '\' nie nalezy do tekstu
+                if (c == '\n' || c == '\r')
+                    continue;
+            }
+            if (keep)
+                value.append((char) c);
+        }
+    }
+
+    private void apply(int kind) {
+        switch (kind) {
+            case SZ:
+                int colon = value.indexOf(":");
+                record.size = number(colon < 0 ? value : value.subSequence(0, colon));
+                break;
+            case B:
+            case W:
+                play(kind == B);
+                break;
+            case AB:
+            case AW:
+                setup(kind == AB);
+                break;
+            case PB:
+                record.black = text();
+                break;
+            case PW:
+                record.white = text();
+                break;
+            case RE:
+                record.result = text();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void play(boolean black) {
+        int size = record.size;
+        if (size > Board.MAX_SIZE)
+            return;
+        record.moves++;
+        // pas: pusta wartosc albo tt na planszy do 19x19
+        if (value.length() < 2 || size <= 19 && value.charAt(0) == 't' && value.charAt(1) == 't')
+            return;
+        int col = value.charAt(0) - 'a';
+        int row = value.charAt(1) - 'a';
+        if (col < 0 || col >= size || row < 0 || row >= size || !record.board().play(row, col, black))
+            record.illegal++;
+    }
+
+    /**
+     * Kamienie ustawione (AB/AW), także prostokąty "aa:cc".
+     */
+    private void setup(boolean black) {
+        int size = record.size;
+        if (size > Board.MAX_SIZE || value.length() < 2)
+            return;
+        int col = value.charAt(0) - 'a';
+        int row = value.charAt(1) - 'a';
+        int toCol = col;
+        int toRow = row;
+        if (value.length() == 5 && value.charAt(2) == ':') {
+            toCol = value.charAt(3) - 'a';
+            toRow = value.charAt(4) - 'a';
+        }
+        for (int r = Math.max(row, 0); r <= Math.min(toRow, size - 1); r++) {
+            for (int c = Math.max(col, 0); c <= Math.min(toCol, size - 1); c++)
+                BoardHelper.makeMove(record.board(), r, c, black);
+        }
+    }
+
+    private static int number(CharSequence text) {
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return Board.DEFAULT_SIZE;
+            n = n * 10 + (c - '0');
+        }
+        return n < 1 ? Board.DEFAULT_SIZE : n;
+    }
+
+    /**
+     * Tekst wartości. Z bajtów każdy bajt był znakiem - wartości UTF-8
+     * trzeba złożyć z powrotem.
+     */
+    private String text() {
+        String text = value.toString();
+        return bytes == null ? text : new String(text.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rozgrywa pliki SGF i podaje liczbę gier i tempo.
+     *
+     * @param args ścieżki plików SGF
+     * @throws IOException gdy pliku nie można przeczytać albo jest błędny
+     */
+    public static void main(String[] args) throws IOException {
+        SgfReader sgf = new SgfReader();
+        long moves[] = new long[2];
+        for (String file : args) {
+            try (FileChannel in = FileChannel.open(Paths.get(file))) {
+                sgf.read(in, game -> {
+                    moves[0] += game.moves();
+                    moves[1] += game.illegal();
+                });
+            }
+        }
+        System.out.printf("%d games (%d skipped), %d moves, %d illegal, %.0f games/s%n",
+                sgf.games(), sgf.skipped(), moves[0], moves[1], sgf.gamesPerSecond());
+    }
+}
@@ -0,0 +1,115 @@
+package com.gogame.controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Eksport gier do SGF (FF[4]) strumieniowo: każda gra jest dopisywana do
+ * Writera od razu, więc kolekcja dowolnej długości - np. całe archiwum
+ * przepuszczone przez Archive.scan() - nie trafia do pamięci w całości.
+ *
+ * Ruchy idą na przemian od czarnego, tak jak w Game. Zdjęcia martwych
+ * kamieni po pasach nie mają odpowiednika w SGF i są pomijane - wynik
+ * zostaje w RE.
+ */
+public class SgfWriter implements Closeable {
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(1024);
+    private long games = 0;
+
+    /**
+     * @param out cel; dla dużych kolekcji najlepiej buforowany
+     */
+    public SgfWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Dopisuje grę z serwera, także trwającą (wtedy bez RE).
+     *
+     * @param game gra
+     * @throws IOException gdy zapis się nie uda
+     */
+    public void write(Game game) throws IOException {
+        String result = game.reason() < 0 ? null
+                : result(game.winner(), game.reason(), game.scoreBlack(), game.scoreWhite());
+        write(game.size(), game.player(true), game.player(false), result, game::move, game.moveCount());
+    }
+
+    /**
+     * Dopisuje grę z archiwum.
+     *
+     * @param record rekord z Archive.get() albo Archive.scan()
+     * @throws IOException gdy zapis się nie uda
+     */
+    public void write(Archive.Record record) throws IOException {
+        write(record.size(), record.black(), record.white(),
+                result(record.winner(), record.reason(), record.scoreBlack(), record.scoreWhite()),
+                record::move, record.moveCount());
+    }
+
+    /**
+     * @return liczba zapisanych gier
+     */
+    public long games() {
+        return games;
+    }
+
+    private void write(int size, String black, String white, String result, IntUnaryOperator moves, int count)
+            throws IOException {
+        line.setLength(0);
+        line.append("(;GM[1]FF[4]SZ[").append(size).append(']');
+        text("PB", black);
+        text("PW", white);
+        text("RE", result);
+        boolean blackTurn = true;
+        for (int i = 0; i < count; i++) {
+            int code = moves.applyAsInt(i);
+            if (code != Archive.PASS && (code & Archive.REMOVED) != 0)
+                continue;
+            line.append(';').append(blackTurn ? 'B' : 'W').append('[');
+            if (code != Archive.PASS)
+                line.append((char) ('a' + code % size)).append((char) ('a' + code / size));
+            line.append(']');
+            blackTurn = !blackTurn;
+        }
+        line.append(")\n");
+        out.append(line);
+        games++;
+    }
+
+    private void text(String property, String value) {
+        if (value == null)
+            return;
+        line.append(property).append('[');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ']' || c == '\\')
+                line.append('\\');
+            line.append(c);
+        }
+        line.append(']');
+    }
+
+    /**
+     * Wynik w notacji RE: "B+3", "W+R" (poddanie), "B+F" (wyjście gracza),
+     * "0" (remis).
+     */
+    static String result(int winner, int reason, int scoreBlack, int scoreWhite) {
+        if (winner == Archive.NONE)
+            return "0";
+        String side = winner == Archive.BLACK ? "B+" : "W+";
+        switch (reason) {
+            case Archive.SURRENDER: return side + "R";
+            case Archive.LEFT: return side + "F";
+            default: return side + Math.abs(scoreBlack - scoreWhite);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,281 @@
+package com.gogame.controller;
+
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.FrameWriter;
+import com.gogame.protocol.MessageWriter;
+import com.gogame.protocol.OutboundQueue;
+import com.gogame.protocol.WireReader;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport gry na dwóch blokujących socketach (Game.run): dwa wątki
+ * czytające wkładają komendy obu graczy do jednej kolejki zdarzeń,
+ * a wątek gry podaje je kolejno do Game.submit. Writery graczy piszą do
+ * ograniczonych kolejek (OutboundQueue), które wypychają osobne wątki,
+ * więc pełny bufor TCP jednego gracza nie wstrzymuje gry przeciwnika.
+ *
+ * Tu zostaje też wszystko, co wiąże gracza z socketem: przejście na
+ * ramki binarne, powrót z tokenem sesji na nowym sockecie i odmierzanie
+ * czasu na ten powrót. Reguły gry nic o socketach nie wiedzą.
+ */
+class SocketTransport {
+    private static final int MAX_LINE = 1024;
+    private static final int POOL = 64;
+    private static final long DRAIN_TIMEOUT_MS = 1000;
+    // znaczniki zdarzen poza komendami gracza
+    private static final Command DISCONNECTED = new Command();
+    private static final Command UPGRADE = new Command();
+    private static final Command RESUME = new Command();
+    private static final Command EXPIRED = new Command();
+    // jeden watek odmierza czas powrotu wszystkim grom na socketach
+    private static final ScheduledExecutorService TIMERS = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "game-timers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Game game;
+    private Socket socketBlack;
+    private Socket socketWhite;
+    // watki czytajace linie graczy i wypychajace ich kolejki
+    private final ThreadFactory readers;
+    private final OutboundQueue.Policy policy;
+    private final BlockingQueue<Event> inbox = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Event> free = new ArrayBlockingQueue<>(POOL);   // obsluzone zdarzenia
+    private volatile boolean over = false;   // run() skonczylo - RESUME juz nie trafi do gry
+    private OutboundQueue queueBlack;
+    private OutboundQueue queueWhite;
+    private boolean binaryBlack = false;
+    private boolean binaryWhite = false;
+
+    /**
+     * Komenda od gracza w kolejce zdarzeń gry, razem z socketem, z którego
+     * przyszła - po wznowieniu komendy ze starego socketu są pomijane.
+     * Obsłużone zdarzenia wracają do wątków czytających (free), więc
+     * komenda gracza to kopia w copy, a nie nowy obiekt na linię.
+     */
+    private static final class Event {
+        boolean black;
+        Command command;   // copy albo znacznik: RESUME, UPGRADE, EXPIRED, DISCONNECTED
+        Socket socket;
+        final Command copy = new Command();
+
+        Event set(boolean black, Command command, Socket socket) {
+            this.black = black;
+            this.command = command;
+            this.socket = socket;
+            return this;
+        }
+    }
+
+    /**
+     * @param game gra, której reguły dostają komendy
+     * @param black socket gracza czarnego
+     * @param white socket gracza białego
+     * @param readers fabryka wątków czytających i wypychających
+     * @param policy co zrobić z graczem, który nie odbiera komunikatów
+     */
+    SocketTransport(Game game, Socket black, Socket white, ThreadFactory readers, OutboundQueue.Policy policy) {
+        this.game = game;
+        this.socketBlack = black;
+        this.socketWhite = white;
+        this.readers = readers;
+        this.policy = policy;
+    }
+
+    /**
+     * Prowadzi grę do końca w wątku wywołującym. Oba sockety są czytane
+     * jednocześnie, więc wyjście albo rozłączenie gracza, który czeka na
+     * swoją kolej, kończy grę od razu - a w grze wznawialnej po graceMs
+     * bez powrotu gracza.
+     */
+    void run() {
+        try {
+            Thread.sleep(100);
+            WireReader inBlack = new WireReader(socketBlack.getInputStream(), MAX_LINE);
+            WireReader inWhite = new WireReader(socketWhite.getInputStream(), MAX_LINE);
+            game.open(writer(socketBlack, true), writer(socketWhite, false));
+
+            listen(true, socketBlack, inBlack);
+            listen(false, socketWhite, inWhite);
+
+            while (!game.isFinished()) {
+                Event event = inbox.take();
+                boolean black = event.black;
+                Socket socket = event.socket;
+                if (event.command == RESUME) {
+                    reconnect(black, socket);
+                } else if (socket != (black ? socketBlack : socketWhite)) {
+                    // komenda albo rozlaczenie starego socketu - gracz juz wrocil
+                } else if (event.command == UPGRADE) {
+                    upgrade(black);
+                } else if (event.command == EXPIRED) {
+                    game.expire(black);
+                } else if (event.command == DISCONNECTED) {
+                    game.disconnect(black);
+                    if (game.isAway(black))
+                        TIMERS.schedule(() -> inbox.add(new Event().set(black, EXPIRED, socket)),
+                                game.graceMs(), TimeUnit.MILLISECONDS);
+                } else {
+                    game.submit(black, event.command);
+                }
+                // submit obsluzyl komende albo ja skopiowal - zdarzenie wraca do puli
+                free.offer(event.set(false, null, null));
+            }
+        } catch (IOException e) {
+            System.out.println("Error, disconnect: " + e.getMessage());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            over = true;
+            // kolejki wypychaja to, co juz czeka (GAME_OVER), zanim sockety sie zamkna
+            closeQueue(queueBlack);
+            closeQueue(queueWhite);
+            // zamkniecie socketow konczy tez watki czytajace
+            try { socketBlack.close(); socketWhite.close(); } catch (IOException e) {}
+            for (Event event : inbox) {
+                if (event.command == RESUME)
+                    try { event.socket.close(); } catch (IOException e) {}
+            }
+        }
+    }
+
+    /**
+     * Tworzy kolejkę wyjściową i writer gracza na sockecie.
+     */
+    private PrintWriter writer(Socket socket, boolean black) throws IOException {
+        OutboundQueue queue = queue(socket, black);
+        if (black) {
+            queueBlack = queue;
+            binaryBlack = false;
+        } else {
+            queueWhite = queue;
+            binaryWhite = false;
+        }
+        return new MessageWriter(new OutputStreamWriter(queue, StandardCharsets.UTF_8));
+    }
+
+    private void listen(boolean black, Socket socket, WireReader in) {
+        readers.newThread(() -> read(black, socket, in)).start();
+    }
+
+    /**
+     * Przyjmuje gracza wracającego z tokenem sesji. Gra przełączy się na
+     * nowy socket w swoim wątku.
+     *
+     * @param black true dla gracza czarnego
+     * @param socket nowy socket gracza
+     * @return false, gdy gra już się skończyła - wtedy socket zamyka
+     *         wywołujący
+     */
+    boolean resume(boolean black, Socket socket) {
+        if (over)
+            return false;
+        inbox.add(new Event().set(black, RESUME, socket));
+        // gra mogla skonczyc sie miedzy sprawdzeniem a dopisaniem
+        return !over;
+    }
+
+    /**
+     * Przełącza gracza na nowy socket. Stary socket mógł jeszcze nie
+     * zgłosić zerwania (połowicznie otwarte połączenie), więc jest zamykany.
+     */
+    private void reconnect(boolean black, Socket socket) throws IOException {
+        Socket old = black ? socketBlack : socketWhite;
+        try { old.close(); } catch (IOException e) {}
+        closeQueue(black ? queueBlack : queueWhite);
+        if (black)
+            socketBlack = socket;
+        else
+            socketWhite = socket;
+        WireReader in = new WireReader(socket.getInputStream(), MAX_LINE);
+        game.resume(black, writer(socket, black));
+        listen(black, socket, in);
+    }
+
+    /**
+     * Tworzy kolejkę wyjściową gracza. Jej wątek wypychający pisze przez
+     * bufor, więc kilka czekających komunikatów idzie jednym zapisem.
+     */
+    private OutboundQueue queue(Socket socket, boolean black) throws IOException {
+        return new OutboundQueue(new BufferedOutputStream(socket.getOutputStream()), policy,
+                OutboundQueue.DEFAULT_CAPACITY, readers, socket,
+                () -> game.snapshotFor(black, black ? binaryBlack : binaryWhite));
+    }
+
+    private static void closeQueue(OutboundQueue queue) {
+        if (queue == null)
+            return;
+        try {
+            queue.close(DRAIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Przełącza writer gracza na ramki binarne. BINARY_OK idzie jeszcze
+     * tekstem, po wszystkim, co gracz dostał wcześniej.
+     *
+     * @param black true dla gracza czarnego
+     */
+    private void upgrade(boolean black) {
+        OutboundQueue queue = black ? queueBlack : queueWhite;
+        PrintWriter text = game.writer(black);
+        text.println(Binary.ACCEPTED);
+        // klient czyta ramki dopiero po BINARY_OK - nie moze zniknac przy sklejaniu
+        queue.pin();
+        text.flush();
+        game.writer(black, new MessageWriter(new FrameWriter(queue)));
+        if (black)
+            binaryBlack = true;
+        else
+            binaryWhite = true;
+    }
+
+    /**
+     * Czyta komendy gracza do kolejki zdarzeń gry, a na końcu strumienia
+     * zgłasza rozłączenie. Linie i ramki są rozkładane w buforze
+     * czytelnika, a do gry idą kopie w zdarzeniach z puli. Po linii
+     * BINARY czyta już ramki binarne.
+     *
+     * @param black true dla gracza czarnego
+     * @param socket socket gracza
+     * @param in strumień gracza
+     */
+    private void read(boolean black, Socket socket, WireReader in) {
+        Command line = new Command();
+        try {
+            while (in.read(line)) {
+                Event event = free.poll();
+                if (event == null)
+                    event = new Event();
+                if (!in.isBinary() && line.is(Binary.OFFER)) {
+                    in.binary();
+                    event.set(black, UPGRADE, socket);
+                } else {
+                    event.copy.copyFrom(line);
+                    event.set(black, event.copy, socket);
+                }
+                inbox.add(event);
+            }
+        } catch (IOException e) {
+            // socket zamkniety przez gre albo zerwane polaczenie
+        }
+        inbox.add(new Event().set(black, DISCONNECTED, socket));
+    }
+}
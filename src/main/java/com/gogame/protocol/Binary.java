@@ -0,0 +1,365 @@
+package com.gogame.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binarna postać protokołu gry, wybierana po INIT zamiast tekstu.
+ *
+ * Ramka: długość (1 bajt do 127, inaczej 2 bajty z najwyższym bitem
+ * pierwszego ustawionym), kod komendy (1 bajt) i dane. Pole planszy to
+ * dwa bajty: wiersz i kolumna, więc ruch zajmuje 4 bajty zamiast
+ * "MOVE 10 10\n". Tekst (MESSAGE, GAME_OVER...) idzie jako UTF-8.
+ * Linia, której nie da się zakodować inaczej, idzie jako TEXT.
+ *
+ * Negocjacja: serwer dopisuje BINARY do INIT, klient odpowiada linią
+ * BINARY i od tej chwili wysyła ramki, a serwer potwierdza linią
+ * BINARY_OK, po której sam wysyła już tylko ramki.
+ *
+ * encode(Command) i decode(..., Command) tłumaczą między ramką a komendą
+ * bez linii tekstowej pośrodku - gra dostaje i wysyła komendy, a format
+ * wybiera połączenie. Wersje z linią (encode(String), decode zwracające
+ * String) zostają dla klienta, testów i narzędzi; linię rozkłada ten sam
+ * Parser, którego używają gra i klient.
+ */
+public final class Binary {
+    public static final String OFFER = "BINARY";
+    public static final String ACCEPTED = "BINARY_OK";
+    public static final int MAX_FRAME = 0x7FFF;
+
+    // klient -> serwer
+    public static final byte MOVE = 0x01;
+    public static final byte PASS = 0x02;
+    public static final byte SURRENDER = 0x03;
+    public static final byte QUIT = 0x04;
+    public static final byte DEAD = 0x05;
+    public static final byte DONE = 0x06;
+    public static final byte PLAYON = 0x07;
+    public static final byte YES = 0x08;
+    public static final byte NO = 0x09;
+
+    // serwer -> klient; INIT idzie zawsze tekstem, przed przelaczeniem,
+    // a rzadki obraz BOARD jako TEXT
+    public static final byte INIT = 0x20;
+    public static final byte YOUR_TURN = 0x21;
+    public static final byte MOVE_OK = 0x22;
+    public static final byte MESSAGE = 0x23;
+    public static final byte ERROR = 0x24;
+    public static final byte PHASE_NEGOTIATION = 0x25;
+    public static final byte MARK = 0x26;
+    public static final byte UNMARK = 0x27;
+    public static final byte MARK_CLEAR = 0x28;
+    public static final byte DEAD_REMOVED = 0x29;
+    public static final byte CONFIRM_REQ = 0x2A;
+    public static final byte GAME_OVER = 0x2B;
+    public static final byte BOARD = 0x2C;
+    public static final byte SESSION = 0x2D;
+
+    // dowolna inna linia
+    public static final byte TEXT = 0x7F;
+
+    private Binary() {
+    }
+
+    /**
+     * Koduje linię protokołu tekstowego jako ramkę.
+     *
+     * @param line linia bez znaku końca linii
+     * @return ramka razem z długością
+     */
+    public static byte[] encode(String line) {
+        return encode(line, new Command());
+    }
+
+    /**
+     * Koduje linię jako ramkę, rozkładając ją do podanej komendy - kto
+     * koduje wiele linii, trzyma jedną komendę zamiast tworzyć nowe.
+     *
+     * @param line linia bez znaku końca linii
+     * @param command komenda do nadpisania
+     * @return ramka razem z długością
+     */
+    public static byte[] encode(CharSequence line, Command command) {
+        if (!Parser.parse(line, command))
+            return text(TEXT, bytes(line.toString()));
+        return encode(command);
+    }
+
+    /**
+     * Koduje komendę prosto z jej pól, bez składania linii tekstowej.
+     * Komenda, której nie da się zakodować inaczej (INIT, BOARD, liczby
+     * ponad 255), idzie jako TEXT ze swoją linią.
+     *
+     * @param command poprawna komenda, np. złożona przez Command.message()
+     * @return ramka razem z długością
+     */
+    public static byte[] encode(Command command) {
+        if (!fitsBytes(command) || command.op == INIT || command.op == BOARD)
+            return text(TEXT, bytes(command.toString()));
+
+        CharSequence line = command.source();
+        int count = command.count;
+        byte[] frame;
+        switch (Parser.shape(command.op)) {
+            case Parser.MOVE_OK: {
+                // pole ruchu, kolor, zbite kamienie
+                frame = frame(command.op, count + 1);
+                int at = frame.length - count - 1;
+                frame[at] = (byte) command.numbers[0];
+                frame[at + 1] = (byte) command.numbers[1];
+                frame[at + 2] = (byte) (command.flag ? 1 : 0);
+                putNumbers(command, 2, frame, at + 3);
+                return frame;
+            }
+            case Parser.POINT_TEXT:
+            case Parser.TEXT: {
+                int start = command.hasText() ? command.textStart : 0;
+                int end = command.hasText() ? command.textEnd : 0;
+                byte[] text = isAscii(line, start, end) ? null : bytes(command.text());
+                int textLength = text == null ? end - start : text.length;
+                frame = frame(command.op, count + textLength);
+                int at = frame.length - textLength;
+                putNumbers(command, 0, frame, at - count);
+                if (text != null) {
+                    System.arraycopy(text, 0, frame, at, textLength);
+                } else {
+                    // zwykle ASCII - znaki prosto do ramki, bez posrednich napisow
+                    for (int i = start; i < end; i++)
+                        frame[at++] = (byte) line.charAt(i);
+                }
+                return frame;
+            }
+            default:
+                frame = frame(command.op, count);
+                putNumbers(command, 0, frame, frame.length - count);
+                return frame;
+        }
+    }
+
+    private static boolean fitsBytes(Command command) {
+        for (int i = 0; i < command.count; i++) {
+            if (command.numbers[i] > 255)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isAscii(CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putNumbers(Command command, int from, byte[] frame, int at) {
+        for (int i = from; i < command.count; i++)
+            frame[at++] = (byte) command.numbers[i];
+    }
+
+    private static byte[] text(byte op, byte[] text) {
+        byte[] frame = frame(op, text.length);
+        System.arraycopy(text, 0, frame, frame.length - text.length, text.length);
+        return frame;
+    }
+
+    /**
+     * Tworzy ramkę z długością i kodem; dane zajmują ostatnie payload bajtów.
+     */
+    private static byte[] frame(byte op, int payload) {
+        int length = 1 + payload;
+        if (length > MAX_FRAME)
+            throw new IllegalArgumentException("Frame too long: " + length);
+        int header = length < 0x80 ? 1 : 2;
+        byte[] frame = new byte[header + length];
+        if (header == 1) {
+            frame[0] = (byte) length;
+        } else {
+            frame[0] = (byte) (0x80 | (length >>> 8));
+            frame[1] = (byte) length;
+        }
+        frame[header] = op;
+        return frame;
+    }
+
+    /**
+     * Dekoduje ramkę z bufora, jeśli jest w nim cała.
+     *
+     * @param in bufor w trybie odczytu; pozycja przesuwa się za ramkę
+     * @return linia tekstowa albo null, gdy ramka jeszcze nie doszła
+     */
+    public static String decode(ByteBuffer in) {
+        int header = header(in);
+        if (header == 0)
+            return null;
+        int start = in.position();
+        int length = length(in, header);
+        String line = decode(in.array(), in.arrayOffset() + start + header, length);
+        in.position(start + header + length);
+        return line;
+    }
+
+    /**
+     * Dekoduje ramkę z bufora prosto do komendy, jeśli jest w nim cała.
+     * Komenda może wskazywać na bajty bufora - trzeba ją obsłużyć albo
+     * skopiować (Command.copyFrom), zanim bufor zostanie nadpisany.
+     *
+     * @param in bufor w trybie odczytu; pozycja przesuwa się za ramkę
+     * @param out komenda do nadpisania; błędna ramka zostawia out.error
+     * @return false, gdy ramka jeszcze nie doszła
+     */
+    public static boolean decode(ByteBuffer in, Command out) {
+        int header = header(in);
+        if (header == 0)
+            return false;
+        int start = in.position();
+        int length = length(in, header);
+        decode(in.array(), in.arrayOffset() + start + header, length, out);
+        in.position(start + header + length);
+        return true;
+    }
+
+    /**
+     * @return długość nagłówka ramki na pozycji bufora albo 0, gdy cała
+     *         ramka jeszcze nie doszła
+     */
+    private static int header(ByteBuffer in) {
+        if (!in.hasRemaining())
+            return 0;
+        int start = in.position();
+        int header = (in.get(start) & 0x80) == 0 ? 1 : 2;
+        if (in.remaining() < header || in.remaining() < header + length(in, header))
+            return 0;
+        return header;
+    }
+
+    private static int length(ByteBuffer in, int header) {
+        int start = in.position();
+        int length = in.get(start) & 0xFF;
+        return header == 1 ? length : ((length & 0x7F) << 8) | (in.get(start + 1) & 0xFF);
+    }
+
+    /**
+     * Dekoduje treść ramki (kod i dane, bez długości) do komendy według
+     * kształtu argumentów kodu. Tekst komendy zostaje w ramce, a ramka TEXT
+     * idzie przez Parser - tak samo jak linia tekstowa.
+     *
+     * @param frame bajty
+     * @param off początek kodu komendy
+     * @param length długość kodu i danych
+     * @param out komenda do nadpisania
+     * @return true dla poprawnej komendy; inaczej out.error opisuje błąd
+     */
+    public static boolean decode(byte[] frame, int off, int length, Command out) {
+        int op = length == 0 ? 0 : frame[off];
+        int at = off + 1;
+        int end = off + length;
+        if (op == TEXT)
+            return Parser.parse(frame, at, end - at, out);
+        if (Parser.name(op) == null || op == INIT || op == BOARD)
+            return fail(out, Parser.UNKNOWN_COMMAND);
+        out.chars.wrap(frame, at, end - at);
+        out.resetBytes(frame, at);
+        out.op = (byte) op;
+
+        switch (Parser.shape(op)) {
+            case Parser.MOVE_OK:
+                if (end - at < 3)
+                    return fail(out, Parser.UNKNOWN_COMMAND);
+                out.add(frame[at] & 0xFF);
+                out.add(frame[at + 1] & 0xFF);
+                out.flag = frame[at + 2] != 0;
+                addPoints(out, frame, at + 3, end);
+                return true;
+            case Parser.POINT:
+                addPoints(out, frame, at, end);
+                return out.count == 2 || fail(out, Parser.INVALID_ARGUMENTS);
+            case Parser.POINTS:
+                addPoints(out, frame, at, end);
+                return true;
+            case Parser.POINT_TEXT:
+                if (end - at < 2)
+                    return fail(out, Parser.UNKNOWN_COMMAND);
+                addPoints(out, frame, at, at + 2);
+                out.textStart = 2;
+                out.textEnd = end - at;
+                return true;
+            case Parser.TEXT:
+                out.textStart = 0;
+                out.textEnd = end - at;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private static void addPoints(Command out, byte[] frame, int from, int end) {
+        for (int i = from; i + 1 < end && out.count + 2 <= Command.MAX_NUMBERS; i += 2) {
+            out.add(frame[i] & 0xFF);
+            out.add(frame[i + 1] & 0xFF);
+        }
+    }
+
+    private static boolean fail(Command out, String error) {
+        out.reset(null);
+        out.error = error;
+        return false;
+    }
+
+    /**
+     * Dekoduje treść ramki (kod i dane, bez długości).
+     *
+     * @param frame bajty
+     * @param off początek kodu komendy
+     * @param length długość kodu i danych
+     * @return linia tekstowa; pusta dla nieznanego kodu
+     */
+    public static String decode(byte[] frame, int off, int length) {
+        if (length == 0)
+            return "";
+        int op = frame[off];
+        int end = off + length;
+        int at = off + 1;
+        if (op == TEXT)
+            return new String(frame, at, end - at, StandardCharsets.UTF_8);
+        String name = Parser.name(op);
+        if (name == null || op == INIT || op == BOARD)
+            return "";
+
+        StringBuilder line = new StringBuilder(name);
+        switch (Parser.shape(op)) {
+            case Parser.MOVE_OK:
+                if (end - at < 3)
+                    return "";
+                line.append(' ').append(frame[at] & 0xFF).append(' ').append(frame[at + 1] & 0xFF)
+                        .append(frame[at + 2] != 0 ? " true" : " false");
+                appendPoints(line, frame, at + 3, end);
+                break;
+            case Parser.POINT:
+            case Parser.POINTS:
+                appendPoints(line, frame, at, end);
+                break;
+            case Parser.POINT_TEXT:
+                if (end - at < 2)
+                    return "";
+                appendPoints(line, frame, at, at + 2);
+                line.append(' ').append(new String(frame, at + 2, end - at - 2, StandardCharsets.UTF_8));
+                break;
+            case Parser.TEXT:
+                line.append(' ').append(new String(frame, at, end - at, StandardCharsets.UTF_8));
+                break;
+            default:
+                break;
+        }
+        return line.toString();
+    }
+
+    private static void appendPoints(StringBuilder line, byte[] frame, int from, int end) {
+        for (int i = from; i + 1 < end; i += 2)
+            line.append(' ').append(frame[i] & 0xFF).append(' ').append(frame[i + 1] & 0xFF);
+    }
+}
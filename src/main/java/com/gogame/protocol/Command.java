@@ -0,0 +1,296 @@
+package com.gogame.protocol;
+
+import com.gogame.Board;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Komenda protokołu rozłożona przez Parser. Obiekt jest wielokrotnego
+ * użytku - każdy parse nadpisuje pola, więc czytelnik trzyma jeden
+ * egzemplarz i nie tworzy niczego na linię. Tekst (MESSAGE, GAME_OVER...)
+ * zostaje w linii źródłowej, a String powstaje dopiero w text().
+ *
+ * Ten sam obiekt niesie komunikaty w drugą stronę: message() i with...()
+ * składają komendę z pól, Binary.encode(Command) koduje ją prosto do
+ * ramki, a toString() daje jej linię tekstu (raz na komendę).
+ */
+public final class Command {
+    // MOVE_OK: ruch i zbite kamienie z calej planszy
+    public static final int MAX_NUMBERS = 2 + 2 * Board.MAX_SIZE * Board.MAX_SIZE;
+
+    public byte op;            // kod z Binary, 0 - nieznana komenda
+    public String error;       // null albo opis bledu do odpowiedzi ERROR
+    public int[] numbers = new int[16];   // rosnie do MAX_NUMBERS, potem bez alokacji
+    public int count;          // liczba wypelnionych numbers
+    public boolean flag;       // MOVE_OK - ruch czarnego, INIT - gracz czarny
+
+    private CharSequence line;
+    private byte[] bytes;      // linia z bufora bajtow zamiast line
+    private int bytesOffset;
+    int textStart = -1;
+    int textEnd;
+    private String rendered;   // linia z toString() - wspolna dla obu graczy i widzow
+
+    // widok bajtow jako znakow ASCII dla Parser
+    final ByteChars chars = new ByteChars();
+
+    void reset(CharSequence line) {
+        this.line = line;
+        this.bytes = null;
+        op = 0;
+        error = null;
+        count = 0;
+        flag = false;
+        textStart = -1;
+        rendered = null;
+    }
+
+    void resetBytes(byte[] bytes, int offset) {
+        reset(chars);
+        this.bytes = bytes;
+        this.bytesOffset = offset;
+    }
+
+    void add(int value) {
+        if (count == numbers.length)
+            numbers = Arrays.copyOf(numbers, Math.min(MAX_NUMBERS, 2 * count));
+        numbers[count++] = value;
+        rendered = null;
+    }
+
+    /**
+     * Komenda z linii, z gotowym tekstem - dla stałych komunikatów, które
+     * gra wysyła bez składania (YOUR_TURN, "MESSAGE Your move"...).
+     * Takiej komendy nie wolno potem zmieniać.
+     *
+     * @param line poprawna linia protokołu
+     * @return nowa komenda
+     * @throws IllegalArgumentException dla błędnej linii
+     */
+    public static Command of(String line) {
+        Command command = new Command();
+        if (!Parser.parse(line, command))
+            throw new IllegalArgumentException(command.error + ": " + line);
+        command.rendered = line;
+        return command;
+    }
+
+    /**
+     * Zaczyna komunikat od nowa: kod bez argumentów.
+     *
+     * @param op kod z Binary
+     * @return ta komenda
+     */
+    public Command message(byte op) {
+        reset(null);
+        this.op = op;
+        return this;
+    }
+
+    /**
+     * Dopisuje liczbę, np. wiersz albo kolumnę pola.
+     *
+     * @param value liczba
+     * @return ta komenda
+     */
+    public Command with(int value) {
+        add(value);
+        return this;
+    }
+
+    /**
+     * Ustawia flagę (MOVE_OK - ruch czarnego).
+     *
+     * @param flag flaga
+     * @return ta komenda
+     */
+    public Command withFlag(boolean flag) {
+        this.flag = flag;
+        rendered = null;
+        return this;
+    }
+
+    /**
+     * Ustawia część tekstową komunikatu.
+     *
+     * @param text tekst
+     * @return ta komenda
+     */
+    public Command withText(String text) {
+        line = text;
+        bytes = null;
+        textStart = 0;
+        textEnd = text.length();
+        rendered = null;
+        return this;
+    }
+
+    /**
+     * Kopiuje komendę, razem z tekstem - kopia nie zależy od bufora,
+     * z którego źródło zostało rozłożone. Nieznana linia "y" staje się
+     * zgodą (isYes), bo kopia nie ma już linii źródłowej.
+     *
+     * @param other komenda źródłowa
+     */
+    public void copyFrom(Command other) {
+        boolean yes = other.isYes();
+        reset(other.hasText() ? other.text() : null);
+        op = yes ? Binary.YES : other.op;
+        error = yes ? null : other.error;
+        flag = other.flag;
+        if (numbers.length < other.count)
+            numbers = Arrays.copyOf(numbers, other.count);
+        System.arraycopy(other.numbers, 0, numbers, 0, other.count);
+        count = other.count;
+        if (line != null) {
+            textStart = 0;
+            textEnd = line.length();
+        }
+    }
+
+    /**
+     * @param word słowo
+     * @return true, gdy rozłożona linia to dokładnie word - dla linii spoza
+     *         komend gry (BINARY, WATCH, JOIN)
+     */
+    public boolean is(String word) {
+        if (op != 0 || line == null || line.length() != word.length())
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (line.charAt(i) != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true dla zgody Y - także dawnego "y", którego Parser nie zna
+     */
+    public boolean isYes() {
+        return op == Binary.YES || is("y");
+    }
+
+    /**
+     * Linia tekstowa komendy, składana raz i pamiętana do następnej zmiany.
+     * Nieznana komenda daje pusty napis.
+     *
+     * @return linia bez znaku końca linii
+     */
+    @Override
+    public String toString() {
+        if (rendered != null)
+            return rendered;
+        String name = Parser.name(op);
+        if (name == null)
+            return "";
+        StringBuilder text = new StringBuilder(name);
+        int from = 0;
+        switch (Parser.shape(op)) {
+            case Parser.MOVE_OK:
+                text.append(' ').append(numbers[0]).append(' ').append(numbers[1]).append(flag ? " true" : " false");
+                from = 2;
+                break;
+            case Parser.INIT:
+                text.append(flag ? " BLACK" : " WHITE");
+                break;
+            case Parser.BOARD:
+                text.append(' ').append(numbers[0]).append(flag ? " B" : " W");
+                from = 1;
+                break;
+            default:
+                break;
+        }
+        for (int i = from; i < count; i++)
+            text.append(' ').append(numbers[i]);
+        if (hasText())
+            text.append(' ').append(text());
+        rendered = text.toString();
+        return rendered;
+    }
+
+    /**
+     * @return znaki linii źródłowej (bajty widziane jako ASCII) albo null
+     */
+    CharSequence source() {
+        return line;
+    }
+
+    /**
+     * @return wiersz pierwszego pola
+     */
+    public int row() {
+        return numbers[0];
+    }
+
+    /**
+     * @return kolumna pierwszego pola
+     */
+    public int col() {
+        return numbers[1];
+    }
+
+    /**
+     * Kopiuje liczby od danego indeksu, np. pary pól dla widoku.
+     *
+     * @param from pierwszy indeks
+     * @return nowa tablica
+     */
+    public int[] numbers(int from) {
+        return Arrays.copyOfRange(numbers, from, count);
+    }
+
+    /**
+     * @return true, jeśli komenda ma część tekstową
+     */
+    public boolean hasText() {
+        return textStart >= 0;
+    }
+
+    /**
+     * @return część tekstowa komendy albo pusty napis
+     */
+    public String text() {
+        if (textStart < 0)
+            return "";
+        if (bytes != null)
+            return new String(bytes, bytesOffset + textStart, textEnd - textStart, StandardCharsets.UTF_8);
+        return line.subSequence(textStart, textEnd).toString();
+    }
+
+    /**
+     * Bajty linii widziane jako znaki - Parser czyta tylko ASCII, tekst
+     * w UTF-8 dekoduje dopiero text().
+     */
+    static final class ByteChars implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        void wrap(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, offset + start, end - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.gogame.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writer zamieniający wypisywane linie na ramki binarne. Dzięki niemu
+ * kod piszący linie przez PrintWriter (klient) działa bez zmian
+ * po przejściu połączenia na protokół binarny. Gra wysyła komendy przez
+ * MessageWriter, który koduje je od razu przez write(Command).
+ */
+public class FrameWriter extends Writer {
+    private final OutputStream out;
+    private final StringBuilder line = new StringBuilder();
+    private final Command command = new Command();
+
+    /**
+     * @param out strumień ramek; każda ramka to jedno wywołanie write
+     */
+    public FrameWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            char c = cbuf[i];
+            if (c == '\n') {
+                byte[] frame = Binary.encode(line, command);
+                out.write(frame, 0, frame.length);
+                line.setLength(0);
+            } else if (c != '\r') {
+                line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Zapisuje komendę jako ramkę, bez składania i rozkładania linii.
+     * Linia zaczęta przez write(char[]...) musi być już zakończona.
+     *
+     * @param command komenda
+     * @throws IOException gdy zapis się nie uda
+     */
+    public void write(Command command) throws IOException {
+        byte[] frame = Binary.encode(command);
+        out.write(frame, 0, frame.length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
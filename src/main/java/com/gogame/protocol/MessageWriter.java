@@ -0,0 +1,40 @@
+package com.gogame.protocol;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * PrintWriter, który przyjmuje też gotowe komendy (send). Nad FrameWriterem
+ * komenda idzie prosto do ramki, bez linii tekstowej pośrodku; nad innym
+ * Writerem wypisuje swoją linię z Command.toString(). Zwykłe println
+ * działają jak w PrintWriter - dla linii spoza protokołu gry (BINARY_OK).
+ */
+public class MessageWriter extends PrintWriter {
+
+    /**
+     * @param out cel: FrameWriter albo Writer tekstowy
+     */
+    public MessageWriter(Writer out) {
+        super(out);
+    }
+
+    /**
+     * Wysyła komendę w formacie celu.
+     *
+     * @param message komenda
+     */
+    public void send(Command message) {
+        synchronized (lock) {
+            if (out instanceof FrameWriter) {
+                try {
+                    ((FrameWriter) out).write(message);
+                } catch (IOException e) {
+                    setError();
+                }
+            } else {
+                println(message.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.gogame.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Ograniczona kolejka wyjściowa połączenia. Gra pisze do niej jak do
+ * strumienia, a każdy flush (jedno przejście stanu gry) staje się jedną
+ * wiadomością w kolejce; do socketu wypycha je osobny wątek. Pełny bufor
+ * TCP wolnego klienta zatrzymuje więc tylko ten wątek, a nie grę.
+ *
+ * Gdy w kolejce czeka już capacity wiadomości, decyduje polityka:
+ * DROP zamyka połączenie (gra zobaczy rozłączenie), COALESCE zastępuje
+ * zaległe wiadomości jednym obrazem stanu gry od dostawcy snapshot,
+ * a BLOCK czeka na miejsce - jak dawny zapis prosto do socketu.
+ */
+public class OutboundQueue extends OutputStream {
+
+    /**
+     * Co zrobić z wiadomością, gdy kolejka jest pełna.
+     */
+    public enum Policy {
+        DROP,
+        COALESCE,
+        BLOCK
+    }
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final Metrics METRICS = new Metrics();
+    private static final Message END = new Message(new byte[0], 0, true);
+
+    /**
+     * Wiadomość w kolejce: bajty jednego flush i chwila dopisania.
+     */
+    private static final class Message {
+        final byte[] bytes;
+        final long queuedAt;
+        final boolean pinned;   // nie znika przy COALESCE (np. BINARY_OK)
+
+        Message(byte[] bytes, long queuedAt, boolean pinned) {
+            this.bytes = bytes;
+            this.queuedAt = queuedAt;
+            this.pinned = pinned;
+        }
+    }
+
+    private final OutputStream out;
+    private final Policy policy;
+    private final Closeable connection;
+    private final Supplier<byte[]> snapshot;
+    private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+    private final Semaphore free;   // wolne miejsca w kolejce
+    private final int capacity;
+    private final Thread drainer;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private boolean pinNext = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Tworzy kolejkę i uruchamia wątek wypychający.
+     *
+     * @param out strumień socketu
+     * @param policy polityka dla pełnej kolejki
+     * @param capacity najwięcej wiadomości w kolejce
+     * @param threads fabryka wątku wypychającego
+     * @param connection połączenie zamykane przez DROP
+     * @param snapshot obraz stanu dla COALESCE, wołany w wątku piszącym
+     */
+    public OutboundQueue(OutputStream out, Policy policy, int capacity, ThreadFactory threads,
+                         Closeable connection, Supplier<byte[]> snapshot) {
+        this.out = out;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.free = new Semaphore(capacity);
+        this.connection = connection;
+        this.snapshot = snapshot;
+        this.drainer = threads.newThread(this::drain);
+        drainer.start();
+    }
+
+    /**
+     * @return wspólne liczniki wszystkich kolejek
+     */
+    public static Metrics metrics() {
+        return METRICS;
+    }
+
+    /**
+     * @return liczba wiadomości czekających w tej kolejce
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    @Override
+    public void write(int b) {
+        pending.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        pending.write(b, off, len);
+    }
+
+    /**
+     * Następna wiadomość nie zniknie przy COALESCE - dla linii, po której
+     * klient zmienia sposób czytania (BINARY_OK).
+     */
+    public void pin() {
+        pinNext = true;
+    }
+
+    /**
+     * Zamyka zebrane bajty w wiadomość i dopisuje ją według polityki.
+     */
+    @Override
+    public void flush() {
+        if (pending.size() == 0)
+            return;
+        Message message = new Message(pending.toByteArray(), System.nanoTime(), pinNext);
+        pending.reset();
+        pinNext = false;
+        if (closed)
+            return;
+        if (free.tryAcquire()) {
+            enqueue(message);
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                long start = System.nanoTime();
+                free.acquireUninterruptibly();
+                METRICS.blockedNanos.add(System.nanoTime() - start);
+                if (closed)
+                    return;
+                enqueue(message);
+                break;
+            case COALESCE:
+                coalesce(message);
+                break;
+            default:
+                drop();
+                break;
+        }
+    }
+
+    private void enqueue(Message message) {
+        queue.add(message);
+        METRICS.depth.increment();
+        METRICS.maxDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * Zastępuje zaległe wiadomości i bieżącą jednym obrazem stanu - obraz
+     * jest brany teraz, więc obejmuje też bieżące przejście.
+     */
+    private void coalesce(Message message) {
+        int removed = 0;
+        for (Message queued : queue) {
+            if (!queued.pinned && queue.remove(queued))
+                removed++;
+        }
+        METRICS.depth.add(-removed);
+        free.release(removed);
+        METRICS.coalesced.increment();
+        if (!free.tryAcquire()) {
+            // same przypiete wiadomosci - nie ma czego sklejac
+            drop();
+            return;
+        }
+        enqueue(new Message(snapshot.get(), message.queuedAt, false));
+    }
+
+    private void drop() {
+        METRICS.drops.increment();
+        shutdown();
+        try { connection.close(); } catch (IOException e) {}
+    }
+
+    private void shutdown() {
+        closed = true;
+        int left = queue.size();
+        queue.clear();
+        METRICS.depth.add(-left);
+        queue.add(END);
+        // nikt nie moze zostac w BLOCK po zamknieciu
+        free.release(capacity);
+    }
+
+    /**
+     * Wątek wypychający: wszystko, co czeka, idzie jednym flush.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                Message message = queue.take();
+                while (message != null && message != END) {
+                    free.release();
+                    METRICS.depth.decrement();
+                    METRICS.waitNanos.add(System.nanoTime() - message.queuedAt);
+                    METRICS.messages.increment();
+                    out.write(message.bytes);
+                    message = queue.poll();
+                }
+                out.flush();
+                if (message == END)
+                    return;
+            }
+        } catch (IOException | InterruptedException e) {
+            // zerwane polaczenie - gra zobaczy je przez watek czytajacy
+            shutdown();
+        }
+    }
+
+    /**
+     * Kończy kolejkę: wypycha to, co już czeka, najdłużej timeoutMs.
+     *
+     * @param timeoutMs maksymalny czas oczekiwania
+     * @throws InterruptedException gdy oczekiwanie zostanie przerwane
+     */
+    public void close(long timeoutMs) throws InterruptedException {
+        flush();
+        closed = true;
+        queue.add(END);
+        free.release(capacity);
+        drainer.join(timeoutMs);
+    }
+
+    @Override
+    public void close() {
+        try {
+            close(0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wspólne liczniki kolejek wyjściowych.
+     */
+    public static final class Metrics {
+        final LongAdder depth = new LongAdder();
+        final AtomicLong maxDepth = new AtomicLong();
+        final LongAdder messages = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+        final LongAdder drops = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+
+        private Metrics() {
+        }
+
+        /**
+         * @return wiadomości czekające teraz we wszystkich kolejkach
+         */
+        public long depth() {
+            return depth.sum();
+        }
+
+        /**
+         * @return największa głębokość pojedynczej kolejki
+         */
+        public long maxDepth() {
+            return maxDepth.get();
+        }
+
+        /**
+         * @return wiadomości wysłane do socketów
+         */
+        public long messages() {
+            return messages.sum();
+        }
+
+        /**
+         * @return średni czas wiadomości w kolejce w mikrosekundach
+         */
+        public double averageWaitMicros() {
+            long count = messages.sum();
+            return count == 0 ? 0 : waitNanos.sum() / 1000.0 / count;
+        }
+
+        /**
+         * @return łączny czas, przez który piszący czekali w BLOCK, w milisekundach
+         */
+        public long blockedMillis() {
+            return blockedNanos.sum() / 1_000_000;
+        }
+
+        /**
+         * @return połączenia zamknięte przez DROP
+         */
+        public long drops() {
+            return drops.sum();
+        }
+
+        /**
+         * Liczy połączenie zerwane za pełny bufor poza kolejką - serwer NIO
+         * pisze z pętli zdarzeń, więc zna tylko DROP.
+         */
+        public void countDrop() {
+            drops.increment();
+        }
+
+        /**
+         * @return zastąpienia kolejki obrazem przez COALESCE
+         */
+        public long coalesced() {
+            return coalesced.sum();
+        }
+    }
+}
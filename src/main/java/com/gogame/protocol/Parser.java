@@ -0,0 +1,248 @@
+package com.gogame.protocol;
+
+/**
+ * Wspólny parser linii protokołu dla serwera i klienta. Rozkłada linię
+ * w miejscu - bez split, substring i wyjątków - do wielokrotnego Command.
+ * Nazwa komendy wybiera kod z tablicy (według pierwszej litery), a kod
+ * wybiera kształt argumentów. Błędna linia nie rzuca wyjątku: parse
+ * zwraca false, a Command.error niesie treść odpowiedzi ERROR.
+ *
+ * Kody komend to kody ramek z Binary, więc oba formaty mają jedną tablicę.
+ */
+public final class Parser {
+    public static final String UNKNOWN_COMMAND = "Invalid command.";
+    public static final String INVALID_ARGUMENTS = "Invalid arguments.";
+    static final int MAX_DIGITS = 4;
+
+    // ksztalty argumentow
+    static final byte NONE = 0;        // bez argumentow
+    static final byte POINT = 1;       // wiersz kolumna
+    static final byte POINTS = 2;      // pary wiersz kolumna, moze byc zero
+    static final byte MOVE_OK = 3;     // wiersz kolumna true|false [pary]
+    static final byte POINT_TEXT = 4;  // wiersz kolumna tekst
+    static final byte TEXT = 5;        // tekst
+    static final byte INIT = 6;        // BLACK|WHITE [rozmiar] [tekst]
+    static final byte BOARD = 7;       // rozmiar B|W pola
+
+    private static final String[] NAMES = new String[128];
+    private static final byte[] SHAPES = new byte[128];
+    private static final byte[][] BY_FIRST = new byte[26][0];
+
+    static {
+        define(Binary.MOVE, "MOVE", POINT);
+        define(Binary.PASS, "PASS", NONE);
+        define(Binary.SURRENDER, "SURRENDER", NONE);
+        define(Binary.QUIT, "QUIT", NONE);
+        define(Binary.DEAD, "DEAD", POINT);
+        define(Binary.DONE, "DONE", NONE);
+        define(Binary.PLAYON, "PLAYON", NONE);
+        define(Binary.YES, "Y", NONE);
+        define(Binary.NO, "N", NONE);
+        define(Binary.INIT, "INIT", INIT);
+        define(Binary.YOUR_TURN, "YOUR_TURN", NONE);
+        define(Binary.MOVE_OK, "MOVE_OK", MOVE_OK);
+        define(Binary.MESSAGE, "MESSAGE", TEXT);
+        define(Binary.ERROR, "ERROR", TEXT);
+        define(Binary.PHASE_NEGOTIATION, "PHASE_NEGOTIATION", NONE);
+        define(Binary.MARK, "MARK", POINTS);
+        define(Binary.UNMARK, "UNMARK", POINTS);
+        define(Binary.MARK_CLEAR, "MARK_CLEAR", NONE);
+        define(Binary.DEAD_REMOVED, "DEAD_REMOVED", POINTS);
+        define(Binary.CONFIRM_REQ, "CONFIRM_REQ", POINT_TEXT);
+        define(Binary.GAME_OVER, "GAME_OVER", TEXT);
+        define(Binary.BOARD, "BOARD", BOARD);
+        define(Binary.SESSION, "SESSION", TEXT);
+    }
+
+    private Parser() {
+    }
+
+    private static void define(byte op, String name, byte shape) {
+        NAMES[op] = name;
+        SHAPES[op] = shape;
+        int first = name.charAt(0) - 'A';
+        byte[] ops = BY_FIRST[first];
+        byte[] more = new byte[ops.length + 1];
+        System.arraycopy(ops, 0, more, 0, ops.length);
+        more[ops.length] = op;
+        BY_FIRST[first] = more;
+    }
+
+    /**
+     * @param op kod komendy
+     * @return nazwa komendy albo null dla nieznanego kodu
+     */
+    public static String name(int op) {
+        return op > 0 && op < NAMES.length ? NAMES[op] : null;
+    }
+
+    static byte shape(int op) {
+        return SHAPES[op];
+    }
+
+    /**
+     * Rozkłada linię tekstową.
+     *
+     * @param line linia bez znaku końca linii
+     * @param out komenda do nadpisania
+     * @return true dla poprawnej komendy; inaczej out.error opisuje błąd
+     */
+    public static boolean parse(CharSequence line, Command out) {
+        out.reset(line);
+        return parseInto(line, out);
+    }
+
+    /**
+     * Rozkłada linię prosto z bufora bajtów, bez tworzenia Stringa.
+     *
+     * @param bytes bufor
+     * @param offset początek linii
+     * @param length długość linii bez znaku końca linii
+     * @param out komenda do nadpisania
+     * @return true dla poprawnej komendy; inaczej out.error opisuje błąd
+     */
+    public static boolean parse(byte[] bytes, int offset, int length, Command out) {
+        out.chars.wrap(bytes, offset, length);
+        out.resetBytes(bytes, offset);
+        return parseInto(out.chars, out);
+    }
+
+    private static boolean parseInto(CharSequence s, Command out) {
+        int n = s.length();
+        int at = 0;
+        while (at < n && s.charAt(at) != ' ')
+            at++;
+        byte op = lookup(s, at);
+        if (op == 0)
+            return fail(out, UNKNOWN_COMMAND);
+        out.op = op;
+
+        switch (SHAPES[op]) {
+            case NONE:
+                return at == n || fail(out, INVALID_ARGUMENTS);
+            case POINT:
+                at = numbers(s, at, out, 2);
+                return at == n && out.count == 2 || fail(out, INVALID_ARGUMENTS);
+            case POINTS:
+                at = numbers(s, at, out, Command.MAX_NUMBERS);
+                return at == n && out.count % 2 == 0 || fail(out, INVALID_ARGUMENTS);
+            case MOVE_OK:
+                at = numbers(s, at, out, 2);
+                if (at < 0 || out.count != 2)
+                    return fail(out, INVALID_ARGUMENTS);
+                if (word(s, at, "true"))
+                    out.flag = true;
+                else if (!word(s, at, "false"))
+                    return fail(out, INVALID_ARGUMENTS);
+                at = numbers(s, at + (out.flag ? 5 : 6), out, Command.MAX_NUMBERS);
+                return at == n && out.count % 2 == 0 || fail(out, INVALID_ARGUMENTS);
+            case POINT_TEXT:
+                at = numbers(s, at, out, 2);
+                if (at < 0 || out.count != 2 || at == n)
+                    return fail(out, INVALID_ARGUMENTS);
+                return text(s, at, out);
+            case TEXT:
+                return at < n ? text(s, at, out) : fail(out, INVALID_ARGUMENTS);
+            case INIT:
+                if (word(s, at, "BLACK"))
+                    out.flag = true;
+                else if (!word(s, at, "WHITE"))
+                    return fail(out, INVALID_ARGUMENTS);
+                at += 6;
+                if (at + 1 < n && isDigit(s.charAt(at + 1)))
+                    at = numbers(s, at, out, 1);
+                if (at < 0)
+                    return fail(out, INVALID_ARGUMENTS);
+                return at == n || text(s, at, out);
+            case BOARD:
+                at = numbers(s, at, out, 1);
+                if (at < 0 || out.count != 1)
+                    return fail(out, INVALID_ARGUMENTS);
+                if (word(s, at, "B"))
+                    out.flag = true;
+                else if (!word(s, at, "W"))
+                    return fail(out, INVALID_ARGUMENTS);
+                at += 2;
+                return at < n ? text(s, at, out) : fail(out, INVALID_ARGUMENTS);
+            default:
+                return fail(out, UNKNOWN_COMMAND);
+        }
+    }
+
+    /**
+     * Szuka kodu komendy o nazwie z początku linii.
+     */
+    private static byte lookup(CharSequence s, int length) {
+        if (length == 0)
+            return 0;
+        int first = s.charAt(0) - 'A';
+        if (first < 0 || first >= BY_FIRST.length)
+            return 0;
+        for (byte op : BY_FIRST[first]) {
+            String name = NAMES[op];
+            if (name.length() != length)
+                continue;
+            int i = 1;
+            while (i < length && s.charAt(i) == name.charAt(i))
+                i++;
+            if (i == length)
+                return op;
+        }
+        return 0;
+    }
+
+    /**
+     * Czyta liczby poprzedzone spacjami, najwyżej max w sumie w out.
+     *
+     * @param at pozycja spacji przed pierwszą liczbą albo koniec linii
+     * @return pozycja za ostatnią liczbą albo -1 dla błędnej liczby
+     */
+    private static int numbers(CharSequence s, int at, Command out, int max) {
+        int n = s.length();
+        while (out.count < max && at < n && s.charAt(at) == ' ') {
+            int start = ++at;
+            int value = 0;
+            while (at < n && isDigit(s.charAt(at))) {
+                if (at - start == MAX_DIGITS)
+                    return -1;
+                value = value * 10 + (s.charAt(at) - '0');
+                at++;
+            }
+            if (at == start || at < n && s.charAt(at) != ' ')
+                return -1;
+            out.add(value);
+        }
+        return at;
+    }
+
+    /**
+     * @return true, jeśli od spacji na pozycji at stoi całe słowo word
+     */
+    private static boolean word(CharSequence s, int at, String word) {
+        int end = at + 1 + word.length();
+        if (end > s.length() || s.charAt(at) != ' ' || end < s.length() && s.charAt(end) != ' ')
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (s.charAt(at + 1 + i) != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean text(CharSequence s, int at, Command out) {
+        if (s.charAt(at) != ' ')
+            return fail(out, INVALID_ARGUMENTS);
+        out.textStart = at + 1;
+        out.textEnd = s.length();
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean fail(Command out, String error) {
+        out.error = error;
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+package com.gogame.protocol;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Czyta linie protokołu ze strumienia - najpierw tekstowe, a po
+ * binary() ramki binarne zamienione na te same linie. Bufor jest jeden
+ * dla obu trybów, więc bajty ramek, które przyszły razem z linią
+ * przełączającą, nie giną (BufferedReader by je połknął).
+ *
+ * read(Command) rozkłada linię albo ramkę prosto z bufora do komendy, bez
+ * Stringa na linię; readLine zostaje dla klienta, testów i narzędzi.
+ */
+public class WireReader {
+    private final InputStream in;
+    private final int maxLine;
+    private byte[] buffer = new byte[64];
+    private boolean binary = false;
+
+    /**
+     * @param in strumień od drugiej strony
+     * @param maxLine najdłuższa dopuszczalna linia tekstowa w bajtach
+     */
+    public WireReader(InputStream in, int maxLine) {
+        this.in = new BufferedInputStream(in);
+        this.maxLine = maxLine;
+    }
+
+    /**
+     * Przełącza odczyt na ramki binarne od następnej linii.
+     */
+    public void binary() {
+        binary = true;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Czyta następną linię albo ramkę.
+     *
+     * @return linia bez znaku końca linii albo null na końcu strumienia
+     * @throws IOException przy błędzie odczytu albo zbyt długiej linii
+     */
+    public String readLine() throws IOException {
+        int length = binary ? readFrame() : readText();
+        if (length < 0)
+            return null;
+        return binary ? Binary.decode(buffer, 0, length) : new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Czyta następną linię albo ramkę do komendy. Komenda wskazuje na
+     * bufor czytelnika - trzeba ją obsłużyć albo skopiować przed
+     * następnym odczytem.
+     *
+     * @param out komenda do nadpisania; błędna linia zostawia out.error
+     * @return false na końcu strumienia
+     * @throws IOException przy błędzie odczytu albo zbyt długiej linii
+     */
+    public boolean read(Command out) throws IOException {
+        int length = binary ? readFrame() : readText();
+        if (length < 0)
+            return false;
+        if (binary)
+            Binary.decode(buffer, 0, length, out);
+        else
+            Parser.parse(buffer, 0, length, out);
+        return true;
+    }
+
+    /**
+     * @return długość linii w buforze albo -1 na końcu strumienia
+     */
+    private int readText() throws IOException {
+        int length = 0;
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                if (length == 0)
+                    return -1;
+                break;
+            }
+            if (length == maxLine)
+                throw new IOException("Line too long");
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.min(maxLine, 2 * length));
+            buffer[length++] = (byte) b;
+        }
+        if (length > 0 && buffer[length - 1] == '\r')
+            length--;
+        return length;
+    }
+
+    /**
+     * @return długość treści ramki w buforze albo -1 na końcu strumienia
+     */
+    private int readFrame() throws IOException {
+        int length = in.read();
+        if (length < 0)
+            return -1;
+        if (length >= 0x80)
+            length = ((length & 0x7F) << 8) | readByte();
+        if (buffer.length < length)
+            buffer = new byte[length];
+        for (int read = 0; read < length; ) {
+            int n = in.read(buffer, read, length - read);
+            if (n < 0)
+                throw new EOFException("Truncated frame");
+            read += n;
+        }
+        return length;
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("Truncated frame");
+        return b;
+    }
+}
@@ -1,6 +1,11 @@
 package com.gogame.server;
 
 import com.gogame.client.GameView;
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.FrameWriter;
+import com.gogame.protocol.Parser;
+import com.gogame.protocol.WireReader;
 import javafx.application.Platform;
 import java.io.*;
 import java.net.Socket;
@@ -8,14 +13,24 @@ import java.net.Socket;
 /**
  * Klient gry Go łączący się z serwerem.
  * Obsługuje komunikację sieciową i aktualizuje widok gry.
+ * Na życzenie przechodzi na protokół binarny, jeśli serwer go proponuje w INIT.
+ * Po zerwaniu połączenia w trakcie gry łączy się ponownie z tokenem sesji
+ * (RESUME) i dostaje od serwera obraz planszy oraz zdarzenia, które ominął.
  */
 public class Client extends Thread {
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int RECONNECT_ATTEMPTS = 5;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
     private final String host;
     private final int port;
     private final GameView view;
+    private final boolean binary;
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private volatile PrintWriter out;
+    private WireReader in;
+    private volatile String session;             // token z SESSION, null - nie ma do czego wracac
+    private volatile boolean finished = false;   // GAME_OVER albo close()
 
     /**
      * Tworzy nowego klienta gry.
@@ -25,35 +40,100 @@ public class Client extends Thread {
      * @param view interfejs widoku gry
      */
     public Client(String host, int port, GameView view) {
+        this(host, port, view, false);
+    }
+
+    /**
+     * Tworzy nowego klienta gry.
+     *
+     * @param host adres hosta serwera
+     * @param port port serwera
+     * @param view interfejs widoku gry
+     * @param binary true, żeby po INIT przejść na protokół binarny
+     */
+    public Client(String host, int port, GameView view, boolean binary) {
         this.host = host;
         this.port = port;
         this.view = view;
+        this.binary = binary;
     }
 
     /**
-     * Główna pętla klienta obsługująca komunikację z serwerem.
+     * Główna pętla klienta obsługująca komunikację z serwerem. Gdy
+     * połączenie zerwie się przed końcem gry, próbuje wrócić do niej
+     * najwyżej RECONNECT_ATTEMPTS razy z rzędu.
      */
     @Override
     public void run() {
-        try {
-            socket = new Socket(host, port);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        String greeting = null;   // pierwsza linia nowego polaczenia
+        int attempts = 0;
+        while (true) {
+            try {
+                connect(greeting);
+                attempts = 0;
+                if (greeting == null)
+                    Platform.runLater(() -> view.showMessage("Connected to server"));
+                read();
+            } catch (IOException e) {
+                if (finished || session == null)
+                    Platform.runLater(() -> view.showMessage("Disconnected: " + e.getMessage()));
+            } finally {
+                disconnect();
+            }
+            if (finished || session == null || attempts++ == RECONNECT_ATTEMPTS)
+                return;
+            Platform.runLater(() -> view.showMessage("Connection lost. Reconnecting..."));
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            greeting = Connection.RESUME + session;
+        }
+    }
 
-            Platform.runLater(() -> view.showMessage("Connected to server"));
+    private void connect(String greeting) throws IOException {
+        socket = new Socket(host, port);
+        out = new PrintWriter(socket.getOutputStream(), true);
+        in = new WireReader(socket.getInputStream(), MAX_LINE);
+        if (greeting != null)
+            out.println(greeting);
+    }
 
-            String line;
-            while ((line = in.readLine()) != null) {
-                processServerMessage(line);
+    /**
+     * Czyta linie serwera do końca połączenia. Token sesji i koniec gry
+     * zapamiętuje od razu, w tym wątku - są potrzebne przy zerwaniu.
+     */
+    private void read() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(Binary.ACCEPTED) && !in.isBinary()) {
+                in.binary();
+                continue;
             }
-        } catch (IOException e) {
-            Platform.runLater(() -> view.showMessage("Disconnected: " + e.getMessage()));
-        } finally {
-            close();
+            if (line.startsWith("SESSION "))
+                session = line.substring(8);
+            else if (line.startsWith("GAME_OVER"))
+                finished = true;
+            else if (line.equals("ERROR Session expired."))
+                session = null;
+            if (binary && line.startsWith("INIT") && line.endsWith(" " + Binary.OFFER))
+                upgrade();
+            processServerMessage(line);
         }
     }
 
+    /**
+     * Prosi serwer o protokół binarny i od razu wysyła już ramki.
+     * Odpowiedzi serwera są tekstowe aż do BINARY_OK.
+     */
+    private void upgrade() throws IOException {
+        out.println(Binary.OFFER);
+        out = new PrintWriter(new FrameWriter(new BufferedOutputStream(socket.getOutputStream())), true);
+    }
+
     private boolean isNegotiation = false;
+    private final Command command = new Command();   // uzywany tylko w watku JavaFX
 
     /**
      * Przetwarza wiadomość otrzymaną z serwera.
@@ -64,101 +144,95 @@ public class Client extends Thread {
         Platform.runLater(() -> {
             System.out.println("CLIENT IN: " + message);
 
-            try {
-                if (message.startsWith("INIT")) {
-                    boolean isBlack = message.contains("BLACK");
-                    view.setPlayerColor(isBlack);
-                }
-                else if (message.equals("YOUR_TURN")) {
+            if (!Parser.parse(message, command)) {
+                System.err.println("Message fail: " + message + " (" + command.error + ")");
+                return;
+            }
+            switch (command.op) {
+                case Binary.INIT:
+                    // starszy serwer nie podaje rozmiaru - wtedy 19x19
+                    view.setBoardSize(command.count > 0 ? command.numbers[0] : 19);
+                    view.setPlayerColor(command.flag);
+                    break;
+                case Binary.YOUR_TURN:
                     view.setMyTurn(true);
                     if (isNegotiation) {
                         view.showMessage("NEGOTATION: Mark dead stones.");
                     } else {
                         view.showMessage("Your move");
                     }
-                }
-                else if (message.startsWith("MESSAGE")) {
-                    String content = message.substring(8);
+                    break;
+                case Binary.MESSAGE: {
+                    String content = command.text();
                     view.showMessage(content);
                     if (content.contains("thinking") || content.contains("Opponent") || content.contains("Wait")) {
                         view.setMyTurn(false);
                     }
+                    break;
                 }
-                else if (message.startsWith("MOVE_OK")) {
-                    String[] parts = message.split(" ");
-                    int row = Integer.parseInt(parts[1]);
-                    int col = Integer.parseInt(parts[2]);
-                    boolean isBlackMove = Boolean.parseBoolean(parts[3]);
-                    view.updateBoard(row, col, isBlackMove ? 1 : 2);
-                }
-                else if (message.startsWith("UPDATE")) {
-                    try {
-                        String[] parts = message.split(" ");
-                        int row = Integer.parseInt(parts[1]);
-                        int col = Integer.parseInt(parts[2]);
-                        int color = Integer.parseInt(parts[3]); // Powinno być 0
-                        view.updateBoard(row, col, color);
-                    } catch (Exception e) {
-                        System.err.println("Error UPDATE: " + message);
-                    }
-                }
-                else if (message.startsWith("PHASE_NEGOTIATION")) {
+                case Binary.MOVE_OK:
+                    // dalej pary wiersz kolumna kamieni zbitych tym ruchem
+                    view.applyMove(command.row(), command.col(), command.flag ? 1 : 2, command.numbers(2));
+                    break;
+                case Binary.PHASE_NEGOTIATION:
                     isNegotiation = true;
                     view.setNegotiationPhase(true);
                     view.showMessage("NEGOTIATION PHASE");
-                }
-
-                else if (message.startsWith("MARK_CLEAR")) {
+                    break;
+                case Binary.MARK_CLEAR:
                     view.clearAllHighlights();
-                }
-
-                else if (message.startsWith("MARK")) {
-                    try {
-                        String[] parts = message.split(" ");
-                        int row = Integer.parseInt(parts[1]);
-                        int col = Integer.parseInt(parts[2]);
-                        view.highlightStone(row, col, true);
-                    } catch (Exception e) {
-                        System.err.println("Parsing error MARK: " + message);
-                    }
-                }
-                else if (message.startsWith("UNMARK")) {
-                    try {
-                        String[] parts = message.split(" ");
-                        int row = Integer.parseInt(parts[1]);
-                        int col = Integer.parseInt(parts[2]);
-                        view.highlightStone(row, col, false);
-                    } catch (Exception e) {}
-                }
-                // -----------------------
-
-                else if (message.startsWith("CONFIRM_REQ")) {
-                    String text = message.substring(message.indexOf(" ", 12) + 1);
-                    view.showConfirmationDialog(text);
-                }
-                else if (message.startsWith("DEAD_REMOVED")) {
-                    String[] parts = message.split(" ");
-                    int row = Integer.parseInt(parts[1]);
-                    int col = Integer.parseInt(parts[2]);
-
-                    view.highlightStone(row, col, false);
-                    view.removeStone(row, col);
-                }
-                else if (message.startsWith("GAME_OVER")) {
+                    break;
+                case Binary.MARK:
+                    view.highlightStones(command.numbers(0), true);
+                    break;
+                case Binary.UNMARK:
+                    view.highlightStones(command.numbers(0), false);
+                    break;
+                case Binary.CONFIRM_REQ:
+                    view.showConfirmationDialog(command.text());
+                    break;
+                case Binary.DEAD_REMOVED:
+                    view.removeStones(command.numbers(0));
+                    break;
+                case Binary.GAME_OVER:
                     view.setMyTurn(false);
-                    view.endGame(message.substring(10));
-                }
-                else if (message.startsWith("ERROR")) {
-                    view.showMessage(message.substring(6));
+                    view.endGame(command.text());
+                    break;
+                case Binary.ERROR:
+                    view.showMessage(command.text());
                     view.setMyTurn(true);
-                }
-            } catch (Exception e) {
-                System.err.println("Message fail: " + message);
-                e.printStackTrace();
+                    break;
+                case Binary.BOARD:
+                    // serwer zastapil zalegle komunikaty obrazem gry; dalej
+                    // moze przyjsc PHASE_NEGOTIATION, MARK, YOUR_TURN...
+                    loadBoard(command.numbers[0], command.text());
+                    break;
+                default:
+                    break;
             }
         });
     }
 
+    /**
+     * Nanosi obraz planszy z linii BOARD: wiersze jako '.', 'X' i 'O'.
+     *
+     * @param size rozmiar planszy
+     * @param cells pola planszy
+     */
+    private void loadBoard(int size, String cells) {
+        if (cells.length() != size * size)
+            return;
+        int[] stones = new int[cells.length()];
+        for (int i = 0; i < stones.length; i++) {
+            char c = cells.charAt(i);
+            stones[i] = c == 'X' ? 1 : c == 'O' ? 2 : 0;
+        }
+        isNegotiation = false;
+        view.setNegotiationPhase(false);
+        view.setMyTurn(false);
+        view.loadBoard(stones);
+    }
+
     public void sendMove(int row, int col) { if(out!=null) out.println("MOVE " + row + " " + col); }
     public void sendPass() { if(out!=null) out.println("PASS"); }
     public void sendQuit() { if(out!=null) out.println("QUIT"); }
@@ -175,5 +249,10 @@ public class Client extends Thread {
         });
     }
 
-    public void close() { try { if(socket!=null) socket.close(); } catch(Exception e){} }
+    public void close() {
+        finished = true;
+        disconnect();
+    }
+
+    private void disconnect() { try { if(socket!=null) socket.close(); } catch(Exception e){} }
 }
\ No newline at end of file
@@ -0,0 +1,727 @@
+package com.gogame.server;
+
+import com.gogame.Board;
+import com.gogame.controller.EventLog;
+import com.gogame.controller.Game;
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.FrameWriter;
+import com.gogame.protocol.MessageWriter;
+import com.gogame.protocol.OutboundQueue;
+import com.gogame.protocol.Parser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Połączenie gracza w serwerze NIO. Wycina linie protokołu z bufora
+ * wejściowego i przekazuje je grze (przed grą - JOIN do poczekalni), a to,
+ * co gra wypisze przez writer, trafia do bufora wyjściowego wysyłanego bez
+ * blokowania. Używane wyłącznie w wątku swojej pętli zdarzeń; przy starcie
+ * gry połączenie białego przechodzi do pętli czarnego (moveTo).
+ * Linie gry (także "@id komenda") są rozkładane w buforze wejściowym
+ * prosto do komendy, bez Stringa na linię. Po linii BINARY od gracza
+ * w grze oba kierunki przechodzą na ramki binarne: ramki są dekodowane
+ * do komendy gry (Binary.decode), a komunikaty gry kodowane do ramek bez
+ * linii tekstowej (writer.send).
+ *
+ * Połączenie, które zamiast JOIN wyśle CREATE albo linię "@id ...", jest
+ * multipleksowane: gra w wielu grach naraz, każda linia w obie strony
+ * niesie identyfikator gry. Takie połączenie nie zmienia pętli - gry
+ * działają w pętlach swoich twórców (Table.home), a linie do nich
+ * i odpowiedzi z nich przechodzą między pętlami przez execute().
+ * Linia "@id WATCH" dopisuje połączenie do widzów gry: dostaje obraz
+ * planszy i dalsze zdarzenia z dziennika gry, w tempie, w jakim odbiera.
+ * Linia "RESUME token" zamiast JOIN przenosi połączenie do pętli gry
+ * gracza, który je zgubił, i sadza je na jego miejscu (Table.resume).
+ */
+class Connection {
+    static final int MAX_LINE = 1024;
+    static final String RESUME = "RESUME ";
+    static final int MAX_OUTBOUND = 64 * 1024;
+    // widz dostaje kolejne zdarzenia, dopoki tyle czeka w buforze wyjsciowym
+    static final int WATCH_BUDGET = 16 * 1024;
+
+    private final SocketChannel channel;
+    private final Lobby<Connection> lobby;
+    private final GameRegistry registry;
+    private volatile EventLoop loop;
+    Lobby.Entry<Connection> entry;
+    private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+    private ByteBuffer out = ByteBuffer.allocate(1024);   // tryb zapisu, dane od 0 do position
+    private SelectionKey key;
+    private boolean closed = false;
+    private boolean closeAfterFlush = false;
+
+    private Table table;
+    private Game game;
+    private boolean black;
+    private Connection peer;
+    private FrameWriter frames;   // null - protokol tekstowy
+    private final Command command = new Command();   // linia albo ramka gracza, wskazuje na bajty w in
+    private volatile boolean multiplexed = false;   // czyta tez watek poczekalni
+    private volatile boolean resuming = false;      // RESUME - nie czeka juz na pare
+    private final Map<Integer, Table> tables = new HashMap<>();   // gry multipleksowane wedlug id
+    private final Map<Integer, Table.Watch> watches = new HashMap<>();   // ogladane gry wedlug id
+
+    // println i send tylko dopisuja do bufora, do kanalu wypycha je dopiero flush -
+    // gra robi go raz na przejscie stanu, wiec to jeden write na kilka linii
+    final MessageWriter writer = new MessageWriter(new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (frames != null)
+                frames.write(cbuf, off, len);
+            else
+                enqueue(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            Connection.this.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }) {
+        @Override
+        public void send(Command message) {
+            if (frames != null)
+                enqueue(Binary.encode(message));
+            else
+                super.send(message);
+        }
+    };
+
+    Connection(SocketChannel channel, EventLoop loop, Lobby<Connection> lobby, GameRegistry registry) {
+        this.channel = channel;
+        this.loop = loop;
+        this.lobby = lobby;
+        this.registry = registry;
+    }
+
+    EventLoop loop() {
+        return loop;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return adres gracza - jego nazwa w archiwum gier
+     */
+    String address() {
+        InetAddress address = channel.socket().getInetAddress();
+        return address == null ? "unknown" : address.getHostAddress();
+    }
+
+    /**
+     * @return true, gdy połączenie nie czeka już na parę z poczekalni
+     *         (gniazdo multipleksowane albo powrót do gry przez RESUME)
+     */
+    boolean leftLobby() {
+        return multiplexed || resuming;
+    }
+
+    /**
+     * Rejestruje kanał w selektorze pętli i zaczyna czytać.
+     * Wywoływane w wątku pętli.
+     */
+    void register() throws IOException {
+        key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Odłącza kanał od selektora obecnej pętli. Wywoływane w jej wątku,
+     * przed moveTo w wątku nowej pętli.
+     */
+    void suspend() {
+        if (key != null)
+            key.cancel();
+    }
+
+    /**
+     * Przenosi połączenie do innej pętli. Wywoływane w wątku nowej pętli.
+     *
+     * @param target nowa pętla
+     */
+    void moveTo(EventLoop target) {
+        if (closed)
+            return;
+        loop = target;
+        try {
+            register();
+            if (out.position() > 0)
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Wiąże połączenie z grą z poczekalni - kolejne linie gracza trafiają do gry.
+     *
+     * @param table gra w rejestrze
+     * @param game gra
+     * @param black true dla gracza czarnego
+     * @param peer połączenie przeciwnika, null w odtworzonej grze, do
+     *             której przeciwnik jeszcze nie wrócił
+     */
+    void attach(Table table, Game game, boolean black, Connection peer) {
+        this.table = table;
+        this.game = game;
+        this.black = black;
+        this.peer = peer;
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            close();
+            disconnected();
+            return;
+        }
+
+        in.flip();
+        // po RESUME linie czekaja w buforze, az Table.resume posadzi gracza
+        while (game != null || !resuming) {
+            if (frames != null) {
+                // ramki sa tylko w grze - komenda idzie do niej prosto z bufora
+                if (!Binary.decode(in, command))
+                    break;
+                game.submit(black, command);
+                continue;
+            }
+            int start = in.position();
+            int end = lineEnd(in);
+            if (end < 0)
+                break;
+            byte[] bytes = in.array();
+            if (game != null) {
+                Parser.parse(bytes, start, end - start, command);
+                if (command.is(Binary.OFFER))
+                    upgrade();
+                else
+                    game.submit(black, command);
+                continue;
+            }
+            if (multiplexed || end > start && bytes[start] == '@') {
+                multiplexed(bytes, start, end);
+                continue;
+            }
+            // poczekalnia - jedna linia na gracza, moze byc Stringiem
+            String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            if (line.startsWith("CREATE"))
+                multiplexed(bytes, start, end);
+            else if (line.startsWith(RESUME))
+                resume(line.substring(RESUME.length()));
+            else if (!lobby.join(entry, line)) {
+                // przed gra serwer rozumie tylko JOIN
+                writer.println("MESSAGE Waiting for opponent... (JOIN <size> [rating] to choose a queue)");
+                writer.flush();
+            }
+        }
+        in.compact();
+        if (!in.hasRemaining()) {
+            // linia dluzsza niz MAX_LINE - blad protokolu
+            close();
+            disconnected();
+            return;
+        }
+        if (game != null)
+            afterGameStep();
+    }
+
+    /**
+     * Powrót gracza z tokenem sesji. Połączenie opuszcza poczekalnię
+     * i przechodzi do pętli gry; do czasu INIT klient nic więcej nie wysyła.
+     */
+    private void resume(String token) {
+        Table target = registry.session(token);
+        if (target == null) {
+            writer.println("ERROR Session expired.");
+            closeAfterFlush();
+            return;
+        }
+        resuming = true;
+        lobby.leave(entry);
+        if (target.home == loop) {
+            target.resume(this, token);
+            return;
+        }
+        suspend();
+        target.home.execute(target.guard(() -> {
+            moveTo(target.home);
+            target.resume(this, token);
+        }));
+    }
+
+    /**
+     * Linia gniazda multipleksowanego z bufora: CREATE rozmiar, "@id JOIN"
+     * albo "@id komenda" do jednej z gier tego połączenia. Komenda jest
+     * rozkładana w buforze; do gry w innej pętli idzie jej kopia.
+     */
+    private void multiplexed(byte[] bytes, int start, int end) {
+        if (!multiplexed) {
+            // gniazdo wielu gier nie czeka juz na pare z poczekalni
+            multiplexed = true;
+            lobby.leave(entry);
+        }
+        if (startsWith(bytes, start, end, "CREATE")) {
+            create(bytes, start, end);
+            return;
+        }
+        int space = start;
+        while (space < end && bytes[space] != ' ')
+            space++;
+        int id = space > start && bytes[start] == '@' ? parseNumber(bytes, start + 1, space) : -1;
+        if (id < 0 || space == end) {
+            writer.println("ERROR Use CREATE <size> or @<game> <command>.");
+            writer.flush();
+            return;
+        }
+        Parser.parse(bytes, space + 1, end - space - 1, command);
+        Table joined = tables.get(id);
+        if (command.is("WATCH")) {
+            watch(id);
+        } else if (command.is("UNWATCH")) {
+            Table.Watch watch = watches.remove(id);
+            if (watch != null)
+                watch.table.unwatch(watch);
+        } else if (command.is("JOIN")) {
+            Table target = registry.get(id);
+            if (joined != null || target == null) {
+                reply(id, "ERROR Game is not open.");
+                return;
+            }
+            // wpis przed przekazaniem - nastepne linie "@id" gracza juz go znajda
+            tables.put(id, target);
+            run(target, () -> target.join(this));
+        } else if (joined == null) {
+            reply(id, "ERROR No such game.");
+        } else {
+            // bufor zostanie nadpisany, zanim inna petla wykona zadanie
+            Command line = joined.home == loop ? command : copy(command);
+            run(joined, () -> joined.submit(this, line));
+        }
+    }
+
+    private static Command copy(Command command) {
+        Command copy = new Command();
+        copy.copyFrom(command);
+        return copy;
+    }
+
+    private void watch(int id) {
+        Table target = registry.get(id);
+        if (target == null || watches.containsKey(id)) {
+            reply(id, "ERROR No such game.");
+            return;
+        }
+        Table.Watch watch = target.watch(this);
+        watches.put(id, watch);
+        pump(watch);
+    }
+
+    /**
+     * Wysyła widzowi zaległe zdarzenia gry, póki bufor wyjściowy nie
+     * przekroczy WATCH_BUDGET. Widz, który został w tyle o cały pierścień
+     * dziennika, dostaje nowy obraz planszy zamiast brakujących zdarzeń.
+     * Wywoływane w wątku pętli tego połączenia.
+     *
+     * @param watch widz
+     * @return false, gdy widz skończył (koniec gry albo zamknięte połączenie)
+     */
+    boolean pump(Table.Watch watch) {
+        if (closed)
+            return false;
+        EventLog log = watch.table.log;
+        while (out.position() < WATCH_BUDGET) {
+            if (watch.next < 0) {
+                EventLog.Snapshot snapshot = log.latest();
+                if (snapshot == null)
+                    break;   // gra czeka na drugiego gracza
+                enqueue(snapshot.bytes);
+                watch.next = snapshot.next;
+            } else if (watch.next < log.head()) {
+                byte[] event = log.get(watch.next);
+                if (event == null) {
+                    watch.next = -1;
+                    continue;
+                }
+                enqueue(event);
+                watch.next++;
+            } else {
+                break;
+            }
+        }
+        flush();
+        if (log.isClosed() && watch.next >= log.head()) {
+            watches.remove(watch.table.id, watch);
+            return false;
+        }
+        return true;
+    }
+
+    private void create(byte[] bytes, int start, int end) {
+        int size = end - start > 7 && bytes[start + 6] == ' ' ? parseNumber(bytes, start + 7, end) : -1;
+        if (size < 2 || size > Board.MAX_SIZE) {
+            writer.println("ERROR Invalid size.");
+            writer.flush();
+            return;
+        }
+        Table created = registry.create(size, loop);
+        tables.put(created.id, created);
+        created.seat(this);
+        reply(created.id, "CREATED " + size);
+    }
+
+    /**
+     * Wykonuje zadanie w pętli gry - od razu, gdy to pętla tego połączenia.
+     */
+    private void run(Table target, Runnable task) {
+        // blad jednej gry nie zamyka calego gniazda multipleksowanego
+        Runnable guarded = target.guard(task);
+        if (target.home == loop)
+            guarded.run();
+        else
+            target.home.execute(guarded);
+    }
+
+    private void reply(int id, String line) {
+        writer.print('@');
+        writer.print(id);
+        writer.print(' ');
+        writer.println(line);
+        writer.flush();
+    }
+
+    /**
+     * @return liczba z bytes[from, to) albo -1, gdy to nie liczba
+     */
+    private static int parseNumber(byte[] bytes, int from, int to) {
+        if (to <= from || to - from > 9)
+            return -1;
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int c = bytes[i];
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Writer miejsca w grze multipleksowanej. Gra pisze do niego w wątku
+     * swojej pętli; każda linia dostaje przedrostek "@id ", a flush
+     * przekazuje zebrane bajty pętli tego połączenia - jedno execute na
+     * przejście stanu gry, bez dotykania bufora z cudzego wątku.
+     *
+     * @param id identyfikator gry
+     * @return writer dla Game.open
+     */
+    PrintWriter seatWriter(int id) {
+        String tag = "@" + id + " ";
+        return new PrintWriter(new Writer() {
+            private final StringBuilder pending = new StringBuilder();
+            private boolean lineStart = true;
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    if (lineStart)
+                        pending.append(tag);
+                    pending.append(cbuf[i]);
+                    lineStart = cbuf[i] == '\n';
+                }
+            }
+
+            @Override
+            public void flush() {
+                if (pending.length() == 0)
+                    return;
+                byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+                pending.setLength(0);
+                EventLoop target = loop;
+                if (target.inLoop())
+                    deliver(bytes);
+                else
+                    target.execute(() -> deliver(bytes));
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    private void deliver(byte[] bytes) {
+        enqueue(bytes);
+        flush();
+    }
+
+    /**
+     * Gra multipleksowana skończyła się albo odrzuciła JOIN. Wywoływane
+     * w pętli gry; wpis usuwa pętla tego połączenia.
+     *
+     * @param finished gra
+     * @param error odpowiedź dla gracza albo null
+     */
+    void forget(Table finished, String error) {
+        Runnable task = () -> {
+            tables.remove(finished.id, finished);
+            if (error != null)
+                reply(finished.id, error);
+        };
+        if (loop.inLoop())
+            task.run();
+        else
+            loop.execute(task);
+    }
+
+    /**
+     * Szuka końca następnej linii tekstowej w buforze.
+     *
+     * @param in bufor w trybie odczytu; pozycja przesuwa się za linię
+     * @return koniec linii (bez \r\n) w in.array() albo -1, gdy nie doszła
+     *         jeszcze cała
+     */
+    private static int lineEnd(ByteBuffer in) {
+        byte[] bytes = in.array();
+        int start = in.position();
+        for (int i = start; i < in.limit(); i++) {
+            if (bytes[i] != '\n')
+                continue;
+            in.position(i + 1);
+            return (i > start && bytes[i - 1] == '\r') ? i - 1 : i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, String prefix) {
+        if (end - start < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[start + i] != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Przełącza połączenie na ramki binarne. BINARY_OK idzie jeszcze
+     * tekstem; dalsze bajty od gracza w buforze to już ramki.
+     */
+    private void upgrade() {
+        writer.println(Binary.ACCEPTED);
+        writer.flush();
+        frames = new FrameWriter(new OutputStream() {
+            @Override
+            public void write(int b) {
+                enqueue(new byte[] {(byte) b});
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                enqueue(b, off, len);
+            }
+        });
+    }
+
+    private void disconnected() {
+        if (multiplexed) {
+            for (Table joined : new ArrayList<>(tables.values()))
+                run(joined, () -> joined.leave(this));
+            tables.clear();
+            for (Table.Watch watch : watches.values())
+                watch.table.unwatch(watch);
+            watches.clear();
+            return;
+        }
+        if (game == null) {
+            if (!resuming)
+                lobby.leave(entry);
+            return;
+        }
+        if (!table.seated(this))
+            return;   // gracz juz wrocil nowym polaczeniem
+        game.disconnect(black);
+        if (game.isAway(black))
+            loop.schedule(table.guard(this::expire), game.graceMs());
+        afterGameStep();
+    }
+
+    /**
+     * Czas na powrót minął: jeśli gracz nie wrócił nowym połączeniem,
+     * gra kończy się jak przy jego wyjściu.
+     */
+    private void expire() {
+        if (!table.seated(this) || game.isFinished())
+            return;
+        game.expire(black);
+        afterGameStep();
+    }
+
+    /**
+     * Obsługa tego połączenia rzuciła wyjątkiem, np. z jego gry. Zamyka
+     * połączenie razem z grą; pozostałe połączenia pętli działają dalej.
+     * Wywoływane w wątku pętli.
+     *
+     * @param e wyjątek
+     */
+    void fail(RuntimeException e) {
+        System.out.println("Connection failed: " + e);
+        close();
+        if (table != null) {
+            // polaczenie zastapione przez RESUME nie przerywa gry
+            if (table.seated(this))
+                table.abort();
+            return;
+        }
+        try {
+            disconnected();
+        } catch (RuntimeException again) {
+            System.out.println("Connection cleanup failed: " + again);
+        }
+    }
+
+    void onWritable() {
+        flush();
+        if (out.position() == 0 && !watches.isEmpty()) {
+            // wolny widz odebral zalegle dane - dalsze zdarzenia z dziennika
+            for (Table.Watch watch : new ArrayList<>(watches.values())) {
+                if (!pump(watch))
+                    watch.table.unwatch(watch);
+            }
+        }
+    }
+
+    /**
+     * Po zakończeniu gry zamyka oba połączenia, gdy wyślą resztę danych.
+     */
+    private void afterGameStep() {
+        if (game.isFinished()) {
+            table.unregister();
+            closeAfterFlush();
+            if (peer != null)
+                peer.closeAfterFlush();
+        }
+    }
+
+    void closeAfterFlush() {
+        closeAfterFlush = true;
+        flush();
+    }
+
+    private void enqueue(byte[] bytes) {
+        enqueue(bytes, 0, bytes.length);
+    }
+
+    private void enqueue(byte[] bytes, int off, int len) {
+        if (reserve(len))
+            out.put(bytes, off, len);
+    }
+
+    /**
+     * Dopisuje znaki linii tekstowej. Znaki ASCII idą prosto do bufora,
+     * bez pośredniego Stringa; rzadki tekst spoza ASCII koduje UTF-8.
+     */
+    private void enqueue(char[] chars, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            if (chars[i] >= 0x80) {
+                enqueue(new String(chars, off, len).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        if (!reserve(len))
+            return;
+        for (int i = off; i < off + len; i++)
+            out.put((byte) chars[i]);
+    }
+
+    /**
+     * Robi w buforze wyjściowym miejsce na len bajtów.
+     *
+     * @return false, gdy połączenie jest albo zostało właśnie zamknięte
+     */
+    private boolean reserve(int len) {
+        if (closed)
+            return false;
+        if (out.remaining() < len) {
+            int needed = out.position() + len;
+            if (needed > MAX_OUTBOUND) {
+                // klient nie odbiera danych - nie trzymamy dla niego nieograniczonego bufora
+                OutboundQueue.metrics().countDrop();
+                drop();
+                return false;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(MAX_OUTBOUND, Math.max(needed, 2 * out.capacity())));
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+        return true;
+    }
+
+    private void flush() {
+        if (closed)
+            return;
+        try {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        } catch (IOException e) {
+            drop();
+            return;
+        }
+        if (out.position() > 0) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        } else {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closeAfterFlush)
+                close();
+        }
+    }
+
+    /**
+     * Zamyka połączenie, do którego nie da się pisać (błąd zapisu albo
+     * przepełniony bufor), i zleca pętli to samo sprzątanie co po EOF -
+     * gra, stół i poczekalnia dowiadują się o wyjściu gracza. Nie w miejscu,
+     * bo zapis idzie zwykle z wnętrza Game.send.
+     */
+    private void drop() {
+        if (closed)
+            return;
+        close();
+        loop.execute(this::disconnected);
+    }
+
+    /**
+     * Zamyka kanał. Dalsze zapisy gry do tego gracza są pomijane.
+     */
+    void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (key != null)
+            key.cancel();
+        try { channel.close(); } catch (IOException e) {}
+    }
+}
@@ -0,0 +1,148 @@
+package com.gogame.server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pętla zdarzeń serwera NIO: jeden wątek i jeden Selector obsługujące
+ * wiele połączeń. Wszystkie gry przypisane do pętli są wykonywane w jej
+ * wątku, więc stan gry nie wymaga synchronizacji. Inne wątki przekazują
+ * pracę przez execute(), a zadania na później (czas na powrót gracza)
+ * czekają w kolejce czasowej pętli - select czeka najwyżej do pierwszego.
+ * Wyjątek z jednego zadania, timera czy połączenia nie kończy pętli:
+ * zamykane jest tylko połączenie albo gra, która go rzuciła.
+ */
+class EventLoop implements Runnable {
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Scheduled> timers =
+            new PriorityQueue<>(Comparator.comparingLong((Scheduled timer) -> timer.at));   // tylko watek petli
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * @return true w wątku tej pętli
+     */
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Zleca zadanie do wykonania w wątku pętli.
+     *
+     * @param task zadanie
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Zleca zadanie po czasie. Wywoływane w wątku pętli.
+     *
+     * @param task zadanie
+     * @param delayMs opóźnienie w milisekundach
+     */
+    void schedule(Runnable task, long delayMs) {
+        timers.add(new Scheduled(System.nanoTime() + delayMs * 1_000_000, task));
+    }
+
+    /**
+     * Zadanie czekające na swój czas.
+     */
+    private static final class Scheduled {
+        final long at;
+        final Runnable task;
+
+        Scheduled(long at, Runnable task) {
+            this.at = at;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Zatrzymuje pętlę i zamyka jej połączenia.
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    void join() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * Wykonuje zadanie tak, żeby wyjątek nie zatrzymał pętli - zadania
+     * gier same sprzątają po swoim błędzie (Table.guard), tu zostaje
+     * tylko ślad.
+     */
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            System.out.println("Event loop task failed: " + e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                Scheduled next = timers.peek();
+                if (next == null)
+                    selector.select();
+                else {
+                    long wait = (next.at - System.nanoTime() + 999_999) / 1_000_000;
+                    if (wait > 0)
+                        selector.select(wait);
+                    else
+                        selector.selectNow();
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null)
+                    runTask(task);
+                while ((next = timers.peek()) != null && next.at - System.nanoTime() <= 0)
+                    runTask(timers.poll().task);
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable())
+                            connection.onReadable();
+                        if (key.isValid() && key.isWritable())
+                            connection.onWritable();
+                    } catch (RuntimeException e) {
+                        // blad jednej gry zamyka tylko to polaczenie i jego gre
+                        connection.fail(e);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            System.out.println("Event loop failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys())
+                ((Connection) key.attachment()).close();
+            try { selector.close(); } catch (IOException e) {}
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.gogame.server;
+
+import com.gogame.controller.Archive;
+import com.gogame.controller.Journal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rejestr gier serwera NIO według identyfikatora. Czytany z wielu pętli
+ * zdarzeń (linie "@id ..." od graczy), więc mapa jest współbieżna; stan
+ * samej gry zmienia tylko pętla, w której gra działa (Table.home).
+ * Obok gier trzyma tokeny sesji graczy gier wznawialnych (RESUME) oraz
+ * wspólne dla serwera pliki: dziennik gier i archiwum zakończonych gier.
+ */
+class GameRegistry {
+    private final ConcurrentMap<Integer, Table> games = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ConcurrentMap<String, Table> sessions = new ConcurrentHashMap<>();
+    final Journal journal;   // null - gry nie przetrwaja restartu
+    final Archive archive;   // null - zakonczone gry nie sa zapisywane
+
+    GameRegistry(Journal journal, Archive archive) {
+        this.journal = journal;
+        this.archive = archive;
+    }
+
+    /**
+     * Zakłada grę i nadaje jej identyfikator.
+     *
+     * @param size rozmiar planszy
+     * @param home pętla, w której gra będzie działać
+     * @return nowa gra (jeszcze bez graczy)
+     */
+    Table create(int size, EventLoop home) {
+        Table table = new Table(nextId.getAndIncrement(), size, home, this);
+        games.put(table.id, table);
+        return table;
+    }
+
+    /**
+     * @param id identyfikator gry
+     * @return gra albo null, gdy nie ma jej (już) w rejestrze
+     */
+    Table get(int id) {
+        return games.get(id);
+    }
+
+    void remove(Table table) {
+        games.remove(table.id, table);
+    }
+
+    void bind(String token, Table table) {
+        sessions.put(token, table);
+    }
+
+    void unbind(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * @param token token sesji z linii RESUME
+     * @return gra gracza albo null, gdy sesja wygasła
+     */
+    Table session(String token) {
+        return sessions.get(token);
+    }
+
+    int size() {
+        return games.size();
+    }
+}
@@ -0,0 +1,46 @@
+package com.gogame.server;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fabryki wątków dla blokujących sesji gry: zwykłe wątki platformowe albo
+ * wątki wirtualne. Projekt kompiluje się pod Javę 17, więc wątki wirtualne
+ * (Java 21) są tworzone przez refleksję i dostępne tylko na nowszej JVM.
+ */
+public final class GameThreads {
+
+    private GameThreads() {
+    }
+
+    /**
+     * @return true jeśli JVM obsługuje wątki wirtualne
+     */
+    public static boolean virtualSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Zwraca fabrykę wątków sesji.
+     *
+     * @param virtual true dla wątków wirtualnych
+     * @return fabryka wątków
+     * @throws IllegalStateException gdy JVM nie obsługuje wątków wirtualnych
+     */
+    public static ThreadFactory factory(boolean virtual) {
+        if (!virtual)
+            return Thread::new;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "game-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer", e);
+        }
+    }
+}
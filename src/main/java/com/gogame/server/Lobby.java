@@ -0,0 +1,238 @@
+package com.gogame.server;
+
+import com.gogame.Board;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poczekalnia graczy z kolejkami według rozmiaru planszy i przedziału
+ * rankingu. Akceptor i wątki połączeń tylko zgłaszają zdarzenia
+ * (register, join, leave) do współbieżnej kolejki, a jeden wątek
+ * dobierający pary przetwarza je po kolei - kolejki oczekujących nie
+ * wymagają więc synchronizacji i nikt nie czeka na blokadę nawet przy
+ * tysiącach połączeń na sekundę.
+ *
+ * Gracz może zaraz po połączeniu wysłać "JOIN rozmiar [ranking]".
+ * Kto w ciągu HANDSHAKE_MS nic nie wyśle (starszy klient), trafia do
+ * kolejki domyślnej: rozmiar serwera i ranking DEFAULT_RATING.
+ *
+ * @param <T> połączenie gracza (zależne od serwera)
+ */
+public class Lobby<T> implements Runnable {
+    public static final int DEFAULT_RATING = 1500;
+    public static final int BAND_WIDTH = 200;
+    static final long HANDSHAKE_MS = 100;
+    private static final int BANDS = 64;
+
+    /**
+     * Odbiorca dobranych par. Wywoływany w wątku dobierającym, więc nie
+     * powinien blokować - tylko przekazuje parę do wątku gry.
+     *
+     * @param <T> połączenie gracza
+     */
+    public interface Pairing<T> {
+        /**
+         * @param black gracz czekający dłużej, gra czarnymi
+         * @param white drugi gracz
+         * @param size rozmiar planszy
+         */
+        void pair(T black, T white, int size);
+    }
+
+    /**
+     * Zgłoszenie gracza. Pola poza player zmienia tylko wątek dobierający.
+     *
+     * @param <T> połączenie gracza
+     */
+    public static final class Entry<T> {
+        final T player;
+        final long deadline;
+        int size;
+        int key = -1;          // -1 - jeszcze bez JOIN, czeka na koniec HANDSHAKE_MS
+        boolean active = true; // false po sparowaniu albo wyjściu
+
+        Entry(T player, long deadline) {
+            this.player = player;
+            this.deadline = deadline;
+        }
+    }
+
+    private final int defaultSize;
+    private final Pairing<T> pairing;
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // stan watku dobierajacego
+    private final ArrayDeque<Entry<T>> pending = new ArrayDeque<>();
+    private final Map<Integer, ArrayDeque<Entry<T>>> waiting = new HashMap<>();
+
+    /**
+     * Tworzy poczekalnię.
+     *
+     * @param defaultSize rozmiar planszy dla graczy bez JOIN
+     * @param pairing odbiorca dobranych par
+     */
+    public Lobby(int defaultSize, Pairing<T> pairing) {
+        this.defaultSize = defaultSize;
+        this.pairing = pairing;
+        this.thread = new Thread(this, "matcher");
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Zatrzymuje dobieranie. Niesparowani gracze zostają bez gry.
+     *
+     * @throws InterruptedException gdy oczekiwanie zostanie przerwane
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        tasks.add(() -> { });
+        thread.join();
+    }
+
+    /**
+     * Zgłasza nowe połączenie. Nie blokuje.
+     *
+     * @param player połączenie gracza
+     * @return zgłoszenie do dalszych wywołań join/leave
+     */
+    public Entry<T> register(T player) {
+        Entry<T> entry = new Entry<>(player, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HANDSHAKE_MS));
+        tasks.add(() -> pending.add(entry));
+        return entry;
+    }
+
+    /**
+     * Zgłasza gracza po zakończonym powitaniu - od razu do kolejki z JOIN
+     * albo, gdy go nie było lub był błędny, do kolejki domyślnej.
+     *
+     * @param player połączenie gracza
+     * @param line pierwsza linia od gracza albo null
+     * @return zgłoszenie do dalszych wywołań leave
+     */
+    public Entry<T> register(T player, String line) {
+        Entry<T> entry = new Entry<>(player, 0);
+        Runnable join = line == null ? null : joinTask(entry, line);
+        tasks.add(join != null ? join : () -> enqueue(entry, defaultSize, key(defaultSize, DEFAULT_RATING)));
+        return entry;
+    }
+
+    /**
+     * Obsługuje linię "JOIN rozmiar [ranking]". Gracz już czekający
+     * przechodzi do nowej kolejki.
+     *
+     * @param entry zgłoszenie gracza
+     * @param line linia od gracza
+     * @return false gdy linia nie jest poprawnym JOIN
+     */
+    public boolean join(Entry<T> entry, String line) {
+        Runnable join = joinTask(entry, line);
+        if (join == null)
+            return false;
+        tasks.add(join);
+        return true;
+    }
+
+    private Runnable joinTask(Entry<T> entry, String line) {
+        String[] parts = line.split(" ");
+        if (parts.length < 2 || parts.length > 3 || !parts[0].equals("JOIN"))
+            return null;
+        int size;
+        int rating;
+        try {
+            size = Integer.parseInt(parts[1]);
+            rating = parts.length > 2 ? Integer.parseInt(parts[2]) : DEFAULT_RATING;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (size < 2 || size > Board.MAX_SIZE || rating < 0)
+            return null;
+        return () -> {
+            if (entry.active)
+                enqueue(entry, size, key(size, rating));
+        };
+    }
+
+    /**
+     * Zgłasza rozłączenie gracza, który jeszcze nie gra.
+     *
+     * @param entry zgłoszenie gracza
+     */
+    public void leave(Entry<T> entry) {
+        tasks.add(() -> entry.active = false);
+    }
+
+    /**
+     * Przywraca do kolejki gracza, którego przeciwnik odpadł przed startem gry.
+     *
+     * @param entry zgłoszenie gracza
+     */
+    public void requeue(Entry<T> entry) {
+        tasks.add(() -> {
+            entry.active = true;
+            enqueue(entry, entry.size, entry.key);
+        });
+    }
+
+    static int key(int size, int rating) {
+        return size * BANDS + Math.min(rating / BAND_WIDTH, BANDS - 1);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                Entry<T> first = pending.peek();
+                Runnable task = first == null ? tasks.take()
+                        : tasks.poll(first.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (task != null)
+                    task.run();
+                promote(System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gracze bez JOIN po HANDSHAKE_MS trafiają do kolejki domyślnej.
+     */
+    private void promote(long now) {
+        Entry<T> entry;
+        while ((entry = pending.peek()) != null && entry.deadline - now <= 0) {
+            pending.poll();
+            if (entry.active && entry.key < 0)
+                enqueue(entry, defaultSize, key(defaultSize, DEFAULT_RATING));
+        }
+    }
+
+    /**
+     * Paruje gracza z najdłużej czekającym w jego kolejce albo dopisuje
+     * go na koniec. Zgłoszenia graczy, którzy wyszli lub zmienili
+     * kolejkę, są usuwane dopiero tutaj.
+     */
+    private void enqueue(Entry<T> entry, int size, int key) {
+        entry.size = size;
+        entry.key = key;
+        ArrayDeque<Entry<T>> queue = waiting.computeIfAbsent(key, k -> new ArrayDeque<>());
+        Entry<T> partner;
+        while ((partner = queue.poll()) != null) {
+            if (partner.active && partner.key == key && partner != entry) {
+                partner.active = false;
+                entry.active = false;
+                pairing.pair(partner.player, entry.player, size);
+                return;
+            }
+        }
+        queue.add(entry);
+    }
+}
@@ -0,0 +1,253 @@
+package com.gogame.server;
+
+import com.gogame.controller.Archive;
+import com.gogame.controller.Game;
+import com.gogame.controller.Journal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * Serwer gry oparty na NIO: wątek akceptora tylko przyjmuje połączenia,
+ * rozdziela je po kolei między kilka pętli zdarzeń (EventLoop) i zgłasza
+ * do poczekalni (Lobby), która dobiera pary. Liczba wątków nie zależy od
+ * liczby gier, a pamięć na połączenie to bufor wejściowy i ograniczony
+ * bufor wyjściowy (Connection). Gry z poczekalni są wznawialne: gracz ma
+ * graceMs na powrót z tokenem sesji (RESUME). Z dziennikiem (Journal)
+ * gry z poczekalni przetrwają też restart serwera: start() odtwarza
+ * trwające gry, zanim przyjmie pierwsze połączenie, a ich gracze wracają
+ * przez RESUME. Z archiwum (Archive) każda zakończona gra zostaje
+ * zapisana do przeglądania, z adresami graczy jako ich nazwami.
+ */
+public class NioServer implements Runnable {
+    // kolejka polaczen czekajacych na accept - przy szczycie logowan domyslne 50 gubi SYN-y
+    static final int BACKLOG = 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector acceptSelector;
+    private final EventLoop[] loops;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+    private final Lobby<Connection> lobby;
+    private final GameRegistry registry;
+    private final long graceMs;
+    private int nextLoop = 0;
+
+    /**
+     * Tworzy serwer i otwiera port.
+     *
+     * @param port port (0 - dowolny wolny)
+     * @param size domyślny rozmiar planszy (dla graczy bez JOIN)
+     * @param loopCount liczba pętli zdarzeń
+     * @throws IOException gdy nie można otworzyć portu
+     */
+    public NioServer(int port, int size, int loopCount) throws IOException {
+        this(port, size, loopCount, Game.DEFAULT_GRACE_MS);
+    }
+
+    /**
+     * Tworzy serwer z czasem na powrót rozłączonego gracza.
+     *
+     * @param port port (0 - dowolny wolny)
+     * @param size domyślny rozmiar planszy (dla graczy bez JOIN)
+     * @param loopCount liczba pętli zdarzeń
+     * @param graceMs czas na powrót gracza, 0 - rozłączenie kończy grę
+     * @throws IOException gdy nie można otworzyć portu
+     */
+    public NioServer(int port, int size, int loopCount, long graceMs) throws IOException {
+        this(port, size, loopCount, graceMs, null, null);
+    }
+
+    /**
+     * Tworzy serwer z dziennikiem i archiwum gier. Serwer zamyka oba
+     * w stop().
+     *
+     * @param port port (0 - dowolny wolny)
+     * @param size domyślny rozmiar planszy (dla graczy bez JOIN)
+     * @param loopCount liczba pętli zdarzeń
+     * @param graceMs czas na powrót gracza, 0 - rozłączenie kończy grę
+     * @param journal dziennik gier albo null
+     * @param archive archiwum zakończonych gier albo null
+     * @throws IOException gdy nie można otworzyć portu
+     */
+    public NioServer(int port, int size, int loopCount, long graceMs, Journal journal, Archive archive)
+            throws IOException {
+        this.graceMs = graceMs;
+        this.registry = new GameRegistry(journal, archive);
+        this.lobby = new Lobby<>(size, this::paired);
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        this.acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++)
+            loops[i] = new EventLoop("event-loop-" + i);
+        this.acceptor = new Thread(this, "acceptor");
+    }
+
+    /**
+     * Uruchamia pętle zdarzeń, odtwarza gry z dziennika, a potem uruchamia
+     * poczekalnię i akceptor.
+     *
+     * @throws IOException gdy nie można przeczytać dziennika
+     */
+    public void start() throws IOException {
+        for (EventLoop loop : loops)
+            loop.start();
+        if (registry.journal != null)
+            recover();
+        lobby.start();
+        acceptor.start();
+    }
+
+    /**
+     * Rozdziela odtworzone gry między pętle jak nowe połączenia. Tokeny
+     * są w rejestrze przed startem akceptora, więc pierwszy RESUME już
+     * trafia do gry.
+     */
+    private void recover() throws IOException {
+        List<Game> games = registry.journal.recover(graceMs);
+        for (Game game : games) {
+            EventLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            Table table = registry.create(game.size(), loop);
+            table.restore(game);
+            loop.execute(() -> loop.schedule(table.guard(table::expire), graceMs));
+        }
+        if (!games.isEmpty())
+            System.out.println("Recovered " + games.size() + " games from journal");
+    }
+
+    /**
+     * @return port, na którym serwer nasłuchuje
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Zatrzymuje serwer i zamyka wszystkie połączenia.
+     *
+     * @throws InterruptedException gdy oczekiwanie zostanie przerwane
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        acceptSelector.wakeup();
+        acceptor.join();
+        lobby.stop();
+        for (EventLoop loop : loops)
+            loop.shutdown();
+        for (EventLoop loop : loops)
+            loop.join();
+        try {
+            if (registry.journal != null)
+                registry.journal.close();
+            if (registry.archive != null)
+                registry.archive.close();
+        } catch (IOException e) {
+            System.out.println("Closing game files failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+                SocketChannel channel;
+                while ((channel = serverChannel.accept()) != null)
+                    accepted(channel);
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            try { acceptSelector.close(); serverChannel.close(); } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Akceptor nie czeka na nic od gracza: zgłasza go do poczekalni
+     * i przekazuje pętli, która zaczyna czytać jego linie (JOIN).
+     */
+    private void accepted(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        EventLoop loop = loops[nextLoop];
+        nextLoop = (nextLoop + 1) % loops.length;
+        Connection connection = new Connection(channel, loop, lobby, registry);
+        connection.entry = lobby.register(connection);
+        loop.execute(() -> {
+            if (register(connection)) {
+                connection.writer.println("MESSAGE Waiting for opponent...");
+                connection.writer.flush();
+            } else
+                lobby.leave(connection.entry);
+        });
+    }
+
+    /**
+     * Para z poczekalni (wątek dobierający). Gra działa w pętli czarnego,
+     * więc połączenie białego jest najpierw odłączane od swojej pętli.
+     */
+    private void paired(Connection black, Connection white, int size) {
+        EventLoop target = black.loop();
+        // gniazdo multipleksowane nie zmienia petli - startGame odrzuci te pare
+        if (white.loop() == target || white.leftLobby()) {
+            target.execute(() -> startGame(black, white, size));
+            return;
+        }
+        white.loop().execute(() -> {
+            white.suspend();
+            target.execute(() -> {
+                white.moveTo(target);
+                startGame(black, white, size);
+            });
+        });
+    }
+
+    private void startGame(Connection black, Connection white, int size) {
+        // gracz rozlaczyl sie (albo przeszedl na CREATE/@id czy RESUME) miedzy
+        // dobraniem a startem - drugi wraca do poczekalni
+        boolean blackGone = black.isClosed() || black.leftLobby();
+        boolean whiteGone = white.isClosed() || white.leftLobby();
+        if (blackGone || whiteGone) {
+            if (!blackGone)
+                lobby.requeue(black.entry);
+            if (!whiteGone)
+                lobby.requeue(white.entry);
+            return;
+        }
+        Table table = registry.create(size, black.loop());
+        // id pozwala widzom zapisac sie na gre (@id WATCH)
+        black.writer.println("MESSAGE Opponent connected. Game " + table.id + " starts.");
+        white.writer.println("MESSAGE Opponent connected. Game " + table.id + " starts.");
+        Game game = table.open(black, white, black.writer, white.writer, graceMs);
+        black.attach(table, game, true, white);
+        white.attach(table, game, false, black);
+    }
+
+    /**
+     * @return liczba gier w rejestrze (czekających na gracza i trwających)
+     */
+    public int activeGames() {
+        return registry.size();
+    }
+
+    private static boolean register(Connection connection) {
+        try {
+            connection.register();
+            return true;
+        } catch (IOException e) {
+            connection.close();
+            return false;
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package com.gogame.server;
 
+import com.gogame.Board;
+import com.gogame.controller.Archive;
 import com.gogame.controller.Game;
+import com.gogame.controller.Journal;
+import com.gogame.protocol.OutboundQueue;
 
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.file.Paths;
 
 /**
  * Serwer gry Go obsługujący połączenia klientów.
@@ -15,32 +16,77 @@ import java.net.Socket;
  * pełni rolę "twórcy" dla obiektów Game.
  */
 public class Server {
+    public static final int PORT = 8001;
+
     /**
      * Uruchamia serwer i nasłuchuje połączeń.
      *
-     * @param args argumenty linii poleceń
+     * @param args argumenty linii poleceń: opcjonalnie rozmiar planszy (9, 13, 19)
+     *             i tryb: nio (domyślny, pętle zdarzeń), threads (wątek platformowy
+     *             na grę) albo virtual (wątek wirtualny na grę, Java 21+), a dla
+     *             threads i virtual polityka pełnej kolejki wyjściowej: drop
+     *             (domyślna), coalesce albo block (nio zawsze zrywa połączenie
+     *             z pełnym buforem jak drop), a dla nio katalog dziennika
+     *             gier (domyślnie journal), z którego serwer odtwarza gry po
+     *             restarcie, i katalog archiwum zakończonych gier (domyślnie
+     *             archive)
      * @throws Exception w przypadku błędu I/O
      */
     public static void main(String[] args) throws Exception {
-        try (ServerSocket listener = new ServerSocket(8001)) {
-            System.out.println("SERVER IS WORKING");
-            while (true) {
-                Socket player1 = listener.accept();
-                System.out.println("Player 1 connected (Black)");
-                PrintWriter out1 = new PrintWriter(player1.getOutputStream(), true);
-                out1.println("MESSAGE Waiting for opponent...");
+        int size = args.length > 0 ? size(args[0]) : Board.DEFAULT_SIZE;
+        if (size == 0) {
+            System.err.println("Invalid board size: " + args[0] + " (allowed: 2.." + Board.MAX_SIZE + ")");
+            System.err.println("Usage: Server [size] [nio [journal] [archive] | threads|virtual [drop|coalesce|block]]");
+            return;
+        }
+        String mode = args.length > 1 ? args[1] : "nio";
+        if (mode.equals("nio")) {
+            int loops = Runtime.getRuntime().availableProcessors();
+            String dir = args.length > 2 ? args[2] : "journal";
+            String archive = args.length > 3 ? args[3] : "archive";
+            NioServer server = new NioServer(PORT, size, loops, Game.DEFAULT_GRACE_MS,
+                    new Journal(Paths.get(dir)), new Archive(Paths.get(archive)));
+            server.start();
+            System.out.println("SERVER IS WORKING (" + size + "x" + size + ", nio, " + loops + " event loops, journal "
+                    + dir + ", archive " + archive + ")");
+            return;
+        }
+        if (!mode.equals("threads") && !mode.equals("virtual")) {
+            System.err.println("Unknown server mode: " + mode + " (allowed: nio, threads, virtual)");
+            return;
+        }
+        OutboundQueue.Policy policy = args.length > 2 ? policy(args[2]) : OutboundQueue.Policy.DROP;
+        if (policy == null) {
+            System.err.println("Unknown queue policy: " + args[2] + " (allowed: drop, coalesce, block)");
+            return;
+        }
+        ThreadServer server = new ThreadServer(PORT, size, GameThreads.factory(mode.equals("virtual")), policy);
+        server.start();
+        System.out.println("SERVER IS WORKING (" + size + "x" + size + ", " + mode + ", " + policy.name().toLowerCase() + ")");
+    }
 
-                Socket player2 = listener.accept();
-                System.out.println("Player 2 connected (White)");
-                PrintWriter out2 = new PrintWriter(player2.getOutputStream(), true);
-                out2.println("MESSAGE Opponent connected. Game starts.");
+    /**
+     * @param arg rozmiar planszy z linii poleceń
+     * @return rozmiar z 2..MAX_SIZE, jak w Lobby, albo 0 dla złej wartości
+     */
+    private static int size(String arg) {
+        try {
+            int size = Integer.parseInt(arg);
+            return size >= 2 && size <= Board.MAX_SIZE ? size : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-                // Utworzenie sesji gry (Controller)
-                Game game = new Game(player1, player2);
-                game.start();
-            }
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
+    /**
+     * @param name nazwa polityki bez względu na wielkość liter
+     * @return polityka pełnej kolejki wyjściowej albo null dla nieznanej nazwy
+     */
+    private static OutboundQueue.Policy policy(String name) {
+        for (OutboundQueue.Policy policy : OutboundQueue.Policy.values()) {
+            if (policy.name().equalsIgnoreCase(name))
+                return policy;
         }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,347 @@
+package com.gogame.server;
+
+import com.gogame.controller.EventLog;
+import com.gogame.controller.Game;
+import com.gogame.protocol.Command;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gra w rejestrze serwera NIO. Działa w pętli home - dla gry z poczekalni
+ * jest to pętla czarnego, dla gry założonej przez CREATE pętla twórcy.
+ * Wszystkie metody poza konstruktorem wywołuje wyłącznie wątek home, więc
+ * stan gry nie wymaga synchronizacji; gracze z innych pętli przekazują
+ * linie przez home.execute(), a odpowiedzi gry wracają do nich przez
+ * writery miejsc (Connection.seatWriter).
+ *
+ * Widzowie (@id WATCH) czytają dziennik gry (EventLog) we własnych
+ * pętlach. Po przejściu stanu gra budzi każdą pętlę z widzami najwyżej
+ * jednym zadaniem (Audience), więc jej koszt nie rośnie z liczbą widzów,
+ * a wolny widz zostaje w tyle zamiast wstrzymywać grę.
+ *
+ * Gra z poczekalni jest wznawialna: gracz, który zgubił połączenie, wraca
+ * nowym połączeniem z tokenem sesji (resume) i zajmuje swoje miejsce.
+ * Gra odtworzona z dziennika po restarcie serwera (restore) zaczyna bez
+ * połączeń - obaj gracze siadają na swoich miejscach przez resume.
+ */
+final class Table {
+    final int id;
+    final int size;
+    final EventLoop home;
+    private final GameRegistry registry;
+    final EventLog log;
+    private final ConcurrentMap<EventLoop, Audience> audiences = new ConcurrentHashMap<>();
+
+    private Connection black;
+    private Connection white;
+    private PrintWriter blackOut;
+    private PrintWriter whiteOut;
+    private Game game;
+
+    Table(int id, int size, EventLoop home, GameRegistry registry) {
+        this.id = id;
+        this.size = size;
+        this.home = home;
+        this.registry = registry;
+        this.log = new EventLog("@" + id + " ");
+        log.onFlush(this::notifyAudiences);
+    }
+
+    /**
+     * Sadza twórcę gry (CREATE) jako czarnego.
+     */
+    void seat(Connection creator) {
+        black = creator;
+        blackOut = creator.seatWriter(id);
+    }
+
+    /**
+     * Dosadza białego (@id JOIN) i zaczyna grę. Gdy miejsca już nie ma,
+     * gracz dostaje błąd i zapomina o grze.
+     */
+    void join(Connection joiner) {
+        if (game != null || black == null) {
+            joiner.forget(this, "ERROR Game is not open.");
+            return;
+        }
+        blackOut.println("MESSAGE Opponent connected. Game starts.");
+        PrintWriter out = joiner.seatWriter(id);
+        out.println("MESSAGE Opponent connected. Game starts.");
+        // gniazdo multipleksowane nie ma tokenow - rozlaczenie konczy gre
+        open(black, joiner, blackOut, out, 0);
+    }
+
+    /**
+     * Zaczyna grę między dwoma graczami.
+     *
+     * @param graceMs czas na powrót rozłączonego gracza, 0 - gra niewznawialna
+     *                (i nieodtwarzalna z dziennika)
+     * @return gra - połączenia z poczekalni przekazują jej linie same
+     */
+    Game open(Connection black, Connection white, PrintWriter blackOut, PrintWriter whiteOut, long graceMs) {
+        this.black = black;
+        this.white = white;
+        this.blackOut = blackOut;
+        this.whiteOut = whiteOut;
+        // Utworzenie sesji gry (Controller) w watku petli, ktora ja obsluguje
+        game = new Game(size);
+        game.observe(log);
+        game.players(black.address(), white.address());
+        if (registry.archive != null)
+            game.observe(registry.archive);
+        if (graceMs > 0) {
+            game.resumable(graceMs);
+            registry.bind(game.token(true), this);
+            registry.bind(game.token(false), this);
+            if (registry.journal != null)
+                game.observe(registry.journal.open(game));
+        }
+        game.open(blackOut, whiteOut);
+        // widzowie zapisani przed startem czekaja na pierwszy obraz
+        notifyAudiences();
+        return game;
+    }
+
+    /**
+     * Przyjmuje grę odtworzoną z dziennika. Miejsca są puste, a tokeny
+     * graczy od razu prowadzą do tej gry.
+     *
+     * @param recovered gra z Journal.recover
+     */
+    void restore(Game recovered) {
+        game = recovered;
+        game.observe(log);
+        if (registry.archive != null)
+            game.observe(registry.archive);
+        registry.bind(game.token(true), this);
+        registry.bind(game.token(false), this);
+    }
+
+    /**
+     * Czas na powrót po restarcie minął: gracz, który nie usiadł na swoim
+     * miejscu, przegrywa jak przy wyjściu. Wywoływane w wątku home.
+     */
+    void expire() {
+        if (game.isFinished())
+            return;
+        if (black == null)
+            game.expire(true);
+        if (white == null)
+            game.expire(false);
+        if (!game.isFinished())
+            return;
+        unregister();
+        if (black != null)
+            black.closeAfterFlush();
+        if (white != null)
+            white.closeAfterFlush();
+    }
+
+    /**
+     * Komenda gracza z gniazda multipleksowanego (@id ...).
+     */
+    void submit(Connection from, Command command) {
+        if (game == null) {
+            blackOut.println("ERROR Waiting for opponent.");
+            blackOut.flush();
+            return;
+        }
+        if (game.isFinished()) {
+            // linia wyslana zanim gracz dostal forget
+            PrintWriter out = from == black ? blackOut : whiteOut;
+            out.println("ERROR No such game.");
+            out.flush();
+            return;
+        }
+        game.submit(from == black, command);
+        afterStep();
+    }
+
+    /**
+     * @return true, gdy połączenie wciąż zajmuje miejsce w grze (nie
+     *         zastąpiło go wznowienie)
+     */
+    boolean seated(Connection who) {
+        return who == black || who == white;
+    }
+
+    /**
+     * Sadza gracza wracającego z tokenem sesji na jego miejscu. Stare
+     * połączenie (może jeszcze nie wiedzieć, że zostało zerwane) jest
+     * zamykane, a przeciwnik dostaje nowe jako peer.
+     *
+     * @param joiner nowe połączenie, już w pętli home
+     * @param token token z linii RESUME
+     */
+    void resume(Connection joiner, String token) {
+        boolean isBlack = token.equals(game.token(true));
+        if (!game.resume(isBlack, joiner.writer)) {
+            joiner.writer.println("ERROR Session expired.");
+            joiner.closeAfterFlush();
+            return;
+        }
+        Connection old = isBlack ? black : white;
+        Connection other = isBlack ? white : black;
+        if (isBlack) {
+            black = joiner;
+            blackOut = joiner.writer;
+        } else {
+            white = joiner;
+            whiteOut = joiner.writer;
+        }
+        joiner.attach(this, game, isBlack, other);
+        // w odtworzonej grze przeciwnik mogl jeszcze nie wrocic
+        if (other != null)
+            other.attach(this, game, !isBlack, joiner);
+        if (old != null)
+            old.close();
+    }
+
+    /**
+     * Gracz rozłączył się: gra czekająca na przeciwnika znika z rejestru,
+     * trwająca kończy się jak przy utracie połączenia.
+     */
+    void leave(Connection who) {
+        if (game == null) {
+            if (who == black) {
+                black = null;
+                registry.remove(this);
+            }
+            return;
+        }
+        if (game.isFinished())
+            return;
+        game.disconnect(who == black);
+        afterStep();
+    }
+
+    private void afterStep() {
+        if (!game.isFinished())
+            return;
+        unregister();
+        black.forget(this, null);
+        white.forget(this, null);
+    }
+
+    /**
+     * Opakowuje zadanie tej gry tak, żeby jej wyjątek przerwał tylko ją
+     * (abort), a nie pętlę z innymi grami.
+     *
+     * @param task zadanie wykonywane w wątku home
+     * @return zadanie z obsługą błędu
+     */
+    Runnable guard(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Game " + id + " failed: " + e);
+                abort();
+            }
+        };
+    }
+
+    /**
+     * Gra rzuciła wyjątkiem i jej stan jest niepewny: znika z rejestru,
+     * połączenia z poczekalni są zamykane, a gniazda multipleksowane
+     * dostają błąd i zapominają tylko tę grę. Wywoływane w wątku home.
+     */
+    void abort() {
+        unregister();
+        drop(black, blackOut);
+        drop(white, whiteOut);
+    }
+
+    private void drop(Connection who, PrintWriter out) {
+        if (who == null)
+            return;
+        if (out == who.writer)
+            who.close();
+        else
+            who.forget(this, "ERROR Game aborted.");
+    }
+
+    /**
+     * Usuwa zakończoną grę z rejestru - dla gier z poczekalni robi to połączenie.
+     */
+    void unregister() {
+        registry.remove(this);
+        if (game != null && game.token(true) != null) {
+            registry.unbind(game.token(true));
+            registry.unbind(game.token(false));
+        }
+        // gra porzucona przed startem albo przerwana bledem - widzowie tez koncza
+        notifyAudiences();
+    }
+
+    /**
+     * Dopisuje widza. Wywoływane w wątku pętli widza.
+     *
+     * @param viewer połączenie widza
+     * @return widz - pierwsze pump wyśle mu obraz planszy
+     */
+    Watch watch(Connection viewer) {
+        Audience audience = audiences.computeIfAbsent(viewer.loop(), Audience::new);
+        Watch watch = new Watch(this, viewer, audience);
+        audience.watchers.add(watch);
+        return watch;
+    }
+
+    /**
+     * Usuwa widza. Wywoływane w wątku pętli widza.
+     */
+    void unwatch(Watch watch) {
+        watch.audience.watchers.remove(watch);
+    }
+
+    private void notifyAudiences() {
+        for (Audience audience : audiences.values())
+            audience.schedule();
+    }
+
+    /**
+     * Widzowie gry w jednej pętli zdarzeń. Lista jest używana tylko
+     * w wątku tej pętli, a w jej kolejce czeka najwyżej jedno pump.
+     */
+    static final class Audience implements Runnable {
+        final EventLoop loop;
+        final List<Watch> watchers = new ArrayList<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Audience(EventLoop loop) {
+            this.loop = loop;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true))
+                loop.execute(this);
+        }
+
+        @Override
+        public void run() {
+            scheduled.set(false);
+            watchers.removeIf(watch -> !watch.viewer.pump(watch));
+        }
+    }
+
+    /**
+     * Widz gry: połączenie i numer następnego zdarzenia z dziennika.
+     */
+    static final class Watch {
+        final Table table;
+        final Connection viewer;
+        final Audience audience;
+        long next = -1;   // -1 - najpierw obraz planszy
+
+        Watch(Table table, Connection viewer, Audience audience) {
+            this.table = table;
+            this.viewer = viewer;
+            this.audience = audience;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.gogame.server;
+
+import com.gogame.controller.Game;
+import com.gogame.protocol.OutboundQueue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Blokujący serwer gry: akceptor przekazuje każde połączenie do wątku
+ * powitania, który czeka chwilę na JOIN i zgłasza gracza do poczekalni
+ * (Lobby). Dobrane pary grają (Game.run z readLine) w wątkach z podanej
+ * fabryki - platformowych albo wirtualnych. Bezczynna gra na wątku
+ * wirtualnym nie zajmuje wątku systemowego. Gracz, który nie odbiera
+ * komunikatów, zapycha tylko swoją kolejkę wyjściową; co wtedy, mówi
+ * polityka (OutboundQueue.Policy). Gracz, który stracił połączenie, może
+ * przez graceMs wrócić linią "RESUME token" zamiast JOIN - trafia wtedy
+ * z powrotem do swojej gry, bez nowej gry i nowego wątku.
+ */
+public class ThreadServer implements Runnable {
+    private final ServerSocket listener;
+    private final ThreadFactory threads;
+    private final OutboundQueue.Policy policy;
+    private final long graceMs;
+    private final ConcurrentMap<String, Game> sessions = new ConcurrentHashMap<>();
+    private final Thread acceptor;
+    private final Lobby<Socket> lobby;
+
+    /**
+     * Tworzy serwer i otwiera port.
+     *
+     * @param port port (0 - dowolny wolny)
+     * @param size domyślny rozmiar planszy (dla graczy bez JOIN)
+     * @param threads fabryka wątków gier (GameThreads.factory)
+     * @throws IOException gdy nie można otworzyć portu
+     */
+    public ThreadServer(int port, int size, ThreadFactory threads) throws IOException {
+        this(port, size, threads, OutboundQueue.Policy.DROP);
+    }
+
+    /**
+     * Tworzy serwer z polityką pełnej kolejki wyjściowej gracza.
+     *
+     * @param port port (0 - dowolny wolny)
+     * @param size domyślny rozmiar planszy (dla graczy bez JOIN)
+     * @param threads fabryka wątków gier (GameThreads.factory)
+     * @param policy co zrobić z graczem, który nie odbiera komunikatów
+     * @throws IOException gdy nie można otworzyć portu
+     */
+    public ThreadServer(int port, int size, ThreadFactory threads, OutboundQueue.Policy policy) throws IOException {
+        this(port, size, threads, policy, Game.DEFAULT_GRACE_MS);
+    }
+
+    /**
+     * Tworzy serwer z polityką kolejek i czasem na powrót gracza.
+     *
+     * @param port port (0 - dowolny wolny)
+     * @param size domyślny rozmiar planszy (dla graczy bez JOIN)
+     * @param threads fabryka wątków gier (GameThreads.factory)
+     * @param policy co zrobić z graczem, który nie odbiera komunikatów
+     * @param graceMs czas na powrót rozłączonego gracza, 0 - rozłączenie kończy grę
+     * @throws IOException gdy nie można otworzyć portu
+     */
+    public ThreadServer(int port, int size, ThreadFactory threads, OutboundQueue.Policy policy, long graceMs)
+            throws IOException {
+        this.policy = policy;
+        this.graceMs = graceMs;
+        this.lobby = new Lobby<>(size, this::paired);
+        this.listener = new ServerSocket(port, NioServer.BACKLOG);
+        this.threads = threads;
+        this.acceptor = new Thread(this, "acceptor");
+    }
+
+    /**
+     * Uruchamia poczekalnię i akceptor.
+     */
+    public void start() {
+        lobby.start();
+        acceptor.start();
+    }
+
+    /**
+     * @return port, na którym serwer nasłuchuje
+     */
+    public int getPort() {
+        return listener.getLocalPort();
+    }
+
+    /**
+     * Przestaje przyjmować graczy. Trwające gry kończą się, gdy gracze
+     * się rozłączą.
+     *
+     * @throws InterruptedException gdy oczekiwanie zostanie przerwane
+     */
+    public void stop() throws InterruptedException {
+        try { listener.close(); } catch (IOException e) {}
+        acceptor.join();
+        lobby.stop();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Socket player = listener.accept();
+                threads.newThread(() -> welcome(player)).start();
+            }
+        } catch (IOException e) {
+            if (!listener.isClosed())
+                System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Powitanie gracza: czeka najwyżej HANDSHAKE_MS na pierwszą linię
+     * (JOIN albo RESUME) i zgłasza gracza do poczekalni albo oddaje go
+     * jego grze. Linia jest czytana bajt po bajcie, żeby nic z tego, co
+     * gracz wyśle dalej, nie zostało w buforze tego wątku.
+     */
+    private void welcome(Socket player) {
+        String line = null;
+        try {
+            new PrintWriter(player.getOutputStream(), true).println("MESSAGE Waiting for opponent...");
+            player.setSoTimeout((int) Lobby.HANDSHAKE_MS);
+            try {
+                line = readLine(player.getInputStream());
+            } catch (SocketTimeoutException e) {
+                // starszy klient nic nie wysyla - kolejka domyslna
+            }
+            player.setSoTimeout(0);
+        } catch (IOException e) {
+            try { player.close(); } catch (IOException ignored) {}
+            return;
+        }
+        if (line != null && line.startsWith(Connection.RESUME))
+            resume(player, line.substring(Connection.RESUME.length()));
+        else
+            lobby.register(player, line);
+    }
+
+    /**
+     * Oddaje wracającego gracza jego grze albo odpowiada, że sesji już nie ma.
+     */
+    private void resume(Socket player, String token) {
+        Game game = sessions.get(token);
+        if (game != null && game.resume(token, player))
+            return;
+        try {
+            new PrintWriter(player.getOutputStream(), true).println("ERROR Session expired.");
+            player.close();
+        } catch (IOException e) {
+            // gracz juz sie rozlaczyl
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (line.length() == Connection.MAX_LINE)
+                return null;
+            line.append((char) c);
+        }
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r')
+            line.setLength(end - 1);
+        return line.toString();
+    }
+
+    /**
+     * Para z poczekalni. Wątek dobierający tylko uruchamia grę w nowym wątku.
+     */
+    private void paired(Socket black, Socket white, int size) {
+        Game game = new Game(black, white, size, threads, policy);
+        if (graceMs > 0) {
+            game.resumable(graceMs);
+            sessions.put(game.token(true), game);
+            sessions.put(game.token(false), game);
+        }
+        threads.newThread(() -> {
+            try {
+                new PrintWriter(white.getOutputStream(), true).println("MESSAGE Opponent connected. Game starts.");
+            } catch (IOException e) {
+                // rozlaczenie zauwazy gra
+            }
+            game.run();
+            if (graceMs > 0) {
+                sessions.remove(game.token(true));
+                sessions.remove(game.token(false));
+            }
+        }).start();
+    }
+}
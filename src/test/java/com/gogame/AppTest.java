@@ -108,6 +108,16 @@ class AppTest {
         assertFalse(App.validInput("J20"), "20 jest poza zakresem");
     }
 
+    /**
+     * Test walidacji dla planszy 9x9.
+     */
+    @Test
+    void testValidInputSmallBoard() {
+        assertTrue(App.validInput("I9", 9), "I9 jest rogiem planszy 9x9");
+        assertFalse(App.validInput("J1", 9), "J jest poza planszą 9x9");
+        assertFalse(App.validInput("A10", 9), "10 jest poza planszą 9x9");
+    }
+
     /**
      * Test wejścia z białymi znakami.
      */
@@ -0,0 +1,191 @@
+package com.gogame;
+
+import com.gogame.controller.Archive;
+import com.gogame.controller.Game;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy archiwum zakończonych gier: format rekordu, segmenty, indeks
+ * i obcinanie po awarii.
+ */
+@Timeout(value = 10, unit = TimeUnit.SECONDS)
+class ArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    private static Game start(Archive archive, String black, String white) {
+        Game game = new Game(9);
+        game.players(black, white);
+        game.observe(archive);
+        game.open(new PrintWriter(Writer.nullWriter()), new PrintWriter(Writer.nullWriter()));
+        return game;
+    }
+
+    /**
+     * Gra z jednym ruchem czarnego w polu k i poddaniem białego.
+     */
+    private static void play(Archive archive, int k) {
+        Game game = start(archive, "b" + k, "w" + k);
+        game.submit(true, "MOVE " + k / 9 % 9 + " " + k % 9);
+        game.submit(false, "SURRENDER");
+    }
+
+    /**
+     * Test rekordu - ruchy po 2 bajty, gracze, wynik i hash pozycji
+     * końcowej.
+     */
+    @Test
+    void testRecordsFinishedGame() throws IOException {
+        try (Archive archive = new Archive(dir)) {
+            Game game = start(archive, "alice", "bob");
+            game.submit(true, "MOVE 2 2");
+            game.submit(false, "MOVE 3 3");
+            game.submit(true, "PASS");
+            game.submit(false, "SURRENDER");
+            archive.flush();
+            assertEquals(1, archive.count());
+
+            Archive.Record record = archive.get(0);
+            assertEquals(9, record.size());
+            assertEquals("alice", record.black());
+            assertEquals("bob", record.white());
+            assertEquals(Archive.BLACK, record.winner());
+            assertEquals(Archive.SURRENDER, record.reason());
+            assertEquals(3, record.moveCount());
+            assertEquals(2 * 9 + 2, record.move(0));
+            assertEquals(3 * 9 + 3, record.move(1));
+            assertEquals(Archive.PASS, record.move(2));
+            Board board = new Board(9);
+            board.play(2, 2, true);
+            board.play(3, 3, false);
+            assertEquals(board.positionKey(), record.hash(), "Hash pozycji końcowej");
+            assertEquals(18 + 8 + 2 * 3, Files.size(dir.resolve("segment-0.dat")), "Nagłówek i 2 bajty na ruch");
+
+            Game scored = start(archive, "carol", "dave");
+            scored.submit(true, "MOVE 4 4");
+            scored.submit(false, "PASS");
+            scored.submit(true, "PASS");
+            scored.submit(true, "DONE");
+            scored.submit(false, "DONE");
+            assertTrue(scored.isFinished());
+            archive.flush();
+            record = archive.get(1);
+            assertEquals(Archive.SCORE, record.reason());
+            assertTrue(record.scoreBlack() > record.scoreWhite());
+            assertEquals(Archive.BLACK, record.winner());
+        }
+    }
+
+    /**
+     * Test segmentów i indeksu - gra n z dowolnego segmentu jednym
+     * odczytem, skan po kolei od dowolnej gry, także po ponownym otwarciu.
+     */
+    @Test
+    void testSegmentsAndIndex() throws IOException {
+        try (Archive archive = new Archive(dir, 200)) {
+            for (int k = 0; k < 500; k++)
+                play(archive, k);
+            archive.flush();
+            assertEquals(500, archive.count());
+            assertTrue(Files.exists(dir.resolve("segment-20.dat")), "Gry powinny zająć wiele segmentów");
+        }
+        try (Archive archive = new Archive(dir, 200)) {
+            assertEquals(500, archive.count());
+            for (int n : new int[] {0, 1, 77, 250, 499}) {
+                Archive.Record record = archive.get(n);
+                assertEquals("b" + n, record.black());
+                assertEquals(n / 9 % 9 * 9 + n % 9, record.move(0));
+            }
+            List<String> seen = new ArrayList<>();
+            archive.scan(0, record -> seen.add(record.white()));
+            assertEquals(500, seen.size());
+            assertEquals("w0", seen.get(0));
+            assertEquals("w499", seen.get(499));
+            List<String> tail = new ArrayList<>();
+            archive.scan(490, record -> tail.add(record.black()));
+            assertEquals(List.of("b490", "b491", "b492", "b493", "b494", "b495", "b496", "b497", "b498", "b499"), tail);
+            assertThrows(IndexOutOfBoundsException.class, () -> archive.get(500));
+        }
+    }
+
+    /**
+     * Test limitu - pasy przeplatane z PLAYON kończą grę liczeniem punktów
+     * przy MAX_MOVES ruchach, a rekord ma ich dokładnie tyle.
+     */
+    @Test
+    void testOverlongGameEndsAtMoveLimit() throws IOException {
+        try (Archive archive = new Archive(dir)) {
+            Game game = start(archive, "ala", "ola");
+            game.submit(true, "MOVE 4 4");
+            for (int i = 1; i < Archive.MAX_MOVES; i += 2) {
+                game.submit(false, "PASS");
+                game.submit(true, "PASS");
+                game.submit(true, "PLAYON");
+            }
+            archive.flush();
+            assertEquals(1, archive.count(), "Gra powinna się skończyć na limicie ruchów");
+            Archive.Record record = archive.get(0);
+            assertEquals(Archive.MAX_MOVES, record.moveCount());
+            assertEquals(Archive.SCORE, record.reason());
+            assertEquals(Archive.BLACK, record.winner());
+            assertEquals(Archive.PASS, record.move(Archive.MAX_MOVES - 1));
+        }
+    }
+
+    /**
+     * Test zapisu w tle - koniec gry nie czeka na archiwum zajęte przez
+     * inny wątek, a gra trafia do niego po zwolnieniu.
+     */
+    @Test
+    void testFinishedGameDoesNotWaitForArchive() throws IOException {
+        try (Archive archive = new Archive(dir)) {
+            synchronized (archive) {
+                play(archive, 0);
+                assertEquals(0, archive.count(), "Zapis powinien czekać w tle");
+            }
+            archive.flush();
+            assertEquals(1, archive.count());
+            assertEquals("b0", archive.get(0).black());
+            assertEquals(0, archive.failures());
+        }
+    }
+
+    /**
+     * Test awarii - urwany wpis indeksu i rekord bez wpisu są obcinane,
+     * a następna gra ląduje zaraz za ostatnią całą.
+     */
+    @Test
+    void testTornWritesAreTruncated() throws IOException {
+        try (Archive archive = new Archive(dir)) {
+            for (int k = 0; k < 3; k++)
+                play(archive, k);
+        }
+        Files.write(dir.resolve("segment-0.dat"), new byte[] {9, 1, 0, 0, 0}, StandardOpenOption.APPEND);
+        Files.write(dir.resolve("index.dat"), new byte[] {0, 0, 0}, StandardOpenOption.APPEND);
+
+        try (Archive archive = new Archive(dir)) {
+            assertEquals(3, archive.count());
+            play(archive, 3);
+            archive.flush();
+            assertEquals(4, archive.count());
+            List<String> seen = new ArrayList<>();
+            archive.scan(0, record -> seen.add(record.black()));
+            assertEquals(List.of("b0", "b1", "b2", "b3"), seen);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.gogame;
+
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.FrameWriter;
+import com.gogame.protocol.Parser;
+import com.gogame.protocol.WireReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy binarnej postaci protokołu.
+ */
+class BinaryTest {
+
+    private static String roundTrip(String line) {
+        byte[] frame = Binary.encode(line);
+        return Binary.decode(ByteBuffer.wrap(frame));
+    }
+
+    /**
+     * Test kodowania i dekodowania wszystkich komunikatów gry.
+     */
+    @Test
+    void testRoundTrip() {
+        String[] lines = {
+                "MOVE 3 18", "PASS", "SURRENDER", "QUIT", "DEAD 0 0", "DONE", "PLAYON", "Y", "N",
+                "YOUR_TURN", "MOVE_OK 3 3 true", "MOVE_OK 0 1 false 0 0 1 1",
+                "MESSAGE Opponent's turn...", "ERROR Invalid move.", "PHASE_NEGOTIATION",
+                "MARK 1 1 1 2 2 2", "UNMARK 1 1", "MARK_CLEAR", "DEAD_REMOVED 4 4 4 5",
+                "CONFIRM_REQ 2 3 Oppenent marked stones. Do you agree with him?",
+                "GAME_OVER Surrender, White won!", "MESSAGE Wynik: ąę",
+                "HELLO 1 2", "MOVE 3", "MOVE 300 1", "MOVE a b", "MESSAGE", "MARK ", "y", ""
+        };
+        for (String line : lines)
+            assertEquals(line, roundTrip(line), "Linia powinna wrócić z ramki bez zmian: " + line);
+    }
+
+    /**
+     * Test rozmiaru ramek - ruch to długość, kod i dwa bajty pola.
+     */
+    @Test
+    void testCompactFrames() {
+        assertEquals(4, Binary.encode("MOVE 10 10").length, "Ruch powinien zająć 4 bajty");
+        assertEquals(2, Binary.encode("YOUR_TURN").length, "YOUR_TURN powinien zająć 2 bajty");
+        assertEquals(Binary.MOVE, Binary.encode("MOVE 10 10")[1]);
+        assertEquals(Binary.TEXT, Binary.encode("MOVE x 10")[1], "Niepoprawny ruch powinien iść jako tekst");
+
+        // ramka dluzsza niz 127 bajtow ma dwubajtowa dlugosc
+        StringBuilder line = new StringBuilder("DEAD_REMOVED");
+        for (int i = 0; i < 100; i++)
+            line.append(' ').append(i / 19).append(' ').append(i % 19);
+        byte[] frame = Binary.encode(line.toString());
+        assertEquals(2 + 1 + 200, frame.length);
+        assertEquals(line.toString(), roundTrip(line.toString()));
+    }
+
+    /**
+     * Test niepełnej ramki w buforze - dekoder czeka na resztę.
+     */
+    @Test
+    void testPartialFrame() {
+        byte[] frame = Binary.encode("MOVE_OK 3 3 true 3 4");
+        ByteBuffer in = ByteBuffer.wrap(frame, 0, frame.length - 1);
+        assertNull(Binary.decode(in), "Niepełna ramka nie powinna się dekodować");
+        assertEquals(0, in.position(), "Pozycja nie powinna się przesunąć");
+    }
+
+    /**
+     * Test przełączenia strumienia z tekstu na ramki - bajty ramek
+     * wysłane razem z linią przełączającą nie giną.
+     */
+    @Test
+    void testWireReaderSwitch() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        wire.writeBytes("INIT BLACK 9 BINARY\r\nBINARY_OK\n".getBytes(StandardCharsets.UTF_8));
+        PrintWriter frames = new PrintWriter(new FrameWriter(wire));
+        frames.println("YOUR_TURN");
+        frames.println("MOVE_OK 2 2 true");
+        frames.flush();
+
+        WireReader reader = new WireReader(new ByteArrayInputStream(wire.toByteArray()), 1024);
+        assertEquals("INIT BLACK 9 BINARY", reader.readLine());
+        assertEquals("BINARY_OK", reader.readLine());
+        reader.binary();
+        assertEquals("YOUR_TURN", reader.readLine());
+        assertEquals("MOVE_OK 2 2 true", reader.readLine());
+        assertNull(reader.readLine(), "Na końcu strumienia powinien być null");
+    }
+
+    /**
+     * Test czytania komend bez linii tekstowych - ta sama komenda dla
+     * linii i ramek, błędna linia z opisem błędu.
+     */
+    @Test
+    void testWireReaderReadsCommands() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        wire.writeBytes("MOVE 2 3\r\nHELLO\nBINARY\n".getBytes(StandardCharsets.UTF_8));
+        wire.writeBytes(Binary.encode("DEAD 4 5"));
+
+        WireReader reader = new WireReader(new ByteArrayInputStream(wire.toByteArray()), 1024);
+        Command command = new Command();
+        assertTrue(reader.read(command));
+        assertEquals(Binary.MOVE, command.op);
+        assertEquals(2, command.row());
+        assertEquals(3, command.col());
+        assertTrue(reader.read(command));
+        assertEquals(Parser.UNKNOWN_COMMAND, command.error, "Nieznana linia powinna mieć błąd");
+        assertTrue(reader.read(command));
+        assertTrue(command.is(Binary.OFFER));
+        reader.binary();
+        assertTrue(reader.read(command));
+        assertEquals(Binary.DEAD, command.op);
+        assertEquals(5, command.col());
+        assertFalse(reader.read(command), "Na końcu strumienia powinno być false");
+    }
+
+    /**
+     * Test dekodowania ramek prosto do komendy - pola, flaga i tekst
+     * bez linii tekstowej, błędy jak w Parser.
+     */
+    @Test
+    void testDecodeIntoCommand() {
+        Command command = new Command();
+        ByteBuffer in = ByteBuffer.allocate(256);
+        for (String line : new String[] {"MOVE 3 18", "MOVE_OK 0 1 false 0 0 1 1", "CONFIRM_REQ 2 3 Zgoda? ąę", "y", "BINARY"})
+            in.put(Binary.encode(line));
+        in.put(new byte[] {2, Binary.MOVE, 1});
+        in.put(new byte[] {1, 0x60});
+        in.flip();
+
+        assertTrue(Binary.decode(in, command));
+        assertEquals(Binary.MOVE, command.op);
+        assertNull(command.error);
+        assertEquals(3, command.row());
+        assertEquals(18, command.col());
+
+        assertTrue(Binary.decode(in, command));
+        assertEquals(Binary.MOVE_OK, command.op);
+        assertFalse(command.flag, "Flaga powinna wrócić z ramki");
+        assertArrayEquals(new int[] {0, 1, 0, 0, 1, 1}, command.numbers(0));
+
+        assertTrue(Binary.decode(in, command));
+        assertEquals(Binary.CONFIRM_REQ, command.op);
+        assertEquals("Zgoda? ąę", command.text(), "Tekst UTF-8 powinien wrócić z ramki");
+        assertEquals("CONFIRM_REQ 2 3 Zgoda? ąę", command.toString());
+
+        assertTrue(Binary.decode(in, command));
+        assertTrue(command.isYes(), "Linia y w ramce TEXT powinna być zgodą");
+        assertTrue(Binary.decode(in, command));
+        assertTrue(command.is(Binary.OFFER), "Linia spoza komend gry powinna być rozpoznana");
+
+        assertTrue(Binary.decode(in, command));
+        assertEquals(Parser.INVALID_ARGUMENTS, command.error, "Ruch z jedną liczbą to złe argumenty");
+        assertTrue(Binary.decode(in, command));
+        assertEquals(Parser.UNKNOWN_COMMAND, command.error, "Nieznany kod to nieznana komenda");
+        assertFalse(Binary.decode(in, command), "Pusty bufor nie ma ramki");
+    }
+
+    /**
+     * Test kodowania komendy złożonej z pól - ta sama ramka co z linii,
+     * a kopia komendy nie zależy od bufora źródłowego.
+     */
+    @Test
+    void testEncodeCommand() {
+        Command command = new Command();
+        command.message(Binary.MOVE_OK).with(3).with(3).withFlag(true).with(3).with(4);
+        assertArrayEquals(Binary.encode("MOVE_OK 3 3 true 3 4"), Binary.encode(command));
+        assertEquals("MOVE_OK 3 3 true 3 4", command.toString());
+
+        command.message(Binary.GAME_OVER).withText("Wynik: ąę");
+        assertArrayEquals(Binary.encode("GAME_OVER Wynik: ąę"), Binary.encode(command));
+
+        command.message(Binary.MARK).with(300).with(1);
+        assertEquals(Binary.TEXT, Binary.encode(command)[1], "Liczba ponad 255 powinna iść jako tekst");
+        assertEquals("MARK 300 1", roundTrip("MARK 300 1"));
+
+        byte[] frame = Binary.encode("MESSAGE ala");
+        Command decoded = new Command();
+        Binary.decode(frame, 1, frame.length - 1, decoded);
+        Command copy = new Command();
+        copy.copyFrom(decoded);
+        frame[frame.length - 1] = 'X';
+        assertEquals("ala", copy.text(), "Kopia nie powinna widzieć zmian bufora");
+        assertEquals("alX", decoded.text());
+    }
+}
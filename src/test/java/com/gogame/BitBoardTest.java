@@ -0,0 +1,148 @@
+package com.gogame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy dla klasy BitBoard - porównanie z Board.
+ */
+class BitBoardTest {
+
+    private BitBoard bits;
+
+    /**
+     * Przygotowanie planszy przed każdym testem.
+     */
+    @BeforeEach
+    void setUp() {
+        bits = new BitBoard();
+    }
+
+    /**
+     * Test oddechów na pustej planszy.
+     */
+    @Test
+    void testBreaths() {
+        assertEquals(2, bits.breaths(0, 0), "Narożnik powinien mieć 2 oddechy");
+        assertEquals(3, bits.breaths(0, 9), "Krawędź powinna mieć 3 oddechy");
+        assertEquals(4, bits.breaths(9, 9), "Środek powinien mieć 4 oddechy");
+    }
+
+    /**
+     * Test zbicia kamienia przy krawędzi słowa bitowego.
+     */
+    @Test
+    void testCaptureAcrossWords() {
+        // pole 3,7 ma indeks 64 - pierwszy bit drugiego slowa
+        assertTrue(bits.checkMove(3, 7, false));
+        assertTrue(bits.checkMove(2, 7, true));
+        assertTrue(bits.checkMove(4, 7, true));
+        assertTrue(bits.checkMove(3, 6, true));
+        assertTrue(bits.checkMove(3, 8, true));
+
+        assertEquals(0, bits.getColor(3, 7), "Otoczony kamień powinien być zbity");
+        assertEquals(1, bits.captures(true), "Czarny powinien mieć 1 zbicie");
+    }
+
+    /**
+     * Test braku zawijania wierszy przy przesunięciu w bok.
+     */
+    @Test
+    void testNoRowWrap() {
+        // pola 5,18 i 6,0 maja sasiednie indeksy, ale nie sa sasiadami
+        assertTrue(bits.checkMove(5, 18, true));
+        assertTrue(bits.checkMove(6, 0, false));
+        assertEquals(3, bits.breaths(5, 18), "Kamień na krawędzi ma 3 oddechy");
+        assertEquals(3, bits.breaths(6, 0), "Kamień na krawędzi ma 3 oddechy");
+    }
+
+    /**
+     * Test odrzucenia samobójstwa.
+     */
+    @Test
+    void testSuicide() {
+        assertTrue(bits.checkMove(0, 1, true));
+        assertTrue(bits.checkMove(1, 0, true));
+        assertFalse(bits.checkMove(0, 0, false), "Samobójstwo powinno być nielegalne");
+        assertEquals(0, bits.getColor(0, 0));
+    }
+
+    /**
+     * Test ko - odbicie zabronione tylko przeciwnikowi zbijającego i tylko
+     * do następnego ruchu albo pasa; zbijający może zasypać ko po pasie.
+     */
+    @Test
+    void testKoBansOnlyImmediateRecapture() {
+        // ko w srodku: czarny otacza 5,5, bialy otacza 5,6
+        assertTrue(bits.checkMove(4, 5, true));
+        assertTrue(bits.checkMove(4, 6, false));
+        assertTrue(bits.checkMove(5, 4, true));
+        assertTrue(bits.checkMove(6, 6, false));
+        assertTrue(bits.checkMove(6, 5, true));
+        assertTrue(bits.checkMove(5, 7, false));
+        assertTrue(bits.checkMove(5, 5, false));
+        assertTrue(bits.checkMove(5, 6, true));
+        assertEquals(0, bits.getColor(5, 5), "Kamień w ko powinien być zbity");
+
+        assertFalse(bits.checkMove(5, 5, false), "Natychmiastowe odbicie ko jest zabronione");
+        bits.pass();
+        assertTrue(bits.checkMove(5, 5, true), "Po pasie przeciwnika zbijający może zasypać ko");
+    }
+
+    /**
+     * Test checkBoard na pozycji wpisanej ręcznie.
+     */
+    @Test
+    void testCheckBoard() {
+        Board board = new Board();
+        board.positions[9][9].setColor(1);
+        board.positions[8][9].setColor(2);
+        board.positions[10][9].setColor(2);
+        board.positions[9][8].setColor(2);
+        board.positions[9][10].setColor(2);
+
+        BitBoard fromBoard = BitBoard.fromBoard(board);
+        fromBoard.checkBoard();
+
+        assertEquals(0, fromBoard.getColor(9, 9), "Martwy kamień powinien być usunięty");
+        assertEquals(2, fromBoard.getColor(8, 9), "Żywe kamienie zostają");
+    }
+
+    /**
+     * Test zgodności z Board na losowych partiach.
+     */
+    @Test
+    void testRandomGamesMatchBoard() {
+        Random random = new Random(7);
+        for (int game = 0; game < 20; game++) {
+            Board board = new Board();
+            BitBoard bitBoard = new BitBoard();
+            boolean black = true;
+            for (int move = 0; move < 400; move++) {
+                int row = random.nextInt(19);
+                int col = random.nextInt(19);
+                boolean expected = board.play(row, col, black);
+                assertEquals(expected, bitBoard.checkMove(row, col, black), "Legalność ruchu powinna się zgadzać");
+                if (expected)
+                    black = !black;
+            }
+            for (int i = 0; i < 19; i++) {
+                for (int j = 0; j < 19; j++) {
+                    assertEquals(board.positions[i][j].color, bitBoard.getColor(i, j), "Kolory powinny się zgadzać");
+                    assertEquals(board.positions[i][j].breaths, bitBoard.breaths(i, j), "Oddechy powinny się zgadzać");
+                }
+            }
+
+            board.calculateTerritories();
+            bitBoard.calculateTerritories();
+            for (int i = 0; i < 19; i++) {
+                for (int j = 0; j < 19; j++) {
+                    if (board.positions[i][j].color == 0)
+                        assertEquals(board.territoryCache[i][j], bitBoard.getTerritoryOwner(i, j), "Terytoria powinny się zgadzać");
+                }
+            }
+        }
+    }
+}
@@ -48,8 +48,8 @@ class BoardHelperTest {
     @Test
     void testCopyBoardState() {
         Board source = new Board();
-        source.positions[5][5].color = 2;
-        source.positions[10][10].color = 1;
+        source.positions[5][5].setColor(2);
+        source.positions[10][10].setColor(1);
         source.positions[5][5].breaths = 3;
         source.lastPositions[3][3] = 1;
 
@@ -67,8 +67,8 @@ class BoardHelperTest {
      */
     @Test
     void testGetColor() {
-        board.positions[5][5].color = 2;
-        board.positions[10][10].color = 1;
+        board.positions[5][5].setColor(2);
+        board.positions[10][10].setColor(1);
 
         assertEquals(2, BoardHelper.getColor(board, 5, 5), "Powinien zwrócić czarny");
         assertEquals(1, BoardHelper.getColor(board, 10, 10), "Powinien zwrócić biały");
@@ -106,7 +106,7 @@ class BoardHelperTest {
      */
     @Test
     void testGetChainSingleStone() {
-        board.positions[5][5].color = 1;
+        board.positions[5][5].setColor(1);
 
         List<int[]> chain = BoardHelper.getChain(board, 5, 5);
 
@@ -130,9 +130,9 @@ class BoardHelperTest {
      */
     @Test
     void testGetChainHorizontal() {
-        board.positions[5][5].color = 2;
-        board.positions[5][6].color = 2;
-        board.positions[5][7].color = 2;
+        board.positions[5][5].setColor(2);
+        board.positions[5][6].setColor(2);
+        board.positions[5][7].setColor(2);
 
         List<int[]> chain = BoardHelper.getChain(board, 5, 6);
 
@@ -144,10 +144,10 @@ class BoardHelperTest {
      */
     @Test
     void testGetChainVertical() {
-        board.positions[5][5].color = 1;
-        board.positions[6][5].color = 1;
-        board.positions[7][5].color = 1;
-        board.positions[8][5].color = 1;
+        board.positions[5][5].setColor(1);
+        board.positions[6][5].setColor(1);
+        board.positions[7][5].setColor(1);
+        board.positions[8][5].setColor(1);
 
         List<int[]> chain = BoardHelper.getChain(board, 6, 5);
 
@@ -159,10 +159,10 @@ class BoardHelperTest {
      */
     @Test
     void testGetChainLShape() {
-        board.positions[5][5].color = 2;
-        board.positions[5][6].color = 2;
-        board.positions[6][6].color = 2;
-        board.positions[7][6].color = 2;
+        board.positions[5][5].setColor(2);
+        board.positions[5][6].setColor(2);
+        board.positions[6][6].setColor(2);
+        board.positions[7][6].setColor(2);
 
         List<int[]> chain = BoardHelper.getChain(board, 5, 5);
 
@@ -174,9 +174,9 @@ class BoardHelperTest {
      */
     @Test
     void testGetChainDifferentColors() {
-        board.positions[5][5].color = 1;
-        board.positions[5][6].color = 2;
-        board.positions[5][7].color = 1;
+        board.positions[5][5].setColor(1);
+        board.positions[5][6].setColor(2);
+        board.positions[5][7].setColor(1);
 
         List<int[]> chain = BoardHelper.getChain(board, 5, 5);
 
@@ -191,7 +191,7 @@ class BoardHelperTest {
         // Kwadrat 3x3
         for (int i = 5; i < 8; i++) {
             for (int j = 5; j < 8; j++) {
-                board.positions[i][j].color = 1;
+                board.positions[i][j].setColor(1);
             }
         }
 
@@ -205,9 +205,9 @@ class BoardHelperTest {
      */
     @Test
     void testGetChainCorner() {
-        board.positions[0][0].color = 2;
-        board.positions[0][1].color = 2;
-        board.positions[1][0].color = 2;
+        board.positions[0][0].setColor(2);
+        board.positions[0][1].setColor(2);
+        board.positions[1][0].setColor(2);
 
         List<int[]> chain = BoardHelper.getChain(board, 0, 0);
 
@@ -240,7 +240,7 @@ class BoardHelperTest {
         // Wypełnij planszę na przemian
         for (int i = 0; i < 19; i++) {
             for (int j = 0; j < 19; j++) {
-                source.positions[i][j].color = ((i + j) % 2) + 1;
+                source.positions[i][j].setColor(((i + j) % 2) + 1);
             }
         }
 
@@ -2,6 +2,13 @@ package com.gogame;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -17,10 +24,6 @@ class BoardTest {
     @BeforeEach
     void setUp() {
         board = new Board();
-        App.pointsBlack = 0;
-        App.pointsWhite = 0;
-        App.finalPointsBlack = 0;
-        App.finalPointsWhite = 0;
     }
 
     /**
@@ -62,8 +65,8 @@ class BoardTest {
      */
     @Test
     void testUpdateBreathsWithStones() {
-        board.positions[9][9].color = 1; // biały
-        board.positions[9][10].color = 2; // czarny
+        board.positions[9][9].setColor(1); // biały
+        board.positions[9][10].setColor(2); // czarny
         board.updateBreaths();
 
         assertEquals(3, board.positions[9][9].breaths, "Biały kamień powinien mieć 3 oddechy");
@@ -75,8 +78,8 @@ class BoardTest {
      */
     @Test
     void testCopyToLast() {
-        board.positions[5][5].color = 2;
-        board.positions[10][10].color = 1;
+        board.positions[5][5].setColor(2);
+        board.positions[10][10].setColor(1);
 
         board.copyToLast();
 
@@ -90,12 +93,12 @@ class BoardTest {
      */
     @Test
     void testIsKo() {
-        board.positions[5][5].color = 1;
+        board.positions[5][5].setColor(1);
         board.copyToLast();
 
         assertTrue(board.isKo(), "Identyczne plansze powinny być Ko");
 
-        board.positions[5][5].color = 0;
+        board.positions[5][5].setColor(0);
         assertFalse(board.isKo(), "Różne plansze nie powinny być Ko");
     }
 
@@ -104,7 +107,7 @@ class BoardTest {
      */
     @Test
     void testIsChainAlive() {
-        board.positions[9][9].color = 1;
+        board.positions[9][9].setColor(1);
         board.updateBreaths();
 
         board.visited = new boolean[19][19];
@@ -117,11 +120,11 @@ class BoardTest {
     @Test
     void testDeadChain() {
         // Otoczony kamień
-        board.positions[9][9].color = 1;
-        board.positions[8][9].color = 2;
-        board.positions[10][9].color = 2;
-        board.positions[9][8].color = 2;
-        board.positions[9][10].color = 2;
+        board.positions[9][9].setColor(1);
+        board.positions[8][9].setColor(2);
+        board.positions[10][9].setColor(2);
+        board.positions[9][8].setColor(2);
+        board.positions[9][10].setColor(2);
         board.updateBreaths();
 
         assertEquals(0, board.positions[9][9].breaths, "Otoczony kamień nie powinien mieć oddechów");
@@ -132,16 +135,16 @@ class BoardTest {
      */
     @Test
     void testRemoveChain() {
-        board.positions[5][5].color = 1;
-        board.positions[5][6].color = 1;
-        int initialPoints = App.pointsBlack;
+        board.positions[5][5].setColor(1);
+        board.positions[5][6].setColor(1);
+        int initialPoints = board.captures(true);
 
         board.visited = new boolean[19][19];
         board.removeChain(5, 5);
 
         assertEquals(0, board.positions[5][5].color, "Kamień powinien być usunięty");
         assertEquals(0, board.positions[5][6].color, "Kamień powinien być usunięty");
-        assertEquals(initialPoints + 2, App.pointsBlack, "Punkty powinny wzrosnąć o 2");
+        assertEquals(initialPoints + 2, board.captures(true), "Punkty powinny wzrosnąć o 2");
     }
 
     /**
@@ -159,7 +162,7 @@ class BoardTest {
      */
     @Test
     void testCheckMoveOccupied() {
-        board.positions[9][9].color = 1;
+        board.positions[9][9].setColor(1);
         boolean result = board.checkMove(9, 9, true);
         assertFalse(result, "Ruch na zajętą pozycję powinien być nielegalny");
     }
@@ -170,10 +173,10 @@ class BoardTest {
     @Test
     void testCheckMoveCapture() {
         // Otoczony biały kamień
-        board.positions[9][9].color = 1;
-        board.positions[8][9].color = 2;
-        board.positions[10][9].color = 2;
-        board.positions[9][8].color = 2;
+        board.positions[9][9].setColor(1);
+        board.positions[8][9].setColor(2);
+        board.positions[10][9].setColor(2);
+        board.positions[9][8].setColor(2);
         board.updateBreaths();
 
         boolean result = board.checkMove(9, 10, false);
@@ -186,9 +189,9 @@ class BoardTest {
     @Test
     void testCalculateTerritoriesWhite() {
         // Małe terytorium białego
-        board.positions[0][0].color = 1;
-        board.positions[0][1].color = 1;
-        board.positions[1][0].color = 1;
+        board.positions[0][0].setColor(1);
+        board.positions[0][1].setColor(1);
+        board.positions[1][0].setColor(1);
 
         board.calculateTerritories();
 
@@ -203,9 +206,9 @@ class BoardTest {
     @Test
     void testCalculateTerritoriesBlack() {
         // Małe terytorium czarnego
-        board.positions[18][18].color = 2;
-        board.positions[18][17].color = 2;
-        board.positions[17][18].color = 2;
+        board.positions[18][18].setColor(2);
+        board.positions[18][17].setColor(2);
+        board.positions[17][18].setColor(2);
 
         board.calculateTerritories();
 
@@ -220,11 +223,11 @@ class BoardTest {
     @Test
     void testCheckBoard() {
         // Otoczony kamień
-        board.positions[9][9].color = 1;
-        board.positions[8][9].color = 2;
-        board.positions[10][9].color = 2;
-        board.positions[9][8].color = 2;
-        board.positions[9][10].color = 2;
+        board.positions[9][9].setColor(1);
+        board.positions[8][9].setColor(2);
+        board.positions[10][9].setColor(2);
+        board.positions[9][8].setColor(2);
+        board.positions[9][10].setColor(2);
         board.updateBreaths();
 
         board.checkBoard();
@@ -239,7 +242,7 @@ class BoardTest {
     void testLongChain() {
         // Łańcuch poziomy
         for (int i = 5; i < 10; i++) {
-            board.positions[9][i].color = 1;
+            board.positions[9][i].setColor(1);
         }
         board.updateBreaths();
 
@@ -254,9 +257,9 @@ class BoardTest {
     @Test
     void testWrappedChain() {
         // Łańcuch w kształcie L
-        board.positions[9][9].color = 1;
-        board.positions[9][10].color = 1;
-        board.positions[10][9].color = 1;
+        board.positions[9][9].setColor(1);
+        board.positions[9][10].setColor(1);
+        board.positions[10][9].setColor(1);
 
         board.visited = new boolean[19][19];
         board.removeChain(9, 9);
@@ -276,4 +279,427 @@ class BoardTest {
         assertTrue(board.checkMove(0, 18, true), "Ruch w narożniku powinien być legalny");
         assertTrue(board.checkMove(18, 0, false), "Ruch w narożniku powinien być legalny");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test zbicia przez play - kamień znika, a punkty trafiają do zbijającego.
+     */
+    @Test
+    void testPlayCapture() {
+        assertTrue(board.play(9, 9, false));
+        assertTrue(board.play(8, 9, true));
+        assertTrue(board.play(10, 9, true));
+        assertTrue(board.play(9, 8, true));
+        assertEquals(1, board.chainLiberties(9, 9), "Biały kamień powinien mieć 1 oddech");
+
+        assertTrue(board.play(9, 10, true), "Ruch zbijający powinien być legalny");
+        assertEquals(0, board.positions[9][9].color, "Zbity kamień powinien zniknąć");
+        assertEquals(1, board.captures(true), "Czarny powinien dostać punkt za zbicie");
+        assertEquals(4, board.positions[8][9].breaths, "Sąsiad zbitego kamienia odzyskuje oddech");
+    }
+
+    /**
+     * Test łączenia łańcuchów i liczenia pseudo-oddechów.
+     */
+    @Test
+    void testPlayMergesChains() {
+        assertTrue(board.play(5, 5, true));
+        assertTrue(board.play(5, 7, true));
+        assertEquals(1, board.chainSize(5, 5));
+
+        assertTrue(board.play(5, 6, true));
+        assertEquals(3, board.chainSize(5, 7), "Łańcuchy powinny się połączyć");
+        assertEquals(8, board.chainLiberties(5, 5), "Poziomy łańcuch 3 kamieni ma 8 oddechów");
+    }
+
+    /**
+     * Test odrzucenia samobójstwa.
+     */
+    @Test
+    void testPlaySuicide() {
+        assertTrue(board.play(0, 1, true));
+        assertTrue(board.play(1, 0, true));
+
+        assertFalse(board.play(0, 0, false), "Samobójstwo powinno być nielegalne");
+        assertEquals(0, board.positions[0][0].color, "Pole powinno zostać puste");
+    }
+
+    /**
+     * Test zakazu natychmiastowego odbicia ko.
+     */
+    @Test
+    void testPlayKo() {
+        // ksztalt ko wokol pol (5,5) i (5,6)
+        assertTrue(board.play(4, 5, true));
+        assertTrue(board.play(4, 6, false));
+        assertTrue(board.play(6, 5, true));
+        assertTrue(board.play(6, 6, false));
+        assertTrue(board.play(5, 4, true));
+        assertTrue(board.play(5, 7, false));
+        assertTrue(board.play(5, 6, true));
+
+        assertTrue(board.play(5, 5, false), "Biały zbija w ko");
+        assertEquals(0, board.positions[5][6].color);
+        assertFalse(board.play(5, 6, true), "Natychmiastowe odbicie ko jest nielegalne");
+
+        assertTrue(board.play(0, 0, true));
+        assertTrue(board.play(18, 18, false));
+        assertTrue(board.play(5, 6, true), "Po wymianie gdzie indziej można odbić ko");
+    }
+
+    /**
+     * Test synchronizacji silnika po ręcznej zmianie positions.
+     */
+    @Test
+    void testManualEditResync() {
+        board.play(3, 3, true);
+        board.positions[3][3].setColor(0);
+        board.positions[3][4].setColor(1);
+        board.updateBreaths();
+
+        assertEquals(0, board.chainSize(3, 3));
+        assertEquals(4, board.chainLiberties(3, 4));
+        assertTrue(board.play(3, 3, true));
+    }
+
+    /**
+     * Test klucza pozycji - ta sama pozycja daje ten sam klucz niezależnie od kolejności.
+     */
+    @Test
+    void testPositionKey() {
+        Board other = new Board();
+        assertEquals(0L, board.positionKey(), "Pusta plansza ma klucz 0");
+
+        board.play(3, 3, true);
+        board.play(15, 15, false);
+        other.play(15, 15, false);
+        other.play(3, 3, true);
+        assertEquals(board.positionKey(), other.positionKey(), "Ta sama pozycja powinna mieć ten sam klucz");
+
+        other.play(10, 10, true);
+        assertNotEquals(board.positionKey(), other.positionKey(), "Różne pozycje powinny mieć różne klucze");
+    }
+
+    /**
+     * Test klucza po ręcznej zmianie planszy.
+     */
+    @Test
+    void testPositionKeyAfterManualEdit() {
+        board.play(4, 4, false);
+        long key = board.positionKey();
+
+        Board other = new Board();
+        other.positions[4][4].setColor(1);
+        other.updateBreaths();
+        assertEquals(key, other.positionKey(), "Klucz powinien być odbudowany z positions");
+    }
+
+    /**
+     * Test cofania ruchu ze zbiciem.
+     */
+    @Test
+    void testUndoCapture() {
+        board.play(9, 9, false);
+        board.play(8, 9, true);
+        board.play(10, 9, true);
+        board.play(9, 8, true);
+        long before = board.positionKey();
+
+        assertTrue(board.play(9, 10, true));
+        assertEquals(1, board.captures(true));
+
+        assertTrue(board.undo(), "Ruch powinien dać się cofnąć");
+        assertEquals(before, board.positionKey(), "Pozycja powinna wrócić");
+        assertEquals(1, board.positions[9][9].color, "Zbity kamień powinien wrócić");
+        assertEquals(0, board.positions[9][10].color, "Postawiony kamień powinien zniknąć");
+        assertEquals(1, board.chainLiberties(9, 9), "Biały kamień znów ma 1 oddech");
+        assertEquals(0, board.captures(true), "Punkty za zbicie powinny być odjęte");
+        assertTrue(board.play(9, 10, true), "Cofnięta pozycja nie blokuje ponownego ruchu");
+    }
+
+    /**
+     * Test cofania usunięcia łańcucha.
+     */
+    @Test
+    void testUndoRemoveGroup() {
+        board.play(5, 5, true);
+        board.play(5, 6, true);
+        board.play(4, 5, false);
+
+        assertEquals(2, board.removeGroup(5, 6));
+        assertEquals(4, board.chainLiberties(4, 5));
+        assertTrue(board.undo());
+        assertEquals(2, board.chainSize(5, 5), "Łańcuch powinien wrócić");
+        assertEquals(3, board.chainLiberties(4, 5), "Sąsiad powinien znów stracić oddech");
+    }
+
+    /**
+     * Test cofania usunięć przez starsze metody - removeChain i checkBoard
+     * nie kasują dziennika, więc wcześniejsze ruchy też dają się cofnąć.
+     */
+    @Test
+    void testUndoLegacyRemovals() {
+        board.play(5, 5, true);
+        board.play(5, 6, true);
+        board.play(4, 5, false);
+        long before = board.positionKey();
+
+        board.removeChain(5, 6);
+        assertEquals(0, board.positions[5][5].color);
+        assertEquals(2, board.captures(false));
+        assertTrue(board.undo(), "Usunięcie powinno dać się cofnąć");
+        assertEquals(before, board.positionKey(), "Łańcuch powinien wrócić");
+        assertEquals(0, board.captures(false), "Jeńcy powinni być odjęci");
+
+        board.finalRemoveChain(4, 5);
+        assertTrue(board.undo());
+        assertEquals(before, board.positionKey());
+
+        board.checkBoard();
+        assertTrue(board.undo(), "Ruchy sprzed checkBoard powinny zostać w dzienniku");
+        assertTrue(board.undo());
+        assertTrue(board.undo());
+        assertFalse(board.undo());
+        assertEquals(0L, board.positionKey(), "Plansza powinna być pusta");
+    }
+
+    /**
+     * Test sprawdzania legalności bez zmiany planszy.
+     */
+    @Test
+    void testIsLegalDoesNotMutate() {
+        board.play(0, 1, true);
+        board.play(1, 0, true);
+        long key = board.positionKey();
+
+        assertTrue(board.isLegal(5, 5, false));
+        assertFalse(board.isLegal(0, 0, false), "Samobójstwo jest nielegalne");
+        assertFalse(board.isLegal(0, 1, false), "Zajęte pole jest nielegalne");
+        assertEquals(key, board.positionKey(), "Sprawdzenie nie zmienia pozycji");
+    }
+
+    /**
+     * Test losowych ruchów i cofnięć - stan silnika zgadza się z planszą odbudowaną od zera.
+     */
+    @Test
+    void testRandomPlayUndo() {
+        Random random = new Random(11);
+        boolean black = true;
+        int moves = 0;
+        for (int step = 0; step < 3000; step++) {
+            if (moves > 0 && random.nextInt(4) == 0) {
+                assertTrue(board.undo());
+                moves--;
+                black = !black;
+            } else if (board.play(random.nextInt(19), random.nextInt(19), black)) {
+                moves++;
+                black = !black;
+            }
+
+            if (step % 100 == 0) {
+                Board fresh = new Board();
+                BoardHelper.copyBoardState(fresh, board);
+                fresh.updateBreaths();
+                assertEquals(fresh.positionKey(), board.positionKey(), "Klucz powinien się zgadzać");
+                for (int i = 0; i < 19; i++) {
+                    for (int j = 0; j < 19; j++) {
+                        assertEquals(fresh.chainLiberties(i, j), board.chainLiberties(i, j), "Oddechy łańcucha powinny się zgadzać");
+                        assertEquals(fresh.chainSize(i, j), board.chainSize(i, j), "Rozmiar łańcucha powinien się zgadzać");
+                        assertEquals(fresh.positions[i][j].breaths, board.positions[i][j].breaths, "Oddechy pola powinny się zgadzać");
+                    }
+                }
+            }
+        }
+        while (board.undo()) {
+            moves--;
+        }
+        assertEquals(0, moves, "Wszystkie ruchy powinny być cofnięte");
+        assertEquals(0L, board.positionKey(), "Plansza powinna być pusta");
+    }
+
+    /**
+     * Test terytorium zamkniętego przez jeden kolor i obszaru granicznego.
+     */
+    @Test
+    void testCalculateTerritoriesEnclosedRegion() {
+        // czarna sciana w kolumnie 3, biala w kolumnie 5
+        for (int i = 0; i < 19; i++) {
+            board.positions[i][3].setColor(2);
+            board.positions[i][5].setColor(1);
+        }
+
+        board.calculateTerritories();
+
+        assertEquals(2, board.territoryCache[0][0], "Lewa strona należy do czarnego");
+        assertEquals(2, board.territoryCache[18][2], "Cały obszar powinien być oznaczony");
+        assertEquals(3, board.territoryCache[9][4], "Kolumna między ścianami jest niczyja");
+        assertEquals(1, board.territoryCache[9][18], "Prawa strona należy do białego");
+        assertEquals(0, board.territoryCache[9][3], "Kamienie nie są terytorium");
+    }
+
+    /**
+     * Test zbierania pól łańcucha do bufora.
+     */
+    @Test
+    void testCollectChain() {
+        board.play(2, 2, true);
+        board.play(2, 3, true);
+        board.play(3, 3, true);
+
+        int[] points = new int[361];
+        assertEquals(3, board.collectChain(2, 3, points));
+        assertEquals(3, board.collectChain(2, 3, null));
+        assertEquals(0, board.collectChain(10, 10, points), "Puste pole nie ma łańcucha");
+    }
+
+    /**
+     * Test zbicia w rogu i na krawędzi - ramka planszy nie daje oddechów
+     * ani nie liczy się jako łańcuch.
+     */
+    @Test
+    void testPlayEdgeCapture() {
+        board.play(0, 0, false);
+        board.play(0, 1, true);
+        assertEquals(1, board.chainLiberties(0, 0), "Kamień w rogu ma jeden oddech");
+        board.play(1, 0, true);
+        assertEquals(0, board.getColor(0, 0), "Kamień w rogu powinien zostać zbity");
+
+        board.play(18, 18, true);
+        assertEquals(2, board.chainLiberties(18, 18), "Kamień w przeciwnym rogu ma dwa oddechy");
+        assertEquals(-1, board.getColor(19, 0), "Pole poza planszą");
+        assertEquals(-1, board.getColor(0, -1), "Pole poza planszą");
+    }
+
+    /**
+     * Test planszy 9x9 - zbicie w rogu, terytorium i łańcuchy
+     * w kodowaniu row * 9 + column.
+     */
+    @Test
+    void testSmallBoard() {
+        Board small = new Board(9);
+        assertEquals(9, small.getSize());
+        assertEquals(9, small.positions.length);
+        assertEquals(-1, small.getColor(9, 0), "Pole poza planszą 9x9");
+
+        small.play(8, 8, false);
+        small.play(8, 7, true);
+        small.play(7, 8, true);
+        assertEquals(0, small.getColor(8, 8), "Kamień w rogu powinien zostać zbity");
+
+        int[] points = new int[81];
+        assertEquals(1, small.collectChain(8, 7, points));
+        assertEquals(8 * 9 + 7, points[0]);
+
+        small.calculateTerritories();
+        assertEquals(2, small.territoryCache[0][0], "Cała plansza należy do czarnego");
+        assertEquals(2, small.territoryCache[8][8]);
+    }
+
+    /**
+     * Test odrzucenia nieprawidłowego rozmiaru planszy.
+     */
+    @Test
+    void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new Board(0));
+        assertThrows(IllegalArgumentException.class, () -> new Board(Board.MAX_SIZE + 1));
+    }
+
+    /**
+     * Test liczenia wyniku - terytoria, jeńcy ze zbić i ze zdjętych
+     * martwych kamieni, cofnięcie zdjęcia.
+     */
+    @Test
+    void testScore() {
+        Board small = new Board(9);
+        for (int r = 0; r < 9; r++) {
+            small.play(r, 3, true);
+            small.play(r, 5, false);
+        }
+        small.play(0, 0, false);
+        small.play(0, 1, true);
+        small.play(1, 0, true);
+        assertEquals(1, small.captures(true), "Czarny zbił jeden kamień");
+
+        small.play(4, 1, false);
+        assertEquals(1, small.removeGroup(4, 1));
+        Score score = small.score();
+        assertEquals(25, score.territoryBlack);
+        assertEquals(27, score.territoryWhite);
+        assertEquals(2, score.capturesBlack, "Zdjęty martwy kamień liczy się jako jeniec");
+        assertEquals(11, score.stonesBlack);
+        assertEquals(27, score.territoryScore(true));
+        assertEquals(36, score.areaScore(true));
+        assertEquals(3, small.territoryCache[4][4], "Kolumna między ścianami jest niczyja");
+        assertEquals(0, small.territoryCache[0][1], "Kamienie nie są terytorium");
+
+        assertTrue(small.undo());
+        score = small.score();
+        assertEquals(1, score.capturesBlack);
+        assertEquals(1, score.territoryBlack, "Obszar z kamieniem białego nie jest terytorium, zostaje tylko punkt po zbiciu");
+    }
+
+    /**
+     * Test niezależności plansz - ta sama losowa partia rozgrywana
+     * równolegle w kilku wątkach daje ten sam wynik co w jednym wątku.
+     */
+    @Test
+    void testBoardsInParallel() throws Exception {
+        Board reference = new Board();
+        long expected = randomGame(reference, 7L);
+        int expectedCaptures = reference.captures(true) + reference.captures(false);
+
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    Board own = new Board();
+                    long key = randomGame(own, 7L);
+                    assertEquals(expectedCaptures, own.captures(true) + own.captures(false));
+                    return key;
+                }));
+            }
+            for (Future<Long> result : results)
+                assertEquals(expected, result.get().longValue(), "Każdy wątek powinien dojść do tej samej pozycji");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test listy zbitych kamieni - ruch zbijający dwa kamienie, ruch bez
+     * zbicia i usunięcie martwego łańcucha.
+     */
+    @Test
+    void testCollectRemoved() {
+        Board small = new Board(9);
+        small.play(0, 0, false);
+        small.play(0, 2, true);
+        small.play(0, 1, false);
+        small.play(1, 0, true);
+        assertEquals(0, small.collectRemoved(null), "Ruch bez zbicia nic nie zdejmuje");
+
+        small.play(5, 5, false);
+        small.play(1, 1, true);
+        int[] removed = new int[81];
+        assertEquals(2, small.collectRemoved(removed), "Ruch powinien zbić dwa kamienie");
+        Arrays.sort(removed, 0, 2);
+        assertArrayEquals(new int[]{0, 1}, Arrays.copyOf(removed, 2), "Zbite powinny być pola (0,0) i (0,1)");
+
+        assertEquals(1, small.removeGroup(5, 5));
+        assertEquals(1, small.collectRemoved(removed));
+        assertEquals(5 * 9 + 5, removed[0], "Usunięty łańcuch to pole (5,5)");
+    }
+
+    private long randomGame(Board target, long seed) {
+        Random random = new Random(seed);
+        boolean black = true;
+        for (int i = 0; i < 2000; i++) {
+            int row = random.nextInt(19);
+            int col = random.nextInt(19);
+            if (target.play(row, col, black))
+                black = !black;
+        }
+        return target.positionKey();
+    }
+}
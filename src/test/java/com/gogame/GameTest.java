@@ -1,12 +1,23 @@
 package com.gogame;
 
 import com.gogame.Board;
+import com.gogame.controller.Archive;
+import com.gogame.controller.EventLog;
 import com.gogame.controller.Game;
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.FrameWriter;
+import com.gogame.protocol.MessageWriter;
+import com.gogame.protocol.Parser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,8 +30,8 @@ class GameTest {
 
     private Socket mockBlack;
     private Socket mockWhite;
-    private ByteArrayOutputStream outBlack;
-    private ByteArrayOutputStream outWhite;
+    private CountingStream outBlack;
+    private CountingStream outWhite;
     private ByteArrayInputStream inBlack;
     private ByteArrayInputStream inWhite;
 
@@ -32,13 +43,43 @@ class GameTest {
         mockBlack = mock(Socket.class);
         mockWhite = mock(Socket.class);
 
-        outBlack = new ByteArrayOutputStream();
-        outWhite = new ByteArrayOutputStream();
+        outBlack = new CountingStream();
+        outWhite = new CountingStream();
 
         when(mockBlack.getOutputStream()).thenReturn(outBlack);
         when(mockWhite.getOutputStream()).thenReturn(outWhite);
     }
 
+    /**
+     * Strumień wyjściowy socketu liczący zapisy - na prawdziwym sockecie
+     * każdy zapis to osobne wywołanie systemowe.
+     */
+    static class CountingStream extends ByteArrayOutputStream {
+        int writes = 0;
+
+        @Override
+        public synchronized void write(int b) {
+            writes++;
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+    }
+
+    /**
+     * Strumień klienta, który nic nie wysyła, dopóki gra nie zamknie jego socketu.
+     */
+    private InputStream idle(Socket socket) throws IOException {
+        PipedOutputStream hangUp = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(hangUp);
+        doAnswer(invocation -> { hangUp.close(); return null; }).when(socket).close();
+        return in;
+    }
+
     /**
      * Test tworzenia gry.
      */
@@ -71,6 +112,27 @@ class GameTest {
         assertTrue(whiteOutput.contains("INIT WHITE"), "Biały powinien dostać INIT WHITE");
     }
 
+    /**
+     * Test gry na planszy 9x9 - rozmiar trafia do INIT, a ruch poza
+     * mniejszą planszą jest odrzucany.
+     */
+    @Test
+    @Timeout(value = 2, unit = TimeUnit.SECONDS)
+    void testSmallBoardGame() throws Exception {
+        inBlack = new ByteArrayInputStream("MOVE 8 8\nQUIT\n".getBytes());
+        when(mockBlack.getInputStream()).thenReturn(inBlack);
+        InputStream idleWhite = idle(mockWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
+
+        Game game = new Game(mockBlack, mockWhite, 9);
+        game.start();
+        game.join(1000);
+
+        assertTrue(outBlack.toString().contains("INIT BLACK 9"), "Czarny powinien dostać rozmiar planszy");
+        assertTrue(outWhite.toString().contains("INIT WHITE 9"), "Biały powinien dostać rozmiar planszy");
+        assertTrue(outWhite.toString().contains("MOVE_OK 8 8 true"), "Róg planszy 9x9 jest prawidłowym ruchem");
+    }
+
     /**
      * Test komendy PASS.
      */
@@ -78,10 +140,9 @@ class GameTest {
     @Timeout(value = 2, unit = TimeUnit.SECONDS)
     void testPassCommand() throws Exception {
         inBlack = new ByteArrayInputStream("PASS\nQUIT\n".getBytes());
-        inWhite = new ByteArrayInputStream("QUIT\n".getBytes());
-
         when(mockBlack.getInputStream()).thenReturn(inBlack);
-        when(mockWhite.getInputStream()).thenReturn(inWhite);
+        InputStream idleWhite = idle(mockWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
 
         Game game = new Game(mockBlack, mockWhite);
         game.start();
@@ -98,10 +159,10 @@ class GameTest {
     @Timeout(value = 2, unit = TimeUnit.SECONDS)
     void testSurrenderCommand() throws Exception {
         inBlack = new ByteArrayInputStream("SURRENDER\n".getBytes());
-        inWhite = new ByteArrayInputStream("".getBytes());
 
         when(mockBlack.getInputStream()).thenReturn(inBlack);
-        when(mockWhite.getInputStream()).thenReturn(inWhite);
+        InputStream idleWhite = idle(mockWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
 
         Game game = new Game(mockBlack, mockWhite);
         game.start();
@@ -121,10 +182,9 @@ class GameTest {
     @Timeout(value = 2, unit = TimeUnit.SECONDS)
     void testValidMove() throws Exception {
         inBlack = new ByteArrayInputStream("MOVE 9 9\nQUIT\n".getBytes());
-        inWhite = new ByteArrayInputStream("QUIT\n".getBytes());
-
         when(mockBlack.getInputStream()).thenReturn(inBlack);
-        when(mockWhite.getInputStream()).thenReturn(inWhite);
+        InputStream idleWhite = idle(mockWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
 
         Game game = new Game(mockBlack, mockWhite);
         game.start();
@@ -164,10 +224,11 @@ class GameTest {
     @Timeout(value = 3, unit = TimeUnit.SECONDS)
     void testPlayOnCommand() throws Exception {
         inBlack = new ByteArrayInputStream("PASS\nPLAYON\nQUIT\n".getBytes());
-        inWhite = new ByteArrayInputStream("PASS\nQUIT\n".getBytes());
+        inWhite = new ByteArrayInputStream("PASS\n".getBytes());
 
+        InputStream idleWhite = new SequenceInputStream(inWhite, idle(mockWhite));
         when(mockBlack.getInputStream()).thenReturn(inBlack);
-        when(mockWhite.getInputStream()).thenReturn(inWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
 
         Game game = new Game(mockBlack, mockWhite);
         game.start();
@@ -205,10 +266,9 @@ class GameTest {
     @Timeout(value = 2, unit = TimeUnit.SECONDS)
     void testTurnAlternation() throws Exception {
         inBlack = new ByteArrayInputStream("MOVE 5 5\nQUIT\n".getBytes());
-        inWhite = new ByteArrayInputStream("QUIT\n".getBytes());
-
         when(mockBlack.getInputStream()).thenReturn(inBlack);
-        when(mockWhite.getInputStream()).thenReturn(inWhite);
+        InputStream idleWhite = idle(mockWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
 
         Game game = new Game(mockBlack, mockWhite);
         game.start();
@@ -226,10 +286,9 @@ class GameTest {
     @Timeout(value = 2, unit = TimeUnit.SECONDS)
     void testWaitingPlayerMessage() throws Exception {
         inBlack = new ByteArrayInputStream("MOVE 5 5\nQUIT\n".getBytes());
-        inWhite = new ByteArrayInputStream("QUIT\n".getBytes());
-
         when(mockBlack.getInputStream()).thenReturn(inBlack);
-        when(mockWhite.getInputStream()).thenReturn(inWhite);
+        InputStream idleWhite = idle(mockWhite);
+        when(mockWhite.getInputStream()).thenReturn(idleWhite);
 
         Game game = new Game(mockBlack, mockWhite);
         game.start();
@@ -239,4 +298,367 @@ class GameTest {
         assertTrue(blackOutput.contains("Opponent") || blackOutput.contains("White"),
                 "Czarny powinien dostać info o turze przeciwnika");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test wyjścia gracza czekającego na turę - gra kończy się od razu,
+     * choć gracz mający ruch nic nie wysyła.
+     */
+    @Test
+    @Timeout(value = 2, unit = TimeUnit.SECONDS)
+    void testOutOfTurnQuit() throws Exception {
+        inWhite = new ByteArrayInputStream("QUIT\n".getBytes());
+
+        InputStream idleBlack = idle(mockBlack);
+        when(mockBlack.getInputStream()).thenReturn(idleBlack);
+        when(mockWhite.getInputStream()).thenReturn(inWhite);
+
+        Game game = new Game(mockBlack, mockWhite);
+        game.start();
+        game.join(1000);
+
+        assertFalse(game.isAlive(), "Gra powinna się zakończyć bez czekania na ruch czarnego");
+        assertTrue(outBlack.toString().contains("GAME_OVER White left, Black won!"),
+                "Czarny powinien dostać informację o wyjściu białego");
+        verify(mockBlack, atLeastOnce()).close();
+    }
+
+    /**
+     * Test poddania się poza turą - poddaje się wysyłający, nie gracz mający ruch.
+     */
+    @Test
+    @Timeout(value = 2, unit = TimeUnit.SECONDS)
+    void testOutOfTurnSurrender() throws Exception {
+        inWhite = new ByteArrayInputStream("SURRENDER\n".getBytes());
+
+        InputStream idleBlack = idle(mockBlack);
+        when(mockBlack.getInputStream()).thenReturn(idleBlack);
+        when(mockWhite.getInputStream()).thenReturn(inWhite);
+
+        Game game = new Game(mockBlack, mockWhite);
+        game.start();
+        game.join(1000);
+
+        assertFalse(game.isAlive(), "Gra powinna się zakończyć");
+        assertTrue(outWhite.toString().contains("GAME_OVER Surrender, Black won!"),
+                "Poddał się biały, więc wygrywa czarny");
+    }
+
+    /**
+     * Test kolejności - linie gracza poza turą czekają na jego kolej,
+     * a jego QUIT działa dopiero po nich.
+     */
+    @Test
+    @Timeout(value = 2, unit = TimeUnit.SECONDS)
+    void testQuitAfterParkedLines() throws Exception {
+        inBlack = new ByteArrayInputStream("MOVE 3 3\n".getBytes());
+        inWhite = new ByteArrayInputStream("MOVE 4 4\nQUIT\n".getBytes());
+
+        InputStream idleBlack = new SequenceInputStream(inBlack, idle(mockBlack));
+        when(mockBlack.getInputStream()).thenReturn(idleBlack);
+        when(mockWhite.getInputStream()).thenReturn(inWhite);
+
+        Game game = new Game(mockBlack, mockWhite);
+        game.start();
+        game.join(1000);
+
+        String whiteOutput = outWhite.toString();
+        assertTrue(whiteOutput.contains("MOVE_OK 4 4 false"), "Ruch białego wysłany przed QUIT powinien zostać wykonany");
+        assertTrue(whiteOutput.contains("GAME_OVER"), "Gra powinna się zakończyć");
+    }
+
+    /**
+     * Test komunikatu MOVE_OK ze zbiciem - ruch i zbite kamienie
+     * trafiają do obu graczy jednym komunikatem.
+     */
+    @Test
+    void testMoveOkCarriesCaptures() {
+        StringWriter black = new StringWriter();
+        StringWriter white = new StringWriter();
+        Game game = new Game(9);
+        game.open(new PrintWriter(black, true), new PrintWriter(white, true));
+
+        game.submit(true, "MOVE 0 1");
+        game.submit(false, "MOVE 0 0");
+        game.submit(true, "MOVE 1 0");
+
+        assertTrue(black.toString().contains("MOVE_OK 0 0 false" + System.lineSeparator()), "Ruch bez zbicia nie ma listy pól");
+        assertTrue(black.toString().contains("MOVE_OK 1 0 true 0 0" + System.lineSeparator()), "Czarny powinien dostać zbity kamień");
+        assertTrue(white.toString().contains("MOVE_OK 1 0 true 0 0" + System.lineSeparator()), "Biały powinien dostać zbity kamień");
+    }
+
+    /**
+     * Test błędnych linii - zła liczba, pole poza planszą i nieznana
+     * komenda dostają ERROR, a gra toczy się dalej bez wyjątku.
+     */
+    @Test
+    void testMalformedCommandsGetErrors() {
+        StringWriter black = new StringWriter();
+        StringWriter white = new StringWriter();
+        Game game = new Game(9);
+        game.open(new PrintWriter(black, true), new PrintWriter(white, true));
+
+        game.submit(true, "MOVE x 1");
+        game.submit(true, "MOVE 1");
+        game.submit(true, "MOVE 0 25");
+        game.submit(true, "HELLO");
+        game.submit(true, "MOVE 2 2");
+
+        String out = black.toString();
+        assertTrue(out.contains("ERROR " + Parser.INVALID_ARGUMENTS), "Zła liczba powinna dać ERROR");
+        assertTrue(out.contains("ERROR Invalid move."), "Pole poza planszą powinno dać ERROR");
+        assertTrue(out.contains("ERROR " + Parser.UNKNOWN_COMMAND), "Nieznana komenda powinna dać ERROR");
+        assertFalse(game.isFinished(), "Gra powinna trwać dalej");
+        assertTrue(white.toString().contains("MOVE_OK 2 2 true"), "Poprawny ruch po błędach powinien przejść");
+        assertFalse(white.toString().contains("MOVE_OK 2 3"), "Pole poza planszą nie może trafić w inne pole");
+    }
+
+    /**
+     * Test ścieżki komend - gra dostaje komendy zdekodowane z ramek, a do
+     * gracza binarnego wysyła ramki bez linii tekstowej, z tą samą treścią,
+     * którą gracz tekstowy dostaje liniami. Komenda spoza tury czeka jako
+     * kopia, więc nadpisany bufor jej nie zmienia.
+     */
+    @Test
+    void testCommandsFromFramesAndFramesOut() {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        StringWriter text = new StringWriter();
+        MessageWriter black = new MessageWriter(new FrameWriter(frames));
+        Game game = new Game(9);
+        game.open(black, new PrintWriter(text, true));
+        frames.reset();
+
+        Command command = new Command();
+        byte[] buffer = Binary.encode("MOVE 4 4");
+        Binary.decode(ByteBuffer.wrap(buffer), command);
+        game.submit(false, command);   // bialy poza tura - kopia czeka w kolejce
+        buffer[2] = 7;
+        byte[] move = Binary.encode("MOVE 0 1");
+        Binary.decode(ByteBuffer.wrap(move), command);
+        game.submit(true, command);
+        black.flush();
+
+        StringBuilder lines = new StringBuilder();
+        ByteBuffer in = ByteBuffer.wrap(frames.toByteArray());
+        String line;
+        while ((line = Binary.decode(in)) != null)
+            lines.append(line).append('\n');
+        assertEquals("MOVE_OK 0 1 true\nMESSAGE Opponents move (White)...\nMOVE_OK 4 4 false\n"
+                + "MESSAGE Your move\nYOUR_TURN\n", lines.toString(), "Czarny powinien dostać ramki z ruchami");
+        assertTrue(text.toString().contains("MOVE_OK 4 4 false"), "Odłożony ruch białego nie może się zmienić");
+    }
+
+    /**
+     * Test dziennika widzów - gra zapisuje ruchy z przedrostkiem raz na
+     * zdarzenie, a obraz planszy na starcie i co SNAPSHOT_EVERY zdarzeń.
+     */
+    @Test
+    void testEventLogRecordsMovesAndSnapshots() {
+        Game game = new Game(9);
+        EventLog log = new EventLog("@5 ");
+        int[] flushes = new int[1];
+        log.onFlush(() -> flushes[0]++);
+        game.observe(log);
+        game.open(new PrintWriter(new StringWriter()), new PrintWriter(new StringWriter()));
+        assertEquals("@5 BOARD 9 B " + ".".repeat(81) + "\n", text(log.latest().bytes), "Obraz pustej planszy na starcie");
+
+        game.submit(true, "MOVE 0 1");
+        game.submit(false, "MOVE 0 0");
+        game.submit(true, "MOVE 1 0");
+        game.submit(false, "MOVE 9 9");
+        assertEquals(3, log.head(), "Błędny ruch nie jest zdarzeniem");
+        assertEquals(3, flushes[0], "Jedno powiadomienie na przyjęty ruch");
+        assertEquals("@5 MOVE_OK 1 0 true 0 0\n", text(log.get(2)));
+
+        // PASS, PASS, PLAYON - po 5 zdarzen, gra wraca do bialego
+        while (log.head() < EventLog.SNAPSHOT_EVERY) {
+            game.submit(false, "PASS");
+            game.submit(true, "PASS");
+            game.submit(true, "PLAYON");
+        }
+        EventLog.Snapshot snapshot = log.latest();
+        assertTrue(snapshot.next >= EventLog.SNAPSHOT_EVERY, "Nowy obraz po SNAPSHOT_EVERY zdarzeniach");
+        assertTrue(text(snapshot.bytes).startsWith("@5 BOARD 9 W .X.......X"), "Obraz powinien mieć kamienie i zbicie");
+    }
+
+    /**
+     * Test pierścienia dziennika - zdarzenie starsze niż CAPACITY jest
+     * nadpisane, a koniec gry zamyka dziennik.
+     */
+    @Test
+    void testEventLogRingOverwritesOldEvents() {
+        Game game = new Game(9);
+        EventLog log = new EventLog("");
+        game.observe(log);
+        game.open(new PrintWriter(new StringWriter()), new PrintWriter(new StringWriter()));
+        while (log.head() <= EventLog.CAPACITY) {
+            game.submit(true, "PASS");
+            game.submit(false, "PASS");
+            game.submit(true, "PLAYON");
+        }
+        assertNull(log.get(0), "Najstarsze zdarzenie powinno być nadpisane");
+        assertNotNull(log.get(log.head() - 1));
+        assertTrue(log.head() - log.latest().next < EventLog.CAPACITY, "Ogon po obrazie mieści się w pierścieniu");
+
+        assertFalse(log.isClosed());
+        game.submit(true, "SURRENDER");
+        assertTrue(log.isClosed(), "Koniec gry zamyka dziennik");
+        assertEquals("GAME_OVER Surrender, White won!\n", text(log.get(log.head() - 1)));
+    }
+
+    /**
+     * Test zalewu komend poza turą - zalewający dostaje ERROR i przegrywa
+     * jak przy wyjściu, a koniec gry widzą obaj gracze, widzowie i archiwum.
+     */
+    @Test
+    void testFloodEndsGameLikeLeaving(@TempDir Path dir) throws IOException {
+        StringWriter black = new StringWriter();
+        StringWriter white = new StringWriter();
+        EventLog log = new EventLog("");
+        try (Archive archive = new Archive(dir)) {
+            Game game = new Game(9);
+            game.observe(log);
+            game.players("b", "w");
+            game.observe(archive);
+            game.open(new PrintWriter(black), new PrintWriter(white));
+            for (int i = 0; i < 100 && !game.isFinished(); i++)
+                game.submit(false, "MOVE 4 4");
+
+            assertTrue(game.isFinished(), "Zalew komend powinien zakończyć grę");
+            assertTrue(white.toString().contains("ERROR Too many commands."), "Zalewający powinien dostać błąd");
+            assertTrue(black.toString().contains("GAME_OVER White left, Black won!"), "Przeciwnik powinien dostać wynik");
+            assertTrue(white.toString().contains("GAME_OVER White left, Black won!"));
+            assertTrue(log.isClosed(), "Widzowie powinni zobaczyć koniec gry");
+            archive.flush();
+            assertEquals(1, archive.count(), "Gra powinna trafić do archiwum");
+            assertEquals(Archive.LEFT, archive.get(0).reason());
+            assertEquals(Archive.BLACK, archive.get(0).winner());
+        }
+    }
+
+    /**
+     * Test wznowienia gry - rozłączony gracz nie kończy gry, wraca
+     * z obrazem planszy i ominiętymi ruchami, a dopiero expire() po
+     * kolejnym rozłączeniu kończy grę.
+     */
+    @Test
+    void testResumeAfterDisconnect() {
+        Game game = new Game(9);
+        game.resumable(1000);
+        StringWriter black = new StringWriter();
+        StringWriter white = new StringWriter();
+        game.open(new PrintWriter(black), new PrintWriter(white));
+        assertTrue(black.toString().contains("SESSION " + game.token(true)), "Czarny powinien dostać token sesji");
+        assertNotEquals(game.token(true), game.token(false), "Każdy gracz ma własny token");
+
+        game.submit(true, "MOVE 2 2");
+        game.disconnect(true);
+        assertTrue(game.isAway(true));
+        assertFalse(game.isFinished(), "Rozłączenie nie kończy gry wznawialnej");
+        assertTrue(white.toString().contains("MESSAGE Opponent disconnected."));
+        game.submit(false, "MOVE 3 3");
+
+        StringWriter back = new StringWriter();
+        assertTrue(game.resume(true, new PrintWriter(back)));
+        String[] lines = back.toString().split("\n");
+        assertEquals("INIT BLACK 9 BINARY", lines[0]);
+        assertEquals("SESSION " + game.token(true), lines[1]);
+        assertEquals("BOARD 9 B " + ".".repeat(81), lines[2], "Obraz planszy z dziennika");
+        assertEquals("MOVE_OK 2 2 true", lines[3]);
+        assertEquals("MOVE_OK 3 3 false", lines[4], "Ruch zrobiony pod nieobecność gracza");
+        assertEquals("YOUR_TURN", lines[lines.length - 1]);
+        assertFalse(game.isAway(true));
+        game.expire(true);
+        assertFalse(game.isFinished(), "Gracz, który wrócił, nie wygasa");
+
+        game.submit(true, "MOVE 4 4");
+        assertTrue(back.toString().contains("MOVE_OK 4 4 true"), "Gra pisze już do nowego połączenia");
+        game.disconnect(false);
+        game.expire(false);
+        assertTrue(game.isFinished());
+        assertTrue(back.toString().contains("GAME_OVER White left, Black won!"));
+        assertFalse(game.resume(false, new PrintWriter(new StringWriter())), "Zakończonej gry nie można wznowić");
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test komunikatów grupowych i łączenia zapisów - oznaczenie i zdjęcie
+     * grupy 9 kamieni to po jednym komunikacie, a każdy gracz dostaje
+     * najwyżej jeden zapis na przyjętą linię.
+     */
+    @Test
+    @Timeout(value = 3, unit = TimeUnit.SECONDS)
+    void testGroupMessagesAndCoalescedWrites() throws Exception {
+        StringBuilder black = new StringBuilder();
+        StringBuilder white = new StringBuilder();
+        for (int col = 0; col < 9; col++) {
+            black.append("MOVE 4 ").append(col).append('\n');
+            white.append("MOVE 0 ").append(col).append('\n');
+        }
+        black.append("PASS\nDEAD 4 0\nDONE\n");
+        white.append("PASS\nY\nDONE\n");
+
+        InputStream inBlack = new SequenceInputStream(new ByteArrayInputStream(black.toString().getBytes()), idle(mockBlack));
+        InputStream inWhite = new SequenceInputStream(new ByteArrayInputStream(white.toString().getBytes()), idle(mockWhite));
+        when(mockBlack.getInputStream()).thenReturn(inBlack);
+        when(mockWhite.getInputStream()).thenReturn(inWhite);
+
+        Game game = new Game(mockBlack, mockWhite, 9);
+        game.start();
+        game.join(2000);
+
+        String whiteOutput = outWhite.toString();
+        assertTrue(whiteOutput.contains("GAME_OVER"), "Gra powinna dojść do wyniku");
+        for (String command : new String[]{"MARK ", "DEAD_REMOVED "}) {
+            String line = whiteOutput.lines().filter(l -> l.startsWith(command)).findFirst().orElseThrow();
+            assertEquals(1, whiteOutput.lines().filter(l -> l.startsWith(command)).count(), command + "powinien być jeden");
+            assertEquals(1 + 2 * 9, line.split(" ").length, command + "powinien nieść 9 pól");
+        }
+
+        // 12 linii od kazdego gracza + otwarcie gry
+        int lines = 12 + 12 + 1;
+        assertTrue(outBlack.writes <= lines, "Za dużo zapisów do czarnego: " + outBlack.writes);
+        assertTrue(outWhite.writes <= lines, "Za dużo zapisów do białego: " + outWhite.writes);
+    }
+
+    /**
+     * Test gracza, który nie odbiera komunikatów - jego pełny socket
+     * nie wstrzymuje gry, przeciwnik dostaje ruchy i wynik.
+     */
+    @Test
+    @Timeout(value = 5, unit = TimeUnit.SECONDS)
+    void testSlowPlayerDoesNotStallOpponent() throws Exception {
+        CountDownLatch hangUp = new CountDownLatch(1);
+        OutputStream stuck = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    hangUp.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                throw new IOException("Socket closed");
+            }
+        };
+        when(mockBlack.getOutputStream()).thenReturn(stuck);
+        PipedOutputStream blackEnd = new PipedOutputStream();
+        InputStream blackIdle = new PipedInputStream(blackEnd);
+        doAnswer(invocation -> { hangUp.countDown(); blackEnd.close(); return null; }).when(mockBlack).close();
+        InputStream inBlack = new SequenceInputStream(new ByteArrayInputStream("MOVE 0 0\nMOVE 0 2\n".getBytes()), blackIdle);
+        when(mockBlack.getInputStream()).thenReturn(inBlack);
+        InputStream inWhite = new SequenceInputStream(
+                new ByteArrayInputStream("MOVE 1 1\nMOVE 1 3\nSURRENDER\n".getBytes()), idle(mockWhite));
+        when(mockWhite.getInputStream()).thenReturn(inWhite);
+
+        Game game = new Game(mockBlack, mockWhite, 9);
+        game.start();
+        game.join(4000);
+
+        assertFalse(game.isAlive(), "Gra powinna się skończyć mimo zablokowanego czarnego");
+        String whiteOutput = outWhite.toString();
+        assertTrue(whiteOutput.contains("MOVE_OK 0 2 true"), "Biały powinien dostać ruchy czarnego");
+        assertTrue(whiteOutput.contains("GAME_OVER Surrender, Black won!"), "Biały powinien dostać wynik");
+    }
+}
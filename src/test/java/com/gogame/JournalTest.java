@@ -0,0 +1,208 @@
+package com.gogame;
+
+import com.gogame.controller.Game;
+import com.gogame.controller.Journal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy trwałego dziennika gier: odtwarzanie, urwany zapis, group commit
+ * i kompakcja.
+ */
+@Timeout(value = 10, unit = TimeUnit.SECONDS)
+class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static PrintWriter nowhere() {
+        return new PrintWriter(Writer.nullWriter());
+    }
+
+    private static Game start(Journal journal) {
+        Game game = new Game(9);
+        game.resumable(1000);
+        game.observe(journal.open(game));
+        game.open(nowhere(), nowhere());
+        return game;
+    }
+
+    /**
+     * Plansza 9x9 z kamieniami w podanych polach (wiersz*9+kolumna).
+     */
+    private static String board(char turn, int black, int white) {
+        char[] cells = ".".repeat(81).toCharArray();
+        cells[black] = 'X';
+        cells[white] = 'O';
+        return "BOARD 9 " + turn + " " + new String(cells);
+    }
+
+    private static String[] resume(Game game, boolean black) {
+        StringWriter out = new StringWriter();
+        assertTrue(game.resume(black, new PrintWriter(out)), "Odtworzoną grę można wznowić");
+        return out.toString().split("\n");
+    }
+
+    /**
+     * Test odtwarzania - trwająca gra wraca z tymi samymi tokenami
+     * i planszą, zakończona nie wraca, a odtworzona gra pisze dalej do
+     * dziennika.
+     */
+    @Test
+    void testRecoverGameInProgress() throws IOException {
+        String token;
+        try (Journal journal = new Journal(dir, 2, 5)) {
+            Game game = start(journal);
+            token = game.token(true);
+            game.submit(true, "MOVE 2 2");
+            game.submit(false, "MOVE 3 3");
+            Game finished = start(journal);
+            finished.submit(true, "SURRENDER");
+            assertTrue(finished.isFinished());
+        }
+
+        try (Journal journal = new Journal(dir, 2, 5)) {
+            List<Game> games = journal.recover(1000);
+            assertEquals(1, games.size(), "Zakończona gra nie powinna wrócić");
+            Game game = games.get(0);
+            assertEquals(token, game.token(true), "Gracz wraca z tym samym tokenem");
+            assertTrue(game.isAway(true) && game.isAway(false), "Po restarcie obaj gracze są nieobecni");
+            String[] lines = resume(game, true);
+            assertEquals(board('B', 20, 30), lines[2], "Plansza po odtworzonych ruchach");
+            assertEquals("YOUR_TURN", lines[lines.length - 1]);
+            game.submit(true, "MOVE 4 4");
+        }
+
+        try (Journal journal = new Journal(dir, 2, 5)) {
+            Game game = journal.recover(1000).get(0);
+            String[] lines = resume(game, false);
+            assertTrue(lines[2].startsWith("BOARD 9 W "), "Ruch po odtworzeniu też trafił do dziennika");
+            assertEquals('X', lines[2].charAt(10 + 4 * 9 + 4));
+            assertEquals("YOUR_TURN", lines[lines.length - 1]);
+        }
+    }
+
+    /**
+     * Test dziennika tylko przyjętych komend - błędna linia, pole poza
+     * planszą i zajęte pole nie trafiają do dziennika, a odpowiedź na
+     * prośbę o zgodę trafia jako Y albo N.
+     */
+    @Test
+    void testOnlyAcceptedCommandsAreJournaled() throws IOException {
+        try (Journal journal = new Journal(dir, 1, 5)) {
+            Game game = start(journal);
+            game.submit(true, "HELLO");
+            game.submit(true, "MOVE 0 25");
+            game.submit(true, "MOVE 2 2");
+            game.submit(false, "MOVE 2 2");
+            game.submit(false, "PASS");
+            game.submit(true, "PASS");
+            game.submit(true, "DEAD 5 5");
+            game.submit(true, "DEAD 2 2");
+            game.submit(false, "y");
+            journal.flush();
+
+            List<String> records = new ArrayList<>();
+            for (String line : Files.readAllLines(dir.resolve("shard-0.log"))) {
+                int at = line.indexOf(" + ");
+                if (at > 0)
+                    records.add(line.substring(at + 3));
+            }
+            assertEquals(List.of("MOVE 2 2", "PASS", "PASS", "DEAD 2 2", "Y"), records,
+                    "W dzienniku powinny być tylko przyjęte komendy");
+        }
+    }
+
+    /**
+     * Test urwanego zapisu - niedokończona ostatnia linia jest pomijana
+     * i obcinana, więc nowe rekordy nie doklejają się do niej.
+     */
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        try (Journal journal = new Journal(dir, 1, 5)) {
+            start(journal).submit(true, "MOVE 2 2");
+        }
+        Path shard = dir.resolve("shard-0.log");
+        Files.write(shard, "1 + MOVE 3".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (Journal journal = new Journal(dir, 1, 5)) {
+            Game game = journal.recover(1000).get(0);
+            assertFalse(Files.readString(shard).contains("MOVE 3"), "Urwana linia powinna zostać obcięta");
+            game.submit(false, "MOVE 3 3");
+        }
+        try (Journal journal = new Journal(dir, 1, 5)) {
+            String[] lines = resume(journal.recover(1000).get(0), true);
+            assertEquals(board('B', 20, 30), lines[2]);
+        }
+    }
+
+    /**
+     * Test uszkodzonych linii w środku shardu - są pomijane, rekordy za
+     * nimi odtwarzają się, a obcinany jest tylko urwany ogon.
+     */
+    @Test
+    void testCorruptRecordsAreSkipped() throws IOException {
+        try (Journal journal = new Journal(dir, 1, 5)) {
+            start(journal).submit(true, "MOVE 2 2");
+        }
+        Path shard = dir.resolve("shard-0.log");
+        Files.write(shard, ("\nx + MOVE 1 1\n1 OPEN\n1 OPEN 99 a b\n1 ???\n1\n1 + MOVE 3 3\n1 + MOVE 4")
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (Journal journal = new Journal(dir, 1, 5)) {
+            List<Game> games = journal.recover(1000);
+            assertEquals(1, games.size(), "Gra powinna wrócić mimo uszkodzonych linii");
+            assertTrue(Files.readString(shard).endsWith("1 + MOVE 3 3\n"), "Obcięty powinien być tylko urwany ogon");
+            String[] lines = resume(games.get(0), true);
+            assertEquals(board('B', 20, 30), lines[2], "Ruch za uszkodzonymi liniami powinien się odtworzyć");
+        }
+    }
+
+    /**
+     * Test group commit i kompakcji - wiele gier i ruchów kosztuje
+     * niewiele fsync, a po końcu gier kompakcja opróżnia pliki.
+     */
+    @Test
+    void testGroupCommitAndCompaction() throws IOException {
+        try (Journal journal = new Journal(dir, 2, 50)) {
+            List<Game> games = new ArrayList<>();
+            for (int i = 0; i < 50; i++)
+                games.add(start(journal));
+            for (int move = 0; move < 8; move++) {
+                for (Game game : games)
+                    game.submit(move % 2 == 0, "MOVE " + move + " " + move);
+            }
+            journal.flush();
+            long size = Files.size(dir.resolve("shard-0.log")) + Files.size(dir.resolve("shard-1.log"));
+            assertTrue(size > 0);
+            assertTrue(journal.records() >= 450);
+            assertTrue(journal.fsyncs() * 10 < journal.records(),
+                    "fsync powinny być wspólne dla wielu rekordów: " + journal.fsyncs());
+
+            for (Game game : games)
+                game.submit(true, "SURRENDER");
+            journal.flush();
+            journal.compact();
+            assertEquals(0, Files.size(dir.resolve("shard-0.log")), "Kompakcja powinna usunąć zakończone gry");
+            assertEquals(0, Files.size(dir.resolve("shard-1.log")));
+        }
+        try (Journal journal = new Journal(dir, 2, 50)) {
+            assertTrue(journal.recover(1000).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.gogame;
+
+import com.gogame.server.Lobby;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy poczekalni dobierającej pary graczy.
+ */
+@Timeout(value = 5, unit = TimeUnit.SECONDS)
+class LobbyTest {
+
+    private final BlockingQueue<String> pairs = new LinkedBlockingQueue<>();
+    private Lobby<String> lobby;
+
+    @BeforeEach
+    void setUp() {
+        lobby = new Lobby<>(19, (black, white, size) -> pairs.add(black + "-" + white + " " + size));
+        lobby.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lobby.stop();
+    }
+
+    private String nextPair() throws InterruptedException {
+        return pairs.poll(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Test parowania według rozmiaru planszy - czarnymi gra czekający dłużej.
+     */
+    @Test
+    void testPairsBySize() throws InterruptedException {
+        Lobby.Entry<String> a = lobby.register("a");
+        Lobby.Entry<String> b = lobby.register("b");
+        Lobby.Entry<String> c = lobby.register("c");
+        assertTrue(lobby.join(a, "JOIN 9"));
+        assertTrue(lobby.join(b, "JOIN 13"));
+        assertTrue(lobby.join(c, "JOIN 9"));
+
+        assertEquals("a-c 9", nextPair());
+        assertNull(pairs.poll(300, TimeUnit.MILLISECONDS), "Gracz na 13x13 nie ma jeszcze przeciwnika");
+    }
+
+    /**
+     * Test przedziałów rankingu - gracze z odległych przedziałów nie grają ze sobą.
+     */
+    @Test
+    void testRatingBands() throws InterruptedException {
+        lobby.join(lobby.register("weak"), "JOIN 19 1500");
+        lobby.join(lobby.register("strong"), "JOIN 19 2400");
+        lobby.join(lobby.register("equal"), "JOIN 19 1550");
+
+        assertEquals("weak-equal 19", nextPair());
+        assertNull(pairs.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Test gracza bez JOIN - po chwili trafia do kolejki domyślnej serwera.
+     */
+    @Test
+    void testDefaultQueueWithoutJoin() throws InterruptedException {
+        lobby.register("x");
+        lobby.register("y");
+
+        assertEquals("x-y 19", nextPair());
+    }
+
+    /**
+     * Test zgłoszenia po powitaniu - z JOIN albo bez niego.
+     */
+    @Test
+    void testRegisterAfterHandshake() throws InterruptedException {
+        lobby.register("p", "JOIN 9");
+        lobby.register("q", null);
+        lobby.register("r", "JOIN 9");
+        lobby.register("s", "JOIN");
+
+        assertEquals("p-r 9", nextPair());
+        assertEquals("q-s 19", nextPair(), "Błędny JOIN oznacza kolejkę domyślną");
+    }
+
+    /**
+     * Test rozłączenia gracza w poczekalni - nie dostaje przeciwnika.
+     */
+    @Test
+    void testLeave() throws InterruptedException {
+        Lobby.Entry<String> gone = lobby.register("gone", "JOIN 9");
+        lobby.leave(gone);
+        lobby.register("b", "JOIN 9");
+        lobby.register("c", "JOIN 9");
+
+        assertEquals("b-c 9", nextPair());
+    }
+
+    /**
+     * Test odrzucania niepoprawnych linii JOIN.
+     */
+    @Test
+    void testInvalidJoin() {
+        Lobby.Entry<String> entry = lobby.register("e");
+        assertFalse(lobby.join(entry, "JOIN nine"));
+        assertFalse(lobby.join(entry, "JOIN 99"));
+        assertFalse(lobby.join(entry, "JOIN 9 -5"));
+        assertFalse(lobby.join(entry, "MOVE 1 1"));
+    }
+}
@@ -0,0 +1,413 @@
+package com.gogame;
+
+import com.gogame.controller.Journal;
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.OutboundQueue;
+import com.gogame.protocol.WireReader;
+import com.gogame.server.NioServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy serwera NIO na prawdziwych socketach.
+ */
+@Timeout(value = 10, unit = TimeUnit.SECONDS)
+class NioServerTest {
+    // krotki czas na powrot - testy rozlaczenia czekaja na koniec gry
+    static final long GRACE_MS = 300;
+
+    private NioServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new NioServer(0, 19, 2, GRACE_MS);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop();
+    }
+
+    /**
+     * Test parowania graczy i ruchu wysłanego w kilku kawałkach.
+     */
+    @Test
+    void testPairingAndSplitLine() throws IOException {
+        try (Player black = new Player(server.getPort()); Player white = new Player(server.getPort())) {
+            black.readUntil("INIT BLACK 19");
+            white.readUntil("INIT WHITE 19");
+            black.readUntil("YOUR_TURN");
+
+            black.sendRaw("MO");
+            black.sendRaw("VE 3 3\r\n");
+            black.readUntil("MOVE_OK 3 3 true");
+            white.readUntil("MOVE_OK 3 3 true");
+            white.readUntil("YOUR_TURN");
+        }
+    }
+
+    /**
+     * Test wyboru rozmiaru planszy przez JOIN - gracz bez JOIN czeka
+     * w kolejce domyślnej i nie trafia do tej gry.
+     */
+    @Test
+    void testJoinChoosesBoardSize() throws IOException {
+        try (Player other = new Player(server.getPort());
+             Player first = new Player(server.getPort());
+             Player second = new Player(server.getPort())) {
+            first.sendRaw("JOIN 9\n");
+            second.sendRaw("JOIN 9 1550\n");
+            // kolor zalezy od tego, ktory JOIN poczekalnia dostanie pierwszy
+            String init1 = first.readUntil("INIT");
+            String init2 = second.readUntil("INIT");
+            assertTrue(init1.split(" ")[2].equals("9") && init2.split(" ")[2].equals("9"), "Obaj gracze powinni grać na 9x9");
+            assertNotEquals(init1, init2, "Gracze powinni dostać różne kolory");
+            other.readUntil("MESSAGE Waiting");
+        }
+    }
+
+    /**
+     * Test komendy wysłanej poza turą - czeka, aż przyjdzie kolej gracza.
+     */
+    @Test
+    void testOutOfTurnLineWaitsForTurn() throws IOException {
+        try (Player black = new Player(server.getPort()); Player white = new Player(server.getPort())) {
+            white.readUntil("INIT WHITE 19");
+            black.readUntil("YOUR_TURN");
+
+            white.sendRaw("MOVE 4 4\n");
+            black.sendRaw("MOVE 3 3\n");
+            black.readUntil("MOVE_OK 3 3 true");
+            black.readUntil("MOVE_OK 4 4 false");
+        }
+    }
+
+    /**
+     * Test rozłączenia gracza mającego ruch - serwer kończy grę
+     * i zamyka połączenie przeciwnika.
+     */
+    @Test
+    void testDisconnectEndsGame() throws IOException {
+        Player black = new Player(server.getPort());
+        try (Player white = new Player(server.getPort())) {
+            black.readUntil("YOUR_TURN");
+            black.close();
+            String line;
+            while ((line = white.in.readLine()) != null)
+                assertFalse(line.startsWith("MOVE_OK"));
+        }
+    }
+
+    /**
+     * Test rozłączenia gracza czekającego na turę - przeciwnik dostaje
+     * wynik od razu, bez wykonywania ruchu.
+     */
+    @Test
+    void testWaitingPlayerDisconnectEndsGame() throws IOException {
+        try (Player black = new Player(server.getPort())) {
+            Player white = new Player(server.getPort());
+            white.readUntil("INIT WHITE 19");
+            black.readUntil("YOUR_TURN");
+            white.close();
+            black.readUntil("GAME_OVER White left, Black won!");
+            assertNull(black.in.readLine(), "Serwer powinien zamknąć połączenie");
+        }
+    }
+
+    /**
+     * Test powrotu po zerwaniu połączenia - gracz wraca z tokenem sesji
+     * do tej samej gry i dostaje obraz planszy oraz ominięte ruchy.
+     */
+    @Test
+    void testResumeAfterDisconnect() throws IOException {
+        Player black = new Player(server.getPort());
+        try (Player white = new Player(server.getPort())) {
+            String token = black.readUntil("SESSION").substring(8);
+            black.readUntil("YOUR_TURN");
+            black.sendRaw("MOVE 3 3\n");
+            white.readUntil("YOUR_TURN");
+            black.close();
+            white.readUntil("MESSAGE Opponent disconnected.");
+            white.sendRaw("MOVE 4 4\n");
+
+            try (Player stranger = new Player(server.getPort())) {
+                stranger.sendRaw("RESUME nosuchtoken\n");
+                stranger.readUntil("ERROR Session expired.");
+            }
+            try (Player back = new Player(server.getPort())) {
+                back.sendRaw("RESUME " + token + "\n");
+                back.readUntil("INIT BLACK 19");
+                assertEquals("BOARD 19 B " + ".".repeat(361), back.readUntil("BOARD"));
+                back.readUntil("MOVE_OK 3 3 true");
+                back.readUntil("MOVE_OK 4 4 false");
+                back.readUntil("YOUR_TURN");
+                white.readUntil("MESSAGE Opponent reconnected.");
+                back.sendRaw("MOVE 5 5\n");
+                white.readUntil("MOVE_OK 5 5 true");
+                assertEquals(1, server.activeGames(), "Powrót nie zakłada nowej gry");
+            }
+            white.readUntil("GAME_OVER Black left, White won!");
+        }
+    }
+
+    /**
+     * Test restartu serwera z dziennikiem - trwająca gra wraca po
+     * restarcie, a gracze siadają w niej przez RESUME.
+     */
+    @Test
+    void testRecoverAfterRestart(@TempDir Path dir) throws Exception {
+        NioServer first = new NioServer(0, 9, 1, GRACE_MS, new Journal(dir), null);
+        first.start();
+        String blackToken;
+        String whiteToken;
+        try (Player black = new Player(first.getPort()); Player white = new Player(first.getPort())) {
+            blackToken = black.readUntil("SESSION").substring(8);
+            whiteToken = white.readUntil("SESSION").substring(8);
+            black.readUntil("YOUR_TURN");
+            black.sendRaw("MOVE 2 2\n");
+            white.readUntil("YOUR_TURN");
+        }
+        first.stop();
+
+        NioServer second = new NioServer(0, 9, 2, 5000, new Journal(dir), null);
+        second.start();
+        try (Player white = new Player(second.getPort()); Player black = new Player(second.getPort())) {
+            assertEquals(1, second.activeGames(), "Gra z dziennika powinna być w rejestrze");
+            white.sendRaw("RESUME " + whiteToken + "\n");
+            white.readUntil("INIT WHITE 9");
+            char[] cells = ".".repeat(81).toCharArray();
+            cells[2 * 9 + 2] = 'X';
+            assertEquals("BOARD 9 W " + new String(cells), white.readUntil("BOARD"));
+            white.readUntil("YOUR_TURN");
+            black.sendRaw("RESUME " + blackToken + "\n");
+            black.readUntil("INIT BLACK 9");
+            white.readUntil("MESSAGE Opponent reconnected.");
+            white.sendRaw("MOVE 3 3\n");
+            black.readUntil("MOVE_OK 3 3 false");
+            black.sendRaw("SURRENDER\n");
+            white.readUntil("GAME_OVER Surrender, White won!");
+        } finally {
+            second.stop();
+        }
+    }
+
+    /**
+     * Test protokołu binarnego - czarny przechodzi na ramki, biały zostaje
+     * przy tekście, a obaj widzą te same ruchy.
+     */
+    @Test
+    void testBinaryProtocol() throws IOException {
+        try (Player black = new Player(server.getPort()); Player white = new Player(server.getPort())) {
+            assertTrue(black.readUntil("INIT BLACK").endsWith(" " + Binary.OFFER), "Serwer powinien proponować BINARY");
+            black.readUntil("YOUR_TURN");
+            black.upgrade();
+
+            black.sendFrame("MOVE 3 3");
+            black.readUntil("MOVE_OK 3 3 true");
+            white.readUntil("MOVE_OK 3 3 true");
+            white.readUntil("YOUR_TURN");
+            white.sendRaw("MOVE 4 4\n");
+            black.readUntil("MOVE_OK 4 4 false");
+            black.readUntil("YOUR_TURN");
+            black.sendFrame("SURRENDER");
+            assertEquals("GAME_OVER Surrender, White won!", black.readUntil("GAME_OVER"));
+            white.readUntil("GAME_OVER Surrender, White won!");
+        }
+    }
+
+    /**
+     * Test gniazda multipleksowanego - dwa połączenia grają jednocześnie
+     * dwie gry, każde raz czarnymi i raz białymi, a linie niosą id gry.
+     */
+    @Test
+    void testMultiplexedGames() throws IOException {
+        try (Player guest = new Player(server.getPort())) {
+            String second;
+            // wyjscie hosta konczy jego druga gre - gniazdo zamyka koniec bloku
+            try (Player host = new Player(server.getPort())) {
+                host.sendRaw("CREATE 9\n");
+                guest.sendRaw("CREATE 13\n");
+                String created = host.readUntil("@");
+                String first = created.split(" ")[0];
+                assertEquals(first + " CREATED 9", created);
+                second = guest.readUntil("@").split(" ")[0];
+
+                guest.sendRaw("@999 MOVE 1 1\n");
+                assertEquals("@999 ERROR No such game.", guest.readUntil("@999"));
+                host.sendRaw(first + " JOIN\n");
+                assertEquals(first + " ERROR Game is not open.", host.readUntil(first + " ERROR"),
+                        "Nie można dołączyć do własnej gry");
+                guest.sendRaw(first + " JOIN\n");
+                host.sendRaw(second + " JOIN\n");
+
+                host.readAll(first + " INIT BLACK 9", second + " INIT WHITE 13");
+                guest.readAll(first + " INIT WHITE 9", second + " INIT BLACK 13", second + " YOUR_TURN");
+                assertEquals(2, server.activeGames());
+
+                host.sendRaw(first + " MOVE 2 2\n");
+                guest.sendRaw(second + " MOVE 7 7\n");
+                guest.readUntil(first + " MOVE_OK 2 2 true");
+                host.readAll(second + " MOVE_OK 7 7 true", second + " YOUR_TURN");
+                host.sendRaw(second + " MOVE 3 3\n");
+                guest.readUntil(second + " MOVE_OK 3 3 false");
+
+                host.sendRaw(first + " SURRENDER\n");
+                guest.readUntil(first + " GAME_OVER Surrender, White won!");
+            }
+            guest.readUntil(second + " GAME_OVER");
+            guest.sendRaw(second + " PASS\n");
+            assertEquals(second + " ERROR No such game.", guest.readUntil(second + " ERROR"),
+                    "Zakończona gra powinna zniknąć z gniazda");
+            assertEquals(0, server.activeGames());
+        }
+    }
+
+    /**
+     * Test widzów - widz zapisany przed startem dostaje obraz planszy
+     * i ruchy na bieżąco, spóźniony obraz i ogon ruchów, obaj koniec gry.
+     */
+    @Test
+    void testSpectators() throws IOException {
+        try (Player host = new Player(server.getPort()); Player guest = new Player(server.getPort());
+             Player early = new Player(server.getPort()); Player late = new Player(server.getPort())) {
+            host.sendRaw("CREATE 9\n");
+            guest.sendRaw("@0 WATCH\n");
+            early.sendRaw("@0 WATCH\n");
+            late.sendRaw("@0 WATCH\n");
+            String id = host.readUntil("@").split(" ")[0];
+            assertEquals("@0 ERROR No such game.", early.readUntil("@0"));
+
+            early.sendRaw(id + " WATCH\n");
+            guest.sendRaw(id + " JOIN\n");
+            String empty = id + " BOARD 9 B " + ".".repeat(81);
+            assertEquals(empty, early.readUntil(id + " BOARD"), "Widz powinien dostać obraz planszy");
+            host.readUntil(id + " YOUR_TURN");
+            host.sendRaw(id + " MOVE 2 2\n");
+            guest.readUntil(id + " YOUR_TURN");
+            guest.sendRaw(id + " MOVE 3 3\n");
+            early.readUntil(id + " MOVE_OK 2 2 true");
+            early.readUntil(id + " MOVE_OK 3 3 false");
+
+            late.sendRaw(id + " WATCH\n");
+            assertEquals(empty, late.readUntil(id + " BOARD"));
+            late.readUntil(id + " MOVE_OK 2 2 true");
+            late.readUntil(id + " MOVE_OK 3 3 false");
+
+            late.sendRaw(id + " PASS\n");
+            assertEquals(id + " ERROR No such game.", late.readUntil(id + " ERROR"), "Widz nie może grać");
+            host.readUntil(id + " YOUR_TURN");
+            host.sendRaw(id + " SURRENDER\n");
+            early.readUntil(id + " GAME_OVER Surrender, White won!");
+            late.readUntil(id + " GAME_OVER Surrender, White won!");
+        }
+    }
+
+    /**
+     * Test przepełnienia - gracz zasypuje serwer błędnymi ruchami i nie
+     * odbiera odpowiedzi. Serwer zrywa jego połączenie jak przy wyjściu,
+     * a przeciwnik po czasie na powrót dostaje wynik.
+     */
+    @Test
+    void testOverflowingPlayerLeavesGame() throws IOException {
+        long drops = OutboundQueue.metrics().drops();
+        try (Socket flooder = new Socket()) {
+            flooder.setReceiveBufferSize(4096);
+            flooder.connect(new InetSocketAddress("localhost", server.getPort()));
+            try (Player white = new Player(server.getPort())) {
+                white.readUntil("INIT WHITE 19");
+                byte[] chunk = "MOVE 99 99\n".repeat(6000).getBytes(StandardCharsets.UTF_8);
+                OutputStream out = flooder.getOutputStream();
+                try {
+                    for (int i = 0; i < 500; i++)
+                        out.write(chunk);
+                    fail("Serwer powinien zerwać połączenie zalewającego");
+                } catch (IOException expected) {
+                    // bufor wyjsciowy przepelniony - serwer zamknal polaczenie
+                }
+                white.readUntil("GAME_OVER Black left, White won!");
+                assertNull(white.in.readLine(), "Serwer powinien zamknąć połączenie");
+                assertEquals(0, server.activeGames(), "Gra powinna zniknąć z serwera");
+                assertTrue(OutboundQueue.metrics().drops() > drops, "Zerwanie powinno trafić do liczników");
+            }
+        }
+    }
+
+    /**
+     * Klient testowy protokołu tekstowego, na życzenie binarnego.
+     */
+    static class Player implements AutoCloseable {
+        final Socket socket;
+        final WireReader in;
+        final OutputStream out;
+
+        Player(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setSoTimeout(5000);
+            in = new WireReader(socket.getInputStream(), 64 * 1024);
+            out = socket.getOutputStream();
+        }
+
+        void sendRaw(String text) throws IOException {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        void sendFrame(String line) throws IOException {
+            out.write(Binary.encode(line));
+            out.flush();
+        }
+
+        /**
+         * Przechodzi na ramki binarne w obu kierunkach.
+         */
+        void upgrade() throws IOException {
+            sendRaw(Binary.OFFER + "\n");
+            readUntil(Binary.ACCEPTED);
+            in.binary();
+        }
+
+        String readUntil(String prefix) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(prefix))
+                    return line;
+            }
+            fail("Brak linii " + prefix);
+            return null;
+        }
+
+        /**
+         * Czyta linie, aż zobaczy wszystkie przedrostki w dowolnej
+         * kolejności - linie gier multipleksowanych przeplatają się.
+         */
+        void readAll(String... prefixes) throws IOException {
+            Set<String> missing = new HashSet<>(Arrays.asList(prefixes));
+            String line;
+            while (!missing.isEmpty() && (line = in.readLine()) != null)
+                missing.removeIf(line::startsWith);
+            assertTrue(missing.isEmpty(), "Brak linii " + missing);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.gogame;
+
+import com.gogame.protocol.OutboundQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy ograniczonej kolejki wyjściowej i jej polityk.
+ */
+@Timeout(value = 5, unit = TimeUnit.SECONDS)
+class OutboundQueueTest {
+
+    /**
+     * Socket klienta, który nie czyta: zapis czeka, aż test otworzy bramkę.
+     */
+    static class Gate extends OutputStream {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch open = new CountDownLatch(1);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            started.countDown();
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (bytes) {
+                bytes.write(b, off, len);
+            }
+        }
+
+        String text() {
+            synchronized (bytes) {
+                return bytes.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private static void send(OutboundQueue queue, String line) {
+        queue.write((line + "\n").getBytes(StandardCharsets.UTF_8), 0, line.length() + 1);
+        queue.flush();
+    }
+
+    /**
+     * Test DROP - pełna kolejka zamyka połączenie, a zaległe wiadomości
+     * przepadają.
+     */
+    @Test
+    void testDropClosesConnection() throws Exception {
+        Gate gate = new Gate();
+        AtomicBoolean closed = new AtomicBoolean();
+        long drops = OutboundQueue.metrics().drops();
+        OutboundQueue queue = new OutboundQueue(gate, OutboundQueue.Policy.DROP, 2, Thread::new,
+                () -> closed.set(true), () -> new byte[0]);
+
+        send(queue, "A");
+        gate.started.await();
+        send(queue, "B");
+        send(queue, "C");
+        assertEquals(2, queue.depth(), "Dwie wiadomości powinny czekać w kolejce");
+        assertFalse(closed.get());
+        send(queue, "D");
+        assertTrue(closed.get(), "Pełna kolejka powinna zamknąć połączenie");
+        assertEquals(drops + 1, OutboundQueue.metrics().drops());
+
+        gate.open.countDown();
+        queue.close(1000);
+        assertEquals("A\n", gate.text(), "Po zamknięciu idzie tylko wiadomość już wysyłana");
+    }
+
+    /**
+     * Test COALESCE - zaległe wiadomości zastępuje obraz stanu, ale
+     * przypięta wiadomość zostaje.
+     */
+    @Test
+    void testCoalesceReplacesBacklogWithSnapshot() throws Exception {
+        Gate gate = new Gate();
+        long coalesced = OutboundQueue.metrics().coalesced();
+        OutboundQueue queue = new OutboundQueue(gate, OutboundQueue.Policy.COALESCE, 2, Thread::new,
+                () -> fail("COALESCE nie zamyka połączenia"), () -> "S\n".getBytes(StandardCharsets.UTF_8));
+
+        send(queue, "A");
+        gate.started.await();
+        queue.pin();
+        send(queue, "B");
+        send(queue, "C");
+        send(queue, "D");
+        assertEquals(coalesced + 1, OutboundQueue.metrics().coalesced());
+        assertEquals(2, queue.depth(), "W kolejce powinny zostać przypięta wiadomość i obraz");
+
+        gate.open.countDown();
+        queue.close(1000);
+        assertEquals("A\nB\nS\n", gate.text(), "Klient powinien dostać przypiętą wiadomość i obraz");
+    }
+
+    /**
+     * Test BLOCK - piszący czeka na miejsce, nic nie przepada, a czas
+     * czekania trafia do liczników.
+     */
+    @Test
+    void testBlockWaitsForRoom() throws Exception {
+        Gate gate = new Gate();
+        long blocked = OutboundQueue.metrics().blockedMillis();
+        long messages = OutboundQueue.metrics().messages();
+        OutboundQueue queue = new OutboundQueue(gate, OutboundQueue.Policy.BLOCK, 1, Thread::new,
+                () -> fail("BLOCK nie zamyka połączenia"), () -> new byte[0]);
+
+        send(queue, "A");
+        gate.started.await();
+        send(queue, "B");
+        Thread writer = new Thread(() -> send(queue, "C"));
+        writer.start();
+        writer.join(200);
+        assertTrue(writer.isAlive(), "Piszący powinien czekać na miejsce w kolejce");
+
+        gate.open.countDown();
+        writer.join();
+        queue.close(1000);
+        assertEquals("A\nB\nC\n", gate.text());
+        assertTrue(OutboundQueue.metrics().blockedMillis() - blocked >= 150, "Czas czekania powinien trafić do liczników");
+        assertTrue(OutboundQueue.metrics().messages() - messages >= 3, "Wysłane wiadomości powinny trafić do liczników");
+        assertTrue(OutboundQueue.metrics().averageWaitMicros() > 0);
+    }
+}
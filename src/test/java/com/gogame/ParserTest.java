@@ -0,0 +1,119 @@
+package com.gogame;
+
+import com.gogame.protocol.Binary;
+import com.gogame.protocol.Command;
+import com.gogame.protocol.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy wspólnego parsera linii protokołu.
+ */
+class ParserTest {
+
+    private final Command command = new Command();
+
+    /**
+     * Test komend z polami - liczby trafiają do tego samego obiektu.
+     */
+    @Test
+    void testPoints() {
+        assertTrue(Parser.parse("MOVE 3 18", command));
+        assertEquals(Binary.MOVE, command.op);
+        assertEquals(3, command.row());
+        assertEquals(18, command.col());
+
+        assertTrue(Parser.parse("MOVE_OK 1 0 true 0 0 2 0", command));
+        assertEquals(Binary.MOVE_OK, command.op);
+        assertTrue(command.flag, "Ruch czarnego");
+        assertArrayEquals(new int[] {0, 0, 2, 0}, command.numbers(2), "Zbite kamienie po polu ruchu");
+
+        assertTrue(Parser.parse("MARK", command));
+        assertEquals(0, command.count, "MARK bez pól jest poprawny");
+    }
+
+    /**
+     * Test komend z tekstem - tekst powstaje dopiero na żądanie.
+     */
+    @Test
+    void testText() {
+        assertTrue(Parser.parse("INIT WHITE 13 BINARY", command));
+        assertFalse(command.flag, "Gracz biały");
+        assertEquals(13, command.numbers[0]);
+        assertEquals("BINARY", command.text());
+
+        assertTrue(Parser.parse("INIT BLACK", command));
+        assertEquals(0, command.count, "Starszy serwer nie podaje rozmiaru");
+
+        assertTrue(Parser.parse("CONFIRM_REQ 2 3 Do you agree?", command));
+        assertEquals("Do you agree?", command.text());
+        assertTrue(Parser.parse("GAME_OVER Surrender, White won!", command));
+        assertEquals("Surrender, White won!", command.text());
+
+        assertTrue(Parser.parse("BOARD 2 W X..O", command));
+        assertEquals(2, command.numbers[0]);
+        assertFalse(command.flag, "Ruch białego");
+        assertEquals("X..O", command.text());
+    }
+
+    /**
+     * Test błędnych linii - parse zwraca false z treścią błędu zamiast
+     * rzucać NumberFormatException.
+     */
+    @Test
+    void testErrors() {
+        String[] invalid = {
+                "MOVE", "MOVE 1", "MOVE 1 2 3", "MOVE x 1", "MOVE -1 2", "MOVE 1  2", "MOVE 1 2 ",
+                "MOVE 99999 1", "PASS now", "MOVE_OK 1 1 maybe", "MARK 1", "MESSAGE", "INIT RED 19",
+                "BOARD 2 X..O", "BOARD 2 B"
+        };
+        for (String line : invalid) {
+            assertFalse(Parser.parse(line, command), "Linia powinna być błędna: " + line);
+            assertEquals(Parser.INVALID_ARGUMENTS, command.error, line);
+        }
+        for (String line : new String[] {"", "HELLO", "move 1 2", "MOVEX 1 2", " MOVE 1 2"}) {
+            assertFalse(Parser.parse(line, command), "Komenda powinna być nieznana: " + line);
+            assertEquals(Parser.UNKNOWN_COMMAND, command.error, line);
+        }
+    }
+
+    /**
+     * Test parsowania z bufora bajtów - także tekstu w UTF-8.
+     */
+    @Test
+    void testBytes() {
+        byte[] buffer = "xxMESSAGE Wynik: ąę\nMOVE 4 5\n".getBytes(StandardCharsets.UTF_8);
+        int end = indexOf(buffer, 2);
+        assertTrue(Parser.parse(buffer, 2, end - 2, command));
+        assertEquals(Binary.MESSAGE, command.op);
+        assertEquals("Wynik: ąę", command.text());
+
+        assertTrue(Parser.parse(buffer, end + 1, buffer.length - end - 2, command));
+        assertEquals(Binary.MOVE, command.op);
+        assertEquals(4, command.row());
+        assertEquals(5, command.col());
+    }
+
+    /**
+     * Test długiej listy pól - bufor liczb rośnie do pełnej planszy.
+     */
+    @Test
+    void testLongPointList() {
+        StringBuilder line = new StringBuilder("DEAD_REMOVED");
+        for (int i = 0; i < Board.MAX_SIZE * Board.MAX_SIZE; i++)
+            line.append(' ').append(i / Board.MAX_SIZE).append(' ').append(i % Board.MAX_SIZE);
+        assertTrue(Parser.parse(line, command));
+        assertEquals(2 * Board.MAX_SIZE * Board.MAX_SIZE, command.count);
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+}
@@ -1,26 +1,47 @@
 package com.gogame;
 
 import com.gogame.controller.Game;
+import com.gogame.protocol.OutboundQueue;
+import com.gogame.server.GameThreads;
+import com.gogame.server.ThreadServer;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.net.Socket;
 
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ServerTest {
     static class MockSocket extends Socket {
-        private ByteArrayInputStream input;
+        private InputStream input;
         private ByteArrayOutputStream output;
+        private PipedOutputStream hangUp = new PipedOutputStream();
 
         public MockSocket(String inputData) {
-            this.input = new ByteArrayInputStream(inputData.getBytes());
+            // po wyslaniu danych klient czeka, az serwer zamknie socket
+            try {
+                this.input = new SequenceInputStream(new ByteArrayInputStream(inputData.getBytes()), new PipedInputStream(hangUp));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
             this.output = new ByteArrayOutputStream();
         }
 
+        @Override
+        public void close() throws IOException {
+            hangUp.close();
+        }
+
         @Override
         public InputStream getInputStream() {
             return input;
@@ -58,10 +79,10 @@ public class ServerTest {
     public void testValidMoveFlow() {
         // 1. P1 wykonuje ruch na A1 (MOVE 0 0).
         // 2. Potem P1 wychodzi.
-        // 3. Gracz P2 czeka i wychodzi.
+        // 3. Gracz P2 czeka na swoja ture.
 
         String p1Input = "MOVE 0 0\nQUIT\n";
-        String p2Input = "QUIT\n";
+        String p2Input = "";
 
         MockSocket p1 = new MockSocket(p1Input);
         MockSocket p2 = new MockSocket(p2Input);
@@ -84,10 +105,10 @@ public class ServerTest {
         // 2. P2 próbuje wykonać ruch A1 (Zajęte -> Błąd).
         // 3. P2 wykonuje ruch A2 (Poprawny).
 
-        String p1Input = "MOVE 0 0\nQUIT\n"; // Ruch 0,0 i wyjście
+        String p1Input = "MOVE 0 0\n"; // Ruch 0,0, potem czeka
 
         // P2 musi poczekać na ruch P1
-        // potem błędny ruch, potem poprawny
+        // potem błędny ruch, potem poprawny i wyjście
         String p2Input = "MOVE 0 0\nMOVE 0 1\nQUIT\n";
 
         MockSocket p1 = new MockSocket(p1Input);
@@ -103,4 +124,101 @@ public class ServerTest {
         // P2 powinien dostać potwierdzenie drugiego, poprawnego ruchu (0,1)
         assertTrue(out2.contains("MOVE_OK 0 1 false"), "P2 should get correct move notification");
     }
+
+    /**
+     * Test fabryki wątków gier - wątki wirtualne tylko na JVM, która je ma.
+     */
+    @Test
+    public void testGameThreads() {
+        assertNotNull(GameThreads.factory(false).newThread(() -> { }));
+        if (GameThreads.virtualSupported())
+            assertNotNull(GameThreads.factory(true).newThread(() -> { }));
+        else
+            assertThrows(IllegalStateException.class, () -> GameThreads.factory(true));
+    }
+
+    /**
+     * Test blokującego serwera z wątkiem na grę na prawdziwych socketach.
+     */
+    @Test
+    public void testThreadServer() throws Exception {
+        ThreadServer server = new ThreadServer(0, 9, GameThreads.factory(false));
+        server.start();
+        try (NioServerTest.Player first = new NioServerTest.Player(server.getPort());
+             NioServerTest.Player second = new NioServerTest.Player(server.getPort())) {
+            // kolory zaleza od kolejnosci konca powitania, nie od kolejnosci polaczen
+            String init1 = first.readUntil("INIT");
+            String init2 = second.readUntil("INIT");
+            assertTrue(init1.split(" ")[2].equals("9") && init2.split(" ")[2].equals("9"), "Gra powinna być na planszy 9x9");
+            NioServerTest.Player black = init1.startsWith("INIT BLACK") ? first : second;
+            NioServerTest.Player white = black == first ? second : first;
+            assertTrue((black == first ? init2 : init1).startsWith("INIT WHITE"));
+            black.readUntil("YOUR_TURN");
+            black.sendRaw("MOVE 4 4\n");
+            white.readUntil("MOVE_OK 4 4 true");
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Test protokołu binarnego w serwerze blokującym - gracz czekający
+     * na turę przechodzi na ramki od razu, bez czekania na swoją kolej.
+     */
+    @Test
+    public void testThreadServerBinary() throws Exception {
+        ThreadServer server = new ThreadServer(0, 9, GameThreads.factory(false));
+        server.start();
+        try (NioServerTest.Player first = new NioServerTest.Player(server.getPort());
+             NioServerTest.Player second = new NioServerTest.Player(server.getPort())) {
+            String init1 = first.readUntil("INIT");
+            second.readUntil("INIT");
+            NioServerTest.Player black = init1.startsWith("INIT BLACK") ? first : second;
+            NioServerTest.Player white = black == first ? second : first;
+            white.upgrade();
+            black.readUntil("YOUR_TURN");
+            black.sendRaw("MOVE 4 4\n");
+            white.readUntil("MOVE_OK 4 4 true");
+            white.readUntil("YOUR_TURN");
+            white.sendFrame("MOVE 5 5");
+            black.readUntil("MOVE_OK 5 5 false");
+            white.readUntil("MOVE_OK 5 5 false");
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Test powrotu do gry w serwerze blokującym - nowy socket z tokenem
+     * sesji zastępuje zerwany, bez nowej gry.
+     */
+    @Test
+    public void testThreadServerResume() throws Exception {
+        ThreadServer server = new ThreadServer(0, 9, GameThreads.factory(false), OutboundQueue.Policy.DROP, 2000);
+        server.start();
+        try (NioServerTest.Player first = new NioServerTest.Player(server.getPort());
+             NioServerTest.Player second = new NioServerTest.Player(server.getPort())) {
+            String init1 = first.readUntil("INIT");
+            second.readUntil("INIT");
+            NioServerTest.Player black = init1.startsWith("INIT BLACK") ? first : second;
+            NioServerTest.Player white = black == first ? second : first;
+            String token = white.readUntil("SESSION").substring(8);
+            black.readUntil("YOUR_TURN");
+            black.sendRaw("MOVE 4 4\n");
+            white.readUntil("YOUR_TURN");
+            white.close();
+            black.readUntil("MESSAGE Opponent disconnected.");
+
+            try (NioServerTest.Player back = new NioServerTest.Player(server.getPort())) {
+                back.sendRaw("RESUME " + token + "\n");
+                back.readUntil("INIT WHITE 9");
+                back.readUntil("MOVE_OK 4 4 true");
+                back.readUntil("YOUR_TURN");
+                back.sendRaw("MOVE 5 5\n");
+                black.readUntil("MOVE_OK 5 5 false");
+            }
+        } finally {
+            server.stop();
+        }
+    }
 }
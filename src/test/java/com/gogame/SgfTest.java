@@ -0,0 +1,138 @@
+package com.gogame;
+
+import com.gogame.controller.Archive;
+import com.gogame.controller.Game;
+import com.gogame.controller.SgfReader;
+import com.gogame.controller.SgfWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Testy strumieniowego importu i eksportu SGF.
+ */
+@Timeout(value = 10, unit = TimeUnit.SECONDS)
+class SgfTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Test czytania - główna linia z wariantami, ustawione kamienie, bicie,
+     * znaki ucieczki i nieznane właściwości.
+     */
+    @Test
+    void testReadsMainLine() throws IOException {
+        String sgf = "(;GM[1]FF[4]SZ[9]PB[Czarny \\] Gracz]PW[Biały]RE[B+R]C[komentarz (z nawiasem) \\]]"
+                + "AB[aa:ab]"
+                + ";W[ba];B[cc]"
+                + "(;W[dd];B[ca]C[bicie]"
+                + "  (;W[ee])(;W[ff]))"
+                + "(;W[gg];B[hh]))\n"
+                + "(;SZ[5];B[cc];W[];B[cc])";
+        List<String> seen = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        SgfReader reader = new SgfReader();
+        long count = reader.read(new StringReader(sgf), game -> {
+            seen.add(game.size() + " " + game.black() + "|" + game.white() + "|" + game.result()
+                    + " " + game.moves() + " " + game.illegal());
+            keys.add(game.board().positionKey());
+        });
+        assertEquals(2, count);
+        assertEquals("9 Czarny ] Gracz|Biały|B+R 5 0", seen.get(0), "Tylko pierwszy wariant na każdym rozgałęzieniu");
+        assertEquals("5 null|null|null 3 1", seen.get(1), "Ruch na zajęte pole jest nielegalny");
+
+        Board board = new Board(9);
+        BoardHelper.makeMove(board, 0, 0, true);
+        BoardHelper.makeMove(board, 1, 0, true);
+        assertTrue(board.play(0, 1, false));
+        assertTrue(board.play(2, 2, true));
+        assertTrue(board.play(3, 3, false));
+        assertTrue(board.play(0, 2, true), "Czarny bije kamień w rogu");
+        assertTrue(board.play(4, 4, false));
+        assertEquals(board.positionKey(), (long) keys.get(0), "Plansza po głównej linii");
+        assertEquals(2, reader.games());
+    }
+
+    /**
+     * Test eksportu - gra z serwera zapisana do SGF i wczytana z powrotem
+     * daje tę samą pozycję, a wynik i gracze trafiają do nagłówka.
+     */
+    @Test
+    void testRoundTripFromGame() throws IOException {
+        try (Archive archive = new Archive(dir)) {
+            Game game = new Game(9);
+            game.players("ala", "ola");
+            game.observe(archive);
+            game.open(new PrintWriter(Writer.nullWriter()), new PrintWriter(Writer.nullWriter()));
+            game.submit(true, "MOVE 0 1");
+            game.submit(false, "MOVE 0 0");
+            game.submit(true, "PASS");
+            game.submit(false, "MOVE 5 5");
+            game.submit(true, "MOVE 1 0");
+            game.submit(false, "SURRENDER");
+            archive.flush();
+
+            StringWriter out = new StringWriter();
+            try (SgfWriter writer = new SgfWriter(out)) {
+                writer.write(game);
+                writer.write(archive.get(0));
+            }
+            String[] lines = out.toString().split("\n");
+            assertEquals("(;GM[1]FF[4]SZ[9]PB[ala]PW[ola]RE[B+R];B[ba];W[aa];B[];W[ff];B[ab])", lines[0]);
+            assertEquals(lines[0], lines[1], "Gra i jej rekord w archiwum dają ten sam SGF");
+
+            long[] key = new long[1];
+            new SgfReader().read(new StringReader(out.toString()), record -> {
+                assertEquals(0, record.illegal());
+                key[0] = record.board().positionKey();
+            });
+            assertEquals(archive.get(0).hash(), key[0], "Pozycja po wczytaniu jak na koniec gry");
+        }
+    }
+
+    /**
+     * Test strumienia bajtów - tysiące gier przez kanał z buforem mniejszym
+     * niż plik, nazwy w UTF-8 i pomijanie za dużych plansz.
+     */
+    @Test
+    void testStreamsLargeCollection() throws IOException {
+        StringBuilder sgf = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            sgf.append("(;SZ[19]PB[Łukasz ").append(i).append("];B[pd];W[dp];B[pp];W[dd];B[tt];W[])\n");
+        sgf.append("(;SZ[37];B[aa])");
+        byte[] bytes = sgf.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(bytes.length > 3 * 64 * 1024);
+
+        int[] count = new int[2];
+        SgfReader reader = new SgfReader();
+        reader.read(Channels.newChannel(new ByteArrayInputStream(bytes)), game -> {
+            assertEquals("Łukasz " + count[0], game.black());
+            count[0]++;
+            count[1] += game.moves();
+        });
+        assertEquals(5000, count[0]);
+        assertEquals(5000 * 6, count[1]);
+        assertEquals(1, reader.skipped(), "Plansza 37x37 jest pomijana");
+        assertTrue(reader.gamesPerSecond() > 0);
+
+        assertEquals(5000, new SgfReader().read(ByteBuffer.wrap(bytes), game -> { }));
+        assertThrows(IOException.class, () -> new SgfReader().read(new StringReader("(;B[aa]"), game -> { }));
+    }
+}